@@ -0,0 +1,86 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pt.it.av.atnog.utils.ArrayUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the {@link ArrayUtils} kernels, with the SIMD kernels (Vector API) and the scalar ones.
+ * <p>
+ * Each value of {@code simd} runs in its own fork, the kernels are selected when {@link ArrayUtils} is loaded.
+ * Requires JDK 17 or newer (the forks add the module jdk.incubator.vector).
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class ArrayUtilsBenchmark {
+  @Param({"true", "false"})
+  public String simd;
+
+  @Param({"64", "1024", "65536"})
+  public int size;
+
+  private double a[], b[], c[], r[];
+
+  @Setup(Level.Trial)
+  public void setup() {
+    // must be set before ArrayUtils is loaded
+    System.setProperty(ArrayUtils.SIMD, simd);
+    a = ArrayUtils.random(size);
+    b = ArrayUtils.random(size);
+    c = ArrayUtils.random(size);
+    ArrayUtils.add(c, 0, 1.0, c, 0, size);
+    r = new double[size];
+  }
+
+  @Benchmark
+  public double[] add() {
+    ArrayUtils.add(a, 0, b, 0, r, 0, size);
+    return r;
+  }
+
+  @Benchmark
+  public double[] mulDiv() {
+    ArrayUtils.mulDiv(a, 0, b, 0, c, 0, r, 0, size);
+    return r;
+  }
+
+  @Benchmark
+  public double dotProduct() {
+    return ArrayUtils.dotProduct(a, 0, b, 0, size);
+  }
+
+  @Benchmark
+  public double euclideanDistance() {
+    return ArrayUtils.euclideanDistance(a, 0, b, 0, size);
+  }
+
+  @Benchmark
+  public double manhattanDistance() {
+    return ArrayUtils.manhattanDistance(a, 0, b, 0, size);
+  }
+
+  @Benchmark
+  public double sum() {
+    return ArrayUtils.sum(a, 0, size);
+  }
+}
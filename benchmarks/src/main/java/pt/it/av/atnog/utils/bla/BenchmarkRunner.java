@@ -0,0 +1,48 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks jar.
+ * <p>
+ * Accepts the regular JMH command line options, but by default the results are
+ * written in JSON format to {@code jmh-result.json}, so that different releases can be compared.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public final class BenchmarkRunner {
+  private static final String RESULT_FILE = "jmh-result.json";
+
+  /**
+   * Utility class, lets make the constructor private.
+   */
+  private BenchmarkRunner() {
+  }
+
+  /**
+   * Runs the benchmarks.
+   *
+   * @param args JMH command line options
+   * @throws CommandLineOptionException if the options are not valid
+   * @throws RunnerException            if the benchmarks fail
+   */
+  public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+    CommandLineOptions cmd = new CommandLineOptions(args);
+    ChainedOptionsBuilder builder = new OptionsBuilder().parent(cmd);
+    if (!cmd.getResultFormat().hasValue()) {
+      builder.resultFormat(ResultFormatType.JSON);
+    }
+    if (!cmd.getResult().hasValue()) {
+      builder.result(RESULT_FILE);
+    }
+    new Runner(builder.build()).run();
+  }
+}
@@ -0,0 +1,72 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the batched small matrices ({@link MatrixBatch}) against one {@link Matrix} per matrix.
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixBatchBenchmark {
+  @Param({"3", "4"})
+  public int size;
+
+  @Param({"10000"})
+  public int n;
+
+  private Matrix matrices[];
+  private MatrixBatch batch, inverse;
+  private double det[];
+
+  @Setup(Level.Trial)
+  public void setup() {
+    matrices = new Matrix[n];
+    for (int i = 0; i < n; i++)
+      matrices[i] = Matrix.random(size, size);
+    batch = MatrixBatch.of(matrices);
+    inverse = new MatrixBatch(size, n);
+    det = new double[n];
+  }
+
+  @Benchmark
+  public double[] det_objects() {
+    for (int i = 0; i < n; i++)
+      det[i] = matrices[i].det();
+    return det;
+  }
+
+  @Benchmark
+  public double[] det_batch() {
+    return batch.det(det);
+  }
+
+  @Benchmark
+  public MatrixBatch inverse_batch() {
+    return batch.inverse(inverse);
+  }
+
+  @Benchmark
+  public MatrixBatch mul_batch() {
+    return batch.mul(batch, inverse);
+  }
+}
@@ -0,0 +1,87 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the {@link Matrix} decompositions.
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixBenchmark {
+  @Param({"4", "16", "64", "128"})
+  public int size;
+
+  private Matrix m, spd, b;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    m = Matrix.random(size, size);
+    spd = m.mul(m.transpose()).add(Matrix.identity(size).mul(size));
+    b = Matrix.random(size, 8);
+  }
+
+  @Benchmark
+  public double det() {
+    return m.det();
+  }
+
+  @Benchmark
+  public LuDecomposition lu() {
+    return m.lu();
+  }
+
+  @Benchmark
+  public CholeskyDecomposition cholesky() {
+    return spd.cholesky();
+  }
+
+  @Benchmark
+  public Matrix cholesky_solve() {
+    return spd.cholesky().solve(b);
+  }
+
+  @Benchmark
+  public Matrix[] qr() {
+    return m.qr();
+  }
+
+  @Benchmark
+  public Matrix[] eig() {
+    return spd.eig();
+  }
+
+  @Benchmark
+  public Matrix[] eig_top4() {
+    return spd.eig(Math.min(4, size));
+  }
+
+  @Benchmark
+  public Matrix[] svd() {
+    return m.svd();
+  }
+
+  @Benchmark
+  public Matrix[] svd_top4() {
+    return m.svd(Math.min(4, size));
+  }
+}
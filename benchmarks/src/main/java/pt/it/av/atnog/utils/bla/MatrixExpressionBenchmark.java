@@ -0,0 +1,65 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the eager and the lazy ({@link MatrixExpression}) arithmetic.
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixExpressionBenchmark {
+  @Param({"64", "512", "1024"})
+  public int size;
+
+  private Matrix a, b, c, w, h, ht;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    a = Matrix.random(size, size);
+    b = Matrix.random(size, size);
+    c = Matrix.random(size, size);
+    w = Matrix.random(size, 8);
+    h = Matrix.random(8, size);
+    ht = h.transpose();
+  }
+
+  @Benchmark
+  public Matrix eager() {
+    return a.add(b).mul(2.0).sub(c);
+  }
+
+  @Benchmark
+  public Matrix lazy() {
+    return a.lazy().add(b).mul(2.0).sub(c).eval();
+  }
+
+  @Benchmark
+  public Matrix chain_eager() {
+    return w.mul(h).mul(ht);
+  }
+
+  @Benchmark
+  public Matrix chain_lazy() {
+    return w.lazy().mul(h).mul(ht).eval();
+  }
+}
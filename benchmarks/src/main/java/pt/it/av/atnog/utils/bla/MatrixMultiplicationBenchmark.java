@@ -0,0 +1,104 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pt.it.av.atnog.utils.ArrayUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link MatrixMultiplication}.
+ * Shapes are defined as {@code MxNxP}: A is M x P, B is P x N and C is M x N.
+ * The kernels write or accumulate into C and the values do not change the cost, as such C is only cleared per iteration.
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixMultiplicationBenchmark {
+  @Param({"64x64x64", "256x256x256", "512x512x512", "1024x64x256", "64x1024x256", "512x512x16"})
+  public String shape;
+
+  private double a[], b[], bt[], c[];
+  private int m, n, p;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    int dims[] = Shape.parse(shape);
+    m = dims[0];
+    n = dims[1];
+    p = dims[2];
+    a = ArrayUtils.random(m * p);
+    b = ArrayUtils.random(p * n);
+    bt = MatrixTranspose.ntr(b, new double[b.length], p, n);
+    c = new double[m * n];
+  }
+
+  @Setup(Level.Iteration)
+  public void clear() {
+    Arrays.fill(c, 0.0);
+  }
+
+  @Benchmark
+  public double[] ijk() {
+    MatrixMultiplication.ijk(a, b, c, m, n, p);
+    return c;
+  }
+
+  @Benchmark
+  public double[] ikj() {
+    MatrixMultiplication.ikj(a, b, c, m, n, p);
+    return c;
+  }
+
+  @Benchmark
+  public double[] ijkt() {
+    return MatrixMultiplication.ijkt(a, bt, c, m, n, p);
+  }
+
+  @Benchmark
+  public double[] comul() {
+    return MatrixMultiplication.comul(a, b, c, m, n, p);
+  }
+
+  @Benchmark
+  public double[] comult() {
+    return MatrixMultiplication.comult(a, bt, c, m, n, p);
+  }
+
+  @Benchmark
+  public double[] pmul() {
+    return MatrixMultiplication.pmul(a, b, c, m, n, p);
+  }
+
+  @Benchmark
+  public double[] pmult() {
+    return MatrixMultiplication.pmult(a, bt, c, m, n, p);
+  }
+
+  @Benchmark
+  public double[] gemm() {
+    return MatrixMultiplication.gemm(a, b, c, m, n, p);
+  }
+
+  @Benchmark
+  public double[] mul() {
+    return MatrixMultiplication.mul(a, b, c, m, n, p);
+  }
+}
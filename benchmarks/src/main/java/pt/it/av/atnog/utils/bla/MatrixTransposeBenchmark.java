@@ -0,0 +1,102 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pt.it.av.atnog.utils.ArrayUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link MatrixTranspose}.
+ * Shapes are defined as {@code RxC}, the in-place square transpose uses a R x R matrix.
+ * The in-place rectangular transposes alternate between R x C and C x R, so that every invocation
+ * transposes the matrix left by the previous one (without copying it).
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixTransposeBenchmark {
+  @Param({"128x128", "1024x1024", "2048x512", "512x2048", "4096x64"})
+  public String shape;
+
+  private double a[], at[], s[], ip[];
+  private int rows, cols, ipRows, ipCols;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    int dims[] = Shape.parse(shape);
+    rows = dims[0];
+    cols = dims[1];
+    a = ArrayUtils.random(rows * cols);
+    at = new double[a.length];
+    s = ArrayUtils.random(rows * rows);
+  }
+
+  @Setup(Level.Iteration)
+  public void copy() {
+    ip = a.clone();
+    ipRows = rows;
+    ipCols = cols;
+  }
+
+  /**
+   * Swaps the shape of the in-place matrix after a transpose.
+   */
+  private double[] swap(final double rv[]) {
+    final int t = ipRows;
+    ipRows = ipCols;
+    ipCols = t;
+    return rv;
+  }
+
+  @Benchmark
+  public double[] cotr() {
+    return MatrixTranspose.cotr(a, at, rows, cols);
+  }
+
+  @Benchmark
+  public double[] pcotr() {
+    return MatrixTranspose.pcotr(a, at, rows, cols);
+  }
+
+  @Benchmark
+  public double[] ntr() {
+    return MatrixTranspose.ntr(a, at, rows, cols);
+  }
+
+  @Benchmark
+  public double[] insqtr() {
+    return MatrixTranspose.insqtr(s, rows);
+  }
+
+  @Benchmark
+  public double[] infotr() {
+    return swap(MatrixTranspose.infotr(ip, ipRows, ipCols));
+  }
+
+  @Benchmark
+  public double[] indtr() {
+    return swap(MatrixTranspose.indtr(ip, ipRows, ipCols));
+  }
+
+  @Benchmark
+  public double[] pindtr() {
+    return swap(MatrixTranspose.pindtr(ip, ipRows, ipCols));
+  }
+}
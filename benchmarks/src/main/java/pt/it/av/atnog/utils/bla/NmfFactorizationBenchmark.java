@@ -0,0 +1,72 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link NmfFactorization}.
+ * Shapes are defined as {@code RxCxK}: V is R x C and it is factorized with rank K.
+ * Every benchmark runs a fixed number of iterations (the cost threshold is never reached).
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NmfFactorizationBenchmark {
+  private static final int ITERATIONS = 10;
+
+  @Param({"128x128x8", "1024x256x16", "256x1024x16", "2048x512x32"})
+  public String shape;
+
+  private Matrix v;
+  private int k;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    int dims[] = Shape.parse(shape);
+    v = Matrix.random(dims[0], dims[1]);
+    k = dims[2];
+  }
+
+  @Benchmark
+  public Matrix[] nmf_mu() {
+    return NmfFactorization.nmf_mu(v, k, ITERATIONS, 0.0);
+  }
+
+  @Benchmark
+  public Matrix[] nmf_mu2() {
+    return NmfFactorization.nmf_mu2(v, k, ITERATIONS, 0.0);
+  }
+
+  @Benchmark
+  public Matrix[] nmf_hals() {
+    return NmfFactorization.nmf(v, k, ITERATIONS, 0.0, NmfFactorization.Rule.HALS);
+  }
+
+  @Benchmark
+  public Matrix[] nmf_als() {
+    return NmfFactorization.nmf(v, k, ITERATIONS, 0.0, NmfFactorization.Rule.ALS);
+  }
+
+  @Benchmark
+  public Matrix[] nmf_kl() {
+    return NmfFactorization.nmf(v, k, ITERATIONS, 0.0, NmfFactorization.Rule.KL);
+  }
+}
@@ -0,0 +1,78 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the pairwise distances ({@link PairwiseDistances}) against one {@link Vector} call per pair.
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PairwiseDistancesBenchmark {
+  @Param({"1000"})
+  public int n;
+
+  @Param({"64"})
+  public int d;
+
+  private Matrix A, B, C;
+  private Vector a[], b[];
+
+  @Setup(Level.Trial)
+  public void setup() {
+    A = Matrix.random(n, d, -1.0, 1.0);
+    B = Matrix.random(n, d, -1.0, 1.0);
+    C = new Matrix(n, n);
+    a = new Vector[n];
+    b = new Vector[n];
+    for (int i = 0; i < n; i++) {
+      a[i] = new Vector(A.data, i * d, d);
+      b[i] = new Vector(B.data, i * d, d);
+    }
+  }
+
+  @Benchmark
+  public Matrix cosine_vectors() {
+    for (int i = 0; i < n; i++)
+      for (int j = 0; j < n; j++)
+        C.data[i * n + j] = a[i].cosine(b[j]);
+    return C;
+  }
+
+  @Benchmark
+  public Matrix cosine_pairwise() {
+    return PairwiseDistances.cosine(A, B);
+  }
+
+  @Benchmark
+  public Matrix euclidean_vectors() {
+    for (int i = 0; i < n; i++)
+      for (int j = 0; j < n; j++)
+        C.data[i * n + j] = a[i].euclideanDistance(b[j]);
+    return C;
+  }
+
+  @Benchmark
+  public Matrix euclidean_pairwise() {
+    return PairwiseDistances.euclidean(A, B);
+  }
+}
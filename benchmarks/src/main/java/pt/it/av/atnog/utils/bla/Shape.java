@@ -0,0 +1,32 @@
+package pt.it.av.atnog.utils.bla;
+
+/**
+ * Parses the matrix shapes used as benchmark parameters.
+ * A shape is defined as {@code MxNxP} (multiplication of a M x P matrix by a P x N matrix)
+ * or {@code RxC} (a R x C matrix).
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+final class Shape {
+  /**
+   * Utility class, lets make the constructor private.
+   */
+  private Shape() {
+  }
+
+  /**
+   * Returns the dimensions of a shape.
+   *
+   * @param shape shape with the format {@code AxBx...}
+   * @return the dimensions of a shape
+   */
+  static int[] parse(final String shape) {
+    String tokens[] = shape.split("x");
+    int rv[] = new int[tokens.length];
+    for (int i = 0; i < tokens.length; i++) {
+      rv[i] = Integer.parseInt(tokens[i].trim());
+    }
+    return rv;
+  }
+}
@@ -0,0 +1,110 @@
+package pt.it.av.atnog.utils.structures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pt.it.av.atnog.utils.bla.Matrix;
+import pt.it.av.atnog.utils.bla.Vector;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the array-backed KD-Tree ({@link ArrayKDTree}) against the node-based {@link KDTree}.
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KDTreeBenchmark {
+  @Param({"100000"})
+  public int n;
+
+  @Param({"3"})
+  public int dim;
+
+  @Param({"1000"})
+  public int queries;
+
+  private Matrix points, batch;
+  private Vector vectors[], targets[];
+  private double coords[][];
+  private KDTree<Vector> nodes;
+  private ArrayKDTree tree;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    points = Matrix.random(n, dim, 0.0, 1.0);
+    vectors = new Vector[n];
+    for (int i = 0; i < n; i++)
+      vectors[i] = points.row(i).vector();
+    nodes = KDTree.build(vectors.clone());
+    tree = ArrayKDTree.build(points);
+    Matrix q = Matrix.random(queries, dim, 0.0, 1.0);
+    batch = q;
+    targets = new Vector[queries];
+    coords = new double[queries][dim];
+    for (int i = 0; i < queries; i++) {
+      targets[i] = q.row(i).vector();
+      for (int j = 0; j < dim; j++)
+        coords[i][j] = q.get(i, j);
+    }
+  }
+
+  @Benchmark
+  public KDTree<Vector> build_nodes() {
+    return KDTree.build(vectors.clone());
+  }
+
+  @Benchmark
+  public ArrayKDTree build_array() {
+    return ArrayKDTree.build(points);
+  }
+
+  @Benchmark
+  public double nearest_nodes() {
+    double rv = 0.0;
+    for (Vector t : targets)
+      rv += nodes.nearest(t).get(0);
+    return rv;
+  }
+
+  @Benchmark
+  public int nearest_array() {
+    int rv = 0;
+    for (double t[] : coords)
+      rv += tree.nearest(t);
+    return rv;
+  }
+
+  @Benchmark
+  public int knn_array() {
+    int rv = 0;
+    for (double t[] : coords)
+      rv += tree.knn(t, 10)[9];
+    return rv;
+  }
+
+  @Benchmark
+  public int[] nearest_batch() {
+    return tree.nearest(batch);
+  }
+
+  @Benchmark
+  public int[][] knn_batch() {
+    return tree.knn(batch, 10);
+  }
+}
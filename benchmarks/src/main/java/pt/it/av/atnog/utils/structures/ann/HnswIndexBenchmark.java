@@ -0,0 +1,74 @@
+package pt.it.av.atnog.utils.structures.ann;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pt.it.av.atnog.utils.bla.Vector;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the HNSW index ({@link HnswIndex}) against a linear scan.
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HnswIndexBenchmark {
+  @Param({"10000"})
+  public int n;
+
+  @Param({"300"})
+  public int dim;
+
+  private Vector data[], queries[];
+  private HnswIndex index;
+  private int q = 0;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    data = new Vector[n];
+    for (int i = 0; i < n; i++)
+      data[i] = Vector.random(dim);
+    queries = new Vector[100];
+    for (int i = 0; i < queries.length; i++)
+      queries[i] = Vector.random(dim);
+    index = new HnswIndex(Metric.EUCLIDEAN, 16, 100, 50);
+    index.addAll(Arrays.asList(data));
+  }
+
+  @Benchmark
+  public int nearest_scan() {
+    final Vector t = queries[q++ % queries.length];
+    int rv = -1;
+    double best = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < n; i++) {
+      final double d = t.euclideanDistance(data[i]);
+      if (d < best) {
+        best = d;
+        rv = i;
+      }
+    }
+    return rv;
+  }
+
+  @Benchmark
+  public int nearest_hnsw() {
+    return index.nearest(queries[q++ % queries.length]);
+  }
+}
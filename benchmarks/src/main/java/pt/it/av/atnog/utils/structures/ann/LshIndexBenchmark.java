@@ -0,0 +1,76 @@
+package pt.it.av.atnog.utils.structures.ann;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pt.it.av.atnog.utils.bla.Vector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the LSH index ({@link LshIndex}) against a linear scan of the cosine similarities.
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LshIndexBenchmark {
+  @Param({"10000"})
+  public int n;
+
+  @Param({"300"})
+  public int dim;
+
+  private List<Vector> data, queries;
+  private LshIndex index;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    data = new ArrayList<>();
+    for (int i = 0; i < n; i++)
+      data.add(Vector.random(dim).uSub(0.5));
+    queries = new ArrayList<>();
+    for (int i = 0; i < 100; i++)
+      queries.add(data.get(i * (n / 100)).add(Vector.random(dim).uMul(0.01)));
+    index = LshIndex.cosine(dim, 16, 12, 1);
+    index.addAll(data);
+  }
+
+  @Benchmark
+  public int near_scan() {
+    int rv = 0;
+    for (Vector q : queries)
+      for (Vector v : data)
+        if (q.cosine(v) >= 0.99)
+          rv++;
+    return rv;
+  }
+
+  @Benchmark
+  public int[][] near_lsh() {
+    return index.near(queries, 0.01);
+  }
+
+  @Benchmark
+  public LshIndex build_lsh() {
+    final LshIndex rv = LshIndex.cosine(dim, 16, 12, 1);
+    rv.addAll(data);
+    return rv;
+  }
+}
@@ -0,0 +1,34 @@
+package pt.it.av.atnog.utils;
+
+/**
+ * Kernels used by the operations over arrays of doubles of {@link ArrayUtils}.
+ * <p>
+ * The implementation is selected at runtime: the SIMD kernels (Vector API) when they are available,
+ * otherwise the scalar kernels.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+interface ArrayKernels {
+  void add(double[] a, int bA, double[] b, int bB, double[] c, int bC, int len);
+
+  void sub(double[] a, int bA, double[] b, int bB, double[] c, int bC, int len);
+
+  void mul(double[] a, int bA, double[] b, int bB, double[] c, int bC, int len);
+
+  void div(double[] a, int bA, double[] b, int bB, double[] c, int bC, int len);
+
+  void mulDiv(double[] a, int bA, double[] b, int bB, double[] c, int bC, double[] r, int bR, int len);
+
+  double dotProduct(double[] a, int bA, double[] b, int bB, int len);
+
+  /**
+   * Returns the squared euclidean distance.
+   */
+  double squaredDistance(double[] a, int bA, double[] b, int bB, int len);
+
+  double manhattanDistance(double[] a, int bA, double[] b, int bB, int len);
+
+  double sum(double[] a, int bA, int len);
+}
@@ -11,12 +11,43 @@ import java.util.concurrent.ThreadLocalRandom;
  * @version 1.0
  */
 public final class ArrayUtils {
+  /**
+   * System property that disables the SIMD kernels (-Dpt.it.av.atnog.utils.simd=false).
+   */
+  public static final String SIMD = "pt.it.av.atnog.utils.simd";
+  private static final ArrayKernels KERNELS = kernels();
+
   /**
    * Utility class, lets make the constructor private.
    */
   private ArrayUtils() {
   }
 
+  /**
+   * Returns the SIMD kernels if they were compiled (JDK 17 or newer)
+   * and the module jdk.incubator.vector is available, otherwise the scalar kernels.
+   */
+  private static ArrayKernels kernels() {
+    if (Boolean.parseBoolean(System.getProperty(SIMD, "true"))) {
+      try {
+        return (ArrayKernels) Class.forName("pt.it.av.atnog.utils.VectorKernels")
+            .getDeclaredConstructor().newInstance();
+      } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+        // fallback to the scalar kernels
+      }
+    }
+    return new ScalarKernels();
+  }
+
+  /**
+   * Returns true if the operations over arrays of doubles use the SIMD kernels (Vector API).
+   *
+   * @return true if the operations over arrays of doubles use the SIMD kernels
+   */
+  public static boolean simd() {
+    return !(KERNELS instanceof ScalarKernels);
+  }
+
   /**
    * Sum two arrays element-wise.
    * <p>
@@ -35,9 +66,7 @@ public final class ArrayUtils {
   public static void add(final double[] a, final int bA, final double[] b,
                          final int bB, final double[] c, final int bC,
                          final int len) {
-    for (int i = 0; i < len; i++) {
-      c[bC + i] = a[bA + i] + b[bB + i];
-    }
+    KERNELS.add(a, bA, b, bB, c, bC, len);
   }
 
   /**
@@ -75,9 +104,7 @@ public final class ArrayUtils {
   public static void sub(final double[] a, final int bA, final double[] b,
                          final int bB, final double[] c, final int bC,
                          final int len) {
-    for (int i = 0; i < len; i++) {
-      c[bC + i] = a[bA + i] - b[bB + i];
-    }
+    KERNELS.sub(a, bA, b, bB, c, bC, len);
   }
 
   /**
@@ -113,9 +140,7 @@ public final class ArrayUtils {
   public static void mul(final double[] a, final int bA, final double[] b,
                          final int bB, final double[] c, final int bC,
                          final int len) {
-    for (int i = 0; i < len; i++) {
-      c[bC + i] = a[bA + i] * b[bB + i];
-    }
+    KERNELS.mul(a, bA, b, bB, c, bC, len);
   }
 
   /**
@@ -151,9 +176,7 @@ public final class ArrayUtils {
   public static void div(final double[] a, final int bA, final double[] b,
                          final int bB, final double[] c,
                          final int bC, final int len) {
-    for (int i = 0; i < len; i++) {
-      c[bC + i] = a[bA + i] / b[bB + i];
-    }
+    KERNELS.div(a, bA, b, bB, c, bC, len);
   }
 
   /**
@@ -188,9 +211,7 @@ public final class ArrayUtils {
   public static void mulDiv(final double[] a, final int bA, final double[] b,
                             final int bB, final double[] c, final int bC,
                             final double[] r, final int bR, final int len) {
-    for (int i = 0; i < len; i++) {
-      r[bR + i] = a[bA + i] * (b[bB + i] / c[bC + i]);
-    }
+    KERNELS.mulDiv(a, bA, b, bB, c, bC, r, bR, len);
   }
 
   /**
@@ -266,11 +287,7 @@ public final class ArrayUtils {
   public static double euclideanDistance(final double[] a, final int bA,
                                          final double[] b, final int bB,
                                          final int len) {
-    double sum = 0.0;
-    for (int i = 0; i < len; i++) {
-      sum += Math.pow(a[bA + i] - b[bB + i], 2.0);
-    }
-    return Math.sqrt(sum);
+    return Math.sqrt(KERNELS.squaredDistance(a, bA, b, bB, len));
   }
 
   /**
@@ -284,11 +301,7 @@ public final class ArrayUtils {
   public static double manhattanDistance(final double[] a, final int bA,
                                          final double[] b, final int bB,
                                          final int len) {
-    double sum = 0.0;
-    for (int i = 0; i < len; i++) {
-      sum += Math.abs(a[bA + i] - b[bB + i]);
-    }
-    return sum;
+    return KERNELS.manhattanDistance(a, bA, b, bB, len);
   }
 
   /**
@@ -298,11 +311,7 @@ public final class ArrayUtils {
    * @return
    */
   public static double sum(final double[] a, final int bA, final int len) {
-    double sum = 0.0;
-    for (int i = 0; i < len; i++) {
-      sum += a[i];
-    }
-    return sum;
+    return KERNELS.sum(a, bA, len);
   }
 
   /**
@@ -316,13 +325,321 @@ public final class ArrayUtils {
   public static double dotProduct(final double[] a, final int bA,
                                   final double[] b, final int bB,
                                   final int len) {
-    double rv = 0.0;
+    return KERNELS.dotProduct(a, bA, b, bB, len);
+  }
+
+
+  /**
+   * Sum two float arrays element-wise.
+   *
+   * @param a   first vector
+   * @param bA  index of the first vector
+   * @param b   second vector
+   * @param bB  index of the second vector
+   * @param c   resulting vector
+   * @param bC  index of the resulting vector
+   * @param len array's len
+   */
+  public static void add(final float[] a, final int bA, final float[] b,
+                         final int bB, final float[] c, final int bC,
+                         final int len) {
+    for (int i = 0; i < len; i++) {
+      c[bC + i] = a[bA + i] + b[bB + i];
+    }
+  }
+
+  /**
+   * Sum a scalar with a float array.
+   *
+   * @param a   first vector
+   * @param bA  index of the first vector
+   * @param b   scalar
+   * @param c   resulting vector
+   * @param bC  index of the resulting vector
+   * @param len array's len
+   */
+  public static void add(final float[] a, final int bA, final float b,
+                         final float[] c, final int bC, final int len) {
+    for (int i = 0; i < len; i++) {
+      c[bC + i] = a[bA + i] + b;
+    }
+  }
+
+  /**
+   * Substract two float arrays element-wise.
+   *
+   * @param a   first vector
+   * @param bA  index of the first vector
+   * @param b   second vector
+   * @param bB  index of the second vector
+   * @param c   resulting vector
+   * @param bC  index of the resulting vector
+   * @param len array's len
+   */
+  public static void sub(final float[] a, final int bA, final float[] b,
+                         final int bB, final float[] c, final int bC,
+                         final int len) {
+    for (int i = 0; i < len; i++) {
+      c[bC + i] = a[bA + i] - b[bB + i];
+    }
+  }
+
+  /**
+   * Substract a scalar from a float array.
+   *
+   * @param a   first vector
+   * @param bA  index of the first vector
+   * @param b   scalar
+   * @param c   resulting vector
+   * @param bC  index of the resulting vector
+   * @param len array's len
+   */
+  public static void sub(final float[] a, final int bA, final float b,
+                         final float[] c, final int bC, final int len) {
+    for (int i = 0; i < len; i++) {
+      c[bC + i] = a[bA + i] - b;
+    }
+  }
+
+  /**
+   * Multiply two float arrays element-wise.
+   *
+   * @param a   first vector
+   * @param bA  index of the first vector
+   * @param b   second vector
+   * @param bB  index of the second vector
+   * @param c   resulting vector
+   * @param bC  index of the resulting vector
+   * @param len array's len
+   */
+  public static void mul(final float[] a, final int bA, final float[] b,
+                         final int bB, final float[] c, final int bC,
+                         final int len) {
+    for (int i = 0; i < len; i++) {
+      c[bC + i] = a[bA + i] * b[bB + i];
+    }
+  }
+
+  /**
+   * Multiply a scalar with a float array.
+   *
+   * @param a   first vector
+   * @param bA  index of the first vector
+   * @param b   scalar
+   * @param c   resulting vector
+   * @param bC  index of the resulting vector
+   * @param len array's len
+   */
+  public static void mul(final float[] a, final int bA, final float b,
+                         final float[] c, final int bC, final int len) {
+    for (int i = 0; i < len; i++) {
+      c[bC + i] = a[bA + i] * b;
+    }
+  }
+
+  /**
+   * Divide two float arrays element-wise.
+   *
+   * @param a   first vector
+   * @param bA  index of the first vector
+   * @param b   second vector
+   * @param bB  index of the second vector
+   * @param c   resulting vector
+   * @param bC  index of the resulting vector
+   * @param len array's len
+   */
+  public static void div(final float[] a, final int bA, final float[] b,
+                         final int bB, final float[] c,
+                         final int bC, final int len) {
+    for (int i = 0; i < len; i++) {
+      c[bC + i] = a[bA + i] / b[bB + i];
+    }
+  }
+
+  /**
+   * Divide a float array by a scalar.
+   *
+   * @param a   first vector
+   * @param bA  index of the first vector
+   * @param b   scalar
+   * @param c   resulting vector
+   * @param bC  index of the resulting vector
+   * @param len array's len
+   */
+  public static void div(final float[] a, final int bA, final float b,
+                         final float[] c, final int bC, final int len) {
+    for (int i = 0; i < len; i++) {
+      c[bC + i] = a[bA + i] / b;
+    }
+  }
+
+  /**
+   * The elements of A are multiplied by the ratio between B and C and stored in R.
+   *
+   * @param a   first vector
+   * @param bA  index of the first vector
+   * @param b   second vector
+   * @param bB  index of the second vector
+   * @param c   third vector
+   * @param bC  index of the third vector
+   * @param r   resulting vector
+   * @param bR  index of the resulting vector
+   * @param len array's len
+   */
+  public static void mulDiv(final float[] a, final int bA, final float[] b,
+                            final int bB, final float[] c, final int bC,
+                            final float[] r, final int bR, final int len) {
+    for (int i = 0; i < len; i++) {
+      r[bR + i] = a[bA + i] * (b[bB + i] / c[bC + i]);
+    }
+  }
+
+  /**
+   * Returns the minkowski distance between two float arrays.
+   *
+   * @param a   first vector
+   * @param bA  index of the first vector
+   * @param b   second vector
+   * @param bB  index of the second vector
+   * @param len array's len
+   * @param p   order of the distance
+   * @return the minkowski distance between two float arrays
+   */
+  public static float minkowskiDistance(final float[] a, final int bA,
+                                        final float[] b, final int bB,
+                                        final int len, final int p) {
+    double sum = 0.0;
+    for (int i = 0; i < len; i++) {
+      sum += Math.pow(Math.abs(a[bA + i] - b[bB + i]), p);
+    }
+    return (float) Math.pow(sum, 1.0 / p);
+  }
+
+  /**
+   * Returns the euclidean distance between two float arrays.
+   *
+   * @param a   first vector
+   * @param bA  index of the first vector
+   * @param b   second vector
+   * @param bB  index of the second vector
+   * @param len array's len
+   * @return the euclidean distance between two float arrays
+   */
+  public static float euclideanDistance(final float[] a, final int bA,
+                                        final float[] b, final int bB,
+                                        final int len) {
+    float sum = 0.0f;
+    for (int i = 0; i < len; i++) {
+      float d = a[bA + i] - b[bB + i];
+      sum += d * d;
+    }
+    return (float) Math.sqrt(sum);
+  }
+
+  /**
+   * Returns the manhattan distance between two float arrays.
+   *
+   * @param a   first vector
+   * @param bA  index of the first vector
+   * @param b   second vector
+   * @param bB  index of the second vector
+   * @param len array's len
+   * @return the manhattan distance between two float arrays
+   */
+  public static float manhattanDistance(final float[] a, final int bA,
+                                        final float[] b, final int bB,
+                                        final int len) {
+    float sum = 0.0f;
+    for (int i = 0; i < len; i++) {
+      sum += Math.abs(a[bA + i] - b[bB + i]);
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the sum of the elements of a float array.
+   *
+   * @param a   vector
+   * @param bA  index of the vector
+   * @param len array's len
+   * @return the sum of the elements of a float array
+   */
+  public static float sum(final float[] a, final int bA, final int len) {
+    float sum = 0.0f;
+    for (int i = 0; i < len; i++) {
+      sum += a[bA + i];
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the dot product between two float arrays.
+   *
+   * @param a   first vector
+   * @param bA  index of the first vector
+   * @param b   second vector
+   * @param bB  index of the second vector
+   * @param len array's len
+   * @return the dot product between two float arrays
+   */
+  public static float dotProduct(final float[] a, final int bA,
+                                 final float[] b, final int bB,
+                                 final int len) {
+    float rv = 0.0f;
     for (int i = 0; i < len; i++) {
       rv += a[bA + i] * b[bB + i];
     }
     return rv;
   }
 
+  /**
+   * Returns the p-norm of a float array.
+   *
+   * @param a   vector
+   * @param bA  index of the vector
+   * @param len array's len
+   * @param p   order of the norm
+   * @return the p-norm of a float array
+   */
+  public static float norm(final float a[], final int bA, final int len, final int p) {
+    double sum = 0.0;
+    if (p == 2) {
+      sum = dotProduct(a, bA, a, bA, len);
+    } else {
+      for (int i = 0; i < len; i++) {
+        sum += Math.pow(Math.abs(a[bA + i]), p);
+      }
+    }
+    return (float) Math.pow(sum, 1.0 / p);
+  }
+
+  /**
+   * Returns a float array with the values of a double array.
+   *
+   * @param a double array
+   * @return a float array with the values of a double array
+   */
+  public static float[] toFloat(final double a[]) {
+    float rv[] = new float[a.length];
+    for (int i = 0; i < a.length; i++) {
+      rv[i] = (float) a[i];
+    }
+    return rv;
+  }
+
+  /**
+   * Returns a double array with the values of a float array.
+   *
+   * @param a float array
+   * @return a double array with the values of a float array
+   */
+  public static double[] toDouble(final float a[]) {
+    double rv[] = new double[a.length];
+    for (int i = 0; i < a.length; i++) {
+      rv[i] = a[i];
+    }
+    return rv;
+  }
 
   /**
    * Shuffles the content of an array.
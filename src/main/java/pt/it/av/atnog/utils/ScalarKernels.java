@@ -0,0 +1,113 @@
+package pt.it.av.atnog.utils;
+
+/**
+ * Scalar kernels.
+ * <p>
+ * The elementwise loops are simple counted loops that the JIT compiler vectorizes.
+ * The reductions are not vectorized by the JIT (it must keep the order of the additions),
+ * as such they are unrolled with four independent accumulators.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+final class ScalarKernels implements ArrayKernels {
+  @Override
+  public void add(final double[] a, final int bA, final double[] b, final int bB,
+                  final double[] c, final int bC, final int len) {
+    for (int i = 0; i < len; i++)
+      c[bC + i] = a[bA + i] + b[bB + i];
+  }
+
+  @Override
+  public void sub(final double[] a, final int bA, final double[] b, final int bB,
+                  final double[] c, final int bC, final int len) {
+    for (int i = 0; i < len; i++)
+      c[bC + i] = a[bA + i] - b[bB + i];
+  }
+
+  @Override
+  public void mul(final double[] a, final int bA, final double[] b, final int bB,
+                  final double[] c, final int bC, final int len) {
+    for (int i = 0; i < len; i++)
+      c[bC + i] = a[bA + i] * b[bB + i];
+  }
+
+  @Override
+  public void div(final double[] a, final int bA, final double[] b, final int bB,
+                  final double[] c, final int bC, final int len) {
+    for (int i = 0; i < len; i++)
+      c[bC + i] = a[bA + i] / b[bB + i];
+  }
+
+  @Override
+  public void mulDiv(final double[] a, final int bA, final double[] b, final int bB,
+                     final double[] c, final int bC, final double[] r, final int bR, final int len) {
+    for (int i = 0; i < len; i++)
+      r[bR + i] = a[bA + i] * (b[bB + i] / c[bC + i]);
+  }
+
+  @Override
+  public double dotProduct(final double[] a, final int bA, final double[] b, final int bB, final int len) {
+    double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+    int i = 0;
+    for (; i + 3 < len; i += 4) {
+      s0 += a[bA + i] * b[bB + i];
+      s1 += a[bA + i + 1] * b[bB + i + 1];
+      s2 += a[bA + i + 2] * b[bB + i + 2];
+      s3 += a[bA + i + 3] * b[bB + i + 3];
+    }
+    for (; i < len; i++)
+      s0 += a[bA + i] * b[bB + i];
+    return (s0 + s1) + (s2 + s3);
+  }
+
+  @Override
+  public double squaredDistance(final double[] a, final int bA, final double[] b, final int bB, final int len) {
+    double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+    int i = 0;
+    for (; i + 3 < len; i += 4) {
+      final double d0 = a[bA + i] - b[bB + i], d1 = a[bA + i + 1] - b[bB + i + 1],
+          d2 = a[bA + i + 2] - b[bB + i + 2], d3 = a[bA + i + 3] - b[bB + i + 3];
+      s0 += d0 * d0;
+      s1 += d1 * d1;
+      s2 += d2 * d2;
+      s3 += d3 * d3;
+    }
+    for (; i < len; i++) {
+      final double d = a[bA + i] - b[bB + i];
+      s0 += d * d;
+    }
+    return (s0 + s1) + (s2 + s3);
+  }
+
+  @Override
+  public double manhattanDistance(final double[] a, final int bA, final double[] b, final int bB, final int len) {
+    double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+    int i = 0;
+    for (; i + 3 < len; i += 4) {
+      s0 += Math.abs(a[bA + i] - b[bB + i]);
+      s1 += Math.abs(a[bA + i + 1] - b[bB + i + 1]);
+      s2 += Math.abs(a[bA + i + 2] - b[bB + i + 2]);
+      s3 += Math.abs(a[bA + i + 3] - b[bB + i + 3]);
+    }
+    for (; i < len; i++)
+      s0 += Math.abs(a[bA + i] - b[bB + i]);
+    return (s0 + s1) + (s2 + s3);
+  }
+
+  @Override
+  public double sum(final double[] a, final int bA, final int len) {
+    double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+    int i = 0;
+    for (; i + 3 < len; i += 4) {
+      s0 += a[bA + i];
+      s1 += a[bA + i + 1];
+      s2 += a[bA + i + 2];
+      s3 += a[bA + i + 3];
+    }
+    for (; i < len; i++)
+      s0 += a[bA + i];
+    return (s0 + s1) + (s2 + s3);
+  }
+}
@@ -0,0 +1,161 @@
+package pt.it.av.atnog.utils.bla;
+
+import java.util.Arrays;
+
+/**
+ * Blocked Cholesky decomposition of a symmetric positive definite matrix (A = L L^T).
+ * <p>
+ * The columns are factorized in panels of {@value #NB} columns (right-looking):
+ * the diagonal block is factorized, the block column of L is computed with a
+ * triangular solve and the trailing matrix is updated with a matrix multiplication.
+ * Only the lower triangle of A is read.
+ * The decomposition is computed once and solves any number of right-hand sides.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public class CholeskyDecomposition {
+  /**
+   * Number of columns of each panel.
+   */
+  protected static final int NB = 32;
+  private final int n;
+  private final double l[];
+
+  /**
+   * Computes the Cholesky decomposition of a symmetric positive definite matrix.
+   *
+   * @param A symmetric positive definite matrix (it is not modified)
+   * @throws IllegalArgumentException if the matrix is not symmetric positive definite
+   */
+  public CholeskyDecomposition(final Matrix A) {
+    if (A.rows != A.cols) {
+      throw new IllegalArgumentException("Cholesky decomposition of a non square matrix.");
+    }
+    n = A.rows;
+    l = Arrays.copyOf(A.data, A.data.length);
+    double l21[] = new double[0];
+    for (int j = 0; j < n; j += NB) {
+      final int nb = Math.min(NB, n - j), je = j + nb, m = n - je;
+      // L11 L11^T = A11
+      for (int c = j; c < je; c++) {
+        double d = l[c * n + c];
+        for (int k = j; k < c; k++)
+          d -= l[c * n + k] * l[c * n + k];
+        if (!(d > 0.0)) {
+          throw new IllegalArgumentException("Matrix is not symmetric positive definite.");
+        }
+        d = Math.sqrt(d);
+        l[c * n + c] = d;
+        for (int i = c + 1; i < je; i++) {
+          double s = l[i * n + c];
+          for (int k = j; k < c; k++)
+            s -= l[i * n + k] * l[c * n + k];
+          l[i * n + c] = s / d;
+        }
+      }
+      if (m > 0) {
+        // L21 = A21 L11^-T
+        for (int i = je; i < n; i++)
+          for (int c = j; c < je; c++) {
+            double s = l[i * n + c];
+            for (int k = j; k < c; k++)
+              s -= l[i * n + k] * l[c * n + k];
+            l[i * n + c] = s / l[c * n + c];
+          }
+        // A22 = A22 - L21 L21^T
+        if (l21.length < m * nb)
+          l21 = new double[m * nb];
+        for (int i = 0; i < m; i++)
+          for (int k = 0; k < nb; k++)
+            l21[i * nb + k] = -l[(je + i) * n + j + k];
+        MatrixMultiplication.mul(l21, 0, nb, 1, l, je * n + j, 1, n, l, je * n + je, n, m, m, nb);
+      }
+    }
+    // clear the upper triangle
+    for (int i = 0; i < n; i++)
+      Arrays.fill(l, i * n + i + 1, (i + 1) * n, 0.0);
+  }
+
+  /**
+   * Returns the lower triangular factor L.
+   *
+   * @return the lower triangular factor L
+   */
+  public Matrix l() {
+    return new Matrix(n, n, Arrays.copyOf(l, l.length));
+  }
+
+  /**
+   * Returns the determinant of the factorized matrix.
+   *
+   * @return the determinant of the factorized matrix
+   */
+  public double det() {
+    double rv = 1.0;
+    for (int i = 0; i < n; i++)
+      rv *= l[i * n + i];
+    return rv * rv;
+  }
+
+  /**
+   * Returns the solution X of A X = B.
+   *
+   * @param B right-hand sides (n x p)
+   * @return the solution X (n x p)
+   */
+  public Matrix solve(final Matrix B) {
+    if (B.rows != n) {
+      throw new IllegalArgumentException("The matrix must have " + n + " rows.");
+    }
+    final int p = B.cols;
+    Matrix X = new Matrix(B);
+    final double x[] = X.data;
+    // L Y = B
+    for (int i = 0; i < n; i++) {
+      for (int k = 0; k < i; k++) {
+        final double lik = l[i * n + k];
+        if (lik != 0.0)
+          for (int j = 0; j < p; j++)
+            x[i * p + j] -= lik * x[k * p + j];
+      }
+      final double d = l[i * n + i];
+      for (int j = 0; j < p; j++)
+        x[i * p + j] /= d;
+    }
+    // L^T X = Y
+    for (int i = n - 1; i >= 0; i--) {
+      final double d = l[i * n + i];
+      for (int j = 0; j < p; j++)
+        x[i * p + j] /= d;
+      for (int k = 0; k < i; k++) {
+        final double lik = l[i * n + k];
+        if (lik != 0.0)
+          for (int j = 0; j < p; j++)
+            x[k * p + j] -= lik * x[i * p + j];
+      }
+    }
+    return X;
+  }
+
+  /**
+   * Returns the solution x of A x = b.
+   *
+   * @param b right-hand side
+   * @return the solution x
+   */
+  public Vector solve(final Vector b) {
+    Matrix B = new Matrix(b.len, 1, Arrays.copyOfRange(b.data, b.bIdx, b.bIdx + b.len));
+    return new Vector(solve(B).data);
+  }
+
+  /**
+   * Returns the inverse of the factorized matrix.
+   *
+   * @return the inverse of the factorized matrix
+   */
+  public Matrix inverse() {
+    return solve(Matrix.identity(n));
+  }
+}
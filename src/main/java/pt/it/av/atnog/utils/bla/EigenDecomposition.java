@@ -0,0 +1,375 @@
+package pt.it.av.atnog.utils.bla;
+
+import pt.it.av.atnog.utils.ArrayUtils;
+import pt.it.av.atnog.utils.MathUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Eigen-decomposition of symmetric matrices (A = V D V^T).
+ * <p>
+ * The full decomposition reduces A to a tridiagonal matrix with Householder reflectors
+ * (symmetric rank-2 updates) and diagonalizes it with the implicit QL method (Wilkinson shifts).
+ * The rotations are accumulated over the rows of V^T, as such they run with unit stride.
+ * </p>
+ * <p>
+ * The top-k eigenpairs of large (or sparse) matrices are computed with the Lanczos method
+ * (with full reorthogonalization). It only multiplies A by vectors, and the size of the Krylov
+ * subspace grows until the residuals of the k Ritz pairs converge.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public class EigenDecomposition {
+  private static final double TOL = 1E-10;
+
+  /**
+   * Symmetric linear operator used by the Lanczos method.
+   */
+  private interface Operator {
+    int size();
+
+    /**
+     * Returns A x.
+     */
+    double[] mul(double x[]);
+  }
+
+  /**
+   * Returns the eigen-decomposition of a symmetric matrix.
+   * The eigenvalues are sorted in descending order.
+   *
+   * @param A symmetric matrix
+   * @return the matrices V (eigenvectors in the columns) and D (diagonal with the eigenvalues)
+   */
+  public static Matrix[] symmetric(final Matrix A) {
+    if (A.rows != A.cols) {
+      throw new IllegalArgumentException("Eigen-decomposition of a non square matrix.");
+    }
+    final int n = A.rows;
+    final double v[] = Arrays.copyOf(A.data, A.data.length), d[] = new double[n], e[] = new double[n];
+    if (n > 0) {
+      tridiagonalize(v, d, e, n);
+      // the QL method rotates the rows of V^T
+      MatrixTranspose.itr(v, n, n);
+      for (int i = 1; i < n; i++)
+        e[i - 1] = e[i];
+      e[n - 1] = 0.0;
+      ql(d, e, v, n, n);
+    }
+    return result(d, v, n, n, n);
+  }
+
+  /**
+   * Sorts the eigenpairs in descending order and returns the top-k as matrices V and D.
+   */
+  private static Matrix[] result(final double d[], final double vt[], final int m, final int len, final int k) {
+    Integer order[] = new Integer[m];
+    for (int i = 0; i < m; i++)
+      order[i] = i;
+    Arrays.sort(order, (i, j) -> Double.compare(d[j], d[i]));
+    Matrix Vt = new Matrix(k, len), D = new Matrix(k, k);
+    for (int i = 0; i < k; i++) {
+      D.data[i * k + i] = d[order[i]];
+      System.arraycopy(vt, order[i] * len, Vt.data, i * len, len);
+    }
+    return new Matrix[]{Vt.uTranspose(), D};
+  }
+
+  /**
+   * Householder reduction of a symmetric matrix to a tridiagonal one.
+   * On return d has the diagonal, e the subdiagonal (e[0] = 0) and v the orthogonal transform.
+   */
+  private static void tridiagonalize(final double v[], final double d[], final double e[], final int n) {
+    for (int j = 0; j < n; j++)
+      d[j] = v[(n - 1) * n + j];
+    for (int i = n - 1; i > 0; i--) {
+      double scale = 0.0, h = 0.0;
+      for (int k = 0; k < i; k++)
+        scale += Math.abs(d[k]);
+      if (scale == 0.0) {
+        e[i] = d[i - 1];
+        for (int j = 0; j < i; j++) {
+          d[j] = v[(i - 1) * n + j];
+          v[i * n + j] = 0.0;
+          v[j * n + i] = 0.0;
+        }
+      } else {
+        // reflector that annihilates the row i (left of the subdiagonal)
+        for (int k = 0; k < i; k++) {
+          d[k] /= scale;
+          h += d[k] * d[k];
+        }
+        double f = d[i - 1], g = Math.sqrt(h);
+        if (f > 0)
+          g = -g;
+        e[i] = scale * g;
+        h -= f * g;
+        d[i - 1] = f - g;
+        Arrays.fill(e, 0, i, 0.0);
+        // p = A u / h (lower triangle)
+        for (int j = 0; j < i; j++) {
+          f = d[j];
+          v[j * n + i] = f;
+          g = e[j] + v[j * n + j] * f;
+          for (int k = j + 1; k < i; k++) {
+            g += v[k * n + j] * d[k];
+            e[k] += v[k * n + j] * f;
+          }
+          e[j] = g;
+        }
+        f = 0.0;
+        for (int j = 0; j < i; j++) {
+          e[j] /= h;
+          f += e[j] * d[j];
+        }
+        final double hh = f / (h + h);
+        for (int j = 0; j < i; j++)
+          e[j] -= hh * d[j];
+        // A = A - u q^T - q u^T
+        for (int j = 0; j < i; j++) {
+          f = d[j];
+          g = e[j];
+          for (int k = j; k < i; k++)
+            v[k * n + j] -= (f * e[k] + g * d[k]);
+          d[j] = v[(i - 1) * n + j];
+          v[i * n + j] = 0.0;
+        }
+      }
+      d[i] = h;
+    }
+    // accumulate the transformations
+    for (int i = 0; i < n - 1; i++) {
+      v[(n - 1) * n + i] = v[i * n + i];
+      v[i * n + i] = 1.0;
+      final double h = d[i + 1];
+      if (h != 0.0) {
+        for (int k = 0; k <= i; k++)
+          d[k] = v[k * n + i + 1] / h;
+        for (int j = 0; j <= i; j++) {
+          double g = 0.0;
+          for (int k = 0; k <= i; k++)
+            g += v[k * n + i + 1] * v[k * n + j];
+          for (int k = 0; k <= i; k++)
+            v[k * n + j] -= g * d[k];
+        }
+      }
+      for (int k = 0; k <= i; k++)
+        v[k * n + i + 1] = 0.0;
+    }
+    for (int j = 0; j < n; j++) {
+      d[j] = v[(n - 1) * n + j];
+      v[(n - 1) * n + j] = 0.0;
+    }
+    v[(n - 1) * n + n - 1] = 1.0;
+    e[0] = 0.0;
+  }
+
+  /**
+   * Implicit QL method for a symmetric tridiagonal matrix
+   * (d is the diagonal and e[i] the element (i, i+1), e[m-1] = 0).
+   * On return d has the eigenvalues, the rotations are applied to the m rows (with len elements) of zt.
+   */
+  private static void ql(final double d[], final double e[], final double zt[], final int m, final int len) {
+    final double eps = MathUtils.eps();
+    double f = 0.0, tst1 = 0.0;
+    for (int l = 0; l < m; l++) {
+      tst1 = Math.max(tst1, Math.abs(d[l]) + Math.abs(e[l]));
+      int s = l;
+      while (s < m - 1 && Math.abs(e[s]) > eps * tst1)
+        s++;
+      if (s > l) {
+        do {
+          // Wilkinson shift
+          double g = d[l], p = (d[l + 1] - g) / (2.0 * e[l]), r = hypot(p, 1.0);
+          if (p < 0)
+            r = -r;
+          d[l] = e[l] / (p + r);
+          d[l + 1] = e[l] * (p + r);
+          final double dl1 = d[l + 1];
+          double h = g - d[l];
+          for (int i = l + 2; i < m; i++)
+            d[i] -= h;
+          f += h;
+          // implicit QL sweep
+          p = d[s];
+          double c = 1.0, c2 = c, c3 = c, sn = 0.0, s2 = 0.0;
+          final double el1 = e[l + 1];
+          for (int i = s - 1; i >= l; i--) {
+            c3 = c2;
+            c2 = c;
+            s2 = sn;
+            g = c * e[i];
+            h = c * p;
+            r = hypot(p, e[i]);
+            e[i + 1] = sn * r;
+            sn = e[i] / r;
+            c = p / r;
+            p = c * d[i] - sn * g;
+            d[i + 1] = h + sn * (c * g + sn * d[i]);
+            final int a = i * len, b = (i + 1) * len;
+            for (int k = 0; k < len; k++) {
+              h = zt[b + k];
+              zt[b + k] = sn * zt[a + k] + c * h;
+              zt[a + k] = c * zt[a + k] - sn * h;
+            }
+          }
+          p = -sn * s2 * c3 * el1 * e[l] / dl1;
+          e[l] = sn * p;
+          d[l] = c * p;
+        } while (Math.abs(e[l]) > eps * tst1);
+      }
+      d[l] += f;
+      e[l] = 0.0;
+    }
+  }
+
+  /**
+   * Returns sqrt(a^2 + b^2) without overflow.
+   */
+  private static double hypot(final double a, final double b) {
+    final double x = Math.abs(a), y = Math.abs(b);
+    if (x > y)
+      return x * Math.sqrt(1.0 + (y / x) * (y / x));
+    if (y != 0.0)
+      return y * Math.sqrt(1.0 + (x / y) * (x / y));
+    return 0.0;
+  }
+
+  /**
+   * Returns the top-k eigenpairs (largest eigenvalues) of a symmetric matrix with the Lanczos method.
+   *
+   * @param A symmetric matrix
+   * @param k number of eigenpairs
+   * @return the matrices V (n x k, eigenvectors in the columns) and D (k x k diagonal)
+   */
+  public static Matrix[] lanczos(final Matrix A, final int k) {
+    if (A.rows != A.cols) {
+      throw new IllegalArgumentException("Eigen-decomposition of a non square matrix.");
+    }
+    return lanczos(new Operator() {
+      public int size() {
+        return A.rows;
+      }
+
+      public double[] mul(double x[]) {
+        return A.mul(new Vector(x)).data;
+      }
+    }, k);
+  }
+
+  /**
+   * Returns the top-k eigenpairs (largest eigenvalues) of a symmetric sparse matrix with the Lanczos method.
+   *
+   * @param A symmetric sparse matrix
+   * @param k number of eigenpairs
+   * @return the matrices V (n x k, eigenvectors in the columns) and D (k x k diagonal)
+   */
+  public static Matrix[] lanczos(final SparseMatrix A, final int k) {
+    if (A.rows != A.cols) {
+      throw new IllegalArgumentException("Eigen-decomposition of a non square matrix.");
+    }
+    return lanczos(new Operator() {
+      public int size() {
+        return A.rows;
+      }
+
+      public double[] mul(double x[]) {
+        return A.mul(new Vector(x)).data;
+      }
+    }, k);
+  }
+
+  /**
+   * Lanczos method with full reorthogonalization, the Krylov subspace doubles until the Ritz pairs converge.
+   */
+  private static Matrix[] lanczos(final Operator A, final int k) {
+    final int n = A.size();
+    if (k < 1 || k > n) {
+      throw new IllegalArgumentException("Invalid number of eigenpairs: " + k);
+    }
+    for (int m = Math.min(n, Math.max(2 * k, k + 20)); ; m = Math.min(n, 2 * m)) {
+      final double q[] = new double[m * n], alpha[] = new double[m], beta[] = new double[m];
+      final int steps = krylov(A, q, alpha, beta, m, n);
+      // eigenpairs of the tridiagonal matrix T
+      final double d[] = Arrays.copyOf(alpha, steps), e[] = Arrays.copyOf(beta, steps),
+          zt[] = Matrix.identity(steps).data;
+      e[steps - 1] = 0.0;
+      ql(d, e, zt, steps, steps);
+      final Matrix DZ[] = result(d, zt, steps, steps, k);
+      // residual of the Ritz pair i: |beta_m z_i[m - 1]|
+      double norm = 0.0;
+      for (int i = 0; i < steps; i++)
+        norm = Math.max(norm, Math.abs(d[i]));
+      boolean converged = true;
+      for (int i = 0; i < k && converged; i++)
+        if (Math.abs(beta[steps - 1] * DZ[0].data[(steps - 1) * k + i]) > TOL * Math.max(norm, 1.0))
+          converged = false;
+      if (converged || steps < m || m == n) {
+        // Ritz vectors: Q^T Z
+        Matrix V = new Matrix(n, k);
+        MatrixMultiplication.mul(q, 1, n, DZ[0].data, k, 1, V.data, n, k, steps);
+        return new Matrix[]{V, DZ[1]};
+      }
+    }
+  }
+
+  /**
+   * Builds an orthonormal basis of the Krylov subspace (the rows of q) and the tridiagonal matrix T.
+   * Returns the number of steps (smaller than m if the whole space was spanned).
+   */
+  private static int krylov(final Operator A, final double q[], final double alpha[], final double beta[],
+                            final int m, final int n) {
+    random(q, 0, 0, n);
+    for (int j = 0; j < m; j++) {
+      final double w[] = A.mul(Arrays.copyOfRange(q, j * n, (j + 1) * n));
+      alpha[j] = ArrayUtils.dotProduct(q, j * n, w, 0, n);
+      if (!orthogonalize(q, w, j + 1, n))
+        return j + 1;
+      beta[j] = Math.sqrt(ArrayUtils.dotProduct(w, 0, w, 0, n));
+      if (j + 1 < m) {
+        if (beta[j] <= TOL * Math.max(Math.abs(alpha[j]), 1.0)) {
+          // invariant subspace, restart with a random vector orthogonal to the basis
+          beta[j] = 0.0;
+          if (!random(q, j + 1, j + 1, n))
+            return j + 1;
+        } else {
+          ArrayUtils.div(w, 0, beta[j], q, (j + 1) * n, n);
+        }
+      }
+    }
+    return m;
+  }
+
+  /**
+   * Orthogonalizes w against the first j rows of q (twice, classical Gram-Schmidt).
+   * Returns false if w is zero.
+   */
+  private static boolean orthogonalize(final double q[], final double w[], final int j, final int n) {
+    for (int pass = 0; pass < 2; pass++)
+      for (int i = 0; i < j; i++) {
+        final double c = ArrayUtils.dotProduct(q, i * n, w, 0, n);
+        for (int a = 0; a < n; a++)
+          w[a] -= c * q[i * n + a];
+      }
+    return j < n;
+  }
+
+  /**
+   * Fills the row j of q with a random unit vector orthogonal to its first i rows.
+   * Returns false if there is no such vector.
+   */
+  private static boolean random(final double q[], final int j, final int i, final int n) {
+    if (i >= n)
+      return false;
+    final double w[] = new double[n];
+    for (int a = 0; a < n; a++)
+      w[a] = ThreadLocalRandom.current().nextGaussian();
+    orthogonalize(q, w, i, n);
+    final double norm = Math.sqrt(ArrayUtils.dotProduct(w, 0, w, 0, n));
+    ArrayUtils.div(w, 0, norm, q, j * n, n);
+    return true;
+  }
+}
@@ -0,0 +1,234 @@
+package pt.it.av.atnog.utils.bla;
+
+import pt.it.av.atnog.utils.ArrayUtils;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Single precision Matrix.
+ * Uses half of the memory (and memory bandwidth) of {@link Matrix},
+ * intended for workloads where single precision is accurate enough.
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ */
+public class FloatMatrix {
+  protected final float data[];
+  protected int rows, cols;
+
+  /**
+   * Creates a matrix filled with zeros and with size: Rows x Cols.
+   *
+   * @param rows number of rows in the matrix
+   * @param cols number of columns in the matrix
+   */
+  public FloatMatrix(int rows, int cols) {
+    this(rows, cols, new float[rows * cols]);
+  }
+
+  /**
+   * Creates a matrix from a 1D float array with size: Rows x Cols.
+   * Does not copy the array's content (shallow copy).
+   *
+   * @param rows number of rows in the matrix
+   * @param cols number of columns in the matrix
+   * @param data 1D float array with matrix values
+   */
+  public FloatMatrix(int rows, int cols, float data[]) {
+    this.rows = rows;
+    this.cols = cols;
+    this.data = data;
+  }
+
+  /**
+   * Creates a single precision matrix from a double precision matrix (deep copy).
+   *
+   * @param A double precision matrix
+   */
+  public FloatMatrix(Matrix A) {
+    this(A.rows, A.cols, ArrayUtils.toFloat(A.data));
+  }
+
+  /**
+   * Returns a matrix filled with random numbers between [{@code min}, {@code max}[.
+   *
+   * @param rows number of rows in the matrix
+   * @param cols number of columns in the matrix
+   * @param min  minimal value of the range, inclusive
+   * @param max  maximal value of the range, exclusive
+   * @return a matrix filled with random numbers
+   */
+  public static FloatMatrix random(int rows, int cols, float min, float max) {
+    FloatMatrix C = new FloatMatrix(rows, cols);
+    for (int n = 0; n < C.data.length; n++)
+      C.data[n] = min + ThreadLocalRandom.current().nextFloat() * (max - min);
+    return C;
+  }
+
+  /**
+   * Returns a double precision copy of this matrix.
+   *
+   * @return a double precision copy of this matrix
+   */
+  public Matrix toMatrix() {
+    return new Matrix(rows, cols, ArrayUtils.toDouble(data));
+  }
+
+  /**
+   * Returns the maximum number in the matrix.
+   *
+   * @return the maximum number in the matrix.
+   */
+  public float max() {
+    float rv = Float.NEGATIVE_INFINITY;
+    for (float v : data)
+      rv = Math.max(rv, v);
+    return rv;
+  }
+
+  /**
+   * Returns the number of rows in the matrix.
+   *
+   * @return the number of rows in the matrix.
+   */
+  public int rows() {
+    return rows;
+  }
+
+  /**
+   * Returns the number of columns in the matrix.
+   *
+   * @return the number of columns in the matrix.
+   */
+  public int columns() {
+    return cols;
+  }
+
+  /**
+   * Set r-row, c-column value.
+   *
+   * @param r      row
+   * @param c      column
+   * @param scalar value
+   */
+  public void set(int r, int c, float scalar) {
+    data[r * cols + c] = scalar;
+  }
+
+  /**
+   * Retuns the value in r-row, c-column.
+   *
+   * @param r row
+   * @param c column
+   * @return the value in r-row, c-column
+   */
+  public float get(int r, int c) {
+    return data[r * cols + c];
+  }
+
+  /**
+   * Returns the transpose matrix.
+   *
+   * @return the transpose matrix
+   */
+  public FloatMatrix transpose() {
+    FloatMatrix T = new FloatMatrix(cols, rows);
+    if (rows == 1 || cols == 1)
+      System.arraycopy(data, 0, T.data, 0, data.length);
+    else
+      MatrixTranspose.cotr(data, T.data, rows, cols);
+    return T;
+  }
+
+  public FloatMatrix add(FloatMatrix B) {
+    FloatMatrix C = new FloatMatrix(rows, cols);
+    ArrayUtils.add(data, 0, B.data, 0, C.data, 0, data.length);
+    return C;
+  }
+
+  public FloatMatrix add(float scalar) {
+    FloatMatrix C = new FloatMatrix(rows, cols);
+    ArrayUtils.add(data, 0, scalar, C.data, 0, data.length);
+    return C;
+  }
+
+  public FloatMatrix sub(FloatMatrix B) {
+    FloatMatrix C = new FloatMatrix(rows, cols);
+    ArrayUtils.sub(data, 0, B.data, 0, C.data, 0, data.length);
+    return C;
+  }
+
+  public FloatMatrix mul(float scalar) {
+    FloatMatrix C = new FloatMatrix(rows, cols);
+    ArrayUtils.mul(data, 0, scalar, C.data, 0, data.length);
+    return C;
+  }
+
+  /**
+   *
+   * @param v
+   * @return
+   */
+  public FloatVector mul(FloatVector v) {
+    FloatVector rv = new FloatVector(rows);
+    for (int i = 0; i < rows; i++)
+      rv.data[i] = ArrayUtils.dotProduct(data, i * cols, v.data, v.bIdx, cols);
+    return rv;
+  }
+
+  /**
+   *
+   * @param B
+   * @return
+   */
+  public FloatMatrix mul(FloatMatrix B) {
+    FloatMatrix C = new FloatMatrix(rows, B.cols);
+    MatrixMultiplication.mul(data, B.data, C.data, rows, B.cols, cols);
+    return C;
+  }
+
+  /**
+   * Non negative matrix factorization (multiplicative updates).
+   *
+   * @param k rank of the factorization
+   * @param n maximum number of iterations
+   * @param e maximum error
+   * @return the factors W and H
+   */
+  public FloatMatrix[] nmf(final int k, final int n, final float e) {
+    return NmfFactorization.nmf_mu(this, k, n, e);
+  }
+
+  public float euclideanDistance(FloatMatrix b) {
+    return ArrayUtils.euclideanDistance(data, 0, b.data, 0, data.length);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    boolean rv = false;
+    if (o != null) {
+      if (o == this)
+        rv = true;
+      else if (o instanceof FloatMatrix) {
+        FloatMatrix B = (FloatMatrix) o;
+        if (rows == B.rows && cols == B.cols) {
+          rv = true;
+          for (int i = 0; i < data.length && rv == true; i++)
+            if (Float.compare(data[i], B.data[i]) != 0)
+              rv = false;
+        }
+      }
+    }
+    return rv;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < cols; c++)
+        sb.append(String.format("%.5f ", data[r * cols + c]));
+      sb.append("\n");
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,263 @@
+package pt.it.av.atnog.utils.bla;
+
+import pt.it.av.atnog.utils.ArrayUtils;
+import pt.it.av.atnog.utils.structures.Distance;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Single precision Vector.
+ * Uses half of the memory (and memory bandwidth) of {@link Vector},
+ * intended for workloads where single precision is accurate enough.
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public class FloatVector implements Distance<FloatVector> {
+  protected int bIdx, len;
+  protected float data[];
+
+  /**
+   * Creates a vector filled with zeros.
+   *
+   * @param len vector's length
+   */
+  public FloatVector(int len) {
+    this(new float[len], 0, len);
+  }
+
+  /**
+   * Creates a vector from a 1D array.
+   * The vector only considers the range between [bIdx, bIdx+len[.
+   * Does not copy the array's content (shallow copy).
+   *
+   * @param data 1D array with vector values
+   * @param bIdx begin index of the 1D array
+   * @param len  the number of elements in the vector
+   */
+  public FloatVector(float data[], int bIdx, int len) {
+    this.data = data;
+    this.bIdx = bIdx;
+    this.len = len;
+  }
+
+  /**
+   * Creates a vector from a 1D array.
+   * Does not copy the array's content (shallow copy).
+   *
+   * @param data 1D array with vector values
+   */
+  public FloatVector(float data[]) {
+    this(data, 0, data.length);
+  }
+
+  /**
+   * Creates a single precision vector from a double precision vector (deep copy).
+   *
+   * @param a double precision vector
+   */
+  public FloatVector(Vector a) {
+    bIdx = 0;
+    len = a.len;
+    data = new float[len];
+    for (int i = 0; i < len; i++)
+      data[i] = (float) a.data[a.bIdx + i];
+  }
+
+  /**
+   * Returns a vector filled with random numbers between [0, 1[.
+   *
+   * @param len vector's length
+   * @return a vector filled with random numbers
+   */
+  public static FloatVector random(int len) {
+    FloatVector a = new FloatVector(len);
+    for (int n = 0; n < len; n++)
+      a.data[n] = ThreadLocalRandom.current().nextFloat();
+    return a;
+  }
+
+  /**
+   * Returns a double precision copy of this vector.
+   *
+   * @return a double precision copy of this vector
+   */
+  public Vector toVector() {
+    Vector rv = new Vector(len);
+    for (int i = 0; i < len; i++)
+      rv.data[i] = data[bIdx + i];
+    return rv;
+  }
+
+  /**
+   * Returns the vector's len.
+   *
+   * @return the vector's len
+   */
+  public int size() {
+    return len;
+  }
+
+  /**
+   * Set the i-th value.
+   *
+   * @param i      i-th position
+   * @param scalar value
+   */
+  public void set(int i, float scalar) {
+    data[bIdx + i] = scalar;
+  }
+
+  /**
+   * Returns the i-th element.
+   *
+   * @param i i-th position
+   * @return the i-th element
+   */
+  public float get(int i) {
+    return data[bIdx + i];
+  }
+
+  /**
+   * Returns the sum of all values in the vector.
+   *
+   * @return the sum of all values in the vector
+   */
+  public float sum() {
+    return ArrayUtils.sum(data, bIdx, len);
+  }
+
+  public FloatVector add(float scalar) {
+    FloatVector c = new FloatVector(len);
+    ArrayUtils.add(this.data, this.bIdx, scalar, c.data, c.bIdx, len);
+    return c;
+  }
+
+  public FloatVector uAdd(float scalar) {
+    ArrayUtils.add(this.data, this.bIdx, scalar, this.data, this.bIdx, len);
+    return this;
+  }
+
+  public FloatVector add(FloatVector b) {
+    FloatVector c = new FloatVector(len);
+    ArrayUtils.add(this.data, this.bIdx, b.data, b.bIdx, c.data, c.bIdx, len);
+    return c;
+  }
+
+  public FloatVector uAdd(FloatVector b) {
+    ArrayUtils.add(this.data, this.bIdx, b.data, b.bIdx, this.data, this.bIdx, len);
+    return this;
+  }
+
+  public FloatVector sub(float scalar) {
+    FloatVector c = new FloatVector(len);
+    ArrayUtils.sub(this.data, this.bIdx, scalar, c.data, c.bIdx, len);
+    return c;
+  }
+
+  public FloatVector sub(FloatVector b) {
+    FloatVector c = new FloatVector(len);
+    ArrayUtils.sub(this.data, this.bIdx, b.data, b.bIdx, c.data, c.bIdx, len);
+    return c;
+  }
+
+  public FloatVector uSub(FloatVector b) {
+    ArrayUtils.sub(this.data, this.bIdx, b.data, b.bIdx, this.data, this.bIdx, len);
+    return this;
+  }
+
+  public FloatVector mul(float scalar) {
+    FloatVector c = new FloatVector(len);
+    ArrayUtils.mul(this.data, this.bIdx, scalar, c.data, c.bIdx, len);
+    return c;
+  }
+
+  public FloatVector uMul(float scalar) {
+    ArrayUtils.mul(this.data, this.bIdx, scalar, this.data, this.bIdx, len);
+    return this;
+  }
+
+  public FloatVector mul(FloatVector b) {
+    FloatVector c = new FloatVector(len);
+    ArrayUtils.mul(this.data, this.bIdx, b.data, b.bIdx, c.data, c.bIdx, len);
+    return c;
+  }
+
+  public FloatVector div(float scalar) {
+    FloatVector c = new FloatVector(len);
+    ArrayUtils.div(this.data, this.bIdx, scalar, c.data, c.bIdx, len);
+    return c;
+  }
+
+  public FloatVector uDiv(float scalar) {
+    ArrayUtils.div(this.data, this.bIdx, scalar, this.data, this.bIdx, len);
+    return this;
+  }
+
+  public FloatVector div(FloatVector b) {
+    FloatVector c = new FloatVector(len);
+    ArrayUtils.div(this.data, this.bIdx, b.data, b.bIdx, c.data, c.bIdx, len);
+    return c;
+  }
+
+  public float innerProduct(FloatVector b) {
+    return ArrayUtils.dotProduct(data, bIdx, b.data, b.bIdx, len);
+  }
+
+  public float norm(final int p) {
+    return ArrayUtils.norm(data, bIdx, len, p);
+  }
+
+  public float minkowskiDistance(FloatVector b, int p) {
+    return ArrayUtils.minkowskiDistance(data, bIdx, b.data, b.bIdx, len, p);
+  }
+
+  public float euclideanDistance(FloatVector b) {
+    return ArrayUtils.euclideanDistance(data, bIdx, b.data, b.bIdx, len);
+  }
+
+  public float manhattanDistance(FloatVector b) {
+    return ArrayUtils.manhattanDistance(data, bIdx, b.data, b.bIdx, len);
+  }
+
+  public float cosine(FloatVector b) {
+    float rv = 0.0f, dp = innerProduct(b);
+    if (dp > 0)
+      rv = dp / (norm(2) * b.norm(2));
+    return rv;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    boolean rv = false;
+    if (o != null) {
+      if (o == this)
+        rv = true;
+      else if (o instanceof FloatVector) {
+        FloatVector b = (FloatVector) o;
+        if (len == b.len) {
+          rv = true;
+          for (int i = 0; i < len && rv == true; i++)
+            if (Float.compare(data[bIdx + i], b.data[b.bIdx + i]) != 0)
+              rv = false;
+        }
+      }
+    }
+    return rv;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("[");
+    for (int i = 0; i < len - 1; i++)
+      sb.append(data[bIdx + i] + ", ");
+    sb.append(data[bIdx + len - 1] + "]");
+    return sb.toString();
+  }
+
+  @Override
+  public double distanceTo(FloatVector v) {
+    return euclideanDistance(v);
+  }
+}
@@ -0,0 +1,219 @@
+package pt.it.av.atnog.utils.bla;
+
+import java.util.Arrays;
+
+/**
+ * Blocked LU decomposition with partial pivoting (PA = LU).
+ * <p>
+ * The columns are factorized in panels of {@value #NB} columns (right-looking):
+ * the panel is factorized with row pivoting, the block row of U is computed with a
+ * triangular solve and the trailing matrix is updated with a matrix multiplication.
+ * L (unit lower triangular) and U are stored in the same array.
+ * The decomposition is computed once and solves any number of right-hand sides.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public class LuDecomposition {
+  /**
+   * Number of columns of each panel.
+   */
+  protected static final int NB = 32;
+  private final int n, piv[];
+  private final double lu[];
+  private final boolean even, singular;
+
+  /**
+   * Computes the LU decomposition of a square matrix.
+   *
+   * @param A square matrix (it is not modified)
+   */
+  public LuDecomposition(final Matrix A) {
+    if (A.rows != A.cols) {
+      throw new IllegalArgumentException("LU decomposition of a non square matrix.");
+    }
+    n = A.rows;
+    lu = Arrays.copyOf(A.data, A.data.length);
+    piv = new int[n];
+    for (int i = 0; i < n; i++)
+      piv[i] = i;
+    boolean even = true, singular = false;
+    double l21[] = new double[0];
+    for (int j = 0; j < n; j += NB) {
+      final int nb = Math.min(NB, n - j), je = j + nb;
+      // factorize the panel, swapping whole rows
+      for (int c = j; c < je; c++) {
+        int p = c;
+        for (int i = c + 1; i < n; i++)
+          if (Math.abs(lu[i * n + c]) > Math.abs(lu[p * n + c]))
+            p = i;
+        if (p != c) {
+          swap(c, p);
+          even = !even;
+        }
+        final double d = lu[c * n + c];
+        if (d == 0.0) {
+          singular = true;
+          continue;
+        }
+        for (int i = c + 1; i < n; i++) {
+          final double l = lu[i * n + c] /= d;
+          if (l != 0.0)
+            for (int k = c + 1; k < je; k++)
+              lu[i * n + k] -= l * lu[c * n + k];
+        }
+      }
+      if (je < n) {
+        // U12 = L11^-1 A12
+        for (int i = j + 1; i < je; i++)
+          for (int k = j; k < i; k++) {
+            final double l = lu[i * n + k];
+            for (int c = je; c < n; c++)
+              lu[i * n + c] -= l * lu[k * n + c];
+          }
+        // A22 = A22 - L21 U12
+        final int m = n - je;
+        if (l21.length < m * nb)
+          l21 = new double[m * nb];
+        for (int i = 0; i < m; i++)
+          for (int k = 0; k < nb; k++)
+            l21[i * nb + k] = -lu[(je + i) * n + j + k];
+        MatrixMultiplication.mul(l21, 0, nb, 1, lu, j * n + je, n, 1, lu, je * n + je, n, m, m, nb);
+      }
+    }
+    this.even = even;
+    this.singular = singular;
+  }
+
+  /**
+   * Swaps the rows i and j of the factorized matrix.
+   */
+  private void swap(final int i, final int j) {
+    for (int c = 0; c < n; c++) {
+      final double t = lu[i * n + c];
+      lu[i * n + c] = lu[j * n + c];
+      lu[j * n + c] = t;
+    }
+    final int t = piv[i];
+    piv[i] = piv[j];
+    piv[j] = t;
+  }
+
+  /**
+   * Returns true if the factorized matrix is singular.
+   *
+   * @return true if the factorized matrix is singular
+   */
+  public boolean isSingular() {
+    return singular;
+  }
+
+  /**
+   * Returns the unit lower triangular factor L.
+   *
+   * @return the unit lower triangular factor L
+   */
+  public Matrix l() {
+    Matrix L = new Matrix(n, n);
+    for (int i = 0; i < n; i++) {
+      System.arraycopy(lu, i * n, L.data, i * n, i);
+      L.data[i * n + i] = 1.0;
+    }
+    return L;
+  }
+
+  /**
+   * Returns the upper triangular factor U.
+   *
+   * @return the upper triangular factor U
+   */
+  public Matrix u() {
+    Matrix U = new Matrix(n, n);
+    for (int i = 0; i < n; i++)
+      System.arraycopy(lu, i * n + i, U.data, i * n + i, n - i);
+    return U;
+  }
+
+  /**
+   * Returns the row permutation, row i of PA is the row {@code pivot()[i]} of A.
+   *
+   * @return the row permutation
+   */
+  public int[] pivot() {
+    return Arrays.copyOf(piv, n);
+  }
+
+  /**
+   * Returns the determinant of the factorized matrix.
+   *
+   * @return the determinant of the factorized matrix
+   */
+  public double det() {
+    double rv = even ? 1.0 : -1.0;
+    for (int i = 0; i < n; i++)
+      rv *= lu[i * n + i];
+    return rv;
+  }
+
+  /**
+   * Returns the solution X of A X = B.
+   *
+   * @param B right-hand sides (n x p)
+   * @return the solution X (n x p)
+   */
+  public Matrix solve(final Matrix B) {
+    if (B.rows != n) {
+      throw new IllegalArgumentException("The matrix must have " + n + " rows.");
+    }
+    if (singular) {
+      throw new ArithmeticException("Matrix is singular.");
+    }
+    final int p = B.cols;
+    Matrix X = new Matrix(n, p);
+    for (int i = 0; i < n; i++)
+      System.arraycopy(B.data, piv[i] * p, X.data, i * p, p);
+    final double x[] = X.data;
+    // L Y = PB
+    for (int i = 1; i < n; i++)
+      for (int k = 0; k < i; k++) {
+        final double l = lu[i * n + k];
+        if (l != 0.0)
+          for (int j = 0; j < p; j++)
+            x[i * p + j] -= l * x[k * p + j];
+      }
+    // U X = Y
+    for (int i = n - 1; i >= 0; i--) {
+      for (int k = i + 1; k < n; k++) {
+        final double u = lu[i * n + k];
+        if (u != 0.0)
+          for (int j = 0; j < p; j++)
+            x[i * p + j] -= u * x[k * p + j];
+      }
+      final double d = lu[i * n + i];
+      for (int j = 0; j < p; j++)
+        x[i * p + j] /= d;
+    }
+    return X;
+  }
+
+  /**
+   * Returns the solution x of A x = b.
+   *
+   * @param b right-hand side
+   * @return the solution x
+   */
+  public Vector solve(final Vector b) {
+    Matrix B = new Matrix(b.len, 1, Arrays.copyOfRange(b.data, b.bIdx, b.bIdx + b.len));
+    return new Vector(solve(B).data);
+  }
+
+  /**
+   * Returns the inverse of the factorized matrix.
+   *
+   * @return the inverse of the factorized matrix
+   */
+  public Matrix inverse() {
+    return solve(Matrix.identity(n));
+  }
+}
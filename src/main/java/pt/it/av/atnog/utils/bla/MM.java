@@ -231,6 +231,13 @@ public class MM {
     elapsed = (stop - start) / 1000000000.0;
     System.out.println("Order ikj:   " + elapsed + " seconds");
 
+    // order 13: gemm
+    start = System.nanoTime();
+    MatrixMultiplication.gemm(a, b, c, N, N, N);
+    stop = System.nanoTime();
+    elapsed = (stop - start) / 1000000000.0;
+    System.out.println("Order gemm:   " + elapsed + " seconds");
+
 
     // NMF
     /*Matrix V = Matrix.identity(N);
@@ -0,0 +1,497 @@
+package pt.it.av.atnog.utils.bla;
+
+import pt.it.av.atnog.utils.ArrayUtils;
+import pt.it.av.atnog.utils.MathUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Off-heap Matrix stored in a memory-mapped file.
+ * <p>
+ * The values are stored in row-major order (starting at a given file offset) and
+ * mapped into segments of whole rows, each segment has at most {@value #SEGMENT} bytes.
+ * As such, the number of elements is not limited by the maximum length of an array
+ * and the values do not live in the heap.
+ * A file mapped in read-only mode can be shared between several JVMs without copying it.
+ * </p>
+ * <p>
+ * The operations stream panels of rows through the bla kernels,
+ * only the operands with the size of the factors are stored in the heap.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public class MappedMatrix implements Closeable {
+  /**
+   * Maximum size (in bytes) of a mapped segment.
+   */
+  public static final int SEGMENT = 1 << 30;
+  private static final int PANEL = 1 << 19, TILE = 512;
+  protected final int rows, cols, segRows;
+  protected final long offset;
+  protected final boolean readOnly;
+  private final FileChannel channel;
+  private final MappedByteBuffer maps[];
+  private final DoubleBuffer segments[];
+
+  /**
+   * Maps a matrix stored in a file.
+   *
+   * @param channel  file channel
+   * @param offset   position of the first value in the file
+   * @param rows     number of rows in the matrix
+   * @param cols     number of columns in the matrix
+   * @param order    byte order of the values
+   * @param readOnly map the file in read-only mode
+   * @param segment  maximum size (in bytes) of a mapped segment
+   * @throws IOException if the file cannot be mapped
+   */
+  protected MappedMatrix(final FileChannel channel, final long offset, final int rows, final int cols,
+                         final ByteOrder order, final boolean readOnly, final int segment)
+      throws IOException {
+    check(rows, cols, segment);
+    this.channel = channel;
+    this.offset = offset;
+    this.rows = rows;
+    this.cols = cols;
+    this.readOnly = readOnly;
+    segRows = segment / (cols * Double.BYTES);
+    segments = new DoubleBuffer[(rows + segRows - 1) / segRows];
+    maps = new MappedByteBuffer[segments.length];
+    FileChannel.MapMode mode = readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE;
+    for (int s = 0; s < segments.length; s++) {
+      long r = (long) s * segRows, len = Math.min(segRows, rows - r) * cols * Double.BYTES;
+      maps[s] = channel.map(mode, offset + r * cols * Double.BYTES, len);
+      segments[s] = maps[s].order(order).asDoubleBuffer();
+    }
+  }
+
+  /**
+   * Checks the size of a matrix (each row must fit into a segment).
+   */
+  private static void check(final int rows, final int cols, final int segment) {
+    if (rows <= 0 || cols <= 0 || (long) cols * Double.BYTES > segment) {
+      throw new IllegalArgumentException("Invalid matrix size: " + rows + "x" + cols);
+    }
+  }
+
+  /**
+   * Maps a matrix stored in a file, the channel is closed if the file cannot be mapped.
+   */
+  private static MappedMatrix map(final FileChannel fc, final long offset, final int rows, final int cols,
+                                  final ByteOrder order, final boolean readOnly) throws IOException {
+    try {
+      return new MappedMatrix(fc, offset, rows, cols, order, readOnly, SEGMENT);
+    } catch (IOException | RuntimeException e) {
+      fc.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Creates (or replaces) a file with a matrix filled with zeros and maps it (read-write).
+   *
+   * @param path file
+   * @param rows number of rows in the matrix
+   * @param cols number of columns in the matrix
+   * @return the mapped matrix
+   * @throws IOException if the file cannot be created or mapped
+   */
+  public static MappedMatrix create(final Path path, final int rows, final int cols) throws IOException {
+    check(rows, cols, SEGMENT);
+    FileChannel fc = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    try {
+      return map(fc, 0, rows, cols, ByteOrder.nativeOrder(), false);
+    } catch (IOException e) {
+      // do not leave a truncated file behind
+      Files.deleteIfExists(path);
+      throw e;
+    }
+  }
+
+  /**
+   * Creates (or replaces) a file with the values of a matrix and maps it (read-write).
+   *
+   * @param path file
+   * @param M    matrix
+   * @return the mapped matrix
+   * @throws IOException if the file cannot be created or mapped
+   */
+  public static MappedMatrix create(final Path path, final Matrix M) throws IOException {
+    MappedMatrix rv = create(path, M.rows, M.cols);
+    rv.setRows(0, M.rows, M.data, 0);
+    return rv;
+  }
+
+  /**
+   * Maps an existing file that stores a matrix in row-major order (native byte order).
+   *
+   * @param path     file
+   * @param rows     number of rows in the matrix
+   * @param cols     number of columns in the matrix
+   * @param readOnly map the file in read-only mode
+   * @return the mapped matrix
+   * @throws IOException if the file cannot be opened or mapped
+   */
+  public static MappedMatrix open(final Path path, final int rows, final int cols,
+                                  final boolean readOnly) throws IOException {
+    return open(path, 0, rows, cols, ByteOrder.nativeOrder(), readOnly);
+  }
+
+  /**
+   * Maps an existing file that stores a matrix in row-major order.
+   *
+   * @param path     file
+   * @param offset   position of the first value in the file
+   * @param rows     number of rows in the matrix
+   * @param cols     number of columns in the matrix
+   * @param order    byte order of the values
+   * @param readOnly map the file in read-only mode
+   * @return the mapped matrix
+   * @throws IOException if the file cannot be opened or mapped
+   */
+  public static MappedMatrix open(final Path path, final long offset, final int rows, final int cols,
+                                  final ByteOrder order, final boolean readOnly) throws IOException {
+    check(rows, cols, SEGMENT);
+    if (offset < 0) {
+      throw new IllegalArgumentException("Invalid offset: " + offset);
+    }
+    FileChannel fc = readOnly ? FileChannel.open(path, StandardOpenOption.READ) :
+        FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    if (fc.size() < offset + (long) rows * cols * Double.BYTES) {
+      fc.close();
+      throw new IllegalArgumentException("File is smaller than a " + rows + "x" + cols + " matrix.");
+    }
+    return map(fc, offset, rows, cols, order, readOnly);
+  }
+
+  /**
+   * Returns the number of rows in the matrix.
+   *
+   * @return the number of rows in the matrix.
+   */
+  public int rows() {
+    return rows;
+  }
+
+  /**
+   * Returns the number of columns in the matrix.
+   *
+   * @return the number of columns in the matrix.
+   */
+  public int columns() {
+    return cols;
+  }
+
+  /**
+   * Returns true if the matrix was mapped in read-only mode.
+   *
+   * @return true if the matrix was mapped in read-only mode
+   */
+  public boolean isReadOnly() {
+    return readOnly;
+  }
+
+  /**
+   * Retuns the value in r-row, c-column.
+   *
+   * @param r row
+   * @param c column
+   * @return the value in r-row, c-column
+   */
+  public double get(int r, int c) {
+    return segments[r / segRows].get((r % segRows) * cols + c);
+  }
+
+  /**
+   * Set r-row, c-column value.
+   *
+   * @param r      row
+   * @param c      column
+   * @param scalar value
+   */
+  public void set(int r, int c, double scalar) {
+    segments[r / segRows].put((r % segRows) * cols + c, scalar);
+  }
+
+  /**
+   * Copies the rows [r, r+n[ into an array (row-major order).
+   *
+   * @param r   first row
+   * @param n   number of rows
+   * @param dst destination array
+   * @param off position of the first value in the destination array
+   * @return the destination array
+   */
+  public double[] getRows(int r, final int n, final double dst[], int off) {
+    for (int re = r + n; r < re; ) {
+      int s = r / segRows, sr = r % segRows, len = Math.min(segRows - sr, re - r);
+      DoubleBuffer b = segments[s].duplicate();
+      b.position(sr * cols);
+      b.get(dst, off, len * cols);
+      off += len * cols;
+      r += len;
+    }
+    return dst;
+  }
+
+  /**
+   * Copies the values of an array (row-major order) into the rows [r, r+n[.
+   *
+   * @param r   first row
+   * @param n   number of rows
+   * @param src source array
+   * @param off position of the first value in the source array
+   */
+  public void setRows(int r, final int n, final double src[], int off) {
+    for (int re = r + n; r < re; ) {
+      int s = r / segRows, sr = r % segRows, len = Math.min(segRows - sr, re - r);
+      DoubleBuffer b = segments[s].duplicate();
+      b.position(sr * cols);
+      b.put(src, off, len * cols);
+      off += len * cols;
+      r += len;
+    }
+  }
+
+  /**
+   * Returns a heap copy of this matrix.
+   * Only possible if the matrix has less than 2^31 elements.
+   *
+   * @return a heap copy of this matrix
+   */
+  public Matrix toMatrix() {
+    Matrix M = new Matrix(rows, cols);
+    getRows(0, rows, M.data, 0);
+    return M;
+  }
+
+  /**
+   * Returns the maximum number in the matrix.
+   *
+   * @return the maximum number in the matrix.
+   */
+  public double max() {
+    double rv = Double.NEGATIVE_INFINITY;
+    for (DoubleBuffer s : segments)
+      for (int i = 0, l = s.limit(); i < l; i++)
+        rv = Math.max(rv, s.get(i));
+    return rv;
+  }
+
+  /**
+   * Returns the squared frobenius norm of the matrix.
+   *
+   * @return the squared frobenius norm of the matrix
+   */
+  public double squaredNorm() {
+    double rv = 0.0;
+    for (DoubleBuffer s : segments)
+      for (int i = 0, l = s.limit(); i < l; i++) {
+        double v = s.get(i);
+        rv += v * v;
+      }
+    return rv;
+  }
+
+  /**
+   * Returns the number of rows of each panel streamed through the bla kernels.
+   */
+  private int panelRows() {
+    return Math.max(1, Math.min(rows, PANEL / cols));
+  }
+
+  /**
+   * Multiplies this matrix by a (heap) matrix.
+   *
+   * @param B right matrix
+   * @return the resulting matrix
+   */
+  public Matrix mul(final Matrix B) {
+    Matrix C = new Matrix(rows, B.cols);
+    final int pr = panelRows();
+    double panel[] = new double[pr * cols];
+    for (int r = 0; r < rows; r += pr) {
+      int n = Math.min(pr, rows - r);
+      getRows(r, n, panel, 0);
+      MatrixMultiplication.gemm(panel, 0, cols, 1, B.data, 0, B.cols, 1, C.data, r * B.cols, B.cols,
+          n, B.cols, cols);
+    }
+    return C;
+  }
+
+  /**
+   * Multiplies this matrix by a (heap) matrix and stores the result in a mapped matrix.
+   * Used when the result does not fit in the heap.
+   *
+   * @param B right matrix
+   * @param C mapped matrix that stores the result
+   * @return {@code C} filled with the result
+   */
+  public MappedMatrix mul(final Matrix B, final MappedMatrix C) {
+    final int pr = panelRows();
+    double panel[] = new double[pr * cols], cp[] = new double[pr * B.cols];
+    for (int r = 0; r < rows; r += pr) {
+      int n = Math.min(pr, rows - r);
+      getRows(r, n, panel, 0);
+      Arrays.fill(cp, 0.0);
+      MatrixMultiplication.gemm(panel, 0, cols, 1, B.data, 0, B.cols, 1, cp, 0, B.cols,
+          n, B.cols, cols);
+      C.setRows(r, n, cp, 0);
+    }
+    return C;
+  }
+
+  /**
+   * Multiplies the transpose of this matrix by a (heap) matrix (A^T B),
+   * without computing the transpose.
+   *
+   * @param B right matrix (with the same number of rows as this matrix)
+   * @return the resulting matrix
+   */
+  public Matrix tmul(final Matrix B) {
+    Matrix C = new Matrix(cols, B.cols);
+    final int pr = panelRows();
+    double panel[] = new double[pr * cols];
+    for (int r = 0; r < rows; r += pr) {
+      int n = Math.min(pr, rows - r);
+      getRows(r, n, panel, 0);
+      MatrixMultiplication.gemm(panel, 0, 1, cols, B.data, r * B.cols, B.cols, 1, C.data, 0, B.cols,
+          cols, B.cols, n);
+    }
+    return C;
+  }
+
+  /**
+   * Stores the transpose of this matrix in a new file.
+   * The matrix is transposed in square tiles, as such only a tile is stored in the heap.
+   *
+   * @param path file that stores the transpose matrix
+   * @return the transpose matrix
+   * @throws IOException if the file cannot be created or mapped
+   */
+  public MappedMatrix transpose(final Path path) throws IOException {
+    MappedMatrix T = create(path, cols, rows);
+    double tile[] = new double[TILE * TILE], tileT[] = new double[TILE * TILE];
+    for (int rb = 0; rb < rows; rb += TILE) {
+      int tr = Math.min(TILE, rows - rb);
+      for (int cb = 0; cb < cols; cb += TILE) {
+        int tc = Math.min(TILE, cols - cb);
+        for (int i = 0; i < tr; i++) {
+          int r = rb + i;
+          DoubleBuffer b = segments[r / segRows].duplicate();
+          b.position((r % segRows) * cols + cb);
+          b.get(tile, i * tc, tc);
+        }
+        MatrixTranspose.cotr(tile, tileT, tr, tc);
+        for (int j = 0; j < tc; j++) {
+          int r = cb + j;
+          DoubleBuffer b = T.segments[r / T.segRows].duplicate();
+          b.position((r % T.segRows) * rows + rb);
+          b.put(tileT, j * tr, tr);
+        }
+      }
+    }
+    return T;
+  }
+
+  /**
+   * Non negative matrix factorization (multiplicative updates).
+   * <p>
+   * The matrix is streamed in panels of rows and the product WH is never computed,
+   * the cost is obtained from ||V - WH||^2 = ||V||^2 - 2 tr(H^T W^T V) + tr(W^T W H H^T).
+   * The factors W and H are stored in the heap.
+   * </p>
+   *
+   * @param k rank of the factorization
+   * @param n maximum number of iterations
+   * @param e maximum error (euclidean distance between V and WH)
+   * @return the factors W and H
+   */
+  public Matrix[] nmf(final int k, final int n, final double e) {
+    double max = max(), eps = MathUtils.eps(), vv = squaredNorm();
+    Matrix w = Matrix.random(rows, k, 0.0, max);
+    Matrix h = Matrix.random(k, cols, 0.0, max);
+    final int pr = panelRows();
+    double panel[] = new double[pr * cols], wtv[] = new double[k * cols], wtw[] = new double[k * k],
+        hht[] = new double[k * k], hd[] = new double[k * cols], vht[] = new double[rows * k],
+        wd[] = new double[rows * k];
+
+    for (int i = 0; i < n; i++) {
+      // W^T V (streamed), W^T W and H H^T
+      Arrays.fill(wtv, 0.0);
+      for (int r = 0; r < rows; r += pr) {
+        int nr = Math.min(pr, rows - r);
+        getRows(r, nr, panel, 0);
+        MatrixMultiplication.gemm(w.data, r * k, 1, k, panel, 0, cols, 1, wtv, 0, cols, k, cols, nr);
+      }
+      Arrays.fill(wtw, 0.0);
+      MatrixMultiplication.gemm(w.data, 0, 1, k, w.data, 0, k, 1, wtw, 0, k, k, k, rows);
+      Arrays.fill(hht, 0.0);
+      MatrixMultiplication.gemm(h.data, 0, cols, 1, h.data, 0, 1, cols, hht, 0, k, k, k, cols);
+
+      double cost = vv - 2.0 * ArrayUtils.dotProduct(wtv, 0, h.data, 0, k * cols)
+          + ArrayUtils.dotProduct(wtw, 0, hht, 0, k * k);
+      if (Math.sqrt(Math.max(cost, 0.0)) <= e)
+        break;
+
+      // update feature matrix
+      Arrays.fill(hd, 0.0);
+      MatrixMultiplication.gemm(wtw, h.data, hd, k, cols, k);
+      ArrayUtils.add(hd, 0, eps, hd, 0, hd.length);
+      ArrayUtils.mulDiv(h.data, 0, wtv, 0, hd, 0, h.data, 0, k * cols);
+
+      // update weights matrix (V H^T streamed)
+      Arrays.fill(vht, 0.0);
+      for (int r = 0; r < rows; r += pr) {
+        int nr = Math.min(pr, rows - r);
+        getRows(r, nr, panel, 0);
+        MatrixMultiplication.gemm(panel, 0, cols, 1, h.data, 0, 1, cols, vht, r * k, k, nr, k, cols);
+      }
+      Arrays.fill(hht, 0.0);
+      MatrixMultiplication.gemm(h.data, 0, cols, 1, h.data, 0, 1, cols, hht, 0, k, k, k, cols);
+      Arrays.fill(wd, 0.0);
+      MatrixMultiplication.gemm(w.data, hht, wd, rows, k, k);
+      ArrayUtils.add(wd, 0, eps, wd, 0, wd.length);
+      ArrayUtils.mulDiv(w.data, 0, vht, 0, wd, 0, w.data, 0, rows * k);
+    }
+    return new Matrix[]{w, h};
+  }
+
+  /**
+   * Writes the changes of a read-write matrix to the file.
+   */
+  public void force() {
+    if (!readOnly) {
+      for (MappedByteBuffer m : maps)
+        m.force();
+    }
+  }
+
+  /**
+   * Closes the underlying file channel.
+   * The mapped segments remain valid until they are garbage collected.
+   *
+   * @throws IOException if the channel cannot be closed
+   */
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  @Override
+  public String toString() {
+    return "MappedMatrix(" + rows + "x" + cols + (readOnly ? ", read-only" : "") + ")";
+  }
+}
@@ -266,6 +266,7 @@ public class Matrix {
   /**
    * Returns the transpose matrix.
    * This function uses a cache oblivious algorithm to transpose the original matrix into a new one.
+   * Large matrices are transposed in parallel.
    *
    * @return the transpose matrix
    */
@@ -274,24 +275,21 @@ public class Matrix {
     if (isLinear())
       System.arraycopy(data, 0, T.data, 0, data.length);
     else
-      MatrixTranspose.cotr(data, T.data, rows, cols);
+      MatrixTranspose.tr(data, T.data, rows, cols);
     return T;
   }
 
   /**
    * Re-organizes the internal representation and returns the transpose matrix.
-   * The tranpose is done in-place with minimal auxiliar memory.
+   * The tranpose is done in-place with O(sqrt(rows * cols)) auxiliar memory
+   * (large rectangular matrices are transposed in parallel).
    * It is slower than the regular transpose method.
    *
    * @return the transpose matrix
    */
   public Matrix uTranspose() {
-    if (!isLinear()) {
-      if (isSquare())
-        MatrixTranspose.insqtr(data, rows);
-      else
-        MatrixTranspose.infotr(data, rows, cols);
-    }
+    if (!isLinear())
+      MatrixTranspose.itr(data, rows, cols);
     int t = rows;
     this.rows = cols;
     this.cols = t;
@@ -400,29 +398,104 @@ public class Matrix {
   }
 
   /**
+   * Multiplies this matrix by a strided view (the view is not copied).
    *
-   * @return
+   * @param B view with {@link #columns()} rows
+   * @return the resulting matrix
+   */
+  public Matrix mul(MatrixView B) {
+    return view().mul(B);
+  }
+
+  /**
+   * Returns a lazy expression of the matrix (the matrix is not copied).
+   * Elementwise chains are fused and product chains are reordered, see {@link MatrixExpression}.
+   *
+   * @return a lazy expression of the matrix
+   */
+  public MatrixExpression lazy() {
+    return MatrixExpression.of(this);
+  }
+
+  /**
+   * Multiplies this matrix by a sparse matrix.
+   *
+   * @param B sparse matrix
+   * @return the resulting dense matrix
+   */
+  public Matrix mul(SparseMatrix B) {
+    return SparseMatrix.mul(this, B);
+  }
+
+  /**
+   * Returns the upper triangular factor R (rows x cols) of the QR decomposition.
+   *
+   * @return the upper triangular factor R
    */
   public Matrix triangular() {
-    Matrix T = transpose();
-    for (int k = 0; k < rows - 1; k++)
-      householder(T, null, k, k);
-    T.uTranspose();
-    return T;
+    return new QrDecomposition(this).fullR();
   }
 
   /**
+   * Returns the QR decomposition of the matrix (blocked Householder).
+   * Q is a rows x rows orthogonal matrix and R is a rows x cols upper triangular matrix.
+   * Use {@link QrDecomposition} directly for the thin factors (min(rows, cols) columns of Q),
+   * to apply Q implicitly or to solve least squares problems.
    *
-   * @return
+   * @return the matrices Q and R
    */
   public Matrix[] qr() {
-    Matrix QR[] = new Matrix[2];
-    QR[0] = Matrix.identity(rows);
-    QR[1] = transpose();
-    for (int k = 0; k < rows - 1; k++)
-      householder(QR[1], QR[0], k, k);
-    QR[1].uTranspose();
-    return QR;
+    QrDecomposition qr = new QrDecomposition(this);
+    return new Matrix[]{qr.fullQ(), qr.fullR()};
+  }
+
+  /**
+   * Returns the LU decomposition (with partial pivoting) of the matrix.
+   * The decomposition can be reused to solve several systems.
+   *
+   * @return the LU decomposition of the matrix
+   */
+  public LuDecomposition lu() {
+    return new LuDecomposition(this);
+  }
+
+  /**
+   * Returns the Cholesky decomposition of the (symmetric positive definite) matrix.
+   * The decomposition can be reused to solve several systems.
+   *
+   * @return the Cholesky decomposition of the matrix
+   */
+  public CholeskyDecomposition cholesky() {
+    return new CholeskyDecomposition(this);
+  }
+
+  /**
+   * Returns the solution X of A X = B (A must be square), see {@link LuDecomposition}.
+   *
+   * @param B right-hand sides
+   * @return the solution X
+   */
+  public Matrix solve(final Matrix B) {
+    return new LuDecomposition(this).solve(B);
+  }
+
+  /**
+   * Returns the solution x of A x = b (A must be square), see {@link LuDecomposition}.
+   *
+   * @param b right-hand side
+   * @return the solution x
+   */
+  public Vector solve(final Vector b) {
+    return new LuDecomposition(this).solve(b);
+  }
+
+  /**
+   * Returns the inverse of the (square) matrix.
+   *
+   * @return the inverse of the matrix
+   */
+  public Matrix inverse() {
+    return new LuDecomposition(this).inverse();
   }
 
   /**
@@ -472,23 +545,45 @@ public class Matrix {
   }
 
   /**
-   * @return
+   * Returns the (thin) singular value decomposition of the matrix (A = U S V^T).
+   * See {@link SvdDecomposition#jacobi(Matrix)}.
+   *
+   * @return the matrices U, S and V
    */
   public Matrix[] svd() {
-    Matrix UDV[] = bidiagonal();
-
-    // TODO: bidiag to diag
-    double diag[] = UDV[1].diagArray(0);
-    double lambda[] = new double[diag.length],
-        mu[] = new double[diag.length];
-    //PrintUtils.printArray(diag);
-    lambda[diag.length - 1] = Math.abs(diag[diag.length - 1]);
+    return SvdDecomposition.jacobi(this);
+  }
 
-    for (int i = diag.length - 1; i > 0; i--)
-      lambda[i] = Math.abs(diag[i]) * lambda[i + 1];
+  /**
+   * Returns the top-k singular triplets of the matrix (randomized).
+   * See {@link SvdDecomposition#randomized(Matrix, int)}.
+   *
+   * @param k number of singular triplets
+   * @return the matrices U (rows x k), S (k x k) and V (cols x k)
+   */
+  public Matrix[] svd(final int k) {
+    return SvdDecomposition.randomized(this, k);
+  }
 
+  /**
+   * Returns the eigen-decomposition of the (symmetric) matrix (A = V D V^T).
+   * See {@link EigenDecomposition#symmetric(Matrix)}.
+   *
+   * @return the matrices V (eigenvectors in the columns) and D (diagonal with the eigenvalues)
+   */
+  public Matrix[] eig() {
+    return EigenDecomposition.symmetric(this);
+  }
 
-    return UDV;
+  /**
+   * Returns the top-k eigenpairs of the (symmetric) matrix (Lanczos).
+   * See {@link EigenDecomposition#lanczos(Matrix, int)}.
+   *
+   * @param k number of eigenpairs
+   * @return the matrices V (rows x k) and D (k x k diagonal)
+   */
+  public Matrix[] eig(final int k) {
+    return EigenDecomposition.lanczos(this, k);
   }
 
   /**
@@ -504,18 +599,8 @@ public class Matrix {
     else if (cols == 3 && rows == 3)
       rv = (data[0] * data[4] * data[8] + data[1] * data[5] * data[6] + data[2] * data[3] * data[7])
           - (data[2] * data[4] * data[6] + data[1] * data[3] * data[8] + data[0] * data[5] * data[7]);
-    else {
-      Matrix T = transpose();
-      int hh = 0;
-      for (int k = 0; k < rows - 1; k++)
-        if (householder(T, null, k, k))
-          hh++;
-      T.uTranspose();
-      rv = 1.0;
-      for (int i = 0; i < T.rows; i++)
-        rv *= T.data[i * T.cols + i];
-      rv *= Math.pow(-1.0, hh);
-    }
+    else
+      rv = new LuDecomposition(this).det();
     return rv;
   }
 
@@ -530,6 +615,19 @@ public class Matrix {
     return NmfFactorization.nmf_mu2(this, k, n, e);
   }
 
+  /**
+   * Non negative matrix factorization with a given update rule.
+   *
+   * @param k    rank of the factorization
+   * @param n    maximum number of iterations
+   * @param e    maximum cost
+   * @param rule update rule
+   * @return the factors W and H
+   */
+  public Matrix[] nmf(final int k, final int n, final double e, final NmfFactorization.Rule rule) {
+    return NmfFactorization.nmf(this, k, n, e, rule);
+  }
+
   /**
    *
    * @param k
@@ -557,6 +655,49 @@ public class Matrix {
     return new Vector(data, 0, rows * cols);
   }
 
+  /**
+   * Returns a row of the matrix as a view (zero-copy),
+   * {@link MatrixView#vector()} returns it as a vector that shares the array.
+   *
+   * @param row the row
+   * @return the view of the row (1 x cols)
+   */
+  public MatrixView row(final int row) {
+    return view().row(row);
+  }
+
+  /**
+   * Returns a column of the matrix as a strided view (zero-copy).
+   *
+   * @param column the column
+   * @return the view of the column (rows x 1)
+   */
+  public MatrixView column(final int column) {
+    return view().column(column);
+  }
+
+  /**
+   * Returns a view of the matrix (zero-copy), see {@link MatrixView}.
+   *
+   * @return a view of the matrix
+   */
+  public MatrixView view() {
+    return new MatrixView(this);
+  }
+
+  /**
+   * Returns a view of a submatrix (zero-copy), see {@link MatrixView}.
+   *
+   * @param row    first row
+   * @param column first column
+   * @param rows   number of rows
+   * @param cols   number of columns
+   * @return the view of the submatrix
+   */
+  public MatrixView view(final int row, final int column, final int rows, final int cols) {
+    return view().view(row, column, rows, cols);
+  }
+
   public double minkowskiDistance(Matrix b, int p) {
     return ArrayUtils.minkowskiDistance(data, 0, b.data, 0, data.length, p);
   }
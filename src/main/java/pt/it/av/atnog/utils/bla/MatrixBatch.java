@@ -0,0 +1,423 @@
+package pt.it.av.atnog.utils.bla;
+
+import pt.it.av.atnog.utils.structures.Point3D;
+import pt.it.av.atnog.utils.structures.Point4D;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Batch of small square matrices (2x2, 3x3 or 4x4) in struct-of-arrays layout.
+ * <p>
+ * The element (i, j) of the matrix b is stored in {@code data[(i * size + j) * n + b]},
+ * as such every loop runs over the matrices of the batch with unit stride
+ * (the JIT compiler vectorizes it) and no object is allocated per matrix.
+ * The determinants and inverses use closed forms (cofactors).
+ * Large batches are processed in parallel.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public class MatrixBatch {
+  private static final int P_GRAIN = 1 << 14;
+  protected final int size, n;
+  protected final double data[];
+
+  /**
+   * Creates a batch of n matrices filled with zeros.
+   *
+   * @param size dimension of the matrices (2, 3 or 4)
+   * @param n    number of matrices
+   */
+  public MatrixBatch(final int size, final int n) {
+    this(size, n, new double[size * size * n]);
+  }
+
+  /**
+   * Creates a batch from an array in struct-of-arrays layout (the array is not copied).
+   *
+   * @param size dimension of the matrices (2, 3 or 4)
+   * @param n    number of matrices
+   * @param data array with size * size * n elements
+   */
+  public MatrixBatch(final int size, final int n, final double data[]) {
+    if (size < 2 || size > 4) {
+      throw new IllegalArgumentException("Only 2x2, 3x3 and 4x4 matrices are supported.");
+    }
+    if (n < 0 || data.length != size * size * n) {
+      throw new IllegalArgumentException("The array must have " + size * size * n + " elements.");
+    }
+    this.size = size;
+    this.n = n;
+    this.data = data;
+  }
+
+  /**
+   * Returns a batch of n identity matrices.
+   *
+   * @param size dimension of the matrices (2, 3 or 4)
+   * @param n    number of matrices
+   * @return a batch of n identity matrices
+   */
+  public static MatrixBatch identity(final int size, final int n) {
+    MatrixBatch rv = new MatrixBatch(size, n);
+    for (int i = 0; i < size; i++)
+      Arrays.fill(rv.data, (i * size + i) * n, (i * size + i + 1) * n, 1.0);
+    return rv;
+  }
+
+  /**
+   * Returns a batch with copies of the given matrices.
+   *
+   * @param matrices square matrices with the same dimension
+   * @return a batch with copies of the given matrices
+   */
+  public static MatrixBatch of(final Matrix... matrices) {
+    MatrixBatch rv = new MatrixBatch(matrices.length > 0 ? matrices[0].rows : 2, matrices.length);
+    for (int b = 0; b < matrices.length; b++)
+      rv.set(b, matrices[b]);
+    return rv;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int length() {
+    return n;
+  }
+
+  public double get(final int b, final int i, final int j) {
+    return data[(i * size + j) * n + b];
+  }
+
+  public void set(final int b, final int i, final int j, final double scalar) {
+    data[(i * size + j) * n + b] = scalar;
+  }
+
+  /**
+   * Returns a copy of the matrix b.
+   *
+   * @param b index of the matrix
+   * @return a copy of the matrix b
+   */
+  public Matrix get(final int b) {
+    Matrix rv = new Matrix(size, size);
+    for (int k = 0; k < size * size; k++)
+      rv.data[k] = data[k * n + b];
+    return rv;
+  }
+
+  /**
+   * Copies a matrix into the position b.
+   *
+   * @param b index of the matrix
+   * @param A square matrix with dimension {@link #size()}
+   */
+  public void set(final int b, final Matrix A) {
+    if (A.rows != size || A.cols != size) {
+      throw new IllegalArgumentException("The matrix must be " + size + "x" + size + ".");
+    }
+    for (int k = 0; k < size * size; k++)
+      data[k * n + b] = A.data[k];
+  }
+
+  /**
+   * Runs a range of matrices, in parallel for large batches.
+   */
+  private void range(final MatrixTranspose.Range r) {
+    final boolean parallel = n >= 2 * P_GRAIN && ForkJoinPool.getCommonPoolParallelism() > 1;
+    MatrixTranspose.range(n, P_GRAIN, parallel, r);
+  }
+
+  private void check(final MatrixBatch B) {
+    if (B.size != size || B.n != n) {
+      throw new IllegalArgumentException("The batches must have the same size and length.");
+    }
+  }
+
+  /**
+   * Returns the products of the matrices of both batches (C[b] = A[b] B[b]).
+   *
+   * @param B batch with the same size and length
+   * @return the products
+   */
+  public MatrixBatch mul(final MatrixBatch B) {
+    return mul(B, new MatrixBatch(size, n));
+  }
+
+  /**
+   * Computes the products of the matrices of both batches (C[b] = A[b] B[b]) into C.
+   * C must not be one of the operands.
+   *
+   * @param B batch with the same size and length
+   * @param C output batch with the same size and length
+   * @return C
+   */
+  public MatrixBatch mul(final MatrixBatch B, final MatrixBatch C) {
+    check(B);
+    check(C);
+    final double a[] = data, bb[] = B.data, c[] = C.data;
+    range((s, e) -> {
+      for (int i = 0; i < size; i++)
+        for (int j = 0; j < size; j++) {
+          final int ci = (i * size + j) * n;
+          for (int b = s; b < e; b++)
+            c[ci + b] = 0.0;
+          for (int k = 0; k < size; k++) {
+            final int ai = (i * size + k) * n, bi = (k * size + j) * n;
+            for (int b = s; b < e; b++)
+              c[ci + b] += a[ai + b] * bb[bi + b];
+          }
+        }
+    });
+    return C;
+  }
+
+  /**
+   * Returns the determinants of the matrices.
+   *
+   * @return the determinants of the matrices
+   */
+  public double[] det() {
+    return det(new double[n]);
+  }
+
+  /**
+   * Computes the determinants of the matrices into an array.
+   *
+   * @param d output array with (at least) n elements
+   * @return d
+   */
+  public double[] det(final double d[]) {
+    final double a[] = data;
+    range((s, e) -> {
+      switch (size) {
+        case 2:
+          for (int b = s; b < e; b++)
+            d[b] = a[b] * a[3 * n + b] - a[n + b] * a[2 * n + b];
+          break;
+        case 3:
+          for (int b = s; b < e; b++) {
+            final double a00 = a[b], a01 = a[n + b], a02 = a[2 * n + b],
+                a10 = a[3 * n + b], a11 = a[4 * n + b], a12 = a[5 * n + b],
+                a20 = a[6 * n + b], a21 = a[7 * n + b], a22 = a[8 * n + b];
+            d[b] = a00 * (a11 * a22 - a12 * a21) - a01 * (a10 * a22 - a12 * a20)
+                + a02 * (a10 * a21 - a11 * a20);
+          }
+          break;
+        default:
+          for (int b = s; b < e; b++) {
+            final double a00 = a[b], a01 = a[n + b], a02 = a[2 * n + b], a03 = a[3 * n + b],
+                a10 = a[4 * n + b], a11 = a[5 * n + b], a12 = a[6 * n + b], a13 = a[7 * n + b],
+                a20 = a[8 * n + b], a21 = a[9 * n + b], a22 = a[10 * n + b], a23 = a[11 * n + b],
+                a30 = a[12 * n + b], a31 = a[13 * n + b], a32 = a[14 * n + b], a33 = a[15 * n + b];
+            // 2x2 minors of the first two rows and of the last two rows
+            final double s0 = a00 * a11 - a10 * a01, s1 = a00 * a12 - a10 * a02, s2 = a00 * a13 - a10 * a03,
+                s3 = a01 * a12 - a11 * a02, s4 = a01 * a13 - a11 * a03, s5 = a02 * a13 - a12 * a03,
+                c0 = a20 * a31 - a30 * a21, c1 = a20 * a32 - a30 * a22, c2 = a20 * a33 - a30 * a23,
+                c3 = a21 * a32 - a31 * a22, c4 = a21 * a33 - a31 * a23, c5 = a22 * a33 - a32 * a23;
+            d[b] = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+          }
+      }
+    });
+    return d;
+  }
+
+  /**
+   * Returns the inverses of the matrices.
+   * The inverse of a singular matrix has non finite values.
+   *
+   * @return the inverses of the matrices
+   */
+  public MatrixBatch inverse() {
+    return inverse(new MatrixBatch(size, n));
+  }
+
+  /**
+   * Computes the inverses of the matrices into C (C may be this batch).
+   * The inverse of a singular matrix has non finite values.
+   *
+   * @param C output batch with the same size and length
+   * @return C
+   */
+  public MatrixBatch inverse(final MatrixBatch C) {
+    check(C);
+    final double a[] = data, c[] = C.data;
+    range((s, e) -> {
+      switch (size) {
+        case 2:
+          for (int b = s; b < e; b++) {
+            final double a00 = a[b], a01 = a[n + b], a10 = a[2 * n + b], a11 = a[3 * n + b],
+                inv = 1.0 / (a00 * a11 - a01 * a10);
+            c[b] = a11 * inv;
+            c[n + b] = -a01 * inv;
+            c[2 * n + b] = -a10 * inv;
+            c[3 * n + b] = a00 * inv;
+          }
+          break;
+        case 3:
+          for (int b = s; b < e; b++) {
+            final double a00 = a[b], a01 = a[n + b], a02 = a[2 * n + b],
+                a10 = a[3 * n + b], a11 = a[4 * n + b], a12 = a[5 * n + b],
+                a20 = a[6 * n + b], a21 = a[7 * n + b], a22 = a[8 * n + b];
+            final double c00 = a11 * a22 - a12 * a21, c01 = a12 * a20 - a10 * a22, c02 = a10 * a21 - a11 * a20,
+                inv = 1.0 / (a00 * c00 + a01 * c01 + a02 * c02);
+            c[b] = c00 * inv;
+            c[n + b] = (a02 * a21 - a01 * a22) * inv;
+            c[2 * n + b] = (a01 * a12 - a02 * a11) * inv;
+            c[3 * n + b] = c01 * inv;
+            c[4 * n + b] = (a00 * a22 - a02 * a20) * inv;
+            c[5 * n + b] = (a02 * a10 - a00 * a12) * inv;
+            c[6 * n + b] = c02 * inv;
+            c[7 * n + b] = (a01 * a20 - a00 * a21) * inv;
+            c[8 * n + b] = (a00 * a11 - a01 * a10) * inv;
+          }
+          break;
+        default:
+          for (int b = s; b < e; b++) {
+            final double a00 = a[b], a01 = a[n + b], a02 = a[2 * n + b], a03 = a[3 * n + b],
+                a10 = a[4 * n + b], a11 = a[5 * n + b], a12 = a[6 * n + b], a13 = a[7 * n + b],
+                a20 = a[8 * n + b], a21 = a[9 * n + b], a22 = a[10 * n + b], a23 = a[11 * n + b],
+                a30 = a[12 * n + b], a31 = a[13 * n + b], a32 = a[14 * n + b], a33 = a[15 * n + b];
+            final double s0 = a00 * a11 - a10 * a01, s1 = a00 * a12 - a10 * a02, s2 = a00 * a13 - a10 * a03,
+                s3 = a01 * a12 - a11 * a02, s4 = a01 * a13 - a11 * a03, s5 = a02 * a13 - a12 * a03,
+                c0 = a20 * a31 - a30 * a21, c1 = a20 * a32 - a30 * a22, c2 = a20 * a33 - a30 * a23,
+                c3 = a21 * a32 - a31 * a22, c4 = a21 * a33 - a31 * a23, c5 = a22 * a33 - a32 * a23,
+                inv = 1.0 / (s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0);
+            c[b] = (a11 * c5 - a12 * c4 + a13 * c3) * inv;
+            c[n + b] = (-a01 * c5 + a02 * c4 - a03 * c3) * inv;
+            c[2 * n + b] = (a31 * s5 - a32 * s4 + a33 * s3) * inv;
+            c[3 * n + b] = (-a21 * s5 + a22 * s4 - a23 * s3) * inv;
+            c[4 * n + b] = (-a10 * c5 + a12 * c2 - a13 * c1) * inv;
+            c[5 * n + b] = (a00 * c5 - a02 * c2 + a03 * c1) * inv;
+            c[6 * n + b] = (-a30 * s5 + a32 * s2 - a33 * s1) * inv;
+            c[7 * n + b] = (a20 * s5 - a22 * s2 + a23 * s1) * inv;
+            c[8 * n + b] = (a10 * c4 - a11 * c2 + a13 * c0) * inv;
+            c[9 * n + b] = (-a00 * c4 + a01 * c2 - a03 * c0) * inv;
+            c[10 * n + b] = (a30 * s4 - a31 * s2 + a33 * s0) * inv;
+            c[11 * n + b] = (-a20 * s4 + a21 * s2 - a23 * s0) * inv;
+            c[12 * n + b] = (-a10 * c3 + a11 * c1 - a12 * c0) * inv;
+            c[13 * n + b] = (a00 * c3 - a01 * c1 + a02 * c0) * inv;
+            c[14 * n + b] = (-a30 * s3 + a31 * s1 - a32 * s0) * inv;
+            c[15 * n + b] = (a20 * s3 - a21 * s1 + a22 * s0) * inv;
+          }
+      }
+    });
+    return C;
+  }
+
+  /**
+   * Transforms the points (x[b], y[b], z[b]) with the matrices b, in-place.
+   * 3x3 matrices are linear transforms; 4x4 matrices are homogeneous transforms
+   * (the point is divided by the resulting w, which is 1 for affine transforms).
+   *
+   * @param x x coordinates (n elements)
+   * @param y y coordinates (n elements)
+   * @param z z coordinates (n elements)
+   */
+  public void transform(final double x[], final double y[], final double z[]) {
+    if (size < 3 || x.length < n || y.length < n || z.length < n) {
+      throw new IllegalArgumentException("Invalid batch of 3D points.");
+    }
+    final double a[] = data;
+    range((s, e) -> {
+      if (size == 3) {
+        for (int b = s; b < e; b++) {
+          final double px = x[b], py = y[b], pz = z[b];
+          x[b] = a[b] * px + a[n + b] * py + a[2 * n + b] * pz;
+          y[b] = a[3 * n + b] * px + a[4 * n + b] * py + a[5 * n + b] * pz;
+          z[b] = a[6 * n + b] * px + a[7 * n + b] * py + a[8 * n + b] * pz;
+        }
+      } else {
+        for (int b = s; b < e; b++) {
+          final double px = x[b], py = y[b], pz = z[b],
+              w = 1.0 / (a[12 * n + b] * px + a[13 * n + b] * py + a[14 * n + b] * pz + a[15 * n + b]);
+          x[b] = (a[b] * px + a[n + b] * py + a[2 * n + b] * pz + a[3 * n + b]) * w;
+          y[b] = (a[4 * n + b] * px + a[5 * n + b] * py + a[6 * n + b] * pz + a[7 * n + b]) * w;
+          z[b] = (a[8 * n + b] * px + a[9 * n + b] * py + a[10 * n + b] * pz + a[11 * n + b]) * w;
+        }
+      }
+    });
+  }
+
+  /**
+   * Transforms the points (x[b], y[b], z[b], w[b]) with the 4x4 matrices b, in-place.
+   *
+   * @param x x coordinates (n elements)
+   * @param y y coordinates (n elements)
+   * @param z z coordinates (n elements)
+   * @param w w coordinates (n elements)
+   */
+  public void transform(final double x[], final double y[], final double z[], final double w[]) {
+    if (size != 4 || x.length < n || y.length < n || z.length < n || w.length < n) {
+      throw new IllegalArgumentException("Invalid batch of 4D points.");
+    }
+    final double a[] = data;
+    range((s, e) -> {
+      for (int b = s; b < e; b++) {
+        final double px = x[b], py = y[b], pz = z[b], pw = w[b];
+        x[b] = a[b] * px + a[n + b] * py + a[2 * n + b] * pz + a[3 * n + b] * pw;
+        y[b] = a[4 * n + b] * px + a[5 * n + b] * py + a[6 * n + b] * pz + a[7 * n + b] * pw;
+        z[b] = a[8 * n + b] * px + a[9 * n + b] * py + a[10 * n + b] * pz + a[11 * n + b] * pw;
+        w[b] = a[12 * n + b] * px + a[13 * n + b] * py + a[14 * n + b] * pz + a[15 * n + b] * pw;
+      }
+    });
+  }
+
+  /**
+   * Returns the points transformed by the matrices (point b by matrix b).
+   * See {@link #transform(double[], double[], double[])}.
+   *
+   * @param points n points
+   * @return the transformed points
+   */
+  public Point3D[] transform(final Point3D points[]) {
+    final int len = points.length;
+    if (len != n) {
+      throw new IllegalArgumentException("The batch has " + n + " matrices.");
+    }
+    final double x[] = new double[len], y[] = new double[len], z[] = new double[len];
+    for (int i = 0; i < len; i++) {
+      x[i] = points[i].x();
+      y[i] = points[i].y();
+      z[i] = points[i].z();
+    }
+    transform(x, y, z);
+    Point3D rv[] = new Point3D[len];
+    for (int i = 0; i < len; i++)
+      rv[i] = new Point3D(x[i], y[i], z[i]);
+    return rv;
+  }
+
+  /**
+   * Returns the points transformed by the 4x4 matrices (point b by matrix b).
+   *
+   * @param points n points
+   * @return the transformed points
+   */
+  public Point4D[] transform(final Point4D points[]) {
+    final int len = points.length;
+    if (len != n) {
+      throw new IllegalArgumentException("The batch has " + n + " matrices.");
+    }
+    final double x[] = new double[len], y[] = new double[len], z[] = new double[len], w[] = new double[len];
+    for (int i = 0; i < len; i++) {
+      x[i] = points[i].x();
+      y[i] = points[i].y();
+      z[i] = points[i].z();
+      w[i] = points[i].w();
+    }
+    transform(x, y, z, w);
+    Point4D rv[] = new Point4D[len];
+    for (int i = 0; i < len; i++)
+      rv[i] = new Point4D(x[i], y[i], z[i], w[i]);
+    return rv;
+  }
+
+  @Override
+  public String toString() {
+    return "MatrixBatch(" + n + " x " + size + "x" + size + ")";
+  }
+}
@@ -0,0 +1,308 @@
+package pt.it.av.atnog.utils.bla;
+
+import pt.it.av.atnog.utils.ArrayUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Machine specific calibration of the bla kernels.
+ * <p>
+ * Runs a set of micro-benchmarks that select the block sizes of {@link MatrixTranspose}
+ * and {@link MatrixMultiplication}, the kernel used to multiply small matrices and the
+ * parallel multiplication threshold.
+ * The results are persisted into a local properties file that is loaded when the
+ * bla classes are initialized.
+ * The location of the file can be defined with the {@value #FILE_PROPERTY} system property,
+ * by default it is stored in the user home directory.
+ * </p>
+ * <p>
+ * The calibration is done once per machine, either by running this class
+ * or by calling {@link #init(boolean)} at application startup.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public final class MatrixCalibration {
+  /**
+   * System property with the location of the calibration file.
+   */
+  public static final String FILE_PROPERTY = "pt.it.av.atnog.utils.bla.calibration";
+  private static final String FILE_NAME = ".bla-calibration.properties";
+  private static final String TR_BLK = "transpose.blk", MUL_BLK = "mul.blk",
+      MUL_KERNEL = "mul.kernel", MUL_PARALLEL = "mul.parallel";
+  private static final int BLKS[] = {16, 32, 64, 128, 256}, PSIZES[] = {64, 96, 128, 192, 256, 384, 512};
+  private static final int REPS = 5;
+  private static final AtomicBoolean loaded = new AtomicBoolean(false);
+
+  /**
+   * Utility class, lets make the constructor private.
+   */
+  private MatrixCalibration() {
+  }
+
+  /**
+   * Returns the path of the calibration file.
+   *
+   * @return the path of the calibration file
+   */
+  public static Path path() {
+    String file = System.getProperty(FILE_PROPERTY);
+    return file != null ? Paths.get(file) : Paths.get(System.getProperty("user.home"), FILE_NAME);
+  }
+
+  /**
+   * Loads the calibration file (only once) and applies it.
+   * Invoked when the bla classes are initialized, it never runs benchmarks.
+   */
+  static void startup() {
+    if (loaded.compareAndSet(false, true)) {
+      Path path = path();
+      if (Files.isReadable(path)) {
+        try {
+          apply(load(path));
+        } catch (IOException | IllegalArgumentException e) {
+          e.printStackTrace();
+        }
+      }
+    }
+  }
+
+  /**
+   * Loads and applies the calibration file.
+   * If the file does not exist and {@code calibrate} is true,
+   * the calibration is computed and stored.
+   *
+   * @param calibrate calibrate the machine if there is no calibration file
+   * @return the calibration properties in use
+   * @throws IOException if the calibration file cannot be read or written
+   */
+  public static Properties init(final boolean calibrate) throws IOException {
+    Path path = path();
+    Properties props;
+    if (Files.isReadable(path)) {
+      props = load(path);
+    } else if (calibrate) {
+      props = calibrate();
+      store(props, path);
+    } else {
+      props = current();
+    }
+    apply(props);
+    return props;
+  }
+
+  /**
+   * Returns the values currently used by the bla kernels.
+   *
+   * @return the values currently used by the bla kernels
+   */
+  public static Properties current() {
+    Properties props = new Properties();
+    props.setProperty(TR_BLK, Integer.toString(MatrixTranspose.blockSize()));
+    props.setProperty(MUL_BLK, Integer.toString(MatrixMultiplication.blockSize()));
+    props.setProperty(MUL_KERNEL, MatrixMultiplication.kernel().name());
+    props.setProperty(MUL_PARALLEL, Long.toString(MatrixMultiplication.parallelThreshold()));
+    return props;
+  }
+
+  /**
+   * Applies the calibration values to the bla kernels.
+   * Missing values are ignored.
+   *
+   * @param props calibration properties
+   */
+  public static void apply(final Properties props) {
+    String v = props.getProperty(TR_BLK);
+    if (v != null) {
+      MatrixTranspose.blockSize(Integer.parseInt(v.trim()));
+    }
+    v = props.getProperty(MUL_BLK);
+    if (v != null) {
+      MatrixMultiplication.blockSize(Integer.parseInt(v.trim()));
+    }
+    v = props.getProperty(MUL_KERNEL);
+    if (v != null) {
+      MatrixMultiplication.kernel(MatrixMultiplication.Kernel.valueOf(v.trim()));
+    }
+    v = props.getProperty(MUL_PARALLEL);
+    if (v != null) {
+      MatrixMultiplication.parallelThreshold(Long.parseLong(v.trim()));
+    }
+  }
+
+  /**
+   * Loads calibration properties from a file.
+   *
+   * @param path calibration file
+   * @return calibration properties
+   * @throws IOException if the file cannot be read
+   */
+  public static Properties load(final Path path) throws IOException {
+    Properties props = new Properties();
+    try (InputStream in = Files.newInputStream(path)) {
+      props.load(in);
+    }
+    return props;
+  }
+
+  /**
+   * Stores calibration properties into a file.
+   *
+   * @param props calibration properties
+   * @param path  calibration file
+   * @throws IOException if the file cannot be written
+   */
+  public static void store(final Properties props, final Path path) throws IOException {
+    try (OutputStream out = Files.newOutputStream(path)) {
+      props.store(out, "bla calibration: " + System.getProperty("os.arch") + ", "
+          + Runtime.getRuntime().availableProcessors() + " cores");
+    }
+  }
+
+  /**
+   * Runs the micro-benchmarks and returns the best values for the current machine.
+   * It does not change the values used by the bla kernels, see {@link #apply(Properties)}.
+   *
+   * @return calibration properties
+   */
+  public static Properties calibrate() {
+    Properties props = new Properties();
+    props.setProperty(TR_BLK, Integer.toString(transposeBlock()));
+    int blk = mulBlock();
+    props.setProperty(MUL_BLK, Integer.toString(blk));
+    props.setProperty(MUL_KERNEL, mulKernel(blk).name());
+    props.setProperty(MUL_PARALLEL, Long.toString(parallelThreshold()));
+    return props;
+  }
+
+  /**
+   * Selects the block size of the cache-oblivious transpose.
+   */
+  private static int transposeBlock() {
+    final int rows = 1024, cols = 768;
+    double a[] = ArrayUtils.random(rows * cols), at[] = new double[a.length];
+    int rv = BLKS[0];
+    long best = Long.MAX_VALUE;
+    for (int blk : BLKS) {
+      long t = time(() -> MatrixTranspose.cotr(a, at, rows, cols, blk));
+      if (t < best) {
+        best = t;
+        rv = blk;
+      }
+    }
+    return rv;
+  }
+
+  /**
+   * Selects the block size of the cache-oblivious multiplication.
+   */
+  private static int mulBlock() {
+    final int n = 256;
+    double a[] = ArrayUtils.random(n * n), b[] = ArrayUtils.random(n * n), c[] = new double[n * n];
+    int rv = BLKS[0];
+    long best = Long.MAX_VALUE;
+    for (int blk : BLKS) {
+      long t = time(() -> {
+        Arrays.fill(c, 0.0);
+        MatrixMultiplication.comul(a, b, c, n, n, n, blk);
+      });
+      if (t < best) {
+        best = t;
+        rv = blk;
+      }
+    }
+    return rv;
+  }
+
+  /**
+   * Selects the kernel used to multiply small matrices.
+   */
+  private static MatrixMultiplication.Kernel mulKernel(final int blk) {
+    final int n = 48;
+    double a[] = ArrayUtils.random(n * n), b[] = ArrayUtils.random(n * n), c[] = new double[n * n];
+    MatrixMultiplication.Kernel rv = MatrixMultiplication.Kernel.COMUL;
+    long best = Long.MAX_VALUE;
+    int oldBlk = MatrixMultiplication.blockSize();
+    MatrixMultiplication.blockSize(blk);
+    try {
+      for (MatrixMultiplication.Kernel k : MatrixMultiplication.Kernel.values()) {
+        long t = time(() -> {
+          for (int i = 0; i < 32; i++) {
+            Arrays.fill(c, 0.0);
+            MatrixMultiplication.smul(a, b, c, n, n, n, k);
+          }
+        });
+        if (t < best) {
+          best = t;
+          rv = k;
+        }
+      }
+    } finally {
+      MatrixMultiplication.blockSize(oldBlk);
+    }
+    return rv;
+  }
+
+  /**
+   * Selects the parallel multiplication threshold.
+   * It is the work of the smallest square multiplication where the parallel
+   * version is consistently faster than the sequential one.
+   */
+  private static long parallelThreshold() {
+    long rv = MatrixMultiplication.parallelThreshold();
+    if (ForkJoinPool.getCommonPoolParallelism() > 1) {
+      rv = Long.MAX_VALUE;
+      for (int i = PSIZES.length - 1; i >= 0; i--) {
+        final int n = PSIZES[i];
+        double a[] = ArrayUtils.random(n * n), b[] = ArrayUtils.random(n * n), c[] = new double[n * n];
+        long ts = time(() -> MatrixMultiplication.gemm(a, b, c, n, n, n)),
+            tp = time(() -> MatrixMultiplication.pmul(a, b, c, n, n, n));
+        if (tp < ts) {
+          rv = (long) n * n * n;
+        } else {
+          break;
+        }
+      }
+    }
+    return rv;
+  }
+
+  /**
+   * Returns the best execution time (in nanoseconds) of several runs, after a warm-up.
+   */
+  private static long time(final Runnable r) {
+    for (int i = 0; i < REPS; i++) {
+      r.run();
+    }
+    long best = Long.MAX_VALUE;
+    for (int i = 0; i < REPS; i++) {
+      long start = System.nanoTime();
+      r.run();
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best;
+  }
+
+  /**
+   * Calibrates the current machine and stores the results into the calibration file.
+   *
+   * @param args not used
+   * @throws IOException if the calibration file cannot be written
+   */
+  public static void main(String[] args) throws IOException {
+    Properties props = calibrate();
+    Path path = path();
+    store(props, path);
+    System.out.println("Calibration stored in " + path + ": " + props);
+  }
+}
@@ -0,0 +1,542 @@
+package pt.it.av.atnog.utils.bla;
+
+import pt.it.av.atnog.utils.ArrayUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Lazy matrix expression (expression template).
+ * <p>
+ * The operations only build a small expression tree, nothing is computed until {@link #eval()}.
+ * Chains of elementwise operations are fused: the output is computed in chunks of {@value #CHUNK}
+ * elements that fit in the L1 cache, with a single output allocation and a single pass over the operands
+ * (large expressions are evaluated in parallel).
+ * Chains of matrix products are evaluated in the cheapest association order
+ * (e.g. {@code W H H^T} is computed as {@code W (H H^T)} when W has many rows),
+ * before the elementwise operations that use them.
+ * The operands are read when the expression is evaluated and the products are materialized
+ * again on every evaluation, so an expression can be re-evaluated after its operands change.
+ * </p>
+ * <p>
+ * Example: {@code A.lazy().add(B).mul(2.0).sub(C).eval()} computes {@code 2(A + B) - C}
+ * without temporary matrices.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public abstract class MatrixExpression {
+  /**
+   * Number of elements computed at once by the fused loop.
+   */
+  protected static final int CHUNK = 1 << 10;
+  private static final int P_CHUNKS = 16;
+  protected final int rows, cols;
+
+  /**
+   * Elementwise operations.
+   */
+  private enum Op {ADD, SUB, MUL, DIV}
+
+  private MatrixExpression(final int rows, final int cols) {
+    this.rows = rows;
+    this.cols = cols;
+  }
+
+  /**
+   * Returns the expression of an array (the array is not copied).
+   *
+   * @param data array with the elements (row-major)
+   * @param bIdx index of the first element
+   * @param rows number of rows
+   * @param cols number of columns
+   * @return the expression of the array
+   */
+  public static MatrixExpression of(final double data[], final int bIdx, final int rows, final int cols) {
+    return new Leaf(data, bIdx, rows, cols);
+  }
+
+  /**
+   * Returns the expression of a matrix (the matrix is not copied).
+   *
+   * @param A matrix
+   * @return the expression of the matrix
+   */
+  public static MatrixExpression of(final Matrix A) {
+    return new Leaf(A.data, 0, A.rows, A.cols);
+  }
+
+  /**
+   * Returns the expression of a vector, as a column matrix (the vector is not copied).
+   *
+   * @param v vector
+   * @return the expression of the vector
+   */
+  public static MatrixExpression of(final Vector v) {
+    return new Leaf(v.data, v.bIdx, v.len, 1);
+  }
+
+  /**
+   * Returns the expression of a strided view (the view is not copied).
+   *
+   * @param A view
+   * @return the expression of the view
+   */
+  public static MatrixExpression of(final MatrixView A) {
+    if (A.isContiguous())
+      return new Leaf(A.data, A.offset, A.rows, A.cols);
+    return new View(A);
+  }
+
+  /**
+   * Returns the number of rows.
+   *
+   * @return the number of rows
+   */
+  public int rows() {
+    return rows;
+  }
+
+  /**
+   * Returns the number of columns.
+   *
+   * @return the number of columns
+   */
+  public int columns() {
+    return cols;
+  }
+
+  public MatrixExpression add(final MatrixExpression b) {
+    return new Binary(Op.ADD, this, b);
+  }
+
+  public MatrixExpression add(final Matrix B) {
+    return add(of(B));
+  }
+
+  public MatrixExpression add(final MatrixView B) {
+    return add(of(B));
+  }
+
+  public MatrixExpression add(final double scalar) {
+    return new Scalar(Op.ADD, this, scalar);
+  }
+
+  public MatrixExpression sub(final MatrixExpression b) {
+    return new Binary(Op.SUB, this, b);
+  }
+
+  public MatrixExpression sub(final Matrix B) {
+    return sub(of(B));
+  }
+
+  public MatrixExpression sub(final MatrixView B) {
+    return sub(of(B));
+  }
+
+  public MatrixExpression sub(final double scalar) {
+    return new Scalar(Op.SUB, this, scalar);
+  }
+
+  public MatrixExpression mul(final double scalar) {
+    return new Scalar(Op.MUL, this, scalar);
+  }
+
+  public MatrixExpression div(final double scalar) {
+    return new Scalar(Op.DIV, this, scalar);
+  }
+
+  /**
+   * Elementwise product.
+   *
+   * @param b expression with the same dimensions
+   * @return the elementwise product
+   */
+  public MatrixExpression hadamard(final MatrixExpression b) {
+    return new Binary(Op.MUL, this, b);
+  }
+
+  public MatrixExpression hadamard(final Matrix B) {
+    return hadamard(of(B));
+  }
+
+  /**
+   * Elementwise division.
+   *
+   * @param b expression with the same dimensions
+   * @return the elementwise division
+   */
+  public MatrixExpression div(final MatrixExpression b) {
+    return new Binary(Op.DIV, this, b);
+  }
+
+  public MatrixExpression div(final Matrix B) {
+    return div(of(B));
+  }
+
+  /**
+   * Matrix product. Consecutive products form a chain
+   * that is evaluated in the cheapest association order.
+   *
+   * @param b expression with {@link #columns()} rows
+   * @return the matrix product
+   */
+  public MatrixExpression mul(final MatrixExpression b) {
+    return new Product(this, b);
+  }
+
+  public MatrixExpression mul(final Matrix B) {
+    return mul(of(B));
+  }
+
+  /**
+   * Evaluates the expression into a new matrix.
+   *
+   * @return the value of the expression
+   */
+  public Matrix eval() {
+    Matrix C = new Matrix(rows, cols);
+    eval(C.data, 0);
+    return C;
+  }
+
+  /**
+   * Evaluates the expression into a new vector (with all the elements, row-major).
+   *
+   * @return the value of the expression
+   */
+  public Vector vector() {
+    return new Vector(eval().data);
+  }
+
+  /**
+   * Evaluates the expression into an array.
+   * The array must not be one of the operands of the expression.
+   *
+   * @param c    output array
+   * @param cIdx index of the first output element
+   */
+  public void eval(final double c[], final int cIdx) {
+    prepare();
+    try {
+      fuse(c, cIdx);
+    } finally {
+      release();
+    }
+  }
+
+  /**
+   * Runs the fused loop of the elementwise operations.
+   */
+  private void fuse(final double c[], final int cIdx) {
+    final int len = rows * cols, chunks = (len + CHUNK - 1) / CHUNK, depth = depth();
+    final boolean parallel = chunks >= 2 * P_CHUNKS && ForkJoinPool.getCommonPoolParallelism() > 1;
+    MatrixTranspose.range(chunks, P_CHUNKS, parallel, (b, e) -> {
+      final double tmp[][] = new double[depth][CHUNK];
+      for (int i = b; i < e; i++) {
+        final int from = i * CHUNK;
+        compute(c, cIdx + from, from, Math.min(CHUNK, len - from), tmp, 0);
+      }
+    });
+  }
+
+  /**
+   * Evaluates the (non elementwise) subexpressions.
+   */
+  abstract void prepare();
+
+  /**
+   * Drops the subexpressions evaluated by {@link #prepare()}.
+   */
+  abstract void release();
+
+  /**
+   * Returns the number of temporary chunks needed by the fused loop.
+   */
+  abstract int depth();
+
+  /**
+   * Computes the elements [from, from + len[ into out[oIdx...].
+   */
+  abstract void compute(double out[], int oIdx, int from, int len, double tmp[][], int level);
+
+  /**
+   * Applies an elementwise operation: c = a op b.
+   */
+  private static void apply(final Op op, final double a[], final int aIdx, final double b[], final int bIdx,
+                            final double c[], final int cIdx, final int len) {
+    switch (op) {
+      case ADD:
+        ArrayUtils.add(a, aIdx, b, bIdx, c, cIdx, len);
+        break;
+      case SUB:
+        ArrayUtils.sub(a, aIdx, b, bIdx, c, cIdx, len);
+        break;
+      case MUL:
+        ArrayUtils.mul(a, aIdx, b, bIdx, c, cIdx, len);
+        break;
+      default:
+        ArrayUtils.div(a, aIdx, b, bIdx, c, cIdx, len);
+    }
+  }
+
+  /**
+   * Array (or materialized product) operand.
+   */
+  private static class Leaf extends MatrixExpression {
+    protected double data[];
+    protected int bIdx;
+
+    Leaf(final double data[], final int bIdx, final int rows, final int cols) {
+      super(rows, cols);
+      this.data = data;
+      this.bIdx = bIdx;
+    }
+
+    @Override
+    void prepare() {
+    }
+
+    @Override
+    void release() {
+    }
+
+    @Override
+    int depth() {
+      return 0;
+    }
+
+    @Override
+    void compute(final double out[], final int oIdx, final int from, final int len,
+                 final double tmp[][], final int level) {
+      System.arraycopy(data, bIdx + from, out, oIdx, len);
+    }
+  }
+
+  /**
+   * Strided view operand, the elements are gathered into the chunk.
+   */
+  private static class View extends MatrixExpression {
+    private final MatrixView v;
+
+    View(final MatrixView v) {
+      super(v.rows, v.cols);
+      this.v = v;
+    }
+
+    @Override
+    void prepare() {
+    }
+
+    @Override
+    void release() {
+    }
+
+    @Override
+    int depth() {
+      return 0;
+    }
+
+    @Override
+    void compute(final double out[], final int oIdx, final int from, final int len,
+                 final double tmp[][], final int level) {
+      int i = from / cols, j = from % cols;
+      for (int k = 0; k < len; k++) {
+        out[oIdx + k] = v.data[v.offset + i * v.rs + j * v.cs];
+        if (++j == cols) {
+          j = 0;
+          i++;
+        }
+      }
+    }
+  }
+
+  /**
+   * Elementwise operation between two expressions.
+   */
+  private static class Binary extends MatrixExpression {
+    private final Op op;
+    private final MatrixExpression a, b;
+
+    Binary(final Op op, final MatrixExpression a, final MatrixExpression b) {
+      super(a.rows, a.cols);
+      if (a.rows != b.rows || a.cols != b.cols) {
+        throw new IllegalArgumentException("The expressions must have the same dimensions.");
+      }
+      this.op = op;
+      this.a = a;
+      this.b = b;
+    }
+
+    @Override
+    void prepare() {
+      a.prepare();
+      b.prepare();
+    }
+
+    @Override
+    void release() {
+      a.release();
+      b.release();
+    }
+
+    @Override
+    int depth() {
+      return b instanceof Leaf ? a.depth() : 1 + Math.max(a.depth(), b.depth());
+    }
+
+    @Override
+    void compute(final double out[], final int oIdx, final int from, final int len,
+                 final double tmp[][], final int level) {
+      if (b instanceof Leaf) {
+        final Leaf l = (Leaf) b;
+        if (a instanceof Leaf) {
+          final Leaf r = (Leaf) a;
+          apply(op, r.data, r.bIdx + from, l.data, l.bIdx + from, out, oIdx, len);
+        } else {
+          a.compute(out, oIdx, from, len, tmp, level);
+          apply(op, out, oIdx, l.data, l.bIdx + from, out, oIdx, len);
+        }
+      } else {
+        b.compute(tmp[level], 0, from, len, tmp, level + 1);
+        a.compute(out, oIdx, from, len, tmp, level + 1);
+        apply(op, out, oIdx, tmp[level], 0, out, oIdx, len);
+      }
+    }
+  }
+
+  /**
+   * Elementwise operation between an expression and a scalar.
+   */
+  private static class Scalar extends MatrixExpression {
+    private final Op op;
+    private final MatrixExpression a;
+    private final double scalar;
+
+    Scalar(final Op op, final MatrixExpression a, final double scalar) {
+      super(a.rows, a.cols);
+      this.op = op;
+      this.a = a;
+      this.scalar = scalar;
+    }
+
+    @Override
+    void prepare() {
+      a.prepare();
+    }
+
+    @Override
+    void release() {
+      a.release();
+    }
+
+    @Override
+    int depth() {
+      return a.depth();
+    }
+
+    @Override
+    void compute(final double out[], final int oIdx, final int from, final int len,
+                 final double tmp[][], final int level) {
+      final double src[];
+      final int sIdx;
+      if (a instanceof Leaf) {
+        src = ((Leaf) a).data;
+        sIdx = ((Leaf) a).bIdx + from;
+      } else {
+        a.compute(out, oIdx, from, len, tmp, level);
+        src = out;
+        sIdx = oIdx;
+      }
+      switch (op) {
+        case ADD:
+          ArrayUtils.add(src, sIdx, scalar, out, oIdx, len);
+          break;
+        case SUB:
+          ArrayUtils.sub(src, sIdx, scalar, out, oIdx, len);
+          break;
+        case MUL:
+          ArrayUtils.mul(src, sIdx, scalar, out, oIdx, len);
+          break;
+        default:
+          ArrayUtils.div(src, sIdx, scalar, out, oIdx, len);
+      }
+    }
+  }
+
+  /**
+   * Chain of matrix products, it is materialized before the fused loop of each evaluation.
+   */
+  private static class Product extends Leaf {
+    private final List<MatrixExpression> factors = new ArrayList<>();
+
+    Product(final MatrixExpression a, final MatrixExpression b) {
+      super(null, 0, a.rows, b.cols);
+      if (a.cols != b.rows) {
+        throw new IllegalArgumentException("The number of columns must match the number of rows.");
+      }
+      factor(a);
+      factor(b);
+    }
+
+    private void factor(final MatrixExpression e) {
+      if (e instanceof Product && ((Product) e).data == null)
+        factors.addAll(((Product) e).factors);
+      else
+        factors.add(e);
+    }
+
+    @Override
+    void prepare() {
+      if (data == null) {
+        final int n = factors.size();
+        final Matrix m[] = new Matrix[n];
+        for (int i = 0; i < n; i++) {
+          final MatrixExpression f = factors.get(i);
+          if (f instanceof Leaf && !(f instanceof Product) && ((Leaf) f).bIdx == 0
+              && ((Leaf) f).data.length == f.rows * f.cols) {
+            m[i] = new Matrix(f.rows, f.cols, ((Leaf) f).data);
+          } else {
+            m[i] = f.eval();
+          }
+        }
+        data = multiply(m, order(m), 0, n - 1).data;
+      }
+    }
+
+    @Override
+    void release() {
+      data = null;
+    }
+
+    /**
+     * Matrix chain ordering (dynamic programming), s[i][j] is the split of the product i..j.
+     */
+    private static int[][] order(final Matrix m[]) {
+      final int n = m.length;
+      final long cost[][] = new long[n][n];
+      final int s[][] = new int[n][n];
+      for (int l = 1; l < n; l++)
+        for (int i = 0; i + l < n; i++) {
+          final int j = i + l;
+          cost[i][j] = Long.MAX_VALUE;
+          for (int k = i; k < j; k++) {
+            final long c = cost[i][k] + cost[k + 1][j] + (long) m[i].rows * m[k].cols * m[j].cols;
+            if (c < cost[i][j]) {
+              cost[i][j] = c;
+              s[i][j] = k;
+            }
+          }
+        }
+      return s;
+    }
+
+    private static Matrix multiply(final Matrix m[], final int s[][], final int i, final int j) {
+      if (i == j)
+        return m[i];
+      return multiply(m, s, i, s[i][j]).mul(multiply(m, s, s[i][j] + 1, j));
+    }
+  }
+}
@@ -0,0 +1,444 @@
+package pt.it.av.atnog.utils.bla;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary serialization of matrices and vectors.
+ * <p>
+ * Each record has a header with {@value #HEADER} bytes (always big-endian):
+ * the magic number {@code BLA1}, the data type, the byte order of the values,
+ * two reserved bytes and the number of rows and columns.
+ * The header is followed by the raw values in row-major order.
+ * A vector is stored as a matrix with a single row.
+ * Several records can be stored in the same file (e.g. the factors of a NMF).
+ * </p>
+ * <p>
+ * The values are transferred through NIO channels in large direct buffers,
+ * and the values of a file can be mapped directly, see {@link #map(Path, boolean)}.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public final class MatrixIO {
+  /**
+   * Size (in bytes) of the record header.
+   */
+  public static final int HEADER = 16;
+  private static final int MAGIC = 0x424C4131, CHUNK = 1 << 16;
+
+  /**
+   * Data type of the values.
+   */
+  public enum DType {
+    FLOAT64(Double.BYTES), FLOAT32(Float.BYTES);
+
+    private final int bytes;
+
+    DType(int bytes) {
+      this.bytes = bytes;
+    }
+
+    /**
+     * Returns the size (in bytes) of a value.
+     *
+     * @return the size (in bytes) of a value
+     */
+    public int bytes() {
+      return bytes;
+    }
+  }
+
+  /**
+   * Header of a record.
+   */
+  public static final class Header {
+    public final int rows, cols;
+    public final DType dtype;
+    public final ByteOrder order;
+
+    public Header(int rows, int cols, DType dtype, ByteOrder order) {
+      this.rows = rows;
+      this.cols = cols;
+      this.dtype = dtype;
+      this.order = order;
+    }
+
+    /**
+     * Returns the size (in bytes) of the values.
+     *
+     * @return the size (in bytes) of the values
+     */
+    public long dataSize() {
+      return (long) rows * cols * dtype.bytes;
+    }
+
+    @Override
+    public String toString() {
+      return rows + "x" + cols + " " + dtype + " " + order;
+    }
+  }
+
+  /**
+   * Utility class, lets make the constructor private.
+   */
+  private MatrixIO() {
+  }
+
+  /**
+   * Writes the header of a record.
+   */
+  private static void writeHeader(final WritableByteChannel ch, final Header h) throws IOException {
+    ByteBuffer b = ByteBuffer.allocate(HEADER).order(ByteOrder.BIG_ENDIAN);
+    b.putInt(MAGIC).put((byte) h.dtype.ordinal())
+        .put((byte) (h.order == ByteOrder.BIG_ENDIAN ? 0 : 1)).putShort((short) 0)
+        .putInt(h.rows).putInt(h.cols).flip();
+    while (b.hasRemaining())
+      ch.write(b);
+  }
+
+  /**
+   * Reads the header of a record.
+   *
+   * @param ch channel
+   * @return the header, or null if the channel is at the end of the stream
+   * @throws IOException if the channel cannot be read or the header is invalid
+   */
+  public static Header readHeader(final ReadableByteChannel ch) throws IOException {
+    ByteBuffer b = ByteBuffer.allocate(HEADER).order(ByteOrder.BIG_ENDIAN);
+    if (!fill(ch, b, true))
+      return null;
+    b.flip();
+    if (b.getInt() != MAGIC)
+      throw new IOException("Invalid matrix record.");
+    int dtype = b.get(), order = b.get();
+    b.getShort();
+    if (dtype < 0 || dtype >= DType.values().length || order < 0 || order > 1)
+      throw new IOException("Invalid matrix record.");
+    final int rows = b.getInt(), cols = b.getInt();
+    // the data of a record must fit into a single array
+    if (rows < 0 || cols < 0 || (long) rows * cols > Integer.MAX_VALUE)
+      throw new IOException("Invalid matrix record.");
+    return new Header(rows, cols, DType.values()[dtype],
+        order == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Reads the header of the first record of a file.
+   *
+   * @param path file
+   * @return the header
+   * @throws IOException if the file cannot be read or the header is invalid
+   */
+  public static Header readHeader(final Path path) throws IOException {
+    try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+      Header h = readHeader(fc);
+      if (h == null)
+        throw new EOFException();
+      return h;
+    }
+  }
+
+  /**
+   * Fills a buffer from a channel.
+   * Returns false if the stream ends before any byte was read and {@code eof} is true.
+   */
+  private static boolean fill(final ReadableByteChannel ch, final ByteBuffer b, final boolean eof)
+      throws IOException {
+    while (b.hasRemaining()) {
+      if (ch.read(b) < 0) {
+        if (eof && b.position() == 0)
+          return false;
+        throw new EOFException();
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes a matrix into a channel (native byte order).
+   *
+   * @param ch channel
+   * @param M  matrix
+   * @throws IOException if the channel cannot be written
+   */
+  public static void write(final WritableByteChannel ch, final Matrix M) throws IOException {
+    write(ch, M.data, 0, M.rows, M.cols);
+  }
+
+  /**
+   * Writes a vector into a channel (native byte order).
+   *
+   * @param ch channel
+   * @param v  vector
+   * @throws IOException if the channel cannot be written
+   */
+  public static void write(final WritableByteChannel ch, final Vector v) throws IOException {
+    write(ch, v.data, v.bIdx, 1, v.len);
+  }
+
+  /**
+   * Writes a single precision matrix into a channel (native byte order).
+   *
+   * @param ch channel
+   * @param M  matrix
+   * @throws IOException if the channel cannot be written
+   */
+  public static void write(final WritableByteChannel ch, final FloatMatrix M) throws IOException {
+    ByteOrder order = ByteOrder.nativeOrder();
+    writeHeader(ch, new Header(M.rows, M.cols, DType.FLOAT32, order));
+    ByteBuffer b = ByteBuffer.allocateDirect(CHUNK).order(order);
+    for (int i = 0, len = M.data.length; i < len; ) {
+      int l = Math.min(CHUNK / Float.BYTES, len - i);
+      b.clear();
+      b.asFloatBuffer().put(M.data, i, l);
+      b.limit(l * Float.BYTES);
+      while (b.hasRemaining())
+        ch.write(b);
+      i += l;
+    }
+  }
+
+  /**
+   * Writes a double precision record into a channel.
+   */
+  private static void write(final WritableByteChannel ch, final double data[], final int off,
+                            final int rows, final int cols) throws IOException {
+    ByteOrder order = ByteOrder.nativeOrder();
+    writeHeader(ch, new Header(rows, cols, DType.FLOAT64, order));
+    ByteBuffer b = ByteBuffer.allocateDirect(CHUNK).order(order);
+    for (int i = 0, len = rows * cols; i < len; ) {
+      int l = Math.min(CHUNK / Double.BYTES, len - i);
+      b.clear();
+      b.asDoubleBuffer().put(data, off + i, l);
+      b.limit(l * Double.BYTES);
+      while (b.hasRemaining())
+        ch.write(b);
+      i += l;
+    }
+  }
+
+  /**
+   * Reads values from a channel into a double array (converting single precision values).
+   */
+  private static void read(final ReadableByteChannel ch, final Header h, final double data[],
+                           final int off, final int len) throws IOException {
+    ByteBuffer b = ByteBuffer.allocateDirect(CHUNK).order(h.order);
+    final int bytes = h.dtype.bytes();
+    for (int i = 0; i < len; ) {
+      int l = Math.min(CHUNK / bytes, len - i);
+      b.clear();
+      b.limit(l * bytes);
+      fill(ch, b, false);
+      b.flip();
+      if (h.dtype == DType.FLOAT64) {
+        b.asDoubleBuffer().get(data, off + i, l);
+      } else {
+        for (int j = 0; j < l; j++)
+          data[off + i + j] = b.getFloat();
+      }
+      i += l;
+    }
+  }
+
+  /**
+   * Reads values from a channel into a float array (converting double precision values).
+   */
+  private static void read(final ReadableByteChannel ch, final Header h, final float data[])
+      throws IOException {
+    ByteBuffer b = ByteBuffer.allocateDirect(CHUNK).order(h.order);
+    final int bytes = h.dtype.bytes();
+    for (int i = 0, len = data.length; i < len; ) {
+      int l = Math.min(CHUNK / bytes, len - i);
+      b.clear();
+      b.limit(l * bytes);
+      fill(ch, b, false);
+      b.flip();
+      if (h.dtype == DType.FLOAT32) {
+        b.asFloatBuffer().get(data, i, l);
+      } else {
+        for (int j = 0; j < l; j++)
+          data[i + j] = (float) b.getDouble();
+      }
+      i += l;
+    }
+  }
+
+  /**
+   * Reads a matrix from a channel.
+   *
+   * @param ch channel
+   * @return the matrix, or null if the channel is at the end of the stream
+   * @throws IOException if the channel cannot be read or the record is invalid
+   */
+  public static Matrix readMatrix(final ReadableByteChannel ch) throws IOException {
+    Header h = readHeader(ch);
+    Matrix M = null;
+    if (h != null) {
+      M = new Matrix(h.rows, h.cols);
+      read(ch, h, M.data, 0, M.data.length);
+    }
+    return M;
+  }
+
+  /**
+   * Reads a vector from a channel.
+   * The values of a matrix are returned in row-major order.
+   *
+   * @param ch channel
+   * @return the vector, or null if the channel is at the end of the stream
+   * @throws IOException if the channel cannot be read or the record is invalid
+   */
+  public static Vector readVector(final ReadableByteChannel ch) throws IOException {
+    Matrix M = readMatrix(ch);
+    return M == null ? null : new Vector(M.data);
+  }
+
+  /**
+   * Reads a single precision matrix from a channel.
+   *
+   * @param ch channel
+   * @return the matrix, or null if the channel is at the end of the stream
+   * @throws IOException if the channel cannot be read or the record is invalid
+   */
+  public static FloatMatrix readFloatMatrix(final ReadableByteChannel ch) throws IOException {
+    Header h = readHeader(ch);
+    FloatMatrix M = null;
+    if (h != null) {
+      M = new FloatMatrix(h.rows, h.cols);
+      read(ch, h, M.data);
+    }
+    return M;
+  }
+
+  /**
+   * Writes matrices into a file.
+   * The file is written into a temporary file that atomically replaces the target,
+   * as such a reader never observes a partially written file (e.g. checkpoints).
+   *
+   * @param path file
+   * @param M    matrices
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(final Path path, final Matrix... M) throws IOException {
+    Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+    try (FileChannel fc = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      for (Matrix m : M)
+        write(fc, m);
+      fc.force(false);
+    }
+    Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Writes a vector into a file.
+   *
+   * @param path file
+   * @param v    vector
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(final Path path, final Vector v) throws IOException {
+    Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+    try (FileChannel fc = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      write(fc, v);
+      fc.force(false);
+    }
+    Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Reads the first matrix of a file.
+   *
+   * @param path file
+   * @return the matrix
+   * @throws IOException if the file cannot be read or the record is invalid
+   */
+  public static Matrix readMatrix(final Path path) throws IOException {
+    try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+      Matrix M = readMatrix(fc);
+      if (M == null)
+        throw new EOFException();
+      return M;
+    }
+  }
+
+  /**
+   * Reads all the matrices of a file.
+   *
+   * @param path file
+   * @return the matrices
+   * @throws IOException if the file cannot be read or a record is invalid
+   */
+  public static Matrix[] readMatrices(final Path path) throws IOException {
+    List<Matrix> rv = new ArrayList<>();
+    try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+      for (Matrix M = readMatrix(fc); M != null; M = readMatrix(fc))
+        rv.add(M);
+    }
+    return rv.toArray(new Matrix[0]);
+  }
+
+  /**
+   * Reads the first vector of a file.
+   *
+   * @param path file
+   * @return the vector
+   * @throws IOException if the file cannot be read or the record is invalid
+   */
+  public static Vector readVector(final Path path) throws IOException {
+    return new Vector(readMatrix(path).data);
+  }
+
+  /**
+   * Reads the rows [r, r+n[ of the first matrix of a file,
+   * without reading the remaining rows.
+   *
+   * @param path file
+   * @param r    first row
+   * @param n    number of rows
+   * @return a matrix (n x cols) with the rows
+   * @throws IOException if the file cannot be read or the record is invalid
+   */
+  public static Matrix readRows(final Path path, final int r, final int n) throws IOException {
+    try (FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+      Header h = readHeader(fc);
+      if (h == null)
+        throw new EOFException();
+      if (r < 0 || n < 0 || r + n > h.rows)
+        throw new IndexOutOfBoundsException("Rows [" + r + ", " + (r + n) + "[ of " + h);
+      fc.position(HEADER + (long) r * h.cols * h.dtype.bytes());
+      Matrix M = new Matrix(n, h.cols);
+      read(fc, h, M.data, 0, M.data.length);
+      return M;
+    }
+  }
+
+  /**
+   * Maps the first matrix of a file (double precision values).
+   *
+   * @param path     file
+   * @param readOnly map the file in read-only mode
+   * @return the mapped matrix
+   * @throws IOException if the file cannot be mapped or the record is invalid
+   */
+  public static MappedMatrix map(final Path path, final boolean readOnly) throws IOException {
+    Header h = readHeader(path);
+    if (h.dtype != DType.FLOAT64)
+      throw new IOException("Only double precision matrices can be mapped.");
+    return MappedMatrix.open(path, HEADER, h.rows, h.cols, h.order, readOnly);
+  }
+}
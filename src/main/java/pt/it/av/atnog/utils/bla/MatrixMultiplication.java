@@ -1,9 +1,8 @@
 package pt.it.av.atnog.utils.bla;
 
-import pt.it.av.atnog.utils.parallel.ThreadPool;
-
-import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Several implementation of matrix multiplication.
@@ -13,8 +12,16 @@ import java.util.concurrent.BlockingQueue;
  */
 public class MatrixMultiplication {
 
-  private static final int P_MUL_SIZE = 4096;
-  private static final int BLK = 64;
+  private static final int S_MUL_SIZE = 4096;
+  // minimal number of multiply-add operations (m * n * p) to use the parallel gemm
+  private static volatile long P_MUL_WORK = 1L << 21;
+  private static volatile int BLK = 64;
+  // kernel used to multiply matrices smaller than S_MUL_SIZE
+  private static volatile Kernel S_KERNEL = Kernel.COMUL;
+  // register tile of the gemm micro-kernel (MR x NR)
+  protected static final int MR = 4, NR = 8;
+  // cache blocking of the gemm packed panels
+  private static final int MC = 128, KC = 256, NC = 2048;
 
   /**
    * @param a
@@ -31,7 +38,7 @@ public class MatrixMultiplication {
         for (int k = 0; k < p; k++) {
           v += a[i * p + k] * b[k * n + j];
         }
-        c[i * n + j] = v;
+        c[i * n + j] += v;
       }
     }
   }
@@ -79,57 +86,162 @@ public class MatrixMultiplication {
     return c;
   }
 
+  /**
+   * Parallel matrix multiplication (C += A * B).
+   * The output matrix is recursively split into 2D blocks that are computed by
+   * the packed {@link #gemm} kernel on the common {@link ForkJoinPool}.
+   *
+   * @param a array with the left matrix (m x p)
+   * @param b array with the right matrix (p x n)
+   * @param c array with the result matrix (m x n)
+   * @param m number of rows of A and C
+   * @param n number of columns of B and C
+   * @param p number of columns of A and rows of B
+   * @return {@code c} array filled with the result
+   */
   protected static double[] pmul(double a[], double b[], double c[], int m, int n, int p) {
-    ThreadPool tp = new ThreadPool((Object o, List<Object> l) -> {
-      int i = (Integer) o;
-      int in = i * n;
-      for (int k = 0; k < p; k++) {
-        int kn = k * n;
-        double v = a[i * p + k];
-        for (int j = 0; j < n; j++) {
-          c[in + j] += v * b[kn + j];
-        }
-      }
-    });
+    return pgemm(a, p, 1, b, n, 1, c, m, n, p);
+  }
 
-    BlockingQueue<Object> sink = tp.sink();
-    tp.start();
+  /**
+   * Parallel matrix multiplication with a transposed right matrix (C = A * B).
+   *
+   * @param a  array with the left matrix (m x p)
+   * @param bt array with the transpose of the right matrix (n x p)
+   * @param c  array with the result matrix (m x n)
+   * @param m  number of rows of A and C
+   * @param n  number of rows of BT and columns of C
+   * @param p  number of columns of A and BT
+   * @return {@code c} array filled with the result
+   */
+  protected static double[] pmult(double a[], double bt[], double c[], int m, int n, int p) {
+    Arrays.fill(c, 0, m * n, 0.0);
+    return pgemm(a, p, 1, bt, 1, p, c, m, n, p);
+  }
 
-    try {
-      for (int i = 0; i < m; i++)
-        sink.add(new Integer(i));
-      tp.join();
-    } catch (Exception e) {
-      e.printStackTrace();
-    }
+  /**
+   * Parallel version of the strided {@link #gemm} (C += A * B).
+   *
+   * @param a   array with the left matrix
+   * @param ars row stride of A
+   * @param acs column stride of A
+   * @param b   array with the right matrix
+   * @param brs row stride of B
+   * @param bcs column stride of B
+   * @param c   array with the result matrix
+   * @param m   number of rows of A and C
+   * @param n   number of columns of B and C
+   * @param p   number of columns of A and rows of B
+   * @return {@code c} array filled with the result
+   */
+  protected static double[] pgemm(final double a[], final int ars, final int acs,
+                                  final double b[], final int brs, final int bcs,
+                                  final double c[], final int m, final int n, final int p) {
+    return pgemm(a, 0, ars, acs, b, 0, brs, bcs, c, 0, n, m, n, p);
+  }
+
+  /**
+   * Parallel version of the strided {@link #gemm} with offsets (C += A * B).
+   *
+   * @param a    array with the left matrix
+   * @param aOff index of the first element of A
+   * @param ars  row stride of A
+   * @param acs  column stride of A
+   * @param b    array with the right matrix
+   * @param bOff index of the first element of B
+   * @param brs  row stride of B
+   * @param bcs  column stride of B
+   * @param c    array with the result matrix
+   * @param cOff index of the first element of C
+   * @param ldc  row stride of C
+   * @param m    number of rows of A and C
+   * @param n    number of columns of B and C
+   * @param p    number of columns of A and rows of B
+   * @return {@code c} array filled with the result
+   */
+  protected static double[] pgemm(final double a[], final int aOff, final int ars, final int acs,
+                                  final double b[], final int bOff, final int brs, final int bcs,
+                                  final double c[], final int cOff, final int ldc,
+                                  final int m, final int n, final int p) {
+    parallel(m, n, p, (rb, re, cb, ce) ->
+        gemm(a, aOff + rb * ars, ars, acs, b, bOff + cb * bcs, brs, bcs, c, cOff + rb * ldc + cb, ldc,
+            re - rb, ce - cb, p));
     return c;
   }
 
-  protected static double[] pmult(double a[], double bt[], double c[], int m, int n, int p) {
-    ThreadPool tp = new ThreadPool((Object o, List<Object> l) -> {
-      int i = (Integer) o;
-      int ip = i * p;
-      for (int j = 0; j < n; j++) {
-        double v = 0.0;
-        int jp = j * p;
-        for (int k = 0; k < p; k++) {
-          v += a[ip + k] * bt[jp + k];
-        }
-        c[i * n + j] = v;
-      }
-    });
+  /**
+   * Splits the (m x n) output matrix into blocks that are computed on the common {@link ForkJoinPool}.
+   */
+  private static void parallel(final int m, final int n, final int p, final Block block) {
+    final ForkJoinPool pool = ForkJoinPool.commonPool();
+    // a few blocks per worker to balance the load
+    final long work = Math.max((long) MR * NR * p, (long) m * n * p / (4L * pool.getParallelism()));
+    pool.invoke(new GemmTask(block, 0, m, 0, n, p, work));
+  }
 
-    BlockingQueue<Object> sink = tp.sink();
-    tp.start();
+  /**
+   * Returns the block size used by the cache-oblivious multiplications.
+   *
+   * @return the block size used by the cache-oblivious multiplications
+   */
+  public static int blockSize() {
+    return BLK;
+  }
 
-    try {
-      for (int i = 0; i < m; i++)
-        sink.add(new Integer(i));
-      tp.join();
-    } catch (Exception e) {
-      e.printStackTrace();
+  /**
+   * Sets the block size used by the cache-oblivious multiplications.
+   *
+   * @param blk the block size used by the cache-oblivious multiplications
+   */
+  public static void blockSize(final int blk) {
+    if (blk < 1) {
+      throw new IllegalArgumentException("The block size must be positive.");
     }
-    return c;
+    BLK = blk;
+  }
+
+  /**
+   * Returns the kernel used to multiply small matrices.
+   *
+   * @return the kernel used to multiply small matrices
+   */
+  public static Kernel kernel() {
+    return S_KERNEL;
+  }
+
+  /**
+   * Sets the kernel used to multiply small matrices.
+   *
+   * @param kernel the kernel used to multiply small matrices
+   */
+  public static void kernel(final Kernel kernel) {
+    if (kernel == null) {
+      throw new IllegalArgumentException("The kernel must not be null.");
+    }
+    S_KERNEL = kernel;
+  }
+
+  /**
+   * Returns the minimal number of multiply-add operations (m * n * p)
+   * required to use the parallel multiplication.
+   *
+   * @return the parallel multiplication threshold
+   */
+  public static long parallelThreshold() {
+    return P_MUL_WORK;
+  }
+
+  /**
+   * Sets the minimal number of multiply-add operations (m * n * p)
+   * required to use the parallel multiplication.
+   *
+   * @param work the parallel multiplication threshold
+   */
+  public static void parallelThreshold(final long work) {
+    if (work < 1) {
+      throw new IllegalArgumentException("The parallel threshold must be positive.");
+    }
+    P_MUL_WORK = work;
   }
 
   private static void comulr(double a[], double b[], double c[], int a_rb, int a_re,
@@ -204,6 +316,485 @@ public class MatrixMultiplication {
     return comult(a, b, c, m, n, p, BLK);
   }
 
+  /**
+   * GotoBLAS-style matrix multiplication.
+   * <p>
+   * Panels of A (MC x KC) and B (KC x NC) are packed into contiguous buffers
+   * and multiplied by a register-blocked {@link #MR} x {@link #NR} micro-kernel.
+   * Both operands are accessed through row and column strides,
+   * which allows transposed operands to be used without an explicit transpose.
+   * The result is accumulated into C (C += A * B), C is stored in row-major order.
+   * </p>
+   *
+   * @param a   array with the left matrix
+   * @param ars row stride of A
+   * @param acs column stride of A
+   * @param b   array with the right matrix
+   * @param brs row stride of B
+   * @param bcs column stride of B
+   * @param c   array with the result matrix
+   * @param m   number of rows of A and C
+   * @param n   number of columns of B and C
+   * @param p   number of columns of A and rows of B
+   * @return {@code c} array filled with the result
+   */
+  protected static double[] gemm(final double a[], final int ars, final int acs,
+                                 final double b[], final int brs, final int bcs,
+                                 final double c[], final int m, final int n, final int p) {
+    return gemm(a, 0, ars, acs, b, 0, brs, bcs, c, 0, n, m, n, p);
+  }
+
+  /**
+   * Strided GotoBLAS-style matrix multiplication over sub-matrices (C += A * B).
+   * Used to compute single output blocks of larger matrices.
+   *
+   * @param a    array with the left matrix
+   * @param aOff index of the first element of A
+   * @param ars  row stride of A
+   * @param acs  column stride of A
+   * @param b    array with the right matrix
+   * @param bOff index of the first element of B
+   * @param brs  row stride of B
+   * @param bcs  column stride of B
+   * @param c    array with the result matrix
+   * @param cOff index of the first element of C
+   * @param ldc  row stride of C
+   * @param m    number of rows of A and C
+   * @param n    number of columns of B and C
+   * @param p    number of columns of A and rows of B
+   * @return {@code c} array filled with the result
+   */
+  protected static double[] gemm(final double a[], final int aOff, final int ars, final int acs,
+                                 final double b[], final int bOff, final int brs, final int bcs,
+                                 final double c[], final int cOff, final int ldc,
+                                 final int m, final int n, final int p) {
+    final int mc = Math.min(MC, m), kc = Math.min(KC, p), nc = Math.min(NC, n);
+    final double ap[] = new double[((mc + MR - 1) / MR) * MR * kc],
+        bp[] = new double[kc * ((nc + NR - 1) / NR) * NR], tmp[] = new double[MR * NR];
+    for (int jc = 0; jc < n; jc += NC) {
+      final int nb = Math.min(NC, n - jc);
+      for (int pc = 0; pc < p; pc += KC) {
+        final int kb = Math.min(KC, p - pc);
+        packB(b, bOff, brs, bcs, bp, pc, jc, kb, nb);
+        for (int ic = 0; ic < m; ic += MC) {
+          final int mb = Math.min(MC, m - ic);
+          packA(a, aOff, ars, acs, ap, ic, pc, mb, kb);
+          for (int jr = 0; jr < nb; jr += NR) {
+            for (int ir = 0; ir < mb; ir += MR) {
+              kernel(kb, ap, ir * kb, bp, jr * kb, c, cOff + (ic + ir) * ldc + jc + jr, ldc,
+                  Math.min(MR, mb - ir), Math.min(NR, nb - jr), tmp);
+            }
+          }
+        }
+      }
+    }
+    return c;
+  }
+
+  /**
+   * GotoBLAS-style matrix multiplication of two row-major matrices.
+   *
+   * @param a array with the left matrix (m x p)
+   * @param b array with the right matrix (p x n)
+   * @param c array with the result matrix (m x n)
+   * @param m number of rows of A and C
+   * @param n number of columns of B and C
+   * @param p number of columns of A and rows of B
+   * @return {@code c} array filled with the result
+   */
+  protected static double[] gemm(final double a[], final double b[], final double c[],
+                                 final int m, final int n, final int p) {
+    return gemm(a, p, 1, b, n, 1, c, m, n, p);
+  }
+
+  /**
+   * Packs a (mb x kb) block of A, starting at (ic, pc), into MR-row panels.
+   * Each panel is stored column by column; rows beyond mb are padded with zeros.
+   */
+  private static void packA(final double a[], final int aOff, final int ars, final int acs,
+                            final double ap[], final int ic, final int pc, final int mb,
+                            final int kb) {
+    int idx = 0;
+    for (int ir = 0; ir < mb; ir += MR) {
+      final int mr = Math.min(MR, mb - ir);
+      for (int k = 0; k < kb; k++) {
+        final int base = aOff + (ic + ir) * ars + (pc + k) * acs;
+        int r = 0;
+        for (; r < mr; r++) {
+          ap[idx++] = a[base + r * ars];
+        }
+        for (; r < MR; r++) {
+          ap[idx++] = 0.0;
+        }
+      }
+    }
+  }
+
+  /**
+   * Packs a (kb x nb) block of B, starting at (pc, jc), into NR-column panels.
+   * Each panel is stored row by row; columns beyond nb are padded with zeros.
+   */
+  private static void packB(final double b[], final int bOff, final int brs, final int bcs,
+                            final double bp[], final int pc, final int jc, final int kb,
+                            final int nb) {
+    int idx = 0;
+    for (int jr = 0; jr < nb; jr += NR) {
+      final int nr = Math.min(NR, nb - jr);
+      for (int k = 0; k < kb; k++) {
+        final int base = bOff + (pc + k) * brs + (jc + jr) * bcs;
+        int j = 0;
+        for (; j < nr; j++) {
+          bp[idx++] = b[base + j * bcs];
+        }
+        for (; j < NR; j++) {
+          bp[idx++] = 0.0;
+        }
+      }
+    }
+  }
+
+  /**
+   * Register-blocked micro-kernel, computes a MR x NR tile of C from packed panels.
+   * Partial tiles (mr &lt; MR or nr &lt; NR) are computed in {@code tmp} and then
+   * only the valid region is accumulated into C.
+   */
+  private static void kernel(final int kb, final double ap[], int ai, final double bp[], int bi,
+                             final double c[], final int ci, final int ldc,
+                             final int mr, final int nr, final double tmp[]) {
+    double c00 = 0, c01 = 0, c02 = 0, c03 = 0, c04 = 0, c05 = 0, c06 = 0, c07 = 0,
+        c10 = 0, c11 = 0, c12 = 0, c13 = 0, c14 = 0, c15 = 0, c16 = 0, c17 = 0,
+        c20 = 0, c21 = 0, c22 = 0, c23 = 0, c24 = 0, c25 = 0, c26 = 0, c27 = 0,
+        c30 = 0, c31 = 0, c32 = 0, c33 = 0, c34 = 0, c35 = 0, c36 = 0, c37 = 0;
+    for (int k = 0; k < kb; k++, ai += MR, bi += NR) {
+      final double a0 = ap[ai], a1 = ap[ai + 1], a2 = ap[ai + 2], a3 = ap[ai + 3],
+          b0 = bp[bi], b1 = bp[bi + 1], b2 = bp[bi + 2], b3 = bp[bi + 3],
+          b4 = bp[bi + 4], b5 = bp[bi + 5], b6 = bp[bi + 6], b7 = bp[bi + 7];
+      c00 += a0 * b0; c01 += a0 * b1; c02 += a0 * b2; c03 += a0 * b3;
+      c04 += a0 * b4; c05 += a0 * b5; c06 += a0 * b6; c07 += a0 * b7;
+      c10 += a1 * b0; c11 += a1 * b1; c12 += a1 * b2; c13 += a1 * b3;
+      c14 += a1 * b4; c15 += a1 * b5; c16 += a1 * b6; c17 += a1 * b7;
+      c20 += a2 * b0; c21 += a2 * b1; c22 += a2 * b2; c23 += a2 * b3;
+      c24 += a2 * b4; c25 += a2 * b5; c26 += a2 * b6; c27 += a2 * b7;
+      c30 += a3 * b0; c31 += a3 * b1; c32 += a3 * b2; c33 += a3 * b3;
+      c34 += a3 * b4; c35 += a3 * b5; c36 += a3 * b6; c37 += a3 * b7;
+    }
+    if (mr == MR && nr == NR) {
+      int r0 = ci, r1 = ci + ldc, r2 = r1 + ldc, r3 = r2 + ldc;
+      c[r0] += c00; c[r0 + 1] += c01; c[r0 + 2] += c02; c[r0 + 3] += c03;
+      c[r0 + 4] += c04; c[r0 + 5] += c05; c[r0 + 6] += c06; c[r0 + 7] += c07;
+      c[r1] += c10; c[r1 + 1] += c11; c[r1 + 2] += c12; c[r1 + 3] += c13;
+      c[r1 + 4] += c14; c[r1 + 5] += c15; c[r1 + 6] += c16; c[r1 + 7] += c17;
+      c[r2] += c20; c[r2 + 1] += c21; c[r2 + 2] += c22; c[r2 + 3] += c23;
+      c[r2 + 4] += c24; c[r2 + 5] += c25; c[r2 + 6] += c26; c[r2 + 7] += c27;
+      c[r3] += c30; c[r3 + 1] += c31; c[r3 + 2] += c32; c[r3 + 3] += c33;
+      c[r3 + 4] += c34; c[r3 + 5] += c35; c[r3 + 6] += c36; c[r3 + 7] += c37;
+    } else {
+      tmp[0] = c00; tmp[1] = c01; tmp[2] = c02; tmp[3] = c03;
+      tmp[4] = c04; tmp[5] = c05; tmp[6] = c06; tmp[7] = c07;
+      tmp[8] = c10; tmp[9] = c11; tmp[10] = c12; tmp[11] = c13;
+      tmp[12] = c14; tmp[13] = c15; tmp[14] = c16; tmp[15] = c17;
+      tmp[16] = c20; tmp[17] = c21; tmp[18] = c22; tmp[19] = c23;
+      tmp[20] = c24; tmp[21] = c25; tmp[22] = c26; tmp[23] = c27;
+      tmp[24] = c30; tmp[25] = c31; tmp[26] = c32; tmp[27] = c33;
+      tmp[28] = c34; tmp[29] = c35; tmp[30] = c36; tmp[31] = c37;
+      for (int i = 0; i < mr; i++) {
+        for (int j = 0; j < nr; j++) {
+          c[ci + i * ldc + j] += tmp[i * NR + j];
+        }
+      }
+    }
+  }
+
+  /**
+   * Single precision version of the GotoBLAS-style matrix multiplication (C += A * B).
+   *
+   * @param a array with the left matrix (m x p)
+   * @param b array with the right matrix (p x n)
+   * @param c array with the result matrix (m x n)
+   * @param m number of rows of A and C
+   * @param n number of columns of B and C
+   * @param p number of columns of A and rows of B
+   * @return {@code c} array filled with the result
+   */
+  protected static float[] gemm(final float a[], final float b[], final float c[],
+                                final int m, final int n, final int p) {
+    return gemm(a, 0, p, 1, b, 0, n, 1, c, 0, n, m, n, p);
+  }
+
+  /**
+   * Single precision version of the parallel matrix multiplication (C += A * B).
+   *
+   * @param a array with the left matrix (m x p)
+   * @param b array with the right matrix (p x n)
+   * @param c array with the result matrix (m x n)
+   * @param m number of rows of A and C
+   * @param n number of columns of B and C
+   * @param p number of columns of A and rows of B
+   * @return {@code c} array filled with the result
+   */
+  protected static float[] pmul(final float a[], final float b[], final float c[],
+                                final int m, final int n, final int p) {
+    parallel(m, n, p, (rb, re, cb, ce) ->
+        gemm(a, rb * p, p, 1, b, cb, n, 1, c, rb * n + cb, n, re - rb, ce - cb, p));
+    return c;
+  }
+
+  /**
+   * Single precision matrix multiplication (C += A * B).
+   * Selects the best implementation for the size of the matrices.
+   *
+   * @param a array with the left matrix (m x p)
+   * @param b array with the right matrix (p x n)
+   * @param c array with the result matrix (m x n)
+   * @param m number of rows of A and C
+   * @param n number of columns of B and C
+   * @param p number of columns of A and rows of B
+   * @return {@code c} array filled with the result
+   */
+  protected static float[] mul(final float a[], final float b[], final float c[],
+                               final int m, final int n, final int p) {
+    float rv[];
+    if ((long) m * n * p < P_MUL_WORK || ForkJoinPool.getCommonPoolParallelism() < 2) {
+      rv = gemm(a, b, c, m, n, p);
+    } else {
+      rv = pmul(a, b, c, m, n, p);
+    }
+    return rv;
+  }
+
+  /**
+   * Single precision version of the strided GotoBLAS-style matrix multiplication (C += A * B).
+   *
+   * @param a    array with the left matrix
+   * @param aOff index of the first element of A
+   * @param ars  row stride of A
+   * @param acs  column stride of A
+   * @param b    array with the right matrix
+   * @param bOff index of the first element of B
+   * @param brs  row stride of B
+   * @param bcs  column stride of B
+   * @param c    array with the result matrix
+   * @param cOff index of the first element of C
+   * @param ldc  row stride of C
+   * @param m    number of rows of A and C
+   * @param n    number of columns of B and C
+   * @param p    number of columns of A and rows of B
+   * @return {@code c} array filled with the result
+   */
+  protected static float[] gemm(final float a[], final int aOff, final int ars, final int acs,
+                                final float b[], final int bOff, final int brs, final int bcs,
+                                final float c[], final int cOff, final int ldc,
+                                final int m, final int n, final int p) {
+    final int mc = Math.min(MC, m), kc = Math.min(KC, p), nc = Math.min(NC, n);
+    final float ap[] = new float[((mc + MR - 1) / MR) * MR * kc],
+        bp[] = new float[kc * ((nc + NR - 1) / NR) * NR], tmp[] = new float[MR * NR];
+    for (int jc = 0; jc < n; jc += NC) {
+      final int nb = Math.min(NC, n - jc);
+      for (int pc = 0; pc < p; pc += KC) {
+        final int kb = Math.min(KC, p - pc);
+        packB(b, bOff, brs, bcs, bp, pc, jc, kb, nb);
+        for (int ic = 0; ic < m; ic += MC) {
+          final int mb = Math.min(MC, m - ic);
+          packA(a, aOff, ars, acs, ap, ic, pc, mb, kb);
+          for (int jr = 0; jr < nb; jr += NR) {
+            for (int ir = 0; ir < mb; ir += MR) {
+              kernel(kb, ap, ir * kb, bp, jr * kb, c, cOff + (ic + ir) * ldc + jc + jr, ldc,
+                  Math.min(MR, mb - ir), Math.min(NR, nb - jr), tmp);
+            }
+          }
+        }
+      }
+    }
+    return c;
+  }
+
+  /**
+   * Single precision version of the parallel strided matrix multiplication with offsets (C += A * B).
+   *
+   * @param a    array with the left matrix
+   * @param aOff index of the first element of A
+   * @param ars  row stride of A
+   * @param acs  column stride of A
+   * @param b    array with the right matrix
+   * @param bOff index of the first element of B
+   * @param brs  row stride of B
+   * @param bcs  column stride of B
+   * @param c    array with the result matrix
+   * @param cOff index of the first element of C
+   * @param ldc  row stride of C
+   * @param m    number of rows of A and C
+   * @param n    number of columns of B and C
+   * @param p    number of columns of A and rows of B
+   * @return {@code c} array filled with the result
+   */
+  protected static float[] pgemm(final float a[], final int aOff, final int ars, final int acs,
+                                 final float b[], final int bOff, final int brs, final int bcs,
+                                 final float c[], final int cOff, final int ldc,
+                                 final int m, final int n, final int p) {
+    parallel(m, n, p, (rb, re, cb, ce) ->
+        gemm(a, aOff + rb * ars, ars, acs, b, bOff + cb * bcs, brs, bcs, c, cOff + rb * ldc + cb, ldc,
+            re - rb, ce - cb, p));
+    return c;
+  }
+
+  /**
+   * Single precision strided matrix multiplication with offsets (C += A * B).
+   * Uses the parallel version if the work is larger than the parallel threshold.
+   *
+   * @param a    array with the left matrix
+   * @param aOff index of the first element of A
+   * @param ars  row stride of A
+   * @param acs  column stride of A
+   * @param b    array with the right matrix
+   * @param bOff index of the first element of B
+   * @param brs  row stride of B
+   * @param bcs  column stride of B
+   * @param c    array with the result matrix
+   * @param cOff index of the first element of C
+   * @param ldc  row stride of C
+   * @param m    number of rows of A and C
+   * @param n    number of columns of B and C
+   * @param p    number of columns of A and rows of B
+   * @return {@code c} array filled with the result
+   */
+  protected static float[] mul(final float a[], final int aOff, final int ars, final int acs,
+                               final float b[], final int bOff, final int brs, final int bcs,
+                               final float c[], final int cOff, final int ldc,
+                               final int m, final int n, final int p) {
+    float rv[];
+    if ((long) m * n * p < P_MUL_WORK || ForkJoinPool.getCommonPoolParallelism() < 2) {
+      rv = gemm(a, aOff, ars, acs, b, bOff, brs, bcs, c, cOff, ldc, m, n, p);
+    } else {
+      rv = pgemm(a, aOff, ars, acs, b, bOff, brs, bcs, c, cOff, ldc, m, n, p);
+    }
+    return rv;
+  }
+
+  /**
+   * Single precision version of {@link #packA(double[], int, int, int, double[], int, int, int, int)}.
+   */
+  private static void packA(final float a[], final int aOff, final int ars, final int acs,
+                            final float ap[], final int ic, final int pc, final int mb,
+                            final int kb) {
+    int idx = 0;
+    for (int ir = 0; ir < mb; ir += MR) {
+      final int mr = Math.min(MR, mb - ir);
+      for (int k = 0; k < kb; k++) {
+        final int base = aOff + (ic + ir) * ars + (pc + k) * acs;
+        int r = 0;
+        for (; r < mr; r++) {
+          ap[idx++] = a[base + r * ars];
+        }
+        for (; r < MR; r++) {
+          ap[idx++] = 0.0f;
+        }
+      }
+    }
+  }
+
+  /**
+   * Single precision version of {@link #packB(double[], int, int, int, double[], int, int, int, int)}.
+   */
+  private static void packB(final float b[], final int bOff, final int brs, final int bcs,
+                            final float bp[], final int pc, final int jc, final int kb,
+                            final int nb) {
+    int idx = 0;
+    for (int jr = 0; jr < nb; jr += NR) {
+      final int nr = Math.min(NR, nb - jr);
+      for (int k = 0; k < kb; k++) {
+        final int base = bOff + (pc + k) * brs + (jc + jr) * bcs;
+        int j = 0;
+        for (; j < nr; j++) {
+          bp[idx++] = b[base + j * bcs];
+        }
+        for (; j < NR; j++) {
+          bp[idx++] = 0.0f;
+        }
+      }
+    }
+  }
+
+  /**
+   * Single precision version of the register-blocked micro-kernel.
+   */
+  private static void kernel(final int kb, final float ap[], int ai, final float bp[], int bi,
+                             final float c[], final int ci, final int ldc,
+                             final int mr, final int nr, final float tmp[]) {
+    float c00 = 0, c01 = 0, c02 = 0, c03 = 0, c04 = 0, c05 = 0, c06 = 0, c07 = 0,
+        c10 = 0, c11 = 0, c12 = 0, c13 = 0, c14 = 0, c15 = 0, c16 = 0, c17 = 0,
+        c20 = 0, c21 = 0, c22 = 0, c23 = 0, c24 = 0, c25 = 0, c26 = 0, c27 = 0,
+        c30 = 0, c31 = 0, c32 = 0, c33 = 0, c34 = 0, c35 = 0, c36 = 0, c37 = 0;
+    for (int k = 0; k < kb; k++, ai += MR, bi += NR) {
+      final float a0 = ap[ai], a1 = ap[ai + 1], a2 = ap[ai + 2], a3 = ap[ai + 3],
+          b0 = bp[bi], b1 = bp[bi + 1], b2 = bp[bi + 2], b3 = bp[bi + 3],
+          b4 = bp[bi + 4], b5 = bp[bi + 5], b6 = bp[bi + 6], b7 = bp[bi + 7];
+      c00 += a0 * b0; c01 += a0 * b1; c02 += a0 * b2; c03 += a0 * b3;
+      c04 += a0 * b4; c05 += a0 * b5; c06 += a0 * b6; c07 += a0 * b7;
+      c10 += a1 * b0; c11 += a1 * b1; c12 += a1 * b2; c13 += a1 * b3;
+      c14 += a1 * b4; c15 += a1 * b5; c16 += a1 * b6; c17 += a1 * b7;
+      c20 += a2 * b0; c21 += a2 * b1; c22 += a2 * b2; c23 += a2 * b3;
+      c24 += a2 * b4; c25 += a2 * b5; c26 += a2 * b6; c27 += a2 * b7;
+      c30 += a3 * b0; c31 += a3 * b1; c32 += a3 * b2; c33 += a3 * b3;
+      c34 += a3 * b4; c35 += a3 * b5; c36 += a3 * b6; c37 += a3 * b7;
+    }
+    if (mr == MR && nr == NR) {
+      int r0 = ci, r1 = ci + ldc, r2 = r1 + ldc, r3 = r2 + ldc;
+      c[r0] += c00; c[r0 + 1] += c01; c[r0 + 2] += c02; c[r0 + 3] += c03;
+      c[r0 + 4] += c04; c[r0 + 5] += c05; c[r0 + 6] += c06; c[r0 + 7] += c07;
+      c[r1] += c10; c[r1 + 1] += c11; c[r1 + 2] += c12; c[r1 + 3] += c13;
+      c[r1 + 4] += c14; c[r1 + 5] += c15; c[r1 + 6] += c16; c[r1 + 7] += c17;
+      c[r2] += c20; c[r2 + 1] += c21; c[r2 + 2] += c22; c[r2 + 3] += c23;
+      c[r2 + 4] += c24; c[r2 + 5] += c25; c[r2 + 6] += c26; c[r2 + 7] += c27;
+      c[r3] += c30; c[r3 + 1] += c31; c[r3 + 2] += c32; c[r3 + 3] += c33;
+      c[r3 + 4] += c34; c[r3 + 5] += c35; c[r3 + 6] += c36; c[r3 + 7] += c37;
+    } else {
+      tmp[0] = c00; tmp[1] = c01; tmp[2] = c02; tmp[3] = c03;
+      tmp[4] = c04; tmp[5] = c05; tmp[6] = c06; tmp[7] = c07;
+      tmp[8] = c10; tmp[9] = c11; tmp[10] = c12; tmp[11] = c13;
+      tmp[12] = c14; tmp[13] = c15; tmp[14] = c16; tmp[15] = c17;
+      tmp[16] = c20; tmp[17] = c21; tmp[18] = c22; tmp[19] = c23;
+      tmp[20] = c24; tmp[21] = c25; tmp[22] = c26; tmp[23] = c27;
+      tmp[24] = c30; tmp[25] = c31; tmp[26] = c32; tmp[27] = c33;
+      tmp[28] = c34; tmp[29] = c35; tmp[30] = c36; tmp[31] = c37;
+      for (int i = 0; i < mr; i++) {
+        for (int j = 0; j < nr; j++) {
+          c[ci + i * ldc + j] += tmp[i * NR + j];
+        }
+      }
+    }
+  }
+
+  /**
+   * Sequential matrix multiplication (C += A * B) with a specific kernel.
+   * All the kernels accumulate into C.
+   *
+   * @param a      array with the left matrix (m x p)
+   * @param b      array with the right matrix (p x n)
+   * @param c      array with the result matrix (m x n)
+   * @param m      number of rows of A and C
+   * @param n      number of columns of B and C
+   * @param p      number of columns of A and rows of B
+   * @param kernel the multiplication kernel
+   * @return {@code c} array filled with the result
+   */
+  protected static double[] smul(double a[], double b[], double c[], int m, int n, int p,
+                                 Kernel kernel) {
+    switch (kernel) {
+      case IJK:
+        ijk(a, b, c, m, n, p);
+        break;
+      case IKJ:
+        ikj(a, b, c, m, n, p);
+        break;
+      case GEMM:
+        gemm(a, b, c, m, n, p);
+        break;
+      default:
+        comul(a, b, c, m, n, p);
+    }
+    return c;
+  }
+
   /**
    * @param a
    * @param b
@@ -215,8 +806,10 @@ public class MatrixMultiplication {
    */
   protected static double[] mul(double a[], double b[], double c[], int m, int n, int p) {
     double rv[] = null;
-    if (c.length < P_MUL_SIZE) {
-      rv = comul(a, b, c, m, n, p);
+    if (c.length < S_MUL_SIZE) {
+      rv = smul(a, b, c, m, n, p, S_KERNEL);
+    } else if ((long) m * n * p < P_MUL_WORK || ForkJoinPool.getCommonPoolParallelism() < 2) {
+      rv = gemm(a, b, c, m, n, p);
     } else {
       rv = pmul(a, b, c, m, n, p);
     }
@@ -234,11 +827,125 @@ public class MatrixMultiplication {
    */
   protected static double[] mult(double a[], double b[], double c[], int m, int n, int p) {
     double rv[] = null;
-    if (c.length < P_MUL_SIZE) {
+    if (c.length < S_MUL_SIZE) {
       rv = ijkt(a, b, c, m, n, p);
+    } else if ((long) m * n * p < P_MUL_WORK || ForkJoinPool.getCommonPoolParallelism() < 2) {
+      Arrays.fill(c, 0, m * n, 0.0);
+      rv = gemm(a, p, 1, b, 1, p, c, m, n, p);
     } else {
       rv = pmult(a, b, c, m, n, p);
     }
     return rv;
   }
+
+  /**
+   * Strided matrix multiplication (C += A * B).
+   * Uses the parallel version if the work is larger than the parallel threshold.
+   *
+   * @param a   array with the left matrix
+   * @param ars row stride of A
+   * @param acs column stride of A
+   * @param b   array with the right matrix
+   * @param brs row stride of B
+   * @param bcs column stride of B
+   * @param c   array with the result matrix
+   * @param m   number of rows of A and C
+   * @param n   number of columns of B and C
+   * @param p   number of columns of A and rows of B
+   * @return {@code c} array filled with the result
+   */
+  protected static double[] mul(final double a[], final int ars, final int acs,
+                                final double b[], final int brs, final int bcs,
+                                final double c[], final int m, final int n, final int p) {
+    return mul(a, 0, ars, acs, b, 0, brs, bcs, c, 0, n, m, n, p);
+  }
+
+  /**
+   * Strided matrix multiplication with offsets (C += A * B).
+   * Uses the parallel version if the work is larger than the parallel threshold.
+   *
+   * @param a    array with the left matrix
+   * @param aOff index of the first element of A
+   * @param ars  row stride of A
+   * @param acs  column stride of A
+   * @param b    array with the right matrix
+   * @param bOff index of the first element of B
+   * @param brs  row stride of B
+   * @param bcs  column stride of B
+   * @param c    array with the result matrix
+   * @param cOff index of the first element of C
+   * @param ldc  row stride of C
+   * @param m    number of rows of A and C
+   * @param n    number of columns of B and C
+   * @param p    number of columns of A and rows of B
+   * @return {@code c} array filled with the result
+   */
+  protected static double[] mul(final double a[], final int aOff, final int ars, final int acs,
+                                final double b[], final int bOff, final int brs, final int bcs,
+                                final double c[], final int cOff, final int ldc,
+                                final int m, final int n, final int p) {
+    double rv[];
+    if ((long) m * n * p < P_MUL_WORK || ForkJoinPool.getCommonPoolParallelism() < 2) {
+      rv = gemm(a, aOff, ars, acs, b, bOff, brs, bcs, c, cOff, ldc, m, n, p);
+    } else {
+      rv = pgemm(a, aOff, ars, acs, b, bOff, brs, bcs, c, cOff, ldc, m, n, p);
+    }
+    return rv;
+  }
+
+  /**
+   * Fork-join task that computes a block of the output matrix.
+   * Blocks are split in half along the larger dimension (aligned with the
+   * micro-kernel tile) until their work is below the given granularity.
+   */
+  private static class GemmTask extends RecursiveAction {
+    private final Block block;
+    private final int rb, re, cb, ce, p;
+    private final long work;
+
+    GemmTask(final Block block, final int rb, final int re, final int cb, final int ce,
+             final int p, final long work) {
+      this.block = block;
+      this.rb = rb;
+      this.re = re;
+      this.cb = cb;
+      this.ce = ce;
+      this.p = p;
+      this.work = work;
+    }
+
+    @Override
+    protected void compute() {
+      final int r = re - rb, cl = ce - cb;
+      if ((long) r * cl * p <= work || (r <= MR && cl <= NR)) {
+        block.compute(rb, re, cb, ce);
+      } else if (r / MR >= cl / NR && r > MR) {
+        final int rm = rb + Math.max(MR, (r / 2) / MR * MR);
+        invokeAll(new GemmTask(block, rb, rm, cb, ce, p, work),
+            new GemmTask(block, rm, re, cb, ce, p, work));
+      } else {
+        final int cm = cb + Math.max(NR, (cl / 2) / NR * NR);
+        invokeAll(new GemmTask(block, rb, re, cb, cm, p, work),
+            new GemmTask(block, rb, re, cm, ce, p, work));
+      }
+    }
+  }
+
+  /**
+   * Computes the block [rb, re[ x [cb, ce[ of the output matrix.
+   */
+  private interface Block {
+    void compute(int rb, int re, int cb, int ce);
+  }
+
+  /**
+   * Sequential kernels available to multiply small matrices.
+   */
+  public enum Kernel {
+    IJK, IKJ, COMUL, GEMM
+  }
+
+  static {
+    MatrixCalibration.startup();
+  }
 }
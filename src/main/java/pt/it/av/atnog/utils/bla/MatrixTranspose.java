@@ -1,9 +1,7 @@
 package pt.it.av.atnog.utils.bla;
 
-import pt.it.av.atnog.utils.structures.tuple.Quad;
-
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Several implementations
@@ -12,7 +10,44 @@ import java.util.Deque;
  * @version 1.0
  */
 public class MatrixTranspose {
-  private static int BLK = 64;
+  private static volatile int BLK = 64;
+  // minimal number of elements to use the parallel transpose
+  private static final int P_TR_SIZE = 1 << 20;
+  // number of elements of the blocks transposed by each parallel task
+  private static final int P_TR_BLK = 1 << 16;
+  // number of columns permuted together by the in-place transpose
+  private static final int COLS = 16;
+  // scratch buffer reused by the cache-oblivious and in-place transposes
+  private static final ThreadLocal<double[]> TILE = ThreadLocal.withInitial(() -> new double[0]);
+  // largest scratch buffer (in elements) kept by a thread after an in-place transpose
+  private static final int MAX_TILE = 1 << 16;
+  // auxiliar memory of the in-place transpose (in multiples of sqrt(rows * cols) elements)
+  private static final int AUX = 16;
+
+  static {
+    MatrixCalibration.startup();
+  }
+
+  /**
+   * Returns the block size used by the cache-oblivious transpose.
+   *
+   * @return the block size used by the cache-oblivious transpose
+   */
+  public static int blockSize() {
+    return BLK;
+  }
+
+  /**
+   * Sets the block size used by the cache-oblivious transpose.
+   *
+   * @param blk the block size used by the cache-oblivious transpose
+   */
+  public static void blockSize(final int blk) {
+    if (blk < 1) {
+      throw new IllegalArgumentException("The block size must be positive.");
+    }
+    BLK = blk;
+  }
 
   /**
    * Cache-oblivious implemention of matrix tranpose.
@@ -44,30 +79,137 @@ public class MatrixTranspose {
    */
   protected static double[] cotr(final double a[], final double at[],
                                  final int rows, final int cols, final int blk) {
-    double tmp[] = new double[blk * blk];
-    Deque<Quad<Integer, Integer, Integer, Integer>> stack = new ArrayDeque<Quad<Integer, Integer, Integer, Integer>>();
-    stack.push(new Quad<>(0, rows, 0, cols));
-    while (!stack.isEmpty()) {
-      Quad<Integer, Integer, Integer, Integer> q = stack.pop();
-      int rb = q.a, re = q.b, cb = q.c, ce = q.d, r = q.b - q.a, c = q.d - q.c;
-      if (r <= blk && c <= blk) {
-        for (int i = rb, tmpc = 0; i < re; i++, tmpc++)
-          for (int j = cb, tmpr = 0; j < ce; j++, tmpr++)
-            tmp[tmpr * blk + tmpc] = a[i * cols + j];
+    cotr(a, at, rows, cols, 0, rows, 0, cols, blk, tile(blk));
+    return at;
+  }
+
+  /**
+   * Recursive step of the cache-oblivious transpose.
+   * Splits the larger dimension in half until the block fits into the scratch tile.
+   */
+  private static void cotr(final double a[], final double at[], final int rows, final int cols,
+                           final int rb, final int re, final int cb, final int ce,
+                           final int blk, final double tmp[]) {
+    final int r = re - rb, c = ce - cb;
+    if (r <= blk && c <= blk) {
+      for (int i = rb, tmpc = 0; i < re; i++, tmpc++)
         for (int j = cb, tmpr = 0; j < ce; j++, tmpr++)
-          for (int i = rb, tmpc = 0; i < re; i++, tmpc++)
-            at[j * rows + i] = tmp[tmpr * blk + tmpc];
-      } else if (r >= c) {
-        stack.push(new Quad<>(rb, rb + (r / 2), cb, ce));
-        stack.push(new Quad<>(rb + (r / 2), re, cb, ce));
-      } else {
-        stack.push(new Quad<>(rb, re, cb, cb + (c / 2)));
-        stack.push(new Quad<>(rb, re, cb + (c / 2), ce));
-      }
+          tmp[tmpr * blk + tmpc] = a[i * cols + j];
+      for (int j = cb, tmpr = 0; j < ce; j++, tmpr++)
+        for (int i = rb, tmpc = 0; i < re; i++, tmpc++)
+          at[j * rows + i] = tmp[tmpr * blk + tmpc];
+    } else if (r >= c) {
+      cotr(a, at, rows, cols, rb, rb + (r / 2), cb, ce, blk, tmp);
+      cotr(a, at, rows, cols, rb + (r / 2), re, cb, ce, blk, tmp);
+    } else {
+      cotr(a, at, rows, cols, rb, re, cb, cb + (c / 2), blk, tmp);
+      cotr(a, at, rows, cols, rb, re, cb + (c / 2), ce, blk, tmp);
+    }
+  }
+
+  /**
+   * Single precision version of the cache-oblivious matrix tranpose.
+   * Returns {@link at} array filled with the tranpose matrix.
+   *
+   * @param a array representing the matrix
+   * @param at array representing the transpose matrix
+   * @param rows number of rows
+   * @param cols number of columns
+   * @return {@link at} array filled with the tranpose matrix
+   */
+  protected static float[] cotr(final float a[], final float at[],
+                                final int rows, final int cols) {
+    cotr(a, at, rows, cols, 0, rows, 0, cols, BLK);
+    return at;
+  }
+
+  /**
+   * Recursive step of the single precision cache-oblivious transpose.
+   */
+  private static void cotr(final float a[], final float at[], final int rows, final int cols,
+                           final int rb, final int re, final int cb, final int ce, final int blk) {
+    final int r = re - rb, c = ce - cb;
+    if (r <= blk && c <= blk) {
+      for (int i = rb; i < re; i++)
+        for (int j = cb; j < ce; j++)
+          at[j * rows + i] = a[i * cols + j];
+    } else if (r >= c) {
+      cotr(a, at, rows, cols, rb, rb + (r / 2), cb, ce, blk);
+      cotr(a, at, rows, cols, rb + (r / 2), re, cb, ce, blk);
+    } else {
+      cotr(a, at, rows, cols, rb, re, cb, cb + (c / 2), blk);
+      cotr(a, at, rows, cols, rb, re, cb + (c / 2), ce, blk);
+    }
+  }
+
+  /**
+   * Returns the scratch tile of the current thread, with at least blk * blk elements.
+   */
+  private static double[] tile(final int blk) {
+    return scratch(blk * blk);
+  }
+
+  /**
+   * Returns the scratch buffer of the current thread, with at least size elements.
+   */
+  private static double[] scratch(final int size) {
+    double tmp[] = TILE.get();
+    if (tmp.length < size) {
+      tmp = new double[size];
+      TILE.set(tmp);
+    }
+    return tmp;
+  }
+
+  /**
+   * Drops the scratch buffer of the current thread if it is larger than {@link #MAX_TILE},
+   * large buffers are not kept alive by the (long lived) threads of the common pool.
+   */
+  private static void release() {
+    if (TILE.get().length > MAX_TILE) {
+      TILE.remove();
     }
+  }
+
+  /**
+   * Parallel cache-oblivious implemention of matrix tranpose.
+   * The matrix is recursively split into blocks that are transposed
+   * on the common {@link ForkJoinPool}.
+   * Returns {@link at} array filled with the tranpose matrix.
+   *
+   * @param a array representing the matrix
+   * @param at array representing the transpose matrix
+   * @param rows number of rows
+   * @param cols number of columns
+   * @return {@link at} array filled with the tranpose matrix
+   */
+  protected static double[] pcotr(final double a[], final double at[],
+                                  final int rows, final int cols) {
+    ForkJoinPool.commonPool().invoke(new CotrTask(a, at, rows, cols, 0, rows, 0, cols, BLK));
     return at;
   }
 
+  /**
+   * Transpose that selects the best implementation for the size of the matrix.
+   * Returns {@link at} array filled with the tranpose matrix.
+   *
+   * @param a array representing the matrix
+   * @param at array representing the transpose matrix
+   * @param rows number of rows
+   * @param cols number of columns
+   * @return {@link at} array filled with the tranpose matrix
+   */
+  protected static double[] tr(final double a[], final double at[],
+                               final int rows, final int cols) {
+    double rv[];
+    if ((long) rows * cols < P_TR_SIZE || ForkJoinPool.getCommonPoolParallelism() < 2) {
+      rv = cotr(a, at, rows, cols);
+    } else {
+      rv = pcotr(a, at, rows, cols);
+    }
+    return rv;
+  }
+
   /**
    * In-place implemention of matrix tranpose.
    * Does not require any auxiliar memory, however it only work with square matrixes.
@@ -89,7 +231,8 @@ public class MatrixTranspose {
   /**
    * In-place implemention of matrix tranpose.
    * Implementation baes on follow-cycles algorithm.
-   * Requires minimal auxilar memory
+   * Does not require any auxiliar memory: each cycle is only rotated
+   * from its leader (the smallest index in the cycle).
    *
    * @param a array representing the matrix
    * @param rows number of rows
@@ -97,29 +240,256 @@ public class MatrixTranspose {
    * @return the transpose matrix
    */
   protected static double[] infotr(double a[], int rows, int cols) {
-    boolean visited[] = new boolean[a.length];
-    int q = rows * cols - 1;
-    for (int i = 1; i < a.length - 1; i++) {
-      if (!visited[i]) {
-        int start = i;
-        double tmp = a[i];
-        boolean done = false;
-        while (!done) {
-          visited[i] = true;
-          int nIdx = i * cols % q;
-          if (nIdx == start) {
-            a[i] = tmp;
-            i = start;
-            done = true;
+    final int q = rows * cols - 1;
+    cycles(a, cols, q, 1, q);
+    return a;
+  }
+
+  /**
+   * Parallel version of {@link #infotr}.
+   * The cycles are disjoint, the range of leaders is split into blocks
+   * that are executed on the common {@link ForkJoinPool}.
+   * Does not require any auxiliar memory.
+   *
+   * @param a array representing the matrix
+   * @param rows number of rows
+   * @param cols number of columns
+   * @return the transpose matrix
+   */
+  protected static double[] pinfotr(double a[], int rows, int cols) {
+    final int q = rows * cols - 1;
+    range(q, P_TR_BLK, true, (b, e) -> cycles(a, cols, q, Math.max(1, b), e));
+    return a;
+  }
+
+  /**
+   * Rotates the cycles whose leader is in [b, e[.
+   */
+  private static void cycles(final double a[], final int cols, final int q, final int b, final int e) {
+    for (int i = b; i < e; i++) {
+      if (leader(i, cols, q)) {
+        cycle(a, i, cols, q);
+      }
+    }
+  }
+
+  /**
+   * In-place implemention of matrix tranpose.
+   * Implementation based on the decomposition of the transpose into independent
+   * column and row permutations:
+   * B. Catanzaro, A. Keller and M. Garland, "A decomposition for in-place matrix transposition",
+   * PPoPP 2014.
+   * Requires O(max(rows, cols)) auxiliar memory and it is faster than {@link #infotr}:
+   * each row is scattered through a buffer with cols elements and the columns are gathered
+   * through a buffer with rows * w elements, where w = min(16, max(1, cols / rows)).
+   * {@link #itr} only uses it when max(rows, cols) is within the O(sqrt(rows * cols))
+   * budget of {@link #workers}.
+   *
+   * @param a array representing the matrix
+   * @param rows number of rows
+   * @param cols number of columns
+   * @return the transpose matrix
+   */
+  protected static double[] indtr(double a[], int rows, int cols) {
+    return indtr(a, rows, cols, 1);
+  }
+
+  /**
+   * Parallel version of {@link #indtr}.
+   * The row and column permutations are independent and are executed
+   * on the common {@link ForkJoinPool}, with at most {@link #workers} blocks
+   * (each one with its own scratch buffer) at the same time.
+   *
+   * @param a array representing the matrix
+   * @param rows number of rows
+   * @param cols number of columns
+   * @return the transpose matrix
+   */
+  protected static double[] pindtr(double a[], int rows, int cols) {
+    return indtr(a, rows, cols, Math.max(1, workers(rows, cols)));
+  }
+
+  /**
+   * Returns the number of scratch buffers of {@link #indtr} (each one with
+   * max(rows, cols) elements) that fit into the auxiliar memory budget of the in-place
+   * transpose: max(64K, 16 * sqrt(rows * cols)) elements.
+   * Zero means that even a single buffer exceeds the budget (very thin matrices),
+   * and the transpose follows the cycles instead.
+   *
+   * @param rows number of rows
+   * @param cols number of columns
+   * @return the number of scratch buffers that fit into the budget
+   */
+  static int workers(final int rows, final int cols) {
+    final long budget = Math.max(MAX_TILE, (long) Math.ceil(AUX * Math.sqrt((double) rows * cols)));
+    return (int) (budget / Math.max(1, Math.max(rows, cols)));
+  }
+
+  /**
+   * In-place transpose that selects the best implementation for the size of the matrix.
+   *
+   * @param a array representing the matrix
+   * @param rows number of rows
+   * @param cols number of columns
+   * @return the transpose matrix
+   */
+  protected static double[] itr(double a[], int rows, int cols) {
+    double rv[];
+    final boolean parallel = (long) rows * cols >= P_TR_SIZE && ForkJoinPool.getCommonPoolParallelism() > 1;
+    if (rows == cols) {
+      rv = insqtr(a, rows);
+    } else if (workers(rows, cols) < 1) {
+      rv = parallel ? pinfotr(a, rows, cols) : infotr(a, rows, cols);
+    } else {
+      rv = parallel ? pindtr(a, rows, cols) : indtr(a, rows, cols);
+    }
+    return rv;
+  }
+
+  /**
+   * In-place transpose of a m x n matrix through three permutations:
+   * a column rotation (only if gcd(m, n) &gt; 1), a row scatter and a column gather.
+   * Each permutation runs in at most p blocks, so at most p scratch buffers
+   * (with at most max(m, n) elements) are alive at the same time.
+   */
+  private static double[] indtr(final double a[], final int m, final int n, final int p) {
+    final int c = gcd(m, n), am = m / c, bn = n / c;
+    final boolean parallel = p > 1;
+    // columns gathered together, the gather buffer (m * w) is bounded by max(m, n)
+    final int w = Math.min(COLS, Math.max(1, n / m)),
+        grain = w * Math.max(Math.max(1, P_TR_BLK / (m * w)), blocks(n / w + 1, p)),
+        rgrain = Math.max(Math.max(1, P_TR_BLK / n), blocks(m, p));
+    if (m > 1 && n > 1) {
+      if (c > 1) {
+        range(n, grain, parallel, (b, e) -> {
+          for (int j = b; j < e; j += w) {
+            gatherColumns(a, m, n, j, Math.min(j + w, e), true, bn);
+          }
+          release();
+        });
+      }
+      range(m, rgrain, parallel, (b, e) -> {
+        for (int i = b; i < e; i++) {
+          scatterRow(a, m, n, i, bn);
+        }
+        release();
+      });
+      range(n, grain, parallel, (b, e) -> {
+        for (int j = b; j < e; j += w) {
+          gatherColumns(a, m, n, j, Math.min(j + w, e), false, am);
+        }
+        release();
+      });
+    }
+    return a;
+  }
+
+  /**
+   * Permutes the columns [jb, je[ of a m x n matrix.
+   * The rotation moves the element from row (i + j / d) mod m into row i,
+   * the shuffle moves the element from row (j + i * n - i / d) mod m into row i.
+   */
+  private static void gatherColumns(final double a[], final int m, final int n, final int jb,
+                                    final int je, final boolean rotate, final int d) {
+    final int w = je - jb;
+    final double tmp[] = scratch(m * w);
+    for (int i = 0; i < m; i++) {
+      if (rotate) {
+        for (int j = jb; j < je; j++) {
+          tmp[i * w + j - jb] = a[((i + j / d) % m) * n + j];
+        }
+      } else {
+        int src = (int) (((long) i * n - i / d + jb) % m);
+        for (int j = jb; j < je; j++) {
+          tmp[i * w + j - jb] = a[src * n + j];
+          if (++src == m) {
+            src = 0;
           }
-          a[i] = a[nIdx];
-          i = nIdx;
         }
       }
     }
+    for (int i = 0; i < m; i++) {
+      System.arraycopy(tmp, i * w, a, i * n + jb, w);
+    }
+  }
+
+  /**
+   * Moves the element in column j of row i of a m x n matrix into
+   * column ((i + j / d) mod m + j * m) mod n.
+   */
+  private static void scatterRow(final double a[], final int m, final int n, final int i,
+                                 final int d) {
+    final double tmp[] = scratch(n);
+    final int in = i * n;
+    for (int j = 0; j < n; j++) {
+      tmp[(int) (((i + j / d) % m + (long) j * m) % n)] = a[in + j];
+    }
+    System.arraycopy(tmp, 0, a, in, n);
+  }
+
+  /**
+   * Returns the size of the blocks that split n elements into at most p blocks.
+   */
+  private static int blocks(final int n, final int p) {
+    return (n + p - 1) / p;
+  }
+
+  /**
+   * Greatest common divisor.
+   */
+  private static int gcd(int a, int b) {
+    while (b != 0) {
+      int t = a % b;
+      a = b;
+      b = t;
+    }
     return a;
   }
 
+  /**
+   * Applies the function over the range [0, n[, split into blocks with at least grain elements.
+   * The blocks are executed on the common {@link ForkJoinPool} if parallel is true.
+   */
+  static void range(final int n, final int grain, final boolean parallel, final Range r) {
+    if (parallel) {
+      ForkJoinPool.commonPool().invoke(new RangeTask(0, n, grain, r));
+    } else {
+      r.apply(0, n);
+    }
+  }
+
+  /**
+   * Returns true if i is the smallest index of its cycle.
+   */
+  private static boolean leader(final int i, final int cols, final int q) {
+    int j = next(i, cols, q);
+    while (j > i) {
+      j = next(j, cols, q);
+    }
+    return j == i;
+  }
+
+  /**
+   * Rotates the cycle that starts at index i.
+   */
+  private static void cycle(final double a[], final int i, final int cols, final int q) {
+    final double tmp = a[i];
+    int j = i, nj = next(i, cols, q);
+    while (nj != i) {
+      a[j] = a[nj];
+      j = nj;
+      nj = next(j, cols, q);
+    }
+    a[j] = tmp;
+  }
+
+  /**
+   * Returns the index of the element that moves into index i.
+   */
+  private static int next(final int i, final int cols, final int q) {
+    return (int) ((long) i * cols % q);
+  }
+
   /**
    * A naive implementation of matrix transpose algorithm.
    * This implementation is only intendendet to be used in unit testing.
@@ -139,4 +509,72 @@ public class MatrixTranspose {
     }
     return at;
   }
+
+  /**
+   * Fork-join task that transposes a block of the matrix.
+   */
+  private static class CotrTask extends RecursiveAction {
+    private final double a[], at[];
+    private final int rows, cols, rb, re, cb, ce, blk;
+
+    CotrTask(final double a[], final double at[], final int rows, final int cols,
+             final int rb, final int re, final int cb, final int ce, final int blk) {
+      this.a = a;
+      this.at = at;
+      this.rows = rows;
+      this.cols = cols;
+      this.rb = rb;
+      this.re = re;
+      this.cb = cb;
+      this.ce = ce;
+      this.blk = blk;
+    }
+
+    @Override
+    protected void compute() {
+      final int r = re - rb, c = ce - cb;
+      if ((long) r * c <= P_TR_BLK || (r <= blk && c <= blk)) {
+        cotr(a, at, rows, cols, rb, re, cb, ce, blk, tile(blk));
+      } else if (r >= c) {
+        invokeAll(new CotrTask(a, at, rows, cols, rb, rb + (r / 2), cb, ce, blk),
+            new CotrTask(a, at, rows, cols, rb + (r / 2), re, cb, ce, blk));
+      } else {
+        invokeAll(new CotrTask(a, at, rows, cols, rb, re, cb, cb + (c / 2), blk),
+            new CotrTask(a, at, rows, cols, rb, re, cb + (c / 2), ce, blk));
+      }
+    }
+  }
+
+  /**
+   * Function applied over a range of indexes.
+   */
+  interface Range {
+    void apply(int b, int e);
+  }
+
+  /**
+   * Fork-join task that splits a range of indexes into blocks.
+   */
+  private static class RangeTask extends RecursiveAction {
+    private final int b, e, grain;
+    private final Range r;
+
+    RangeTask(final int b, final int e, final int grain, final Range r) {
+      this.b = b;
+      this.e = e;
+      this.grain = grain;
+      this.r = r;
+    }
+
+    @Override
+    protected void compute() {
+      if (e - b <= grain) {
+        r.apply(b, e);
+      } else {
+        // keep the split aligned with the grain
+        final int m = b + Math.max(1, (e - b) / grain / 2) * grain;
+        invokeAll(new RangeTask(b, m, grain, r), new RangeTask(m, e, grain, r));
+      }
+    }
+  }
 }
@@ -0,0 +1,360 @@
+package pt.it.av.atnog.utils.bla;
+
+import pt.it.av.atnog.utils.ArrayUtils;
+
+/**
+ * Strided view over the array of a matrix (zero-copy).
+ * <p>
+ * The element (r, c) of the view is {@code data[offset + r * rowStride + c * colStride]}.
+ * Rows, columns, submatrices and the transpose of a view are also views over the same array,
+ * as such the updates done through a view are visible in the matrix (and vice versa).
+ * The products use the strided matrix multiplication directly, without copying the operands.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public class MatrixView {
+  protected final double data[];
+  protected final int offset, rows, cols, rs, cs;
+
+  /**
+   * Creates a strided view over an array.
+   *
+   * @param data      backing array
+   * @param offset    index of the element (0, 0)
+   * @param rows      number of rows
+   * @param cols      number of columns
+   * @param rowStride distance between two consecutive rows (non negative)
+   * @param colStride distance between two consecutive columns (non negative)
+   */
+  public MatrixView(final double data[], final int offset, final int rows, final int cols,
+                    final int rowStride, final int colStride) {
+    if (rows < 0 || cols < 0 || offset < 0 || rowStride < 0 || colStride < 0 || (rows > 0 && cols > 0
+        && offset + (long) (rows - 1) * rowStride + (long) (cols - 1) * colStride >= data.length)) {
+      throw new IllegalArgumentException("The view is outside of the array.");
+    }
+    this.data = data;
+    this.offset = offset;
+    this.rows = rows;
+    this.cols = cols;
+    this.rs = rowStride;
+    this.cs = colStride;
+  }
+
+  /**
+   * Creates a view of a whole matrix.
+   *
+   * @param A matrix
+   */
+  public MatrixView(final Matrix A) {
+    this(A.data, 0, A.rows, A.cols, A.cols, 1);
+  }
+
+  public int rows() {
+    return rows;
+  }
+
+  public int columns() {
+    return cols;
+  }
+
+  public int offset() {
+    return offset;
+  }
+
+  public int rowStride() {
+    return rs;
+  }
+
+  public int colStride() {
+    return cs;
+  }
+
+  /**
+   * Returns true if the elements of the view are contiguous and in row-major order.
+   *
+   * @return true if the elements of the view are contiguous and in row-major order
+   */
+  public boolean isContiguous() {
+    return (cols <= 1 || cs == 1) && (rows <= 1 || rs == cols);
+  }
+
+  public double get(final int r, final int c) {
+    return data[offset + r * rs + c * cs];
+  }
+
+  public void set(final int r, final int c, final double scalar) {
+    data[offset + r * rs + c * cs] = scalar;
+  }
+
+  /**
+   * Fills the view with a scalar.
+   *
+   * @param scalar the value
+   */
+  public void set(final double scalar) {
+    for (int i = 0; i < rows; i++)
+      for (int j = 0, idx = offset + i * rs; j < cols; j++, idx += cs)
+        data[idx] = scalar;
+  }
+
+  /**
+   * Returns the view of a submatrix.
+   *
+   * @param row    first row
+   * @param column first column
+   * @param rows   number of rows
+   * @param cols   number of columns
+   * @return the view of the submatrix
+   */
+  public MatrixView view(final int row, final int column, final int rows, final int cols) {
+    if (row < 0 || column < 0 || row + rows > this.rows || column + cols > this.cols) {
+      throw new IllegalArgumentException("The submatrix is outside of the view.");
+    }
+    return new MatrixView(data, offset + row * rs + column * cs, rows, cols, rs, cs);
+  }
+
+  /**
+   * Returns the view of a row (1 x cols).
+   *
+   * @param row the row
+   * @return the view of the row
+   */
+  public MatrixView row(final int row) {
+    return view(row, 0, 1, cols);
+  }
+
+  /**
+   * Returns the view of a column (rows x 1).
+   *
+   * @param column the column
+   * @return the view of the column
+   */
+  public MatrixView column(final int column) {
+    return view(0, column, rows, 1);
+  }
+
+  /**
+   * Returns the view of the transpose (the strides are swapped).
+   *
+   * @return the view of the transpose
+   */
+  public MatrixView transpose() {
+    return new MatrixView(data, offset, cols, rows, cs, rs);
+  }
+
+  /**
+   * Returns the elements as a vector (row-major).
+   * The vector shares the array if the view is contiguous, otherwise the elements are copied.
+   *
+   * @return the elements as a vector
+   */
+  public Vector vector() {
+    if (isContiguous())
+      return new Vector(data, offset, rows * cols);
+    return new Vector(toMatrix().data);
+  }
+
+  /**
+   * Copies the view into a new matrix.
+   *
+   * @return the elements of the view in a new matrix
+   */
+  public Matrix toMatrix() {
+    Matrix C = new Matrix(rows, cols);
+    copy(this, C.data, 0);
+    return C;
+  }
+
+  /**
+   * Copies the elements of a view into an array (row-major).
+   */
+  private static void copy(final MatrixView a, final double c[], final int cIdx) {
+    for (int i = 0; i < a.rows; i++) {
+      final int aIdx = a.offset + i * a.rs, o = cIdx + i * a.cols;
+      if (a.cs == 1)
+        System.arraycopy(a.data, aIdx, c, o, a.cols);
+      else
+        for (int j = 0; j < a.cols; j++)
+          c[o + j] = a.data[aIdx + j * a.cs];
+    }
+  }
+
+  private void check(final MatrixView B) {
+    if (rows != B.rows || cols != B.cols) {
+      throw new IllegalArgumentException("The views must have the same dimensions.");
+    }
+  }
+
+  /**
+   * Copies the elements of another view into this one.
+   *
+   * @param B view with the same dimensions
+   * @return this view
+   */
+  public MatrixView assign(final MatrixView B) {
+    check(B);
+    for (int i = 0; i < rows; i++) {
+      final int a = offset + i * rs, b = B.offset + i * B.rs;
+      if (cs == 1 && B.cs == 1)
+        System.arraycopy(B.data, b, data, a, cols);
+      else
+        for (int j = 0; j < cols; j++)
+          data[a + j * cs] = B.data[b + j * B.cs];
+    }
+    return this;
+  }
+
+  public MatrixView assign(final Matrix B) {
+    return assign(new MatrixView(B));
+  }
+
+  /**
+   * Adds another view to this one (in-place).
+   *
+   * @param B view with the same dimensions
+   * @return this view
+   */
+  public MatrixView uAdd(final MatrixView B) {
+    check(B);
+    for (int i = 0; i < rows; i++) {
+      final int a = offset + i * rs, b = B.offset + i * B.rs;
+      if (cs == 1 && B.cs == 1)
+        ArrayUtils.add(data, a, B.data, b, data, a, cols);
+      else
+        for (int j = 0; j < cols; j++)
+          data[a + j * cs] += B.data[b + j * B.cs];
+    }
+    return this;
+  }
+
+  /**
+   * Subtracts another view from this one (in-place).
+   *
+   * @param B view with the same dimensions
+   * @return this view
+   */
+  public MatrixView uSub(final MatrixView B) {
+    check(B);
+    for (int i = 0; i < rows; i++) {
+      final int a = offset + i * rs, b = B.offset + i * B.rs;
+      if (cs == 1 && B.cs == 1)
+        ArrayUtils.sub(data, a, B.data, b, data, a, cols);
+      else
+        for (int j = 0; j < cols; j++)
+          data[a + j * cs] -= B.data[b + j * B.cs];
+    }
+    return this;
+  }
+
+  /**
+   * Multiplies this view by a scalar (in-place).
+   *
+   * @param scalar the scalar
+   * @return this view
+   */
+  public MatrixView uMul(final double scalar) {
+    for (int i = 0; i < rows; i++) {
+      final int a = offset + i * rs;
+      if (cs == 1)
+        ArrayUtils.mul(data, a, scalar, data, a, cols);
+      else
+        for (int j = 0; j < cols; j++)
+          data[a + j * cs] *= scalar;
+    }
+    return this;
+  }
+
+  public Matrix add(final MatrixView B) {
+    Matrix C = toMatrix();
+    new MatrixView(C).uAdd(B);
+    return C;
+  }
+
+  public Matrix sub(final MatrixView B) {
+    Matrix C = toMatrix();
+    new MatrixView(C).uSub(B);
+    return C;
+  }
+
+  public Matrix mul(final double scalar) {
+    Matrix C = toMatrix();
+    ArrayUtils.mul(C.data, 0, scalar, C.data, 0, C.data.length);
+    return C;
+  }
+
+  /**
+   * Returns the matrix product of this view and another view.
+   * The operands are not copied.
+   *
+   * @param B view with {@link #columns()} rows
+   * @return the matrix product
+   */
+  public Matrix mul(final MatrixView B) {
+    Matrix C = new Matrix(rows, B.cols);
+    new MatrixView(C).uAddMul(this, B);
+    return C;
+  }
+
+  public Matrix mul(final Matrix B) {
+    return mul(new MatrixView(B));
+  }
+
+  /**
+   * Adds the matrix product of two views to this view (C = C + A B, in-place).
+   * It is the building block of blocked algorithms.
+   *
+   * @param A view (rows x p)
+   * @param B view (p x cols)
+   * @return this view
+   */
+  public MatrixView uAddMul(final MatrixView A, final MatrixView B) {
+    if (A.cols != B.rows || A.rows != rows || B.cols != cols) {
+      throw new IllegalArgumentException("Invalid dimensions for the matrix product.");
+    }
+    if (rows == 0 || cols == 0 || A.cols == 0)
+      return this;
+    if (cs == 1) {
+      MatrixMultiplication.mul(A.data, A.offset, A.rs, A.cs, B.data, B.offset, B.rs, B.cs,
+          data, offset, rs, rows, cols, A.cols);
+    } else {
+      Matrix C = new Matrix(rows, cols);
+      MatrixMultiplication.mul(A.data, A.offset, A.rs, A.cs, B.data, B.offset, B.rs, B.cs,
+          C.data, 0, cols, rows, cols, A.cols);
+      uAdd(new MatrixView(C));
+    }
+    return this;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    boolean rv = false;
+    if (o != null) {
+      if (o == this)
+        rv = true;
+      else if (o instanceof MatrixView) {
+        MatrixView B = (MatrixView) o;
+        if (rows == B.rows && cols == B.cols) {
+          rv = true;
+          for (int i = 0; i < rows && rv; i++)
+            for (int j = 0; j < cols && rv; j++)
+              if (Double.compare(get(i, j), B.get(i, j)) != 0)
+                rv = false;
+        }
+      }
+    }
+    return rv;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (int r = 0; r < rows; r++) {
+      for (int c = 0; c < cols; c++)
+        sb.append(String.format("%.5f ", get(r, c)));
+      sb.append("\n");
+    }
+    return sb.toString();
+  }
+}
@@ -42,10 +42,6 @@ public class Naive {
      * @return
      */
     public Matrix[] jacobiSVD(Matrix A) {
-        Matrix U = Matrix.identity(A.rows, A.cols), V = Matrix.identity(A.cols, A.rows);
-        Matrix rv[] = {U, A, V};
-
-
-        return rv;
+        return SvdDecomposition.jacobi(A);
     }
 }
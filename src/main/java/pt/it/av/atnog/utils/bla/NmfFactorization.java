@@ -4,6 +4,7 @@ import pt.it.av.atnog.utils.ArrayUtils;
 import pt.it.av.atnog.utils.MathUtils;
 
 import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Non negative matrix factorization.
@@ -11,6 +12,40 @@ import java.util.Arrays;
  * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
  */
 public class NmfFactorization {
+  /**
+   * Minimal relative change of the cost between two convergence checks.
+   */
+  protected static final double TOL = 1E-6;
+  /**
+   * Default number of iterations between two convergence checks.
+   */
+  protected static final int CHECK = 10;
+  /**
+   * Minimal number of elements updated by each parallel task.
+   */
+  private static final int P_GRAIN = 1 << 12;
+
+  /**
+   * Update rules of the factorization.
+   */
+  public enum Rule {
+    /**
+     * Lee-Seung multiplicative updates (euclidean distance).
+     */
+    MU,
+    /**
+     * Hierarchical alternating least squares, coordinate descent over the rank (euclidean distance).
+     */
+    HALS,
+    /**
+     * Alternating least squares projected into the non negative orthant (euclidean distance).
+     */
+    ALS,
+    /**
+     * Lee-Seung multiplicative updates for the generalized Kullback-Leibler divergence.
+     */
+    KL
+  }
 
   /**
    * @param k
@@ -47,11 +82,8 @@ public class NmfFactorization {
       //ht = MatrixTranspose.cotr(h.data, ht, h.rows, h.cols);
       Matrix wn = v.mul(ht);
       //wn = MatrixMultiplication.mul(v.data, ht, wn, v.rows, h.rows, v.cols);
-      Matrix wd = w.mul(h).mul(ht);
-      //hht = MatrixMultiplication.mult(h.data, h.data, hht, h.rows, h.rows, h.cols);
-      //wd = MatrixMultiplication.mul(w.data, hht, wd, w.rows, h.rows, w.cols);
-
-      ArrayUtils.add(wd.data, 0, eps, wd.data, 0, wd.data.length);
+      // W (H H^T) instead of (W H) H^T, the epsilon is added in the same pass
+      Matrix wd = w.lazy().mul(h).mul(ht).add(eps).eval();
 
       //w.smultEq(wn.smultEq(wd.sinvEq()));
       ArrayUtils.mulDiv(w.data, 0, wn.data, 0, wd.data, 0, w.data, 0, k * v.rows);
@@ -68,7 +100,7 @@ public class NmfFactorization {
     Matrix w = Matrix.random(v.rows, k, 0.0, max);
     Matrix h = Matrix.random(k, v.cols, 0.0, max);
 
-    double wh[] = new double[v.data.length], wt[] = new double[w.data.length],
+    double wh[] = new double[v.data.length],
         hn[] = new double[w.cols * v.cols], hd[] = new double[w.cols * v.cols],
         wn[] = new double[v.rows * h.rows], hht[] = new double[h.rows * h.rows],
         wd[] = new double[w.rows * h.rows];
@@ -78,10 +110,9 @@ public class NmfFactorization {
     double cost = ArrayUtils.euclideanDistance(v.data, 0, wh, 0, v.data.length);
 
     for (int i = 0; i < n && cost > e; i++) {
-      // update feature matrix.
-      MatrixTranspose.cotr(w.data, wt, w.rows, w.columns());
-      MatrixMultiplication.mul(wt, v.data, hn, w.cols, v.cols, w.rows);
-      MatrixMultiplication.mul(wt, wh, hd, w.cols, v.cols, w.rows);
+      // update feature matrix (W^T is read through strides, no explicit transpose).
+      MatrixMultiplication.mul(w.data, 1, k, v.data, v.cols, 1, hn, k, v.cols, v.rows);
+      MatrixMultiplication.mul(w.data, 1, k, wh, v.cols, 1, hd, k, v.cols, v.rows);
 
       ArrayUtils.add(hd, 0, eps, hd, 0, hd.length);
       ArrayUtils.mulDiv(h.data, 0, hn, 0, hd, 0, h.data, 0, k * v.cols);
@@ -106,4 +137,365 @@ public class NmfFactorization {
     }
     return new Matrix[]{w, h};
   }
+
+  /**
+   * Non negative matrix factorization of a sparse matrix (multiplicative updates).
+   * <p>
+   * The dense product WH is never computed, the cost is obtained from
+   * ||V - WH||^2 = ||V||^2 - 2 tr(H^T W^T V) + tr(W^T W H H^T),
+   * and V is only used in sparse-dense multiplications.
+   * </p>
+   *
+   * @param v sparse matrix to factorize
+   * @param k rank of the factorization
+   * @param n maximum number of iterations
+   * @param e maximum error (euclidean distance between V and WH)
+   * @return the factors W and H
+   */
+  public static Matrix[] nmf_mu(final SparseMatrix v, final int k, final int n, final double e) {
+    final int rows = v.rows, cols = v.cols;
+    double max = v.max(), eps = MathUtils.eps(), vv = v.squaredNorm();
+    Matrix w = Matrix.random(rows, k, 0.0, max);
+    Matrix h = Matrix.random(k, cols, 0.0, max);
+    final SparseMatrix vt = v.transpose();
+
+    double vtw[] = new double[cols * k], wtw[] = new double[k * k], hht[] = new double[k * k],
+        hd[] = new double[k * cols], ht[] = new double[cols * k], vht[] = new double[rows * k],
+        wd[] = new double[rows * k];
+
+    for (int i = 0; i < n; i++) {
+      // V^T W (W^T V transposed) and W^T W
+      Arrays.fill(vtw, 0.0);
+      vt.mul(w.data, k, vtw);
+      Arrays.fill(wtw, 0.0);
+      MatrixMultiplication.gemm(w.data, 1, k, w.data, k, 1, wtw, k, k, rows);
+      Arrays.fill(hht, 0.0);
+      MatrixMultiplication.gemm(h.data, cols, 1, h.data, 1, cols, hht, k, k, cols);
+
+      double cost = vv + ArrayUtils.dotProduct(wtw, 0, hht, 0, k * k);
+      for (int a = 0; a < k; a++)
+        for (int j = 0; j < cols; j++)
+          cost -= 2.0 * h.data[a * cols + j] * vtw[j * k + a];
+      if (Math.sqrt(Math.max(cost, 0.0)) <= e)
+        break;
+
+      // update feature matrix.
+      Arrays.fill(hd, 0.0);
+      MatrixMultiplication.gemm(wtw, k, 1, h.data, cols, 1, hd, k, cols, k);
+      for (int a = 0; a < k; a++)
+        for (int j = 0; j < cols; j++)
+          h.data[a * cols + j] *= vtw[j * k + a] / (hd[a * cols + j] + eps);
+
+      // update weights matrix
+      MatrixTranspose.cotr(h.data, ht, k, cols);
+      Arrays.fill(vht, 0.0);
+      v.mul(ht, k, vht);
+      Arrays.fill(hht, 0.0);
+      MatrixMultiplication.gemm(h.data, cols, 1, h.data, 1, cols, hht, k, k, cols);
+      Arrays.fill(wd, 0.0);
+      MatrixMultiplication.gemm(w.data, k, 1, hht, k, 1, wd, rows, k, k);
+      ArrayUtils.add(wd, 0, eps, wd, 0, wd.length);
+      ArrayUtils.mulDiv(w.data, 0, vht, 0, wd, 0, w.data, 0, rows * k);
+    }
+    return new Matrix[]{w, h};
+  }
+
+  /**
+   * Single precision non negative matrix factorization (multiplicative updates).
+   * Same algorithm as {@link #nmf_mu2(Matrix, int, int, double)}, W^T and H^T
+   * are read through strides.
+   *
+   * @param v matrix to factorize
+   * @param k rank of the factorization
+   * @param n maximum number of iterations
+   * @param e maximum error (euclidean distance between V and WH)
+   * @return the factors W and H
+   */
+  public static FloatMatrix[] nmf_mu(final FloatMatrix v, final int k, final int n, final float e) {
+    final int rows = v.rows, cols = v.cols;
+    float max = v.max(), eps = Math.ulp(1.0f);
+    FloatMatrix w = FloatMatrix.random(rows, k, 0.0f, max);
+    FloatMatrix h = FloatMatrix.random(k, cols, 0.0f, max);
+
+    float wh[] = new float[v.data.length], hn[] = new float[k * cols], hd[] = new float[k * cols],
+        wn[] = new float[rows * k], hht[] = new float[k * k], wd[] = new float[rows * k];
+
+    // compute WH matrix
+    MatrixMultiplication.mul(w.data, h.data, wh, rows, cols, k);
+    float cost = ArrayUtils.euclideanDistance(v.data, 0, wh, 0, v.data.length);
+
+    for (int i = 0; i < n && cost > e; i++) {
+      // update feature matrix
+      Arrays.fill(hn, 0.0f);
+      Arrays.fill(hd, 0.0f);
+      MatrixMultiplication.mul(w.data, 0, 1, k, v.data, 0, cols, 1, hn, 0, cols, k, cols, rows);
+      MatrixMultiplication.mul(w.data, 0, 1, k, wh, 0, cols, 1, hd, 0, cols, k, cols, rows);
+      ArrayUtils.add(hd, 0, eps, hd, 0, hd.length);
+      ArrayUtils.mulDiv(h.data, 0, hn, 0, hd, 0, h.data, 0, k * cols);
+
+      // update weights matrix
+      Arrays.fill(wn, 0.0f);
+      Arrays.fill(hht, 0.0f);
+      Arrays.fill(wd, 0.0f);
+      MatrixMultiplication.mul(v.data, 0, cols, 1, h.data, 0, 1, cols, wn, 0, k, rows, k, cols);
+      MatrixMultiplication.mul(h.data, 0, cols, 1, h.data, 0, 1, cols, hht, 0, k, k, k, cols);
+      MatrixMultiplication.mul(w.data, hht, wd, rows, k, k);
+      ArrayUtils.add(wd, 0, eps, wd, 0, wd.length);
+      ArrayUtils.mulDiv(w.data, 0, wn, 0, wd, 0, w.data, 0, rows * k);
+
+      // compute WH matrix
+      Arrays.fill(wh, 0.0f);
+      MatrixMultiplication.mul(w.data, h.data, wh, rows, cols, k);
+      cost = ArrayUtils.euclideanDistance(v.data, 0, wh, 0, v.data.length);
+    }
+    return new FloatMatrix[]{w, h};
+  }
+
+  /**
+   * Non negative matrix factorization with a given update rule.
+   * The factors are initialized with random numbers between [0, max(V)[.
+   *
+   * @param v    matrix to factorize
+   * @param k    rank of the factorization
+   * @param n    maximum number of iterations
+   * @param e    maximum cost (euclidean distance or KL divergence between V and WH)
+   * @param rule update rule
+   * @return the factors W and H
+   */
+  public static Matrix[] nmf(final Matrix v, final int k, final int n, final double e, final Rule rule) {
+    double max = v.max();
+    return nmf(v, Matrix.random(v.rows, k, 0.0, max), Matrix.random(k, v.cols, 0.0, max), n, e, rule,
+        CHECK);
+  }
+
+  /**
+   * Non negative matrix factorization with a given update rule, starting from the factors W and H
+   * (e.g. the result of a previous factorization).
+   * <p>
+   * The matrix products and the updates are computed in parallel.
+   * The cost is only computed every {@code check} iterations, the factorization stops
+   * when it is below {@code e} or its relative change is below {@value #TOL}.
+   * For the euclidean rules the cost is obtained from the products used by the updates,
+   * ||V - WH||^2 = ||V||^2 - 2 tr(H^T W^T V) + tr(W^T W H H^T).
+   * </p>
+   *
+   * @param v     matrix to factorize
+   * @param w0    initial W (it is not modified)
+   * @param h0    initial H (it is not modified)
+   * @param n     maximum number of iterations
+   * @param e     maximum cost (euclidean distance or KL divergence between V and WH)
+   * @param rule  update rule
+   * @param check number of iterations between two convergence checks
+   * @return the factors W and H
+   */
+  public static Matrix[] nmf(final Matrix v, final Matrix w0, final Matrix h0, final int n,
+                             final double e, final Rule rule, final int check) {
+    if (w0.rows != v.rows || h0.cols != v.cols || w0.cols != h0.rows || check < 1) {
+      throw new IllegalArgumentException("Invalid factorization arguments.");
+    }
+    final int rows = v.rows, cols = v.cols, k = w0.cols;
+    final Matrix w = new Matrix(w0), h = new Matrix(h0);
+    final double vv = ArrayUtils.dotProduct(v.data, 0, v.data, 0, v.data.length), eps = MathUtils.eps();
+    final double hn[] = new double[k * cols], wn[] = new double[rows * k], wtw[] = new double[k * k],
+        hht[] = new double[k * k], t[] = new double[Math.max(k * cols, rows * k)],
+        wh[] = rule == Rule.KL ? new double[rows * cols] : null;
+    double prev = Double.POSITIVE_INFINITY;
+
+    for (int i = 0; i < n; i++) {
+      final boolean test = i % check == 0;
+      if (rule == Rule.KL) {
+        Arrays.fill(wh, 0.0);
+        MatrixMultiplication.mul(w.data, h.data, wh, rows, cols, k);
+        if (test) {
+          double cost = divergence(v.data, wh);
+          if (cost <= e || Math.abs(prev - cost) <= TOL * cost)
+            break;
+          prev = cost;
+        }
+        // update feature matrix
+        quotient(v.data, wh);
+        Arrays.fill(hn, 0.0);
+        MatrixMultiplication.mul(w.data, 1, k, wh, cols, 1, hn, k, cols, rows);
+        sums(w.data, 1, k, t, k, rows);
+        for (int a = 0; a < k; a++)
+          t[a] += eps;
+        ArrayUtils.mul(h.data, 0, hn, 0, h.data, 0, hn.length);
+        for (int a = 0; a < k; a++)
+          ArrayUtils.div(h.data, a * cols, t[a], h.data, a * cols, cols);
+
+        // update weights matrix
+        Arrays.fill(wh, 0.0);
+        MatrixMultiplication.mul(w.data, h.data, wh, rows, cols, k);
+        quotient(v.data, wh);
+        Arrays.fill(wn, 0.0);
+        MatrixMultiplication.mul(wh, cols, 1, h.data, 1, cols, wn, rows, k, cols);
+        sums(h.data, cols, 1, t, k, cols);
+        for (int r = 0; r < rows; r++)
+          for (int a = 0; a < k; a++)
+            w.data[r * k + a] *= wn[r * k + a] / (t[a] + eps);
+      } else {
+        // W^T V and W^T W
+        Arrays.fill(hn, 0.0);
+        MatrixMultiplication.mul(w.data, 1, k, v.data, cols, 1, hn, k, cols, rows);
+        Arrays.fill(wtw, 0.0);
+        MatrixMultiplication.mul(w.data, 1, k, w.data, k, 1, wtw, k, k, rows);
+        if (test) {
+          Arrays.fill(hht, 0.0);
+          MatrixMultiplication.mul(h.data, cols, 1, h.data, 1, cols, hht, k, k, cols);
+          double cost = Math.sqrt(Math.max(vv - 2.0 * ArrayUtils.dotProduct(hn, 0, h.data, 0, hn.length)
+              + ArrayUtils.dotProduct(wtw, 0, hht, 0, wtw.length), 0.0));
+          if (cost <= e || Math.abs(prev - cost) <= TOL * cost)
+            break;
+          prev = cost;
+        }
+        // update feature matrix
+        update(rule, h.data, cols, 1, hn, wtw, t, k, cols);
+
+        // update weights matrix (W^T is updated as a k x rows matrix)
+        Arrays.fill(wn, 0.0);
+        MatrixMultiplication.mul(v.data, cols, 1, h.data, 1, cols, wn, rows, k, cols);
+        Arrays.fill(hht, 0.0);
+        MatrixMultiplication.mul(h.data, cols, 1, h.data, 1, cols, hht, k, k, cols);
+        update(rule, w.data, 1, k, wn, hht, t, k, rows);
+      }
+    }
+    return new Matrix[]{w, h};
+  }
+
+  /**
+   * Updates the matrix X (k x n) with one of the euclidean rules, given G (k x k) and A (k x n)
+   * with the same layout as X. For H: G = W^T W and A = W^T V, for W^T: G = H H^T and A = H V^T.
+   * The element (a, j) of X and A is stored in {@code a * xs + j * xt}.
+   * The columns of X are independent, as such they are updated in parallel.
+   */
+  static void update(final Rule rule, final double x[], final int xs, final int xt,
+                     final double num[], final double g[], final double t[],
+                     final int k, final int n) {
+    final double eps = MathUtils.eps();
+    final boolean parallel = (long) k * n >= P_GRAIN && ForkJoinPool.getCommonPoolParallelism() > 1;
+    final int grain = Math.max(1, P_GRAIN / k);
+    switch (rule) {
+      case HALS:
+        MatrixTranspose.range(n, grain, parallel, (b, e) -> {
+          for (int j = b; j < e; j++) {
+            for (int a = 0; a < k; a++) {
+              final double gaa = g[a * k + a];
+              if (gaa > 0.0) {
+                double s = num[a * xs + j * xt];
+                for (int c = 0; c < k; c++)
+                  s -= g[a * k + c] * x[c * xs + j * xt];
+                final int idx = a * xs + j * xt;
+                x[idx] = Math.max(eps, x[idx] + s / gaa);
+              }
+            }
+          }
+        });
+        break;
+      case ALS:
+        final double l[] = cholesky(g, k);
+        MatrixTranspose.range(n, grain, parallel, (b, e) -> {
+          final double y[] = new double[k];
+          for (int j = b; j < e; j++) {
+            for (int a = 0; a < k; a++)
+              y[a] = num[a * xs + j * xt];
+            solve(l, y, k);
+            for (int a = 0; a < k; a++)
+              x[a * xs + j * xt] = Math.max(0.0, y[a]);
+          }
+        });
+        break;
+      default:
+        // T = G X (row-major)
+        Arrays.fill(t, 0, k * n, 0.0);
+        MatrixMultiplication.mul(g, k, 1, x, xs, xt, t, k, n, k);
+        MatrixTranspose.range(n, grain, parallel, (b, e) -> {
+          for (int a = 0; a < k; a++) {
+            for (int j = b; j < e; j++) {
+              final int idx = a * xs + j * xt;
+              x[idx] *= num[idx] / (t[a * n + j] + eps);
+            }
+          }
+        });
+    }
+  }
+
+  /**
+   * Returns the cholesky factor (lower triangular) of a k x k symmetric matrix.
+   * A small ridge is added to the diagonal, since G can be singular.
+   */
+  private static double[] cholesky(final double g[], final int k) {
+    double trace = 0.0;
+    for (int a = 0; a < k; a++)
+      trace += g[a * k + a];
+    final double ridge = 1E-12 * trace / k + Double.MIN_NORMAL, l[] = new double[k * k];
+    for (int i = 0; i < k; i++) {
+      for (int j = 0; j <= i; j++) {
+        double s = g[i * k + j];
+        for (int p = 0; p < j; p++)
+          s -= l[i * k + p] * l[j * k + p];
+        if (i == j)
+          l[i * k + i] = Math.sqrt(Math.max(s + ridge, ridge));
+        else
+          l[i * k + j] = s / l[j * k + j];
+      }
+    }
+    return l;
+  }
+
+  /**
+   * Solves (L L^T) x = y in place, given the cholesky factor L.
+   */
+  private static void solve(final double l[], final double y[], final int k) {
+    for (int i = 0; i < k; i++) {
+      double s = y[i];
+      for (int p = 0; p < i; p++)
+        s -= l[i * k + p] * y[p];
+      y[i] = s / l[i * k + i];
+    }
+    for (int i = k - 1; i >= 0; i--) {
+      double s = y[i];
+      for (int p = i + 1; p < k; p++)
+        s -= l[p * k + i] * y[p];
+      y[i] = s / l[i * k + i];
+    }
+  }
+
+  /**
+   * Returns the generalized Kullback-Leibler divergence between V and WH.
+   */
+  private static double divergence(final double v[], final double wh[]) {
+    final double eps = MathUtils.eps();
+    double rv = 0.0;
+    for (int i = 0; i < v.length; i++) {
+      rv += wh[i];
+      if (v[i] > 0.0)
+        rv += v[i] * Math.log(v[i] / (wh[i] + eps)) - v[i];
+    }
+    return rv;
+  }
+
+  /**
+   * Replaces WH with the quotient V / WH.
+   */
+  private static void quotient(final double v[], final double wh[]) {
+    final double eps = MathUtils.eps();
+    final boolean parallel = wh.length >= P_GRAIN && ForkJoinPool.getCommonPoolParallelism() > 1;
+    MatrixTranspose.range(wh.length, P_GRAIN, parallel, (b, e) -> {
+      for (int i = b; i < e; i++)
+        wh[i] = v[i] / (wh[i] + eps);
+    });
+  }
+
+  /**
+   * Stores the sum of each of the k rows (of a strided k x n matrix) in the first k elements of rv.
+   */
+  private static void sums(final double x[], final int xs, final int xt, final double rv[],
+                           final int k, final int n) {
+    for (int a = 0; a < k; a++) {
+      double s = 0.0;
+      for (int j = 0; j < n; j++)
+        s += x[a * xs + j * xt];
+      rv[a] = s;
+    }
+  }
 }
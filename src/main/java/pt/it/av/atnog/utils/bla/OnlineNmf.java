@@ -0,0 +1,149 @@
+package pt.it.av.atnog.utils.bla;
+
+import pt.it.av.atnog.utils.ArrayUtils;
+
+/**
+ * Online (incremental) non negative matrix factorization.
+ * <p>
+ * The columns of V arrive in mini-batches. For each batch the coefficients H are computed
+ * with W fixed (non negative least squares), and W is updated with coordinate descent (HALS)
+ * over the sufficient statistics A = sum(H H^T) (k x k) and B = sum(V H^T) (rows x k).
+ * As such, the memory does not depend on the number of columns seen so far.
+ * A decay factor below 1 forgets older batches, useful when the topics drift.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public class OnlineNmf {
+  private static final int H_ITERATIONS = 10, W_ITERATIONS = 3;
+  private final int rows, k;
+  private final double decay;
+  private final Matrix a, b;
+  private Matrix w;
+  private long columns = 0;
+
+  /**
+   * Creates an online factorization, W is initialized from the first batch.
+   *
+   * @param rows  number of rows of V
+   * @param k     rank of the factorization
+   * @param decay weight of the previous batches, between ]0, 1]
+   */
+  public OnlineNmf(final int rows, final int k, final double decay) {
+    this(null, new Matrix(k, k), new Matrix(rows, k), decay);
+  }
+
+  /**
+   * Creates an online factorization that starts from a given W
+   * (e.g. the result of a full factorization).
+   *
+   * @param w     initial W (it is not modified)
+   * @param decay weight of the previous batches, between ]0, 1]
+   */
+  public OnlineNmf(final Matrix w, final double decay) {
+    this(w, new Matrix(w.cols, w.cols), new Matrix(w.rows, w.cols), decay);
+  }
+
+  /**
+   * Restores an online factorization from its state, see {@link #state()}.
+   *
+   * @param w     W (rows x k)
+   * @param a     sum(H H^T) (k x k)
+   * @param b     sum(V H^T) (rows x k)
+   * @param decay weight of the previous batches, between ]0, 1]
+   */
+  public OnlineNmf(final Matrix w, final Matrix a, final Matrix b, final double decay) {
+    if (decay <= 0.0 || decay > 1.0) {
+      throw new IllegalArgumentException("The decay must be between ]0, 1].");
+    }
+    if (a.rows != a.cols || b.cols != a.rows || (w != null && (w.rows != b.rows || w.cols != b.cols))) {
+      throw new IllegalArgumentException("Invalid factorization state.");
+    }
+    this.rows = b.rows;
+    this.k = b.cols;
+    this.decay = decay;
+    this.w = w != null ? new Matrix(w) : null;
+    this.a = new Matrix(a);
+    this.b = new Matrix(b);
+  }
+
+  /**
+   * Returns the number of columns seen so far.
+   *
+   * @return the number of columns seen so far
+   */
+  public long columns() {
+    return columns;
+  }
+
+  /**
+   * Returns a copy of the current W.
+   *
+   * @return a copy of the current W
+   */
+  public Matrix w() {
+    return w != null ? new Matrix(w) : null;
+  }
+
+  /**
+   * Returns a copy of the state (W, sum(H H^T) and sum(V H^T)), e.g. to checkpoint it.
+   *
+   * @return a copy of the state
+   */
+  public Matrix[] state() {
+    return new Matrix[]{w(), new Matrix(a), new Matrix(b)};
+  }
+
+  /**
+   * Returns the coefficients H of a batch of columns, W is not updated.
+   *
+   * @param batch columns of V (rows x n)
+   * @return the coefficients H (k x n)
+   */
+  public Matrix project(final Matrix batch) {
+    if (batch.rows != rows) {
+      throw new IllegalArgumentException("The batch must have " + rows + " rows.");
+    }
+    if (w == null) {
+      w = Matrix.random(rows, k, 0.0, batch.max());
+    }
+    final int n = batch.cols;
+    Matrix h = new Matrix(k, n);
+    double wtv[] = new double[k * n], wtw[] = new double[k * k];
+    MatrixMultiplication.mul(w.data, 1, k, batch.data, n, 1, wtv, k, n, rows);
+    MatrixMultiplication.mul(w.data, 1, k, w.data, k, 1, wtw, k, k, rows);
+    // least squares projection followed by coordinate descent
+    NmfFactorization.update(NmfFactorization.Rule.ALS, h.data, n, 1, wtv, wtw, null, k, n);
+    for (int i = 0; i < H_ITERATIONS; i++)
+      NmfFactorization.update(NmfFactorization.Rule.HALS, h.data, n, 1, wtv, wtw, null, k, n);
+    return h;
+  }
+
+  /**
+   * Adds a batch of columns to the factorization.
+   * Computes their coefficients H and updates W.
+   *
+   * @param batch columns of V (rows x n)
+   * @return the coefficients H (k x n) of the batch
+   */
+  public Matrix update(final Matrix batch) {
+    Matrix h = project(batch);
+    final int n = batch.cols;
+    // A = decay A + H H^T and B = decay B + V H^T
+    ArrayUtils.mul(a.data, 0, decay, a.data, 0, a.data.length);
+    MatrixMultiplication.mul(h.data, n, 1, h.data, 1, n, a.data, k, k, n);
+    ArrayUtils.mul(b.data, 0, decay, b.data, 0, b.data.length);
+    MatrixMultiplication.mul(batch.data, n, 1, h.data, 1, n, b.data, rows, k, n);
+    // W^T is updated as a k x rows matrix
+    for (int i = 0; i < W_ITERATIONS; i++)
+      NmfFactorization.update(NmfFactorization.Rule.HALS, w.data, 1, k, b.data, a.data, null, k, rows);
+    columns += n;
+    return h;
+  }
+
+  @Override
+  public String toString() {
+    return "OnlineNmf(" + rows + "x" + k + ", columns=" + columns + ", decay=" + decay + ")";
+  }
+}
@@ -0,0 +1,246 @@
+package pt.it.av.atnog.utils.bla;
+
+import pt.it.av.atnog.utils.ArrayUtils;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Pairwise distances and similarities between two sets of vectors.
+ * <p>
+ * The vectors are the rows of the matrices A (n x d) and B (m x d), and the result is a n x m matrix.
+ * The metrics that can be written with inner products go through the matrix multiplication:
+ * the squared euclidean distance is computed as ||a||^2 + ||b||^2 - 2 a.b with the norms computed once,
+ * the cosine with the products of the normalized rows, the correlation with the products of the
+ * centered and normalized rows, and the Kullback-Leibler divergence with the products of A and log(B).
+ * The remaining passes over the result run in parallel across the rows.
+ * The results match the pairwise methods of {@link Vector} (up to rounding).
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public final class PairwiseDistances {
+  private static final int P_WORK = 1 << 16;
+
+  /**
+   * Utility class, lets make the constructor private.
+   */
+  private PairwiseDistances() {
+  }
+
+  /**
+   * Runs a range of rows, in parallel for large matrices.
+   */
+  private static void rows(final int n, final int len, final MatrixTranspose.Range r) {
+    final int grain = Math.max(1, P_WORK / Math.max(1, len));
+    final boolean parallel = (long) n * len >= 2L * P_WORK && ForkJoinPool.getCommonPoolParallelism() > 1;
+    MatrixTranspose.range(n, grain, parallel, r);
+  }
+
+  private static void check(final Matrix A, final Matrix B) {
+    if (A.cols != B.cols) {
+      throw new IllegalArgumentException("The vectors must have the same length.");
+    }
+  }
+
+  /**
+   * Returns A B^T (the inner products between the rows).
+   */
+  private static Matrix products(final Matrix A, final Matrix B) {
+    final int d = A.cols;
+    Matrix C = new Matrix(A.rows, B.rows);
+    if (d > 0)
+      MatrixMultiplication.mul(A.data, d, 1, B.data, 1, d, C.data, A.rows, B.rows, d);
+    return C;
+  }
+
+  /**
+   * Returns the squared norms of the rows.
+   */
+  private static double[] norms(final Matrix A) {
+    final int d = A.cols;
+    final double rv[] = new double[A.rows];
+    rows(A.rows, d, (b, e) -> {
+      for (int i = b; i < e; i++)
+        rv[i] = ArrayUtils.dotProduct(A.data, i * d, A.data, i * d, d);
+    });
+    return rv;
+  }
+
+  /**
+   * Returns the rows centered (if center is true) and normalized, zero rows are kept.
+   */
+  private static Matrix normalize(final Matrix A, final boolean center) {
+    final int d = A.cols;
+    Matrix rv = new Matrix(A);
+    rows(A.rows, d, (b, e) -> {
+      for (int i = b; i < e; i++) {
+        if (center)
+          ArrayUtils.sub(rv.data, i * d, ArrayUtils.mean(rv.data, i * d, d), rv.data, i * d, d);
+        final double norm = Math.sqrt(ArrayUtils.dotProduct(rv.data, i * d, rv.data, i * d, d));
+        if (norm > 0.0)
+          ArrayUtils.div(rv.data, i * d, norm, rv.data, i * d, d);
+      }
+    });
+    return rv;
+  }
+
+  /**
+   * Returns the inner products between the rows of A and the rows of B.
+   *
+   * @param A vectors (n x d)
+   * @param B vectors (m x d)
+   * @return the inner products (n x m)
+   */
+  public static Matrix innerProduct(final Matrix A, final Matrix B) {
+    check(A, B);
+    return products(A, B);
+  }
+
+  /**
+   * Returns the squared euclidean distances between the rows of A and the rows of B.
+   *
+   * @param A vectors (n x d)
+   * @param B vectors (m x d)
+   * @return the squared euclidean distances (n x m)
+   */
+  public static Matrix squaredEuclidean(final Matrix A, final Matrix B) {
+    check(A, B);
+    final double na[] = norms(A), nb[] = A == B ? na : norms(B);
+    final int m = B.rows;
+    Matrix C = products(A, B);
+    final double c[] = C.data;
+    rows(A.rows, m, (b, e) -> {
+      for (int i = b; i < e; i++)
+        for (int j = 0; j < m; j++)
+          c[i * m + j] = Math.max(0.0, na[i] + nb[j] - 2.0 * c[i * m + j]);
+    });
+    // the distance between a vector and itself is exactly zero
+    if (A == B)
+      for (int i = 0; i < m; i++)
+        c[i * m + i] = 0.0;
+    return C;
+  }
+
+  /**
+   * Returns the euclidean distances between the rows of A and the rows of B.
+   *
+   * @param A vectors (n x d)
+   * @param B vectors (m x d)
+   * @return the euclidean distances (n x m)
+   */
+  public static Matrix euclidean(final Matrix A, final Matrix B) {
+    Matrix C = squaredEuclidean(A, B);
+    final double c[] = C.data;
+    rows(A.rows, B.rows, (b, e) -> {
+      for (int i = b * B.rows; i < e * B.rows; i++)
+        c[i] = Math.sqrt(c[i]);
+    });
+    return C;
+  }
+
+  /**
+   * Returns the manhattan distances between the rows of A and the rows of B
+   * (computed directly, it can not be written with inner products).
+   *
+   * @param A vectors (n x d)
+   * @param B vectors (m x d)
+   * @return the manhattan distances (n x m)
+   */
+  public static Matrix manhattan(final Matrix A, final Matrix B) {
+    check(A, B);
+    final int d = A.cols, m = B.rows;
+    Matrix C = new Matrix(A.rows, m);
+    rows(A.rows, m * d, (b, e) -> {
+      for (int i = b; i < e; i++)
+        for (int j = 0; j < m; j++)
+          C.data[i * m + j] = ArrayUtils.manhattanDistance(A.data, i * d, B.data, j * d, d);
+    });
+    return C;
+  }
+
+  /**
+   * Returns the cosine similarities between the rows of A and the rows of B.
+   * As in {@link Vector#cosine(Vector)}, negative similarities are returned as zero.
+   *
+   * @param A vectors (n x d)
+   * @param B vectors (m x d)
+   * @return the cosine similarities (n x m)
+   */
+  public static Matrix cosine(final Matrix A, final Matrix B) {
+    check(A, B);
+    final Matrix An = normalize(A, false);
+    Matrix C = products(An, A == B ? An : normalize(B, false));
+    final double c[] = C.data;
+    rows(A.rows, B.rows, (b, e) -> {
+      for (int i = b * B.rows; i < e * B.rows; i++)
+        c[i] = Math.max(0.0, c[i]);
+    });
+    return C;
+  }
+
+  /**
+   * Returns the (Pearson) correlations between the rows of A and the rows of B,
+   * see {@link Vector#corr(Vector)}.
+   *
+   * @param A vectors (n x d)
+   * @param B vectors (m x d)
+   * @return the correlations (n x m)
+   */
+  public static Matrix correlation(final Matrix A, final Matrix B) {
+    check(A, B);
+    final Matrix Ac = normalize(A, true);
+    return products(Ac, A == B ? Ac : normalize(B, true));
+  }
+
+  /**
+   * Returns the Kullback-Leibler divergences between the rows of A and the rows of B,
+   * with the conventions of {@link Vector#kld(Vector)} (the terms where b is zero contribute a).
+   * <p>
+   * KL(a, b) = sum(a log a) - a.log(b) + (a - a log a).[b == 0], where the last product
+   * is only needed when B has zeros.
+   * </p>
+   *
+   * @param A non negative vectors (n x d)
+   * @param B non negative vectors (m x d)
+   * @return the divergences (n x m)
+   */
+  public static Matrix kld(final Matrix A, final Matrix B) {
+    check(A, B);
+    final int n = A.rows, m = B.rows, d = A.cols;
+    // log(B) (zeros are kept) and the indicator of the zeros of B
+    final Matrix L = new Matrix(m, d), Z = new Matrix(m, d);
+    boolean zeros = false;
+    for (int i = 0; i < L.data.length; i++) {
+      if (B.data[i] != 0.0) {
+        L.data[i] = Math.log(B.data[i]);
+      } else {
+        Z.data[i] = 1.0;
+        zeros = true;
+      }
+    }
+    // a log a (0 log 0 = 0) and the entropy terms
+    final Matrix Alog = new Matrix(n, d);
+    final double h[] = new double[n];
+    for (int i = 0; i < n; i++)
+      for (int k = 0; k < d; k++) {
+        final double a = A.data[i * d + k];
+        if (a != 0.0) {
+          Alog.data[i * d + k] = a * Math.log(a);
+          h[i] += Alog.data[i * d + k];
+        }
+      }
+    Matrix C = products(A, L);
+    final double c[] = C.data;
+    rows(n, m, (b, e) -> {
+      for (int i = b; i < e; i++)
+        for (int j = 0; j < m; j++)
+          c[i * m + j] = h[i] - c[i * m + j];
+    });
+    if (zeros) {
+      ArrayUtils.sub(A.data, 0, Alog.data, 0, Alog.data, 0, Alog.data.length);
+      MatrixMultiplication.mul(Alog.data, d, 1, Z.data, 1, d, c, n, m, d);
+    }
+    return C;
+  }
+}
@@ -0,0 +1,419 @@
+package pt.it.av.atnog.utils.bla;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Blocked Householder QR decomposition (A = QR).
+ * <p>
+ * The columns are factorized in panels of {@value #NB} columns.
+ * The reflectors of a panel are grouped into the compact WY form
+ * H = H1 H2 ... Hnb = I - V T V^T (V is unit lower trapezoidal and T upper triangular),
+ * as such the update of the trailing matrix is done with two matrix multiplications.
+ * Q is never formed explicitly: the reflectors are stored below the diagonal of R and
+ * applied on demand, see {@link #qtmul(Matrix)} and {@link #qmul(Matrix)}.
+ * </p>
+ * <p>
+ * Tall-skinny matrices can be factorized with {@link #tsqr(Matrix)}, which factorizes
+ * blocks of rows in parallel and combines their R factors.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public class QrDecomposition {
+  /**
+   * Number of columns of each panel.
+   */
+  protected static final int NB = 32;
+  private final int rows, cols, r;
+  // TSQR: the decompositions of the blocks of rows and of the stacked R factors
+  private final QrDecomposition blocks[], top;
+  private final int offsets[];
+  // factorized matrix (R and the reflectors), scalar factors, and the V and T of each panel
+  private final double qr[], tau[], v[][], t[][];
+
+  /**
+   * Computes the QR decomposition of a matrix.
+   *
+   * @param A matrix (it is not modified)
+   */
+  public QrDecomposition(final Matrix A) {
+    rows = A.rows;
+    cols = A.cols;
+    r = Math.min(rows, cols);
+    blocks = null;
+    top = null;
+    offsets = null;
+    qr = Arrays.copyOf(A.data, A.data.length);
+    tau = new double[r];
+    final int panels = (r + NB - 1) / NB;
+    v = new double[panels][];
+    t = new double[panels][];
+    for (int p = 0; p < panels; p++) {
+      final int j = p * NB, nb = Math.min(NB, r - j);
+      panel(j, nb);
+      v[p] = v(j, nb);
+      t[p] = t(v[p], j, nb);
+      // apply H^T to the trailing columns
+      if (j + nb < cols)
+        apply(v[p], t[p], nb, qr, j * cols + j + nb, cols, rows - j, cols - j - nb, true);
+    }
+  }
+
+  /**
+   * TSQR decomposition, combines the decompositions of blocks of rows.
+   */
+  private QrDecomposition(final int rows, final int cols, final QrDecomposition blocks[],
+                          final int offsets[], final QrDecomposition top) {
+    this.rows = rows;
+    this.cols = cols;
+    this.r = cols;
+    this.blocks = blocks;
+    this.offsets = offsets;
+    this.top = top;
+    qr = tau = null;
+    v = t = null;
+  }
+
+  /**
+   * Computes the QR decomposition of a tall-skinny matrix (TSQR).
+   * The matrix is split into blocks of rows that are factorized in parallel.
+   *
+   * @param A tall-skinny matrix (rows &gt;= cols)
+   * @return the QR decomposition
+   */
+  public static QrDecomposition tsqr(final Matrix A) {
+    return tsqr(A, ForkJoinPool.getCommonPoolParallelism());
+  }
+
+  /**
+   * Computes the QR decomposition of a tall-skinny matrix (TSQR) with a given number of blocks.
+   * The number of blocks is reduced so that each block has at least 2 * cols rows.
+   *
+   * @param A tall-skinny matrix (rows &gt;= cols)
+   * @param p number of blocks of rows
+   * @return the QR decomposition
+   */
+  public static QrDecomposition tsqr(final Matrix A, int p) {
+    if (A.rows < A.cols) {
+      throw new IllegalArgumentException("TSQR requires a tall matrix.");
+    }
+    p = Math.min(p, A.rows / (2 * Math.max(1, A.cols)));
+    if (p < 2)
+      return new QrDecomposition(A);
+    final int n = A.cols, offsets[] = new int[p + 1];
+    for (int i = 0; i <= p; i++)
+      offsets[i] = (int) ((long) A.rows * i / p);
+    final QrDecomposition blocks[] = new QrDecomposition[p];
+    MatrixTranspose.range(p, 1, ForkJoinPool.getCommonPoolParallelism() > 1, (b, e) -> {
+      for (int i = b; i < e; i++)
+        blocks[i] = new QrDecomposition(new Matrix(offsets[i + 1] - offsets[i], n,
+            Arrays.copyOfRange(A.data, offsets[i] * n, offsets[i + 1] * n)));
+    });
+    // stack the R factors (n x n each)
+    Matrix S = new Matrix(p * n, n);
+    for (int i = 0; i < p; i++)
+      blocks[i].r(S.data, i * n * n);
+    return new QrDecomposition(A.rows, A.cols, blocks, offsets, tsqr(S, 1));
+  }
+
+  /**
+   * Factorizes the panel with nb columns that starts in the diagonal element (j, j)
+   * (unblocked, one reflector per column).
+   */
+  private void panel(final int j, final int nb) {
+    for (int c = j; c < j + nb; c++) {
+      // reflector that zeros the elements below (c, c)
+      double alpha = qr[c * cols + c], norm = 0.0;
+      for (int i = c + 1; i < rows; i++)
+        norm += qr[i * cols + c] * qr[i * cols + c];
+      norm = Math.sqrt(norm);
+      if (norm == 0.0) {
+        tau[c] = 0.0;
+        continue;
+      }
+      final double beta = -Math.copySign(Math.hypot(alpha, norm), alpha), s = 1.0 / (alpha - beta);
+      tau[c] = (beta - alpha) / beta;
+      for (int i = c + 1; i < rows; i++)
+        qr[i * cols + c] *= s;
+      qr[c * cols + c] = beta;
+      // apply it to the remaining columns of the panel
+      for (int k = c + 1; k < j + nb; k++) {
+        double w = qr[c * cols + k];
+        for (int i = c + 1; i < rows; i++)
+          w += qr[i * cols + c] * qr[i * cols + k];
+        w *= tau[c];
+        qr[c * cols + k] -= w;
+        for (int i = c + 1; i < rows; i++)
+          qr[i * cols + k] -= w * qr[i * cols + c];
+      }
+    }
+  }
+
+  /**
+   * Returns V ((rows - j) x nb, unit lower trapezoidal) of the panel that starts in (j, j).
+   */
+  private double[] v(final int j, final int nb) {
+    final int m = rows - j;
+    double rv[] = new double[m * nb];
+    for (int i = 0; i < m; i++)
+      for (int c = 0; c < nb && c <= i; c++)
+        rv[i * nb + c] = i == c ? 1.0 : qr[(j + i) * cols + j + c];
+    return rv;
+  }
+
+  /**
+   * Returns the upper triangular T (nb x nb) of the compact WY form, H = I - V T V^T.
+   */
+  private double[] t(final double vp[], final int j, final int nb) {
+    final int m = rows - j;
+    double rv[] = new double[nb * nb], w[] = new double[nb];
+    for (int c = 0; c < nb; c++) {
+      final double tc = tau[j + c];
+      // w = V(:, 0:c)^T v_c
+      Arrays.fill(w, 0, c, 0.0);
+      for (int i = c; i < m; i++) {
+        final double vi = vp[i * nb + c];
+        for (int k = 0; k < c; k++)
+          w[k] += vp[i * nb + k] * vi;
+      }
+      // T(0:c, c) = -tau_c T(0:c, 0:c) w
+      for (int k = 0; k < c; k++) {
+        double s = 0.0;
+        for (int l = k; l < c; l++)
+          s += rv[k * nb + l] * w[l];
+        rv[k * nb + c] = -tc * s;
+      }
+      rv[c * nb + c] = tc;
+    }
+    return rv;
+  }
+
+  /**
+   * Applies the block reflector H = I - V T V^T (or H^T if trans is true) to the m x n matrix
+   * C stored in {@code c} (offset {@code off}, row stride {@code ldc}), C = H C.
+   */
+  private static void apply(final double vp[], final double tp[], final int nb, final double c[],
+                            final int off, final int ldc, final int m, final int n, final boolean trans) {
+    // W = V^T C
+    double w[] = new double[nb * n];
+    MatrixMultiplication.mul(vp, 0, 1, nb, c, off, ldc, 1, w, 0, n, nb, n, m);
+    // W = -T W (or -T^T W), T is triangular and the product is computed in place
+    if (trans) {
+      for (int i = nb - 1; i >= 0; i--)
+        for (int j = 0; j < n; j++) {
+          double s = 0.0;
+          for (int k = 0; k <= i; k++)
+            s += tp[k * nb + i] * w[k * n + j];
+          w[i * n + j] = -s;
+        }
+    } else {
+      for (int i = 0; i < nb; i++)
+        for (int j = 0; j < n; j++) {
+          double s = 0.0;
+          for (int k = i; k < nb; k++)
+            s += tp[i * nb + k] * w[k * n + j];
+          w[i * n + j] = -s;
+        }
+    }
+    // C = C + V W
+    MatrixMultiplication.mul(vp, 0, nb, 1, w, 0, n, 1, c, off, ldc, m, n, nb);
+  }
+
+  /**
+   * Returns the number of rows of the factorized matrix.
+   *
+   * @return the number of rows of the factorized matrix
+   */
+  public int rows() {
+    return rows;
+  }
+
+  /**
+   * Returns the number of columns of the factorized matrix.
+   *
+   * @return the number of columns of the factorized matrix
+   */
+  public int columns() {
+    return cols;
+  }
+
+  /**
+   * Returns the upper triangular factor R (min(rows, cols) x cols).
+   *
+   * @return the upper triangular factor R
+   */
+  public Matrix r() {
+    Matrix R = new Matrix(r, cols);
+    r(R.data, 0);
+    return R;
+  }
+
+  /**
+   * Copies R into an array (row-major, starting at off).
+   */
+  private void r(final double dst[], final int off) {
+    if (top != null) {
+      top.r(dst, off);
+    } else {
+      for (int i = 0; i < r; i++)
+        System.arraycopy(qr, i * cols + i, dst, off + i * cols + i, cols - i);
+    }
+  }
+
+  /**
+   * Returns the first min(rows, cols) rows of Q^T B, without forming Q.
+   *
+   * @param B matrix with the same number of rows as the factorized matrix
+   * @return the first min(rows, cols) rows of Q^T B
+   */
+  public Matrix qtmul(final Matrix B) {
+    if (B.rows != rows) {
+      throw new IllegalArgumentException("The matrix must have " + rows + " rows.");
+    }
+    final int n = B.cols;
+    Matrix rv = new Matrix(r, n);
+    if (top != null) {
+      // Q^T B = Qtop^T [Q1^T B1; ...; Qp^T Bp]
+      Matrix S = new Matrix(blocks.length * cols, n);
+      for (int i = 0; i < blocks.length; i++) {
+        Matrix Bi = new Matrix(offsets[i + 1] - offsets[i], n,
+            Arrays.copyOfRange(B.data, offsets[i] * n, offsets[i + 1] * n));
+        System.arraycopy(blocks[i].qtmul(Bi).data, 0, S.data, i * cols * n, cols * n);
+      }
+      rv = top.qtmul(S);
+    } else {
+      double c[] = Arrays.copyOf(B.data, B.data.length);
+      for (int p = 0; p < v.length; p++) {
+        final int j = p * NB, nb = Math.min(NB, r - j);
+        apply(v[p], t[p], nb, c, j * n, n, rows - j, n, true);
+      }
+      System.arraycopy(c, 0, rv.data, 0, r * n);
+    }
+    return rv;
+  }
+
+  /**
+   * Returns Q B (rows x B.cols), where B has min(rows, cols) rows, without forming Q.
+   *
+   * @param B matrix with min(rows, cols) rows
+   * @return Q B
+   */
+  public Matrix qmul(final Matrix B) {
+    if (B.rows != r) {
+      throw new IllegalArgumentException("The matrix must have " + r + " rows.");
+    }
+    final int n = B.cols;
+    Matrix rv = new Matrix(rows, n);
+    if (top != null) {
+      // Q B = diag(Q1, ..., Qp) (Qtop B)
+      Matrix S = top.qmul(B);
+      for (int i = 0; i < blocks.length; i++) {
+        Matrix Si = new Matrix(cols, n, Arrays.copyOfRange(S.data, i * cols * n, (i + 1) * cols * n));
+        Matrix Ci = blocks[i].qmul(Si);
+        System.arraycopy(Ci.data, 0, rv.data, offsets[i] * n, Ci.data.length);
+      }
+    } else {
+      System.arraycopy(B.data, 0, rv.data, 0, B.data.length);
+      for (int p = v.length - 1; p >= 0; p--) {
+        final int j = p * NB, nb = Math.min(NB, r - j);
+        apply(v[p], t[p], nb, rv.data, j * n, n, rows - j, n, false);
+      }
+    }
+    return rv;
+  }
+
+  /**
+   * Returns the orthogonal factor Q (rows x min(rows, cols)).
+   *
+   * @return the orthogonal factor Q
+   */
+  public Matrix q() {
+    return qmul(Matrix.identity(r));
+  }
+
+  /**
+   * Returns the full orthogonal factor Q (rows x rows), the reflectors are applied to the identity.
+   * Only the blocked decomposition keeps the reflectors of every row (not TSQR).
+   */
+  Matrix fullQ() {
+    if (top != null) {
+      throw new UnsupportedOperationException("The full Q of a TSQR decomposition is not available.");
+    }
+    Matrix rv = Matrix.identity(rows);
+    for (int p = v.length - 1; p >= 0; p--) {
+      final int j = p * NB, nb = Math.min(NB, r - j);
+      apply(v[p], t[p], nb, rv.data, j * rows, rows, rows - j, rows, false);
+    }
+    return rv;
+  }
+
+  /**
+   * Returns the upper triangular factor R padded with zero rows (rows x cols).
+   */
+  Matrix fullR() {
+    Matrix R = new Matrix(rows, cols);
+    r(R.data, 0);
+    return R;
+  }
+
+  /**
+   * Returns the least squares solution X (cols x B.cols) of A X = B.
+   *
+   * @param B right-hand sides (rows x n)
+   * @return the least squares solution
+   */
+  public Matrix solve(final Matrix B) {
+    if (rows < cols) {
+      throw new IllegalArgumentException("Least squares requires rows >= cols.");
+    }
+    final int n = B.cols;
+    Matrix X = qtmul(B), R = r();
+    // back substitution (R X = Q^T B)
+    for (int i = cols - 1; i >= 0; i--) {
+      final double d = R.data[i * cols + i];
+      if (d == 0.0) {
+        throw new ArithmeticException("Matrix is rank deficient.");
+      }
+      for (int k = i + 1; k < cols; k++) {
+        final double rik = R.data[i * cols + k];
+        for (int j = 0; j < n; j++)
+          X.data[i * n + j] -= rik * X.data[k * n + j];
+      }
+      for (int j = 0; j < n; j++)
+        X.data[i * n + j] /= d;
+    }
+    return X;
+  }
+
+  /**
+   * Returns the least squares solution x of A x = b.
+   *
+   * @param b right-hand side (rows)
+   * @return the least squares solution
+   */
+  public Vector solve(final Vector b) {
+    Matrix B = new Matrix(b.len, 1, Arrays.copyOfRange(b.data, b.bIdx, b.bIdx + b.len));
+    return new Vector(solve(B).data);
+  }
+
+  /**
+   * Returns the determinant of the factorized (square) matrix.
+   * Each reflector has determinant -1.
+   *
+   * @return the determinant of the factorized matrix
+   */
+  public double det() {
+    if (rows != cols) {
+      throw new IllegalArgumentException("Determinant of a non square matrix.");
+    }
+    double rv = 1.0;
+    for (int i = 0; i < r; i++) {
+      rv *= qr[i * cols + i];
+      if (tau[i] != 0.0)
+        rv = -rv;
+    }
+    return rv;
+  }
+}
@@ -0,0 +1,477 @@
+package pt.it.av.atnog.utils.bla;
+
+import java.util.Arrays;
+
+/**
+ * Sparse Matrix stored in compressed sparse row (CSR) or compressed sparse column (CSC) layout.
+ * <p>
+ * Only the non-zero values are stored.
+ * In the CSR layout the values of row r are stored in {@code values[ptr[r]]} to
+ * {@code values[ptr[r + 1] - 1]} and {@code idx} has their columns.
+ * In the CSC layout the roles of the rows and columns are swapped.
+ * The CSR arrays of a matrix are the CSC arrays of its transpose,
+ * as such the transpose is computed without copying any value.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public class SparseMatrix {
+  protected final int rows, cols;
+  protected final int ptr[], idx[];
+  protected final double values[];
+  protected final Layout layout;
+
+  /**
+   * Creates a sparse matrix from the compressed arrays.
+   * Does not copy the arrays' content (shallow copy).
+   * The indexes of each row (CSR) or column (CSC) must be sorted.
+   *
+   * @param rows   number of rows in the matrix
+   * @param cols   number of columns in the matrix
+   * @param ptr    begin of each row (CSR) or column (CSC), with one extra element
+   * @param idx    column (CSR) or row (CSC) of each value
+   * @param values non-zero values
+   * @param layout layout of the arrays
+   */
+  public SparseMatrix(int rows, int cols, int ptr[], int idx[], double values[], Layout layout) {
+    if (ptr.length != (layout == Layout.CSR ? rows : cols) + 1) {
+      throw new IllegalArgumentException("Invalid pointer array length.");
+    }
+    this.rows = rows;
+    this.cols = cols;
+    this.ptr = ptr;
+    this.idx = idx;
+    this.values = values;
+    this.layout = layout;
+  }
+
+  /**
+   * Returns a sparse matrix (CSR) with the non-zero values of a dense matrix.
+   *
+   * @param M dense matrix
+   * @return a sparse matrix (CSR)
+   */
+  public static SparseMatrix csr(Matrix M) {
+    int nnz = 0;
+    for (int i = 0; i < M.data.length; i++)
+      if (M.data[i] != 0.0)
+        nnz++;
+    int ptr[] = new int[M.rows + 1], idx[] = new int[nnz];
+    double values[] = new double[nnz];
+    for (int r = 0, k = 0; r < M.rows; r++) {
+      for (int c = 0; c < M.cols; c++) {
+        double v = M.data[r * M.cols + c];
+        if (v != 0.0) {
+          idx[k] = c;
+          values[k++] = v;
+        }
+      }
+      ptr[r + 1] = k;
+    }
+    return new SparseMatrix(M.rows, M.cols, ptr, idx, values, Layout.CSR);
+  }
+
+  /**
+   * Returns a sparse matrix (CSC) with the non-zero values of a dense matrix.
+   *
+   * @param M dense matrix
+   * @return a sparse matrix (CSC)
+   */
+  public static SparseMatrix csc(Matrix M) {
+    return csr(M).toCsc();
+  }
+
+  /**
+   * Returns a sparse matrix (CSR) from a list of triplets (row, column, value).
+   * Duplicated entries are summed.
+   *
+   * @param rows   number of rows in the matrix
+   * @param cols   number of columns in the matrix
+   * @param r      row of each value
+   * @param c      column of each value
+   * @param values values
+   * @return a sparse matrix (CSR)
+   */
+  public static SparseMatrix csr(int rows, int cols, int r[], int c[], double values[]) {
+    int ptr[] = new int[rows + 1];
+    for (int i = 0; i < r.length; i++) {
+      if (r[i] < 0 || r[i] >= rows || c[i] < 0 || c[i] >= cols) {
+        throw new IndexOutOfBoundsException("(" + r[i] + ", " + c[i] + ")");
+      }
+      ptr[r[i] + 1]++;
+    }
+    for (int i = 0; i < rows; i++)
+      ptr[i + 1] += ptr[i];
+    int next[] = Arrays.copyOf(ptr, rows), idx[] = new int[r.length];
+    double v[] = new double[r.length];
+    for (int i = 0; i < r.length; i++) {
+      int k = next[r[i]]++;
+      idx[k] = c[i];
+      v[k] = values[i];
+    }
+    // transposing twice sorts the columns of each row
+    SparseMatrix M = new SparseMatrix(rows, cols, ptr, idx, v, Layout.CSR).toCsc().toCsr();
+    return M.compact();
+  }
+
+  /**
+   * Returns the transpose of compressed arrays (counting sort).
+   * The resulting inner indexes are sorted.
+   */
+  private static Object[] transpose(int nOuter, int nInner, int ptr[], int idx[], double values[]) {
+    int tptr[] = new int[nInner + 1], tidx[] = new int[idx.length];
+    double tvalues[] = new double[values.length];
+    for (int k = 0; k < ptr[nOuter]; k++)
+      tptr[idx[k] + 1]++;
+    for (int i = 0; i < nInner; i++)
+      tptr[i + 1] += tptr[i];
+    int next[] = Arrays.copyOf(tptr, nInner);
+    for (int o = 0; o < nOuter; o++) {
+      for (int k = ptr[o]; k < ptr[o + 1]; k++) {
+        int t = next[idx[k]]++;
+        tidx[t] = o;
+        tvalues[t] = values[k];
+      }
+    }
+    return new Object[]{tptr, tidx, tvalues};
+  }
+
+  /**
+   * Returns the number of rows in the matrix.
+   *
+   * @return the number of rows in the matrix.
+   */
+  public int rows() {
+    return rows;
+  }
+
+  /**
+   * Returns the number of columns in the matrix.
+   *
+   * @return the number of columns in the matrix.
+   */
+  public int columns() {
+    return cols;
+  }
+
+  /**
+   * Returns the number of stored (non-zero) values.
+   *
+   * @return the number of stored values
+   */
+  public int nnz() {
+    return ptr[ptr.length - 1];
+  }
+
+  /**
+   * Returns the layout of the matrix.
+   *
+   * @return the layout of the matrix
+   */
+  public Layout layout() {
+    return layout;
+  }
+
+  /**
+   * Returns the maximum number in the matrix (including the implicit zeros).
+   *
+   * @return the maximum number in the matrix.
+   */
+  public double max() {
+    double rv = nnz() < (long) rows * cols ? 0.0 : Double.NEGATIVE_INFINITY;
+    for (int k = 0; k < nnz(); k++)
+      rv = Math.max(rv, values[k]);
+    return rv;
+  }
+
+  /**
+   * Retuns the value in r-row, c-column.
+   *
+   * @param r row
+   * @param c column
+   * @return the value in r-row, c-column
+   */
+  public double get(int r, int c) {
+    int o = layout == Layout.CSR ? r : c, i = layout == Layout.CSR ? c : r;
+    int k = Arrays.binarySearch(idx, ptr[o], ptr[o + 1], i);
+    return k >= 0 ? values[k] : 0.0;
+  }
+
+  /**
+   * Returns the transpose matrix.
+   * The transpose shares the arrays of this matrix, only the layout is changed.
+   *
+   * @return the transpose matrix
+   */
+  public SparseMatrix transpose() {
+    return new SparseMatrix(cols, rows, ptr, idx, values,
+        layout == Layout.CSR ? Layout.CSC : Layout.CSR);
+  }
+
+  /**
+   * Returns this matrix in CSR layout.
+   *
+   * @return this matrix in CSR layout
+   */
+  public SparseMatrix toCsr() {
+    SparseMatrix rv = this;
+    if (layout == Layout.CSC) {
+      Object t[] = transpose(cols, rows, ptr, idx, values);
+      rv = new SparseMatrix(rows, cols, (int[]) t[0], (int[]) t[1], (double[]) t[2], Layout.CSR);
+    }
+    return rv;
+  }
+
+  /**
+   * Returns this matrix in CSC layout.
+   *
+   * @return this matrix in CSC layout
+   */
+  public SparseMatrix toCsc() {
+    SparseMatrix rv = this;
+    if (layout == Layout.CSR) {
+      Object t[] = transpose(rows, cols, ptr, idx, values);
+      rv = new SparseMatrix(rows, cols, (int[]) t[0], (int[]) t[1], (double[]) t[2], Layout.CSC);
+    }
+    return rv;
+  }
+
+  /**
+   * Returns a dense copy of this matrix.
+   *
+   * @return a dense copy of this matrix
+   */
+  public Matrix toMatrix() {
+    Matrix M = new Matrix(rows, cols);
+    boolean csr = layout == Layout.CSR;
+    for (int o = 0; o < ptr.length - 1; o++)
+      for (int k = ptr[o]; k < ptr[o + 1]; k++)
+        M.data[csr ? o * cols + idx[k] : idx[k] * cols + o] = values[k];
+    return M;
+  }
+
+  /**
+   * Sums duplicated (adjacent) entries and removes explicit zeros.
+   */
+  private SparseMatrix compact() {
+    int nptr[] = new int[ptr.length], n = 0;
+    for (int o = 0; o < ptr.length - 1; o++) {
+      int b = n;
+      for (int k = ptr[o]; k < ptr[o + 1]; k++) {
+        if (n > b && idx[n - 1] == idx[k]) {
+          values[n - 1] += values[k];
+        } else {
+          idx[n] = idx[k];
+          values[n++] = values[k];
+        }
+      }
+      int e = b;
+      for (int k = b; k < n; k++) {
+        if (values[k] != 0.0) {
+          idx[e] = idx[k];
+          values[e++] = values[k];
+        }
+      }
+      n = e;
+      nptr[o + 1] = n;
+    }
+    return new SparseMatrix(rows, cols, nptr, Arrays.copyOf(idx, n), Arrays.copyOf(values, n), layout);
+  }
+
+  /**
+   * Multiplies this matrix by a dense vector.
+   *
+   * @param v dense vector
+   * @return the resulting dense vector
+   */
+  public Vector mul(Vector v) {
+    Vector rv = new Vector(rows);
+    if (layout == Layout.CSR) {
+      for (int r = 0; r < rows; r++) {
+        double sum = 0.0;
+        for (int k = ptr[r]; k < ptr[r + 1]; k++)
+          sum += values[k] * v.data[v.bIdx + idx[k]];
+        rv.data[r] = sum;
+      }
+    } else {
+      for (int c = 0; c < cols; c++) {
+        double x = v.data[v.bIdx + c];
+        for (int k = ptr[c]; k < ptr[c + 1]; k++)
+          rv.data[idx[k]] += values[k] * x;
+      }
+    }
+    return rv;
+  }
+
+  /**
+   * Multiplies this matrix by a dense matrix (this * B).
+   *
+   * @param B dense matrix
+   * @return the resulting dense matrix
+   */
+  public Matrix mul(Matrix B) {
+    Matrix C = new Matrix(rows, B.cols);
+    mul(B.data, B.cols, C.data);
+    return C;
+  }
+
+  /**
+   * Multiplies this matrix by a dense matrix with n columns (C += this * B).
+   * Both B and C are stored in row-major order.
+   *
+   * @param b array with the dense matrix
+   * @param n number of columns of B and C
+   * @param c array with the result matrix
+   */
+  protected void mul(final double b[], final int n, final double c[]) {
+    boolean csr = layout == Layout.CSR;
+    for (int o = 0; o < ptr.length - 1; o++) {
+      for (int k = ptr[o]; k < ptr[o + 1]; k++) {
+        // CSR: C[o,:] += v * B[idx,:], CSC: C[idx,:] += v * B[o,:]
+        int ci = (csr ? o : idx[k]) * n, bi = (csr ? idx[k] : o) * n;
+        double v = values[k];
+        for (int j = 0; j < n; j++)
+          c[ci + j] += v * b[bi + j];
+      }
+    }
+  }
+
+  /**
+   * Multiplies a dense matrix by a sparse matrix (A * S).
+   *
+   * @param A dense matrix
+   * @param S sparse matrix
+   * @return the resulting dense matrix
+   */
+  public static Matrix mul(Matrix A, SparseMatrix S) {
+    Matrix C = new Matrix(A.rows, S.cols);
+    int p = A.cols, n = S.cols;
+    for (int i = 0; i < A.rows; i++) {
+      int ip = i * p, in = i * n;
+      if (S.layout == Layout.CSR) {
+        for (int k = 0; k < p; k++) {
+          double a = A.data[ip + k];
+          if (a != 0.0)
+            for (int t = S.ptr[k]; t < S.ptr[k + 1]; t++)
+              C.data[in + S.idx[t]] += a * S.values[t];
+        }
+      } else {
+        for (int j = 0; j < n; j++) {
+          double sum = 0.0;
+          for (int t = S.ptr[j]; t < S.ptr[j + 1]; t++)
+            sum += A.data[ip + S.idx[t]] * S.values[t];
+          C.data[in + j] = sum;
+        }
+      }
+    }
+    return C;
+  }
+
+  /**
+   * Multiplies this matrix by another sparse matrix (Gustavson's algorithm).
+   * The result is stored in CSR layout.
+   *
+   * @param B sparse matrix
+   * @return the resulting sparse matrix (CSR)
+   */
+  public SparseMatrix mul(SparseMatrix B) {
+    SparseMatrix A = toCsr();
+    B = B.toCsr();
+    double acc[] = new double[B.cols];
+    int marker[] = new int[B.cols], cidx[] = new int[Math.max(16, A.nnz() + B.nnz())],
+        cptr[] = new int[rows + 1];
+    double cvalues[] = new double[cidx.length];
+    Arrays.fill(marker, -1);
+    int n = 0;
+    for (int i = 0; i < rows; i++) {
+      int b = n;
+      for (int t = A.ptr[i]; t < A.ptr[i + 1]; t++) {
+        int k = A.idx[t];
+        double a = A.values[t];
+        for (int u = B.ptr[k]; u < B.ptr[k + 1]; u++) {
+          int j = B.idx[u];
+          if (marker[j] != i) {
+            marker[j] = i;
+            acc[j] = 0.0;
+            if (n == cidx.length) {
+              cidx = Arrays.copyOf(cidx, 2 * n);
+              cvalues = Arrays.copyOf(cvalues, 2 * n);
+            }
+            cidx[n++] = j;
+          }
+          acc[j] += a * B.values[u];
+        }
+      }
+      Arrays.sort(cidx, b, n);
+      for (int t = b; t < n; t++)
+        cvalues[t] = acc[cidx[t]];
+      cptr[i + 1] = n;
+    }
+    return new SparseMatrix(rows, B.cols, cptr, Arrays.copyOf(cidx, n), Arrays.copyOf(cvalues, n),
+        Layout.CSR);
+  }
+
+  /**
+   * Returns the squared Frobenius norm of the matrix.
+   *
+   * @return the squared Frobenius norm of the matrix
+   */
+  public double squaredNorm() {
+    double rv = 0.0;
+    for (int k = 0; k < nnz(); k++)
+      rv += values[k] * values[k];
+    return rv;
+  }
+
+  /**
+   * @param k
+   * @param n
+   * @param e
+   * @return
+   */
+  public Matrix[] nmf(final int k, final int n, final double e) {
+    return NmfFactorization.nmf_mu(this, k, n, e);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    boolean rv = false;
+    if (o != null) {
+      if (o == this)
+        rv = true;
+      else if (o instanceof SparseMatrix) {
+        SparseMatrix B = ((SparseMatrix) o).layout == layout ? (SparseMatrix) o :
+            (layout == Layout.CSR ? ((SparseMatrix) o).toCsr() : ((SparseMatrix) o).toCsc());
+        rv = rows == B.rows && cols == B.cols && Arrays.equals(ptr, B.ptr)
+            && Arrays.equals(Arrays.copyOf(idx, nnz()), Arrays.copyOf(B.idx, B.nnz()))
+            && Arrays.equals(Arrays.copyOf(values, nnz()), Arrays.copyOf(B.values, B.nnz()));
+      }
+    }
+    return rv;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * rows + cols) + nnz();
+  }
+
+  @Override
+  public String toString() {
+    return toMatrix().toString();
+  }
+
+  /**
+   * Layout of the compressed arrays.
+   */
+  public enum Layout {
+    /**
+     * Compressed sparse row.
+     */
+    CSR,
+    /**
+     * Compressed sparse column.
+     */
+    CSC
+  }
+}
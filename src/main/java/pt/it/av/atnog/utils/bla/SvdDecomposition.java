@@ -0,0 +1,326 @@
+package pt.it.av.atnog.utils.bla;
+
+import pt.it.av.atnog.utils.ArrayUtils;
+import pt.it.av.atnog.utils.MathUtils;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Singular value decomposition (A = U S V^T).
+ * <p>
+ * The full (thin) decomposition uses the one-sided Jacobi method (Hestenes):
+ * pairs of columns are rotated until they are orthogonal.
+ * The pairs follow a round-robin ordering, the pairs of a round are disjoint
+ * and are rotated in parallel.
+ * </p>
+ * <p>
+ * The truncated decomposition uses the randomized range finder of Halko, Martinsson and Tropp:
+ * the range of A is sampled with a gaussian matrix (with a few power iterations),
+ * and the SVD of the projection of A into that range gives the top-k singular triplets,
+ * in O(mnk) time. It only multiplies A (and A^T) by thin matrices, as such it also works
+ * with {@link SparseMatrix} and {@link MappedMatrix}.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public class SvdDecomposition {
+  /**
+   * Default oversampling of the randomized decomposition.
+   */
+  protected static final int OVERSAMPLING = 10;
+  /**
+   * Default number of power iterations of the randomized decomposition.
+   */
+  protected static final int POWER_ITERATIONS = 2;
+  private static final int MAX_SWEEPS = 64, P_WORK = 1 << 14;
+
+  /**
+   * Linear operator used by the randomized decomposition.
+   */
+  private interface Operator {
+    int rows();
+
+    int cols();
+
+    /**
+     * Returns A X.
+     */
+    Matrix mul(Matrix X);
+
+    /**
+     * Returns A^T X.
+     */
+    Matrix tmul(Matrix X);
+  }
+
+  /**
+   * Returns the (thin) singular value decomposition of a matrix.
+   * With r = min(rows, cols), U is rows x r, S is a r x r diagonal matrix and V is cols x r.
+   * The singular values are sorted in descending order.
+   * The singular vectors of zero singular values are filled with zeros.
+   *
+   * @param A matrix
+   * @return the matrices U, S and V
+   */
+  public static Matrix[] jacobi(final Matrix A) {
+    final boolean tall = A.rows >= A.cols;
+    // the columns of A (or A^T) to orthogonalize are the rows of G
+    final int r = tall ? A.cols : A.rows, len = tall ? A.rows : A.cols;
+    final double g[] = tall ? A.transpose().data : Arrays.copyOf(A.data, A.data.length),
+        vt[] = Matrix.identity(r).data;
+    sweeps(g, vt, r, len);
+
+    // singular values (sorted) and vectors
+    final double s[] = new double[r];
+    Integer order[] = new Integer[r];
+    for (int i = 0; i < r; i++) {
+      s[i] = Math.sqrt(ArrayUtils.dotProduct(g, i * len, g, i * len, len));
+      order[i] = i;
+    }
+    Arrays.sort(order, (i, j) -> Double.compare(s[j], s[i]));
+    Matrix Ut = new Matrix(r, len), Vt = new Matrix(r, r), S = new Matrix(r, r);
+    for (int i = 0; i < r; i++) {
+      final int o = order[i];
+      S.data[i * r + i] = s[o];
+      if (s[o] > 0.0)
+        ArrayUtils.div(g, o * len, s[o], Ut.data, i * len, len);
+      System.arraycopy(vt, o * r, Vt.data, i * r, r);
+    }
+    return tall ? new Matrix[]{Ut.transpose(), S, Vt.transpose()} :
+        new Matrix[]{Vt.transpose(), S, Ut.transpose()};
+  }
+
+  /**
+   * Rotates the r rows (with len elements) of G until they are orthogonal,
+   * the same rotations are applied to the rows of VT (r x r).
+   */
+  private static void sweeps(final double g[], final double vt[], final int r, final int len) {
+    // round-robin tournament, index r is a dummy player if r is odd
+    final int n = r + (r & 1), idx[] = new int[n];
+    for (int i = 0; i < n; i++)
+      idx[i] = i;
+    final double tol = MathUtils.eps() * len;
+    final boolean parallel = (long) r * len >= P_WORK && ForkJoinPool.getCommonPoolParallelism() > 1;
+    final int grain = Math.max(1, P_WORK / len);
+    final AtomicBoolean rotated = new AtomicBoolean(true);
+    for (int sweep = 0; sweep < MAX_SWEEPS && rotated.get(); sweep++) {
+      rotated.set(false);
+      for (int round = 0; round < n - 1; round++) {
+        MatrixTranspose.range(n / 2, grain, parallel, (b, e) -> {
+          boolean rv = false;
+          for (int p = b; p < e; p++) {
+            int i = idx[p], j = idx[n - 1 - p];
+            if (i < r && j < r && rotate(g, vt, Math.min(i, j), Math.max(i, j), r, len, tol))
+              rv = true;
+          }
+          if (rv)
+            rotated.set(true);
+        });
+        // keep the first player and rotate the remaining ones
+        final int last = idx[n - 1];
+        System.arraycopy(idx, 1, idx, 2, n - 2);
+        idx[1] = last;
+      }
+    }
+  }
+
+  /**
+   * Rotates the rows i and j of G (and VT) so that they become orthogonal.
+   * Returns false if they are already orthogonal.
+   */
+  private static boolean rotate(final double g[], final double vt[], final int i, final int j,
+                                final int r, final int len, final double tol) {
+    final int gi = i * len, gj = j * len;
+    double alpha = 0.0, beta = 0.0, gamma = 0.0;
+    for (int a = 0; a < len; a++) {
+      final double x = g[gi + a], y = g[gj + a];
+      alpha += x * x;
+      beta += y * y;
+      gamma += x * y;
+    }
+    if (gamma == 0.0 || Math.abs(gamma) <= tol * Math.sqrt(alpha * beta))
+      return false;
+    final double zeta = (beta - alpha) / (2.0 * gamma),
+        t = zeta == 0.0 ? 1.0 : Math.signum(zeta) / (Math.abs(zeta) + Math.sqrt(1.0 + zeta * zeta)),
+        c = 1.0 / Math.sqrt(1.0 + t * t), s = c * t;
+    rotate(g, gi, gj, len, c, s);
+    rotate(vt, i * r, j * r, r, c, s);
+    return true;
+  }
+
+  /**
+   * Applies a Givens rotation to two rows of an array.
+   */
+  private static void rotate(final double a[], final int i, final int j, final int len,
+                             final double c, final double s) {
+    for (int p = 0; p < len; p++) {
+      final double x = a[i + p], y = a[j + p];
+      a[i + p] = c * x - s * y;
+      a[j + p] = s * x + c * y;
+    }
+  }
+
+  /**
+   * Returns the top-k singular triplets of a matrix (randomized).
+   *
+   * @param A matrix
+   * @param k number of singular triplets
+   * @return the matrices U (rows x k), S (k x k) and V (cols x k)
+   */
+  public static Matrix[] randomized(final Matrix A, final int k) {
+    return randomized(A, k, OVERSAMPLING, POWER_ITERATIONS);
+  }
+
+  /**
+   * Returns the top-k singular triplets of a matrix (randomized).
+   *
+   * @param A matrix
+   * @param k number of singular triplets
+   * @param p oversampling (extra samples of the range of A)
+   * @param q number of power iterations (improve the accuracy when the spectrum decays slowly)
+   * @return the matrices U (rows x k), S (k x k) and V (cols x k)
+   */
+  public static Matrix[] randomized(final Matrix A, final int k, final int p, final int q) {
+    return randomized(new Operator() {
+      public int rows() {
+        return A.rows;
+      }
+
+      public int cols() {
+        return A.cols;
+      }
+
+      public Matrix mul(Matrix X) {
+        return A.mul(X);
+      }
+
+      public Matrix tmul(Matrix X) {
+        Matrix C = new Matrix(A.cols, X.cols);
+        MatrixMultiplication.mul(A.data, 1, A.cols, X.data, X.cols, 1, C.data, A.cols, X.cols, A.rows);
+        return C;
+      }
+    }, k, p, q);
+  }
+
+  /**
+   * Returns the top-k singular triplets of a sparse matrix (randomized).
+   *
+   * @param A sparse matrix
+   * @param k number of singular triplets
+   * @param p oversampling (extra samples of the range of A)
+   * @param q number of power iterations (improve the accuracy when the spectrum decays slowly)
+   * @return the matrices U (rows x k), S (k x k) and V (cols x k)
+   */
+  public static Matrix[] randomized(final SparseMatrix A, final int k, final int p, final int q) {
+    final SparseMatrix At = A.transpose();
+    return randomized(new Operator() {
+      public int rows() {
+        return A.rows;
+      }
+
+      public int cols() {
+        return A.cols;
+      }
+
+      public Matrix mul(Matrix X) {
+        return A.mul(X);
+      }
+
+      public Matrix tmul(Matrix X) {
+        return At.mul(X);
+      }
+    }, k, p, q);
+  }
+
+  /**
+   * Returns the top-k singular triplets of a memory-mapped matrix (randomized).
+   *
+   * @param A memory-mapped matrix
+   * @param k number of singular triplets
+   * @param p oversampling (extra samples of the range of A)
+   * @param q number of power iterations (improve the accuracy when the spectrum decays slowly)
+   * @return the matrices U (rows x k), S (k x k) and V (cols x k)
+   */
+  public static Matrix[] randomized(final MappedMatrix A, final int k, final int p, final int q) {
+    return randomized(new Operator() {
+      public int rows() {
+        return A.rows;
+      }
+
+      public int cols() {
+        return A.cols;
+      }
+
+      public Matrix mul(Matrix X) {
+        return A.mul(X);
+      }
+
+      public Matrix tmul(Matrix X) {
+        return A.tmul(X);
+      }
+    }, k, p, q);
+  }
+
+  /**
+   * Randomized SVD of a linear operator.
+   */
+  private static Matrix[] randomized(final Operator A, final int k, final int p, final int q) {
+    final int r = Math.min(A.rows(), A.cols());
+    if (k < 1 || k > r) {
+      throw new IllegalArgumentException("Invalid number of singular triplets: " + k);
+    }
+    if (p < 0) {
+      throw new IllegalArgumentException("Invalid oversampling: " + p);
+    }
+    if (q < 0) {
+      throw new IllegalArgumentException("Invalid number of power iterations: " + q);
+    }
+    final int l = Math.min(k + p, r);
+    Matrix O = new Matrix(A.cols(), l);
+    for (int i = 0; i < O.data.length; i++)
+      O.data[i] = ThreadLocalRandom.current().nextGaussian();
+
+    // orthonormal basis of the range of A
+    Matrix Q = orthonormalize(A.mul(O));
+    for (int i = 0; i < q; i++)
+      Q = orthonormalize(A.mul(orthonormalize(A.tmul(Q))));
+
+    // B^T = A^T Q (cols x l), B^T = U' S V'^T and A = (Q V') S U'^T
+    Matrix USV[] = jacobi(A.tmul(Q)), Ub = Q.mul(USV[2]);
+    Matrix U = new Matrix(A.rows(), k), S = new Matrix(k, k), V = new Matrix(A.cols(), k);
+    for (int i = 0; i < A.rows(); i++)
+      System.arraycopy(Ub.data, i * l, U.data, i * k, k);
+    for (int i = 0; i < k; i++)
+      S.data[i * k + i] = USV[1].data[i * l + i];
+    for (int i = 0; i < A.cols(); i++)
+      System.arraycopy(USV[0].data, i * l, V.data, i * k, k);
+    return new Matrix[]{U, S, V};
+  }
+
+  /**
+   * Returns a matrix with orthonormal columns that spans the columns of Y
+   * (modified Gram-Schmidt with reorthogonalization, over the rows of Y^T).
+   */
+  private static Matrix orthonormalize(final Matrix Y) {
+    final int n = Y.cols, len = Y.rows;
+    Matrix Qt = Y.transpose();
+    final double q[] = Qt.data;
+    for (int i = 0; i < n; i++) {
+      for (int pass = 0; pass < 2; pass++) {
+        for (int j = 0; j < i; j++) {
+          double d = ArrayUtils.dotProduct(q, i * len, q, j * len, len);
+          for (int a = 0; a < len; a++)
+            q[i * len + a] -= d * q[j * len + a];
+        }
+      }
+      double norm = Math.sqrt(ArrayUtils.dotProduct(q, i * len, q, i * len, len));
+      if (norm > 0.0)
+        ArrayUtils.div(q, i * len, norm, q, i * len, len);
+    }
+    return Qt.uTranspose();
+  }
+}
@@ -252,11 +252,18 @@ public class Vector implements Distance<Vector> {
     return this;
   }
 
+  /**
+   * Returns a lazy expression of the vector, as a column matrix (the vector is not copied).
+   * See {@link MatrixExpression}.
+   *
+   * @return a lazy expression of the vector
+   */
+  public MatrixExpression lazy() {
+    return MatrixExpression.of(this);
+  }
+
   public double innerProduct(Vector b) {
-    double c = 0.0;
-    for (int i = 0; i < len; i++)
-      c += data[bIdx + i] * b.data[b.bIdx + i];
-    return c;
+    return ArrayUtils.dotProduct(data, bIdx, b.data, b.bIdx, len);
   }
 
   public Matrix outerProduct(Vector b) {
@@ -0,0 +1,705 @@
+package pt.it.av.atnog.utils.structures;
+
+import pt.it.av.atnog.utils.bla.Matrix;
+import pt.it.av.atnog.utils.bla.Vector;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Static KD-Tree stored in flat arrays (implicit tree).
+ * <p>
+ * The tree is bulk-loaded from a flat coordinate matrix (one point per row) and it is not modified afterwards.
+ * Node i has the children 2i+1 and 2i+2, every split is done at the median of the dimension with the largest spread
+ * and the points of a leaf (bucket) are stored contiguously, as such a leaf is scanned sequentially.
+ * The subtrees are built in parallel on the common {@link ForkJoinPool}.
+ * </p>
+ * <p>
+ * All distances are squared euclidean distances, the queries return the indexes of the points
+ * (rows of the original matrix).
+ * The k-nearest neighbours are kept in a bounded max-heap, the far subtrees are pruned with the
+ * (incremental) distance to their cells and the search stops as soon as the ball with the current
+ * k-th distance is within the bounds of the visited cell.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public class ArrayKDTree {
+  private static final int BUCKET = 16, P_BUILD = 1 << 14, P_QUERY = 256;
+  protected final int n, dim, leaves;
+  // coordinates of the points (ordered by leaf) and their original indexes
+  protected final double coords[];
+  protected final int index[];
+  // split dimension, split value and range of points of every node
+  protected final int split[], begin[], end[];
+  protected final double value[];
+
+  /**
+   * Builds the tree over a copy of the coordinates.
+   *
+   * @param coords coordinates (row-major, one point per row)
+   * @param n      number of points
+   * @param dim    number of dimensions
+   * @param bucket maximum number of points per leaf
+   */
+  private ArrayKDTree(final double coords[], final int n, final int dim, final int bucket) {
+    this.n = n;
+    this.dim = dim;
+    int l = 1;
+    while ((long) l * bucket < n)
+      l <<= 1;
+    leaves = l;
+    this.coords = coords;
+    index = new int[n];
+    for (int i = 0; i < n; i++)
+      index[i] = i;
+    final int nodes = 2 * leaves - 1;
+    split = new int[nodes];
+    begin = new int[nodes];
+    end = new int[nodes];
+    value = new double[nodes];
+    final BuildTask task = new BuildTask(0, 0, n);
+    if (n >= 2 * P_BUILD && ForkJoinPool.getCommonPoolParallelism() > 1)
+      ForkJoinPool.commonPool().invoke(task);
+    else
+      task.compute();
+  }
+
+  /**
+   * Builds a KD-Tree from the rows of a matrix.
+   *
+   * @param points matrix with one point per row
+   * @return the KD-Tree
+   */
+  public static ArrayKDTree build(final Matrix points) {
+    return build(points, BUCKET);
+  }
+
+  /**
+   * Builds a KD-Tree from the rows of a matrix.
+   *
+   * @param points matrix with one point per row
+   * @param bucket maximum number of points per leaf
+   * @return the KD-Tree
+   */
+  public static ArrayKDTree build(final Matrix points, final int bucket) {
+    return build(coordinates(points), points.columns(), bucket);
+  }
+
+  /**
+   * Builds a KD-Tree from a flat coordinate array (the array is copied).
+   *
+   * @param coords coordinates (row-major, one point per row)
+   * @param dim    number of dimensions
+   * @param bucket maximum number of points per leaf
+   * @return the KD-Tree
+   */
+  public static ArrayKDTree build(final double coords[], final int dim, final int bucket) {
+    if (dim < 1 || bucket < 1 || coords.length % dim != 0) {
+      throw new IllegalArgumentException("Invalid dimensions for the KD-Tree.");
+    }
+    return new ArrayKDTree(coords.clone(), coords.length / dim, dim, bucket);
+  }
+
+  /**
+   * Returns the number of points.
+   *
+   * @return the number of points
+   */
+  public int size() {
+    return n;
+  }
+
+  /**
+   * Returns the number of dimensions.
+   *
+   * @return the number of dimensions
+   */
+  public int dim() {
+    return dim;
+  }
+
+  /**
+   * Builds the subtree of a node over the points [b, e[.
+   */
+  private void build(final int node, final int b, final int e) {
+    begin[node] = b;
+    end[node] = e;
+    if (node >= leaves - 1) {
+      split[node] = -1;
+    } else {
+      final int sd = spread(b, e), mid = b + (e - b) / 2;
+      if (e - b > 1)
+        select(b, e - 1, mid, sd);
+      split[node] = sd;
+      value[node] = mid < e ? coords[mid * dim + sd] : 0.0;
+    }
+  }
+
+  /**
+   * Returns the dimension with the largest spread of the points [b, e[.
+   */
+  private int spread(final int b, final int e) {
+    int rv = 0;
+    double best = -1.0;
+    for (int j = 0; j < dim; j++) {
+      double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+      for (int i = b, o = b * dim + j; i < e; i++, o += dim) {
+        min = Math.min(min, coords[o]);
+        max = Math.max(max, coords[o]);
+      }
+      if (max - min > best) {
+        best = max - min;
+        rv = j;
+      }
+    }
+    return rv;
+  }
+
+  /**
+   * Quickselect over the points [left, right], the k-th point is placed at position k
+   * with the smaller (or equal) coordinates before it and the larger (or equal) after it.
+   */
+  private void select(int left, int right, final int k, final int sd) {
+    while (right > left) {
+      final int mid = left + (right - left) / 2;
+      // median of three as pivot
+      if (coords[mid * dim + sd] < coords[left * dim + sd])
+        swap(mid, left);
+      if (coords[right * dim + sd] < coords[left * dim + sd])
+        swap(right, left);
+      if (coords[right * dim + sd] < coords[mid * dim + sd])
+        swap(right, mid);
+      final double pivot = coords[mid * dim + sd];
+      int i = left, j = right;
+      while (i <= j) {
+        while (coords[i * dim + sd] < pivot)
+          i++;
+        while (coords[j * dim + sd] > pivot)
+          j--;
+        if (i <= j)
+          swap(i++, j--);
+      }
+      if (k <= j)
+        right = j;
+      else if (k >= i)
+        left = i;
+      else
+        return;
+    }
+  }
+
+  /**
+   * Swaps two points (coordinates and indexes).
+   */
+  private void swap(final int i, final int j) {
+    for (int a = i * dim, b = j * dim, l = 0; l < dim; l++, a++, b++) {
+      final double t = coords[a];
+      coords[a] = coords[b];
+      coords[b] = t;
+    }
+    final int t = index[i];
+    index[i] = index[j];
+    index[j] = t;
+  }
+
+  /**
+   * Returns the index of the nearest point (-1 if the tree is empty).
+   *
+   * @param target the target point
+   * @return the index of the nearest point
+   */
+  public int nearest(final double target[]) {
+    final Search s = new Search(this, 1);
+    return s.knn(target, 1) > 0 ? s.idx[0] : -1;
+  }
+
+  public int nearest(final Vector target) {
+    return nearest(coordinates(target));
+  }
+
+  /**
+   * Returns the indexes of the k-nearest points, sorted by distance.
+   *
+   * @param target the target point
+   * @param k      number of neighbours
+   * @return the indexes of the k-nearest points
+   */
+  public int[] knn(final double target[], final int k) {
+    final Search s = new Search(this, k);
+    final int len = s.knn(target, k);
+    return Arrays.copyOf(s.idx, len);
+  }
+
+  public int[] knn(final Vector target, final int k) {
+    return knn(coordinates(target), k);
+  }
+
+  /**
+   * Searches the k-nearest points, sorted by distance.
+   * The buffers must have at least k elements.
+   *
+   * @param target the target point
+   * @param k      number of neighbours
+   * @param idx    buffer for the indexes of the points
+   * @param dist   buffer for the squared distances of the points
+   * @return the number of points found (min(k, size()))
+   */
+  public int knn(final double target[], final int k, final int idx[], final double dist[]) {
+    final Search s = new Search(this, k);
+    final int rv = s.knn(target, k);
+    System.arraycopy(s.idx, 0, idx, 0, rv);
+    System.arraycopy(s.dist, 0, dist, 0, rv);
+    return rv;
+  }
+
+  /**
+   * Returns the indexes of the points within a (euclidean) radius of the target.
+   *
+   * @param target the target point
+   * @param radius the radius
+   * @return the indexes of the points within the radius (in no particular order)
+   */
+  public int[] radius(final double target[], final double radius) {
+    final Search s = new Search(this, 0);
+    final int len = s.radius(target, radius * radius);
+    return Arrays.copyOf(s.idx, len);
+  }
+
+  public int[] radius(final Vector target, final double radius) {
+    return radius(coordinates(target), radius);
+  }
+
+  /**
+   * Returns the indexes of the nearest point of every target (in parallel).
+   *
+   * @param targets matrix with one target per row
+   * @return the indexes of the nearest points
+   */
+  public int[] nearest(final Matrix targets) {
+    final double q[] = targets(targets);
+    final int rv[] = new int[targets.rows()];
+    batch(rv.length, 1, (s, i) -> rv[i] = s.knn(s.target(q, i * dim), 1) > 0 ? s.idx[0] : -1);
+    return rv;
+  }
+
+  public int[] nearest(final double targets[][]) {
+    final int rv[] = new int[targets.length];
+    batch(rv.length, 1, (s, i) -> rv[i] = s.knn(targets[i], 1) > 0 ? s.idx[0] : -1);
+    return rv;
+  }
+
+  /**
+   * Returns the indexes of the k-nearest points of every target (in parallel), sorted by distance.
+   *
+   * @param targets matrix with one target per row
+   * @param k       number of neighbours
+   * @return the indexes of the k-nearest points of every target
+   */
+  public int[][] knn(final Matrix targets, final int k) {
+    final double q[] = targets(targets);
+    final int rv[][] = new int[targets.rows()][];
+    batch(rv.length, k, (s, i) -> {
+      final int len = s.knn(s.target(q, i * dim), k);
+      rv[i] = Arrays.copyOf(s.idx, len);
+    });
+    return rv;
+  }
+
+  public int[][] knn(final double targets[][], final int k) {
+    final int rv[][] = new int[targets.length][];
+    batch(rv.length, k, (s, i) -> {
+      final int len = s.knn(targets[i], k);
+      rv[i] = Arrays.copyOf(s.idx, len);
+    });
+    return rv;
+  }
+
+  /**
+   * Searches the k-nearest points of every target (in parallel) into flat buffers.
+   * The results of target i are stored in [i * k, (i + 1) * k[, sorted by distance;
+   * if the tree has less than k points the remaining positions are filled with -1 and infinity.
+   *
+   * @param targets coordinates of the targets (row-major, one target per row)
+   * @param k       number of neighbours
+   * @param idx     buffer for the indexes of the points (targets * k)
+   * @param dist    buffer for the squared distances of the points (targets * k)
+   */
+  public void knnBatch(final double targets[], final int k, final int idx[], final double dist[]) {
+    if (targets.length % dim != 0 || idx.length < (targets.length / dim) * k || dist.length < idx.length) {
+      throw new IllegalArgumentException("Invalid dimensions for the buffers.");
+    }
+    batch(targets.length / dim, k, (s, i) -> {
+      final int len = s.knn(s.target(targets, i * dim), k);
+      System.arraycopy(s.idx, 0, idx, i * k, len);
+      System.arraycopy(s.dist, 0, dist, i * k, len);
+      Arrays.fill(idx, i * k + len, (i + 1) * k, -1);
+      Arrays.fill(dist, i * k + len, (i + 1) * k, Double.POSITIVE_INFINITY);
+    });
+  }
+
+  /**
+   * Returns the indexes of the points within a (euclidean) radius of every target (in parallel).
+   *
+   * @param targets matrix with one target per row
+   * @param radius  the radius
+   * @return the indexes of the points within the radius of every target (in no particular order)
+   */
+  public int[][] radius(final Matrix targets, final double radius) {
+    final double q[] = targets(targets);
+    final int rv[][] = new int[targets.rows()][];
+    batch(rv.length, 0, (s, i) -> {
+      final int len = s.radius(s.target(q, i * dim), radius * radius);
+      rv[i] = Arrays.copyOf(s.idx, len);
+    });
+    return rv;
+  }
+
+  public int[][] radius(final double targets[][], final double radius) {
+    final int rv[][] = new int[targets.length][];
+    batch(rv.length, 0, (s, i) -> {
+      final int len = s.radius(targets[i], radius * radius);
+      rv[i] = Arrays.copyOf(s.idx, len);
+    });
+    return rv;
+  }
+
+  /**
+   * Runs a batch of queries, in parallel on the common {@link ForkJoinPool} for large batches.
+   * Every block of queries reuses the same buffers ({@link Search}).
+   */
+  private void batch(final int count, final int k, final Query query) {
+    final BatchTask task = new BatchTask(0, count, k, query);
+    if (count >= 2 * P_QUERY && ForkJoinPool.getCommonPoolParallelism() > 1)
+      ForkJoinPool.commonPool().invoke(task);
+    else
+      task.compute();
+  }
+
+  /**
+   * Returns the coordinates of the targets (row-major).
+   */
+  private double[] targets(final Matrix targets) {
+    if (targets.columns() != dim) {
+      throw new IllegalArgumentException("The target must have the dimension of the KD-Tree.");
+    }
+    return coordinates(targets);
+  }
+
+  /**
+   * Returns the coordinates of the rows of a matrix (row-major).
+   */
+  protected static double[] coordinates(final Matrix m) {
+    final int rows = m.rows(), cols = m.columns();
+    final double rv[] = new double[rows * cols];
+    for (int i = 0; i < rows; i++)
+      for (int j = 0; j < cols; j++)
+        rv[i * cols + j] = m.get(i, j);
+    return rv;
+  }
+
+  /**
+   * Returns the coordinates of a vector.
+   */
+  protected static double[] coordinates(final Vector v) {
+    final double rv[] = new double[v.size()];
+    for (int i = 0; i < rv.length; i++)
+      rv[i] = v.get(i);
+    return rv;
+  }
+
+  /**
+   * State (and buffers) of a query, it can be reused by the queries of one thread.
+   */
+  protected static final class Search {
+    private final ArrayKDTree t;
+    // bounded max-heap (k-NN) or list (radius) of results
+    protected int idx[], size, k;
+    protected double dist[];
+    // target, bounds of the current cell and offsets of the target to the cell
+    private double q[];
+    private final double lo[], hi[], off[], buf[];
+
+    protected Search(final ArrayKDTree t, final int k) {
+      this.t = t;
+      idx = new int[Math.max(1, Math.min(k, t.n))];
+      dist = new double[idx.length];
+      lo = new double[t.dim];
+      hi = new double[t.dim];
+      off = new double[t.dim];
+      buf = new double[t.dim];
+    }
+
+    /**
+     * Copies a target from a flat array into the buffer of the search.
+     */
+    protected double[] target(final double src[], final int offset) {
+      System.arraycopy(src, offset, buf, 0, buf.length);
+      return buf;
+    }
+
+    private void reset(final double target[]) {
+      if (target.length != t.dim) {
+        throw new IllegalArgumentException("The target must have the dimension of the KD-Tree.");
+      }
+      q = target;
+      size = 0;
+      Arrays.fill(lo, Double.NEGATIVE_INFINITY);
+      Arrays.fill(hi, Double.POSITIVE_INFINITY);
+      Arrays.fill(off, 0.0);
+    }
+
+    /**
+     * Searches the k-nearest points, the results are sorted in the buffers.
+     *
+     * @return the number of points found
+     */
+    protected int knn(final double target[], final int k) {
+      if (k < 1) {
+        throw new IllegalArgumentException("The number of neighbours must be positive.");
+      }
+      reset(target);
+      this.k = Math.min(k, t.n);
+      if (idx.length < this.k) {
+        idx = new int[this.k];
+        dist = new double[this.k];
+      }
+      if (t.n > 0)
+        knn(0, 0.0);
+      // heap sort (ascending distances)
+      for (int l = size - 1; l > 0; l--) {
+        final int i = idx[0];
+        final double d = dist[0];
+        sift(idx[l], dist[l], l);
+        idx[l] = i;
+        dist[l] = d;
+      }
+      return size;
+    }
+
+    private double worst() {
+      return size < k ? Double.POSITIVE_INFINITY : dist[0];
+    }
+
+    /**
+     * Visits a node whose cell is at squared distance rd of the target.
+     *
+     * @return true if the search is complete
+     */
+    private boolean knn(final int node, final double rd) {
+      final int sd = t.split[node];
+      if (sd < 0) {
+        final int dim = t.dim;
+        final double c[] = t.coords;
+        double w = worst();
+        for (int i = t.begin[node], o = i * dim; i < t.end[node]; i++, o += dim) {
+          double d = 0.0;
+          for (int j = 0; j < dim && d < w; j++) {
+            final double v = c[o + j] - q[j];
+            d += v * v;
+          }
+          if (d < w) {
+            push(t.index[i], d);
+            w = worst();
+          }
+        }
+      } else {
+        final double v = t.value[node], diff = q[sd] - v;
+        final int near = diff < 0 ? 2 * node + 1 : 2 * node + 2, far = near == 2 * node + 1 ? near + 1 : near - 1;
+        final double l = lo[sd], h = hi[sd];
+        // near child
+        if (diff < 0)
+          hi[sd] = v;
+        else
+          lo[sd] = v;
+        boolean done = knn(near, rd);
+        hi[sd] = h;
+        lo[sd] = l;
+        if (done)
+          return true;
+        // far child (the offset along sd becomes |diff|)
+        final double old = off[sd], frd = rd - old * old + diff * diff;
+        if (frd < worst()) {
+          off[sd] = diff;
+          if (diff < 0)
+            lo[sd] = v;
+          else
+            hi[sd] = v;
+          done = knn(far, frd);
+          hi[sd] = h;
+          lo[sd] = l;
+          off[sd] = old;
+          if (done)
+            return true;
+        }
+      }
+      return within();
+    }
+
+    /**
+     * Ball-within-bounds test: true if the ball with the current k-th distance is inside the current cell.
+     */
+    private boolean within() {
+      if (size < k)
+        return false;
+      final double w = dist[0];
+      for (int j = 0; j < q.length; j++) {
+        final double a = q[j] - lo[j], b = hi[j] - q[j];
+        if (a < 0 || b < 0 || a * a < w || b * b < w)
+          return false;
+      }
+      return true;
+    }
+
+    /**
+     * Inserts a point into the bounded max-heap.
+     */
+    private void push(final int i, final double d) {
+      if (size < k) {
+        int c = size++;
+        while (c > 0) {
+          final int p = (c - 1) >> 1;
+          if (dist[p] >= d)
+            break;
+          idx[c] = idx[p];
+          dist[c] = dist[p];
+          c = p;
+        }
+        idx[c] = i;
+        dist[c] = d;
+      } else {
+        sift(i, d, size);
+      }
+    }
+
+    /**
+     * Replaces the root of the heap [0, len[ and sifts it down.
+     */
+    private void sift(final int i, final double d, final int len) {
+      int p = 0;
+      while (true) {
+        int c = 2 * p + 1;
+        if (c >= len)
+          break;
+        if (c + 1 < len && dist[c + 1] > dist[c])
+          c++;
+        if (dist[c] <= d)
+          break;
+        idx[p] = idx[c];
+        dist[p] = dist[c];
+        p = c;
+      }
+      idx[p] = i;
+      dist[p] = d;
+    }
+
+    /**
+     * Searches the points within a squared radius.
+     *
+     * @return the number of points found
+     */
+    protected int radius(final double target[], final double r2) {
+      reset(target);
+      if (t.n > 0)
+        radius(0, 0.0, r2);
+      return size;
+    }
+
+    private void radius(final int node, final double rd, final double r2) {
+      final int sd = t.split[node];
+      if (sd < 0) {
+        final int dim = t.dim;
+        final double c[] = t.coords;
+        for (int i = t.begin[node], o = i * dim; i < t.end[node]; i++, o += dim) {
+          double d = 0.0;
+          for (int j = 0; j < dim && d <= r2; j++) {
+            final double v = c[o + j] - q[j];
+            d += v * v;
+          }
+          if (d <= r2) {
+            if (size == idx.length) {
+              idx = Arrays.copyOf(idx, 2 * size);
+              dist = Arrays.copyOf(dist, 2 * size);
+            }
+            idx[size] = t.index[i];
+            dist[size++] = d;
+          }
+        }
+      } else {
+        final double diff = q[sd] - t.value[node];
+        final int near = diff < 0 ? 2 * node + 1 : 2 * node + 2, far = near == 2 * node + 1 ? near + 1 : near - 1;
+        radius(near, rd, r2);
+        final double old = off[sd], frd = rd - old * old + diff * diff;
+        if (frd <= r2) {
+          off[sd] = diff;
+          radius(far, frd, r2);
+          off[sd] = old;
+        }
+      }
+    }
+  }
+
+  /**
+   * Query i of a batch.
+   */
+  private interface Query {
+    void apply(Search s, int i);
+  }
+
+  /**
+   * Fork-join task that splits a batch of queries into blocks.
+   */
+  private class BatchTask extends RecursiveAction {
+    private final int b, e, k;
+    private final Query query;
+
+    BatchTask(final int b, final int e, final int k, final Query query) {
+      this.b = b;
+      this.e = e;
+      this.k = k;
+      this.query = query;
+    }
+
+    @Override
+    protected void compute() {
+      if (e - b <= P_QUERY || ForkJoinPool.getCommonPoolParallelism() < 2) {
+        final Search s = new Search(ArrayKDTree.this, k);
+        for (int i = b; i < e; i++)
+          query.apply(s, i);
+      } else {
+        final int mid = b + (e - b) / 2;
+        invokeAll(new BatchTask(b, mid, k, query), new BatchTask(mid, e, k, query));
+      }
+    }
+  }
+
+  /**
+   * Fork-join task that builds a subtree.
+   */
+  private class BuildTask extends RecursiveAction {
+    private final int node, b, e;
+
+    BuildTask(final int node, final int b, final int e) {
+      this.node = node;
+      this.b = b;
+      this.e = e;
+    }
+
+    @Override
+    protected void compute() {
+      build(node, b, e);
+      if (split[node] >= 0) {
+        final int mid = b + (e - b) / 2;
+        final BuildTask left = new BuildTask(2 * node + 1, b, mid), right = new BuildTask(2 * node + 2, mid, e);
+        if (e - b >= 2 * P_BUILD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+          invokeAll(left, right);
+        } else {
+          left.compute();
+          right.compute();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,454 @@
+package pt.it.av.atnog.utils.structures.ann;
+
+import pt.it.av.atnog.utils.bla.Vector;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Approximate nearest neighbour index based on Hierarchical Navigable Small World graphs (HNSW).
+ * <p>
+ * Every vector is a node of a layered proximity graph: the level of a node is drawn from an exponential
+ * distribution, the upper layers are sparse and are traversed greedily to find the entry point of the
+ * layer below, the bottom layer contains all the nodes and is searched with a beam of size ef.
+ * The neighbours of a node (at most M, 2M in the bottom layer) are selected with the heuristic that
+ * keeps a candidate only if it is closer to the node than to the neighbours already selected.
+ * </p>
+ * <p>
+ * The vectors are inserted incrementally and identified by their insertion order.
+ * The queries can run concurrently with each other; the inserts are serialized (read-write lock).
+ * Larger values of M and efConstruction improve the quality of the graph (at the cost of slower inserts),
+ * larger values of efSearch improve the recall (at the cost of slower queries).
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public class HnswIndex {
+  private static final int M = 16, EF_CONSTRUCTION = 200, EF_SEARCH = 50, CAPACITY = 64;
+  private final Metric metric;
+  private final int m, m0, efConstruction;
+  private final double ml;
+  private final Random rnd;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final ThreadLocal<Visited> visited = ThreadLocal.withInitial(Visited::new);
+  private volatile int efSearch;
+  // prepared vectors and links of every node: links[node][level] = {count, neighbours...}
+  private Vector vectors[] = new Vector[CAPACITY];
+  private int links[][][] = new int[CAPACITY][][];
+  private int size = 0, entry = -1, maxLevel = -1, dim = -1;
+
+  /**
+   * Creates an index with the default parameters (M = 16, efConstruction = 200, efSearch = 50).
+   *
+   * @param metric the distance between vectors
+   */
+  public HnswIndex(final Metric metric) {
+    this(metric, M, EF_CONSTRUCTION, EF_SEARCH);
+  }
+
+  /**
+   * Creates an index.
+   *
+   * @param metric         the distance between vectors
+   * @param m              maximum number of neighbours per node (2m in the bottom layer)
+   * @param efConstruction size of the beam used to insert vectors
+   * @param efSearch       size of the beam used to query vectors
+   */
+  public HnswIndex(final Metric metric, final int m, final int efConstruction, final int efSearch) {
+    this(metric, m, efConstruction, efSearch, System.nanoTime());
+  }
+
+  /**
+   * Creates an index.
+   *
+   * @param metric         the distance between vectors
+   * @param m              maximum number of neighbours per node (2m in the bottom layer)
+   * @param efConstruction size of the beam used to insert vectors
+   * @param efSearch       size of the beam used to query vectors
+   * @param seed           seed of the random levels
+   */
+  public HnswIndex(final Metric metric, final int m, final int efConstruction, final int efSearch,
+                   final long seed) {
+    if (m < 2 || efConstruction < 1 || efSearch < 1) {
+      throw new IllegalArgumentException("Invalid parameters for the HNSW index.");
+    }
+    this.metric = metric;
+    this.m = m;
+    this.m0 = 2 * m;
+    this.efConstruction = Math.max(efConstruction, m);
+    this.efSearch = efSearch;
+    this.ml = 1.0 / Math.log(m);
+    this.rnd = new Random(seed);
+  }
+
+  /**
+   * Returns the number of vectors in the index.
+   *
+   * @return the number of vectors in the index
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int efSearch() {
+    return efSearch;
+  }
+
+  /**
+   * Changes the size of the beam used to query vectors.
+   *
+   * @param efSearch size of the beam used to query vectors
+   */
+  public void efSearch(final int efSearch) {
+    if (efSearch < 1) {
+      throw new IllegalArgumentException("Invalid parameters for the HNSW index.");
+    }
+    this.efSearch = efSearch;
+  }
+
+  /**
+   * Inserts a vector into the index.
+   *
+   * @param v the vector
+   * @return the identifier of the vector (insertion order)
+   */
+  public int add(final Vector v) {
+    lock.writeLock().lock();
+    try {
+      return insert(v);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Inserts several vectors into the index.
+   *
+   * @param vectors the vectors
+   * @return the identifiers of the vectors
+   */
+  public int[] addAll(final Collection<? extends Vector> vectors) {
+    final int rv[] = new int[vectors.size()];
+    lock.writeLock().lock();
+    try {
+      int i = 0;
+      for (Vector v : vectors)
+        rv[i++] = insert(v);
+    } finally {
+      lock.writeLock().unlock();
+    }
+    return rv;
+  }
+
+  /**
+   * Returns the identifier of the (approximate) nearest vector, -1 if the index is empty.
+   *
+   * @param q the query vector
+   * @return the identifier of the nearest vector
+   */
+  public int nearest(final Vector q) {
+    final int rv[] = knn(q, 1);
+    return rv.length > 0 ? rv[0] : -1;
+  }
+
+  /**
+   * Returns the identifiers of the (approximate) k-nearest vectors, sorted by distance.
+   *
+   * @param q the query vector
+   * @param k number of neighbours
+   * @return the identifiers of the k-nearest vectors
+   */
+  public int[] knn(final Vector q, final int k) {
+    return knn(q, k, efSearch);
+  }
+
+  /**
+   * Returns the identifiers of the (approximate) k-nearest vectors, sorted by distance.
+   *
+   * @param q  the query vector
+   * @param k  number of neighbours
+   * @param ef size of the beam (at least k)
+   * @return the identifiers of the k-nearest vectors
+   */
+  public int[] knn(final Vector q, final int k, final int ef) {
+    if (k < 1) {
+      throw new IllegalArgumentException("The number of neighbours must be positive.");
+    }
+    lock.readLock().lock();
+    try {
+      if (size == 0)
+        return new int[0];
+      check(q);
+      final Vector p = metric.prepare(q);
+      final int ep = greedy(p, entry, maxLevel, 0);
+      final Heap w = search(p, ep, metric.distance(p, vectors[ep]), Math.max(ef, k), 0);
+      while (w.size > k)
+        w.pop();
+      final int rv[] = new int[w.size];
+      for (int i = rv.length - 1; i >= 0; i--)
+        rv[i] = w.pop();
+      return rv;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void check(final Vector v) {
+    if (dim >= 0 && v.size() != dim) {
+      throw new IllegalArgumentException("The vector must have the dimension of the index.");
+    }
+  }
+
+  /**
+   * Inserts a vector (the write lock is held).
+   */
+  private int insert(final Vector v) {
+    check(v);
+    dim = v.size();
+    final Vector p = metric.prepare(v);
+    final int id = size, level = (int) (-Math.log(1.0 - rnd.nextDouble()) * ml);
+    if (id == vectors.length) {
+      vectors = Arrays.copyOf(vectors, 2 * id);
+      links = Arrays.copyOf(links, 2 * id);
+    }
+    vectors[id] = p;
+    links[id] = new int[level + 1][];
+    for (int l = 0; l <= level; l++)
+      links[id][l] = new int[1 + (l == 0 ? m0 : m)];
+    if (entry < 0) {
+      entry = id;
+      maxLevel = level;
+    } else {
+      int ep = greedy(p, entry, maxLevel, level + 1);
+      for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+        final Heap w = search(p, ep, metric.distance(p, vectors[ep]), efConstruction, l);
+        // candidates sorted by distance
+        final int ids[] = new int[w.size];
+        final double dist[] = new double[w.size];
+        for (int i = ids.length - 1; i >= 0; i--) {
+          dist[i] = w.top();
+          ids[i] = w.pop();
+        }
+        ep = ids[0];
+        final int nn[] = links[id][l];
+        nn[0] = select(ids, dist, ids.length, m, nn);
+        for (int i = 1; i <= nn[0]; i++)
+          connect(nn[i], id, l);
+      }
+      if (level > maxLevel) {
+        entry = id;
+        maxLevel = level;
+      }
+    }
+    size++;
+    return id;
+  }
+
+  /**
+   * Adds a link from a node to the new node, the links are pruned with the heuristic if the node is full.
+   */
+  private void connect(final int node, final int id, final int level) {
+    final int nn[] = links[node][level], max = nn.length - 1;
+    if (nn[0] < max) {
+      nn[++nn[0]] = id;
+    } else {
+      final Vector v = vectors[node];
+      final int ids[] = new int[max + 1];
+      final double dist[] = new double[max + 1];
+      for (int i = 0; i < max; i++) {
+        ids[i] = nn[i + 1];
+        dist[i] = metric.distance(v, vectors[ids[i]]);
+      }
+      ids[max] = id;
+      dist[max] = metric.distance(v, vectors[id]);
+      // insertion sort (few elements)
+      for (int i = 1; i <= max; i++) {
+        final int ti = ids[i];
+        final double td = dist[i];
+        int j = i - 1;
+        for (; j >= 0 && dist[j] > td; j--) {
+          ids[j + 1] = ids[j];
+          dist[j + 1] = dist[j];
+        }
+        ids[j + 1] = ti;
+        dist[j + 1] = td;
+      }
+      nn[0] = select(ids, dist, max + 1, max, nn);
+    }
+  }
+
+  /**
+   * Selects the neighbours from candidates sorted by distance with the heuristic:
+   * a candidate is kept if it is closer to the node than to any neighbour already selected.
+   *
+   * @return the number of neighbours (stored in rv[1..])
+   */
+  private int select(final int ids[], final double dist[], final int len, final int max, final int rv[]) {
+    int count = 0;
+    for (int i = 0; i < len && count < max; i++) {
+      final Vector c = vectors[ids[i]];
+      boolean good = true;
+      for (int j = 1; j <= count && good; j++)
+        if (metric.distance(c, vectors[rv[j]]) < dist[i])
+          good = false;
+      if (good)
+        rv[++count] = ids[i];
+    }
+    return count;
+  }
+
+  /**
+   * Greedy search from the top layer down to (and including) the given layer.
+   *
+   * @return the closest node found
+   */
+  private int greedy(final Vector q, int ep, final int top, final int bottom) {
+    double d = metric.distance(q, vectors[ep]);
+    for (int l = top; l >= bottom; l--) {
+      boolean changed = true;
+      while (changed) {
+        changed = false;
+        final int nn[] = links[ep][l];
+        for (int i = 1; i <= nn[0]; i++) {
+          final double dn = metric.distance(q, vectors[nn[i]]);
+          if (dn < d) {
+            d = dn;
+            ep = nn[i];
+            changed = true;
+          }
+        }
+      }
+    }
+    return ep;
+  }
+
+  /**
+   * Beam search in one layer.
+   *
+   * @return max-heap with the (at most) ef closest nodes found
+   */
+  private Heap search(final Vector q, final int ep, final double dep, final int ef, final int level) {
+    final Visited v = visited.get();
+    v.reset(size + 1);
+    final Heap candidates = new Heap(false, ef), w = new Heap(true, ef + 1);
+    v.visit(ep);
+    candidates.push(ep, dep);
+    w.push(ep, dep);
+    while (candidates.size > 0) {
+      final double dc = candidates.top();
+      if (dc > w.top() && w.size >= ef)
+        break;
+      final int nn[] = links[candidates.pop()][level];
+      for (int i = 1; i <= nn[0]; i++) {
+        final int e = nn[i];
+        if (v.visit(e)) {
+          final double de = metric.distance(q, vectors[e]);
+          if (w.size < ef || de < w.top()) {
+            candidates.push(e, de);
+            w.push(e, de);
+            if (w.size > ef)
+              w.pop();
+          }
+        }
+      }
+    }
+    return w;
+  }
+
+  /**
+   * Binary heap of nodes ordered by distance (max-heap or min-heap).
+   */
+  private static final class Heap {
+    private final boolean max;
+    private int ids[], size = 0;
+    private double dist[];
+
+    Heap(final boolean max, final int capacity) {
+      this.max = max;
+      ids = new int[Math.max(capacity, 4)];
+      dist = new double[ids.length];
+    }
+
+    private boolean above(final double a, final double b) {
+      return max ? a > b : a < b;
+    }
+
+    double top() {
+      return dist[0];
+    }
+
+    void push(final int id, final double d) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, 2 * size);
+        dist = Arrays.copyOf(dist, 2 * size);
+      }
+      int c = size++;
+      while (c > 0) {
+        final int p = (c - 1) >> 1;
+        if (!above(d, dist[p]))
+          break;
+        ids[c] = ids[p];
+        dist[c] = dist[p];
+        c = p;
+      }
+      ids[c] = id;
+      dist[c] = d;
+    }
+
+    int pop() {
+      final int rv = ids[0], id = ids[--size];
+      final double d = dist[size];
+      int p = 0;
+      while (true) {
+        int c = 2 * p + 1;
+        if (c >= size)
+          break;
+        if (c + 1 < size && above(dist[c + 1], dist[c]))
+          c++;
+        if (!above(dist[c], d))
+          break;
+        ids[p] = ids[c];
+        dist[p] = dist[c];
+        p = c;
+      }
+      ids[p] = id;
+      dist[p] = d;
+      return rv;
+    }
+  }
+
+  /**
+   * Visited nodes of a search (per thread), the marks are reset by incrementing the epoch.
+   */
+  private static final class Visited {
+    private int marks[] = new int[CAPACITY], epoch = 0;
+
+    void reset(final int n) {
+      if (marks.length < n)
+        marks = new int[Math.max(n, 2 * marks.length)];
+      if (++epoch == Integer.MAX_VALUE) {
+        Arrays.fill(marks, 0);
+        epoch = 1;
+      }
+    }
+
+    /**
+     * Marks a node as visited, returns false if it was already visited.
+     */
+    boolean visit(final int node) {
+      if (marks[node] == epoch)
+        return false;
+      marks[node] = epoch;
+      return true;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package pt.it.av.atnog.utils.structures.ann;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from long keys to non negative int values (open addressing with linear probing).
+ * It avoids the boxing of {@link java.util.HashMap} in the bucket tables of the indexes.
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+class LongIntHashMap {
+  private static final int CAPACITY = 16;
+  private long keys[];
+  // -1 marks an empty slot
+  private int values[], size = 0, mask;
+
+  LongIntHashMap() {
+    keys = new long[CAPACITY];
+    values = new int[CAPACITY];
+    Arrays.fill(values, -1);
+    mask = CAPACITY - 1;
+  }
+
+  int size() {
+    return size;
+  }
+
+  private static int hash(final long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /**
+   * Returns the value of a key, -1 if the key is not in the map.
+   */
+  int get(final long key) {
+    for (int i = hash(key) & mask; values[i] >= 0; i = (i + 1) & mask)
+      if (keys[i] == key)
+        return values[i];
+    return -1;
+  }
+
+  /**
+   * Associates a (non negative) value with a key.
+   *
+   * @return the previous value of the key, -1 if the key was not in the map
+   */
+  int put(final long key, final int value) {
+    int i = hash(key) & mask;
+    for (; values[i] >= 0; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        final int rv = values[i];
+        values[i] = value;
+        return rv;
+      }
+    }
+    keys[i] = key;
+    values[i] = value;
+    if (++size * 2 > keys.length)
+      resize();
+    return -1;
+  }
+
+  private void resize() {
+    final long k[] = keys;
+    final int v[] = values;
+    keys = new long[2 * k.length];
+    values = new int[2 * k.length];
+    Arrays.fill(values, -1);
+    mask = keys.length - 1;
+    for (int j = 0; j < k.length; j++) {
+      if (v[j] >= 0) {
+        int i = hash(k[j]) & mask;
+        while (values[i] >= 0)
+          i = (i + 1) & mask;
+        keys[i] = k[j];
+        values[i] = v[j];
+      }
+    }
+  }
+}
@@ -0,0 +1,436 @@
+package pt.it.av.atnog.utils.structures.ann;
+
+import pt.it.av.atnog.utils.bla.Matrix;
+import pt.it.av.atnog.utils.bla.PairwiseDistances;
+import pt.it.av.atnog.utils.bla.Vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Locality-sensitive hashing index (LSH) to find near vectors by cosine or euclidean distance.
+ * <p>
+ * Every vector is projected on bands x rows random directions: the cosine index keeps the sign of the
+ * projections (random hyperplanes), the euclidean index keeps the bucket floor((a.v + b) / w) of the
+ * projections (p-stable, gaussian, projections).
+ * The hashes of each band are combined into a key and stored in one table per band, the vectors that
+ * share the key of at least one band are candidates.
+ * More rows per band make the bands more selective, more bands increase the probability of finding
+ * the near vectors; the candidates are verified with the distance of the index ({@link Metric}).
+ * </p>
+ * <p>
+ * The batches of vectors are projected with a single matrix product and the batches of queries
+ * run in parallel on the common {@link ForkJoinPool}.
+ * The queries can run concurrently with each other, but not with inserts.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+public class LshIndex {
+  private static final int CAPACITY = 64, P_QUERY = 64;
+  private final Metric metric;
+  private final int dim, bands, rows;
+  // bucket width (euclidean) or 0 (cosine)
+  private final double width;
+  // projections (bands * rows x dim) and their offsets (euclidean)
+  private final Matrix projections;
+  private final Vector directions[];
+  private final double offsets[];
+  private final LongIntHashMap tables[];
+  // chains of the buckets: next[band][id] is the previous vector with the same key (or -1)
+  private int next[][];
+  private Vector vectors[] = new Vector[CAPACITY];
+  private int size = 0;
+
+  private LshIndex(final Metric metric, final int dim, final int bands, final int rows,
+                   final double width, final long seed) {
+    if (dim < 1 || bands < 1 || rows < 1) {
+      throw new IllegalArgumentException("Invalid parameters for the LSH index.");
+    }
+    this.metric = metric;
+    this.dim = dim;
+    this.bands = bands;
+    this.rows = rows;
+    this.width = width;
+    final Random rnd = new Random(seed);
+    final int h = bands * rows;
+    final double data[] = new double[h * dim];
+    for (int i = 0; i < data.length; i++)
+      data[i] = rnd.nextGaussian();
+    projections = new Matrix(h, dim, data);
+    directions = new Vector[h];
+    offsets = new double[h];
+    for (int i = 0; i < h; i++) {
+      directions[i] = new Vector(data, i * dim, dim);
+      offsets[i] = rnd.nextDouble() * width;
+    }
+    tables = new LongIntHashMap[bands];
+    next = new int[bands][CAPACITY];
+    for (int i = 0; i < bands; i++)
+      tables[i] = new LongIntHashMap();
+  }
+
+  /**
+   * Creates an index for the cosine distance (random hyperplanes).
+   *
+   * @param dim   number of dimensions of the vectors
+   * @param bands number of bands (tables)
+   * @param rows  number of hyperplanes per band
+   * @param seed  seed of the random hyperplanes
+   * @return the LSH index
+   */
+  public static LshIndex cosine(final int dim, final int bands, final int rows, final long seed) {
+    return new LshIndex(Metric.COSINE, dim, bands, rows, 0.0, seed);
+  }
+
+  public static LshIndex cosine(final int dim, final int bands, final int rows) {
+    return cosine(dim, bands, rows, System.nanoTime());
+  }
+
+  /**
+   * Creates an index for the euclidean distance (p-stable projections).
+   *
+   * @param dim   number of dimensions of the vectors
+   * @param bands number of bands (tables)
+   * @param rows  number of projections per band
+   * @param width width of the buckets of the projections (in the scale of the distances)
+   * @param seed  seed of the random projections
+   * @return the LSH index
+   */
+  public static LshIndex euclidean(final int dim, final int bands, final int rows, final double width,
+                                   final long seed) {
+    if (width <= 0.0) {
+      throw new IllegalArgumentException("Invalid parameters for the LSH index.");
+    }
+    return new LshIndex(Metric.EUCLIDEAN, dim, bands, rows, width, seed);
+  }
+
+  public static LshIndex euclidean(final int dim, final int bands, final int rows, final double width) {
+    return euclidean(dim, bands, rows, width, System.nanoTime());
+  }
+
+  /**
+   * Returns the number of vectors in the index.
+   *
+   * @return the number of vectors in the index
+   */
+  public int size() {
+    return size;
+  }
+
+  private void check(final Vector v) {
+    if (v.size() != dim) {
+      throw new IllegalArgumentException("The vector must have the dimension of the index.");
+    }
+  }
+
+  /**
+   * Returns the key of every band from the projections p[off, off + bands * rows[.
+   */
+  private void keys(final double p[], final int off, final long keys[]) {
+    for (int b = 0; b < bands; b++) {
+      long key = b;
+      for (int r = 0, i = b * rows; r < rows; r++, i++) {
+        final long hash = width > 0.0 ? (long) Math.floor((p[off + i] + offsets[i]) / width)
+            : (p[off + i] >= 0.0 ? 1 : 0);
+        key = key * 0x9E3779B97F4A7C15L + hash;
+      }
+      keys[b] = key ^ (key >>> 29);
+    }
+  }
+
+  /**
+   * Returns the key of every band of a vector.
+   */
+  private long[] keys(final Vector v) {
+    check(v);
+    final double p[] = new double[directions.length];
+    for (int i = 0; i < p.length; i++)
+      p[i] = directions[i].innerProduct(v);
+    final long rv[] = new long[bands];
+    keys(p, 0, rv);
+    return rv;
+  }
+
+  /**
+   * Returns the projections of several vectors (one row per vector) with a single matrix product.
+   */
+  private double[] project(final List<? extends Vector> vs) {
+    final double data[] = new double[vs.size() * dim];
+    for (int i = 0; i < vs.size(); i++) {
+      final Vector v = vs.get(i);
+      check(v);
+      for (int j = 0; j < dim; j++)
+        data[i * dim + j] = v.get(j);
+    }
+    final Matrix P = PairwiseDistances.innerProduct(new Matrix(vs.size(), dim, data), projections);
+    final int h = directions.length;
+    final double rv[] = new double[vs.size() * h];
+    for (int i = 0; i < vs.size(); i++)
+      for (int j = 0; j < h; j++)
+        rv[i * h + j] = P.get(i, j);
+    return rv;
+  }
+
+  /**
+   * Inserts a vector with the keys of its bands.
+   */
+  private int insert(final Vector v, final long keys[]) {
+    final int id = size;
+    if (id == vectors.length) {
+      vectors = Arrays.copyOf(vectors, 2 * id);
+      for (int b = 0; b < bands; b++)
+        next[b] = Arrays.copyOf(next[b], 2 * id);
+    }
+    vectors[id] = metric.prepare(v);
+    for (int b = 0; b < bands; b++)
+      next[b][id] = tables[b].put(keys[b], id);
+    size++;
+    return id;
+  }
+
+  /**
+   * Inserts a vector into the index.
+   *
+   * @param v the vector
+   * @return the identifier of the vector (insertion order)
+   */
+  public int add(final Vector v) {
+    return insert(v, keys(v));
+  }
+
+  /**
+   * Inserts several vectors into the index (the vectors are projected with a single matrix product).
+   *
+   * @param vs the vectors
+   * @return the identifiers of the vectors
+   */
+  public int[] addAll(final Collection<? extends Vector> vs) {
+    final List<? extends Vector> list = vs instanceof List ? (List<? extends Vector>) vs : new ArrayList<>(vs);
+    final double p[] = project(list);
+    final long keys[] = new long[bands];
+    final int rv[] = new int[list.size()];
+    for (int i = 0; i < rv.length; i++) {
+      keys(p, i * directions.length, keys);
+      rv[i] = insert(list.get(i), keys);
+    }
+    return rv;
+  }
+
+  /**
+   * Returns the identifiers of the candidates (vectors that share at least one band with the query).
+   *
+   * @param q the query vector
+   * @return the identifiers of the candidates
+   */
+  public int[] candidates(final Vector q) {
+    final Search s = new Search();
+    final int len = s.candidates(keys(q));
+    return Arrays.copyOf(s.ids, len);
+  }
+
+  /**
+   * Returns the identifiers of the (approximate) k-nearest vectors, sorted by distance.
+   *
+   * @param q the query vector
+   * @param k number of neighbours
+   * @return the identifiers of the k-nearest vectors (among the candidates)
+   */
+  public int[] knn(final Vector q, final int k) {
+    final Search s = new Search();
+    return s.knn(metric.prepare(q), keys(q), k);
+  }
+
+  /**
+   * Returns the identifiers of the vectors within a distance of the query.
+   * For the cosine index the distance is 1 - cosine similarity.
+   *
+   * @param q        the query vector
+   * @param distance maximum distance
+   * @return the identifiers of the vectors within the distance (among the candidates)
+   */
+  public int[] near(final Vector q, final double distance) {
+    final Search s = new Search();
+    return s.near(metric.prepare(q), keys(q), distance);
+  }
+
+  /**
+   * Returns the identifiers of the (approximate) k-nearest vectors of every query (in parallel).
+   *
+   * @param qs the query vectors
+   * @param k  number of neighbours
+   * @return the identifiers of the k-nearest vectors of every query
+   */
+  public int[][] knn(final List<? extends Vector> qs, final int k) {
+    final int rv[][] = new int[qs.size()][];
+    batch(qs, (s, q, keys, i) -> rv[i] = s.knn(q, keys, k));
+    return rv;
+  }
+
+  /**
+   * Returns the identifiers of the vectors within a distance of every query (in parallel).
+   *
+   * @param qs       the query vectors
+   * @param distance maximum distance
+   * @return the identifiers of the vectors within the distance of every query
+   */
+  public int[][] near(final List<? extends Vector> qs, final double distance) {
+    final int rv[][] = new int[qs.size()][];
+    batch(qs, (s, q, keys, i) -> rv[i] = s.near(q, keys, distance));
+    return rv;
+  }
+
+  /**
+   * Returns the pairs of vectors in the index within a distance (e.g. near-duplicates).
+   * Only the candidate pairs (that share at least one band) are verified.
+   *
+   * @param distance maximum distance
+   * @return the pairs (i, j), with i &lt; j
+   */
+  public List<int[]> pairs(final double distance) {
+    final List<int[]> rv = new ArrayList<>();
+    final int marks[] = new int[size];
+    for (int i = 0; i < size; i++) {
+      // the chains only link to vectors inserted before
+      for (int b = 0; b < bands; b++) {
+        for (int j = next[b][i]; j >= 0; j = next[b][j]) {
+          if (marks[j] != i + 1) {
+            marks[j] = i + 1;
+            if (metric.distance(vectors[i], vectors[j]) <= distance)
+              rv.add(new int[]{j, i});
+          }
+        }
+      }
+    }
+    return rv;
+  }
+
+  /**
+   * Runs a batch of queries: the queries are projected with a single matrix product and
+   * verified in parallel (every block of queries reuses the same buffers).
+   */
+  private void batch(final List<? extends Vector> qs, final Query query) {
+    final double p[] = project(qs);
+    final BatchTask task = new BatchTask(qs, p, 0, qs.size(), query);
+    if (qs.size() >= 2 * P_QUERY && ForkJoinPool.getCommonPoolParallelism() > 1)
+      ForkJoinPool.commonPool().invoke(task);
+    else
+      task.compute();
+  }
+
+  /**
+   * Query i of a batch.
+   */
+  private interface Query {
+    void apply(Search s, Vector q, long keys[], int i);
+  }
+
+  /**
+   * Buffers of the queries (candidates and visited marks), they can be reused by the queries of one thread.
+   */
+  private final class Search {
+    private int marks[] = new int[size], epoch = 0, ids[] = new int[CAPACITY], top[] = new int[0];
+    private double dist[] = new double[0];
+
+    /**
+     * Collects the candidates of the keys into ids.
+     *
+     * @return the number of candidates
+     */
+    int candidates(final long keys[]) {
+      if (++epoch == Integer.MAX_VALUE) {
+        Arrays.fill(marks, 0);
+        epoch = 1;
+      }
+      int count = 0;
+      for (int b = 0; b < bands; b++) {
+        for (int j = tables[b].get(keys[b]); j >= 0; j = next[b][j]) {
+          if (marks[j] != epoch) {
+            marks[j] = epoch;
+            if (count == ids.length)
+              ids = Arrays.copyOf(ids, 2 * count);
+            ids[count++] = j;
+          }
+        }
+      }
+      return count;
+    }
+
+    int[] knn(final Vector q, final long keys[], final int k) {
+      if (k < 1) {
+        throw new IllegalArgumentException("The number of neighbours must be positive.");
+      }
+      final int count = candidates(keys);
+      if (top.length < k) {
+        top = new int[k];
+        dist = new double[k];
+      }
+      // insertion into the sorted k-nearest
+      int len = 0;
+      for (int c = 0; c < count; c++) {
+        final int id = ids[c];
+        final double d = metric.distance(q, vectors[id]);
+        if (len < k || d < dist[len - 1]) {
+          int j = Math.min(len, k - 1);
+          for (; j > 0 && dist[j - 1] > d; j--) {
+            top[j] = top[j - 1];
+            dist[j] = dist[j - 1];
+          }
+          top[j] = id;
+          dist[j] = d;
+          if (len < k)
+            len++;
+        }
+      }
+      return Arrays.copyOf(top, len);
+    }
+
+    int[] near(final Vector q, final long keys[], final double distance) {
+      final int count = candidates(keys);
+      int len = 0;
+      for (int c = 0; c < count; c++)
+        if (metric.distance(q, vectors[ids[c]]) <= distance)
+          ids[len++] = ids[c];
+      return Arrays.copyOf(ids, len);
+    }
+  }
+
+  /**
+   * Fork-join task that splits a batch of queries into blocks.
+   */
+  private class BatchTask extends RecursiveAction {
+    private final List<? extends Vector> qs;
+    private final double p[];
+    private final int b, e;
+    private final Query query;
+
+    BatchTask(final List<? extends Vector> qs, final double p[], final int b, final int e, final Query query) {
+      this.qs = qs;
+      this.p = p;
+      this.b = b;
+      this.e = e;
+      this.query = query;
+    }
+
+    @Override
+    protected void compute() {
+      if (e - b <= P_QUERY || ForkJoinPool.getCommonPoolParallelism() < 2) {
+        final Search s = new Search();
+        final long keys[] = new long[bands];
+        for (int i = b; i < e; i++) {
+          keys(p, i * directions.length, keys);
+          query.apply(s, metric.prepare(qs.get(i)), keys, i);
+        }
+      } else {
+        final int mid = b + (e - b) / 2;
+        invokeAll(new BatchTask(qs, p, b, mid, query), new BatchTask(qs, p, mid, e, query));
+      }
+    }
+  }
+}
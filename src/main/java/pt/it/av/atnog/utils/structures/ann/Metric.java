@@ -0,0 +1,65 @@
+package pt.it.av.atnog.utils.structures.ann;
+
+import pt.it.av.atnog.utils.bla.Vector;
+
+/**
+ * Distance between two vectors used by the nearest neighbour indexes.
+ * <p>
+ * The vectors are prepared once (when they are inserted or queried) and the distance is
+ * computed between prepared vectors, e.g. the cosine distance normalizes the vectors
+ * and is computed with a single inner product.
+ * Any {@link pt.it.av.atnog.utils.structures.Distance} can be used, e.g. {@code Vector::distanceTo}.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface Metric {
+  /**
+   * Euclidean distance.
+   */
+  Metric EUCLIDEAN = Vector::euclideanDistance;
+
+  /**
+   * Cosine distance (1 - cosine similarity).
+   */
+  Metric COSINE = new Metric() {
+    @Override
+    public double distance(final Vector a, final Vector b) {
+      return 1.0 - a.innerProduct(b);
+    }
+
+    @Override
+    public Vector prepare(final Vector v) {
+      final double norm = v.norm(2);
+      return norm > 0.0 ? v.div(norm) : new Vector(v);
+    }
+  };
+
+  /**
+   * Negative inner product (maximum inner product search).
+   */
+  Metric INNER_PRODUCT = (a, b) -> -a.innerProduct(b);
+
+  /**
+   * Returns the distance between two prepared vectors.
+   *
+   * @param a prepared vector
+   * @param b prepared vector
+   * @return the distance between the vectors
+   */
+  double distance(Vector a, Vector b);
+
+  /**
+   * Returns the vector used to compute the distances (by default a copy of the vector).
+   * The indexes keep the prepared vectors, so it must not return the vector itself:
+   * changes made by the caller after an insertion would corrupt the index.
+   *
+   * @param v the vector
+   * @return the prepared vector
+   */
+  default Vector prepare(final Vector v) {
+    return new Vector(v);
+  }
+}
@@ -0,0 +1,130 @@
+package pt.it.av.atnog.utils;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD kernels built on the Vector API (jdk.incubator.vector).
+ * <p>
+ * Compiled only by the {@code vector} profile (JDK 17 or newer) and loaded by {@link ArrayUtils}
+ * when the module {@code jdk.incubator.vector} is available (--add-modules jdk.incubator.vector).
+ * The reductions keep one accumulator per lane and use fused multiply-add.
+ * </p>
+ *
+ * @author <a href="mailto:mariolpantunes@gmail.com">Mário Antunes</a>
+ * @version 1.0
+ */
+final class VectorKernels implements ArrayKernels {
+  private static final VectorSpecies<Double> S = DoubleVector.SPECIES_PREFERRED;
+
+  VectorKernels() {
+    if (S.length() < 2) {
+      throw new UnsupportedOperationException("SIMD is not available.");
+    }
+  }
+
+  @Override
+  public void add(final double[] a, final int bA, final double[] b, final int bB,
+                  final double[] c, final int bC, final int len) {
+    int i = 0;
+    for (final int ub = S.loopBound(len); i < ub; i += S.length())
+      DoubleVector.fromArray(S, a, bA + i).add(DoubleVector.fromArray(S, b, bB + i)).intoArray(c, bC + i);
+    for (; i < len; i++)
+      c[bC + i] = a[bA + i] + b[bB + i];
+  }
+
+  @Override
+  public void sub(final double[] a, final int bA, final double[] b, final int bB,
+                  final double[] c, final int bC, final int len) {
+    int i = 0;
+    for (final int ub = S.loopBound(len); i < ub; i += S.length())
+      DoubleVector.fromArray(S, a, bA + i).sub(DoubleVector.fromArray(S, b, bB + i)).intoArray(c, bC + i);
+    for (; i < len; i++)
+      c[bC + i] = a[bA + i] - b[bB + i];
+  }
+
+  @Override
+  public void mul(final double[] a, final int bA, final double[] b, final int bB,
+                  final double[] c, final int bC, final int len) {
+    int i = 0;
+    for (final int ub = S.loopBound(len); i < ub; i += S.length())
+      DoubleVector.fromArray(S, a, bA + i).mul(DoubleVector.fromArray(S, b, bB + i)).intoArray(c, bC + i);
+    for (; i < len; i++)
+      c[bC + i] = a[bA + i] * b[bB + i];
+  }
+
+  @Override
+  public void div(final double[] a, final int bA, final double[] b, final int bB,
+                  final double[] c, final int bC, final int len) {
+    int i = 0;
+    for (final int ub = S.loopBound(len); i < ub; i += S.length())
+      DoubleVector.fromArray(S, a, bA + i).div(DoubleVector.fromArray(S, b, bB + i)).intoArray(c, bC + i);
+    for (; i < len; i++)
+      c[bC + i] = a[bA + i] / b[bB + i];
+  }
+
+  @Override
+  public void mulDiv(final double[] a, final int bA, final double[] b, final int bB,
+                     final double[] c, final int bC, final double[] r, final int bR, final int len) {
+    int i = 0;
+    for (final int ub = S.loopBound(len); i < ub; i += S.length()) {
+      final DoubleVector q = DoubleVector.fromArray(S, b, bB + i).div(DoubleVector.fromArray(S, c, bC + i));
+      DoubleVector.fromArray(S, a, bA + i).mul(q).intoArray(r, bR + i);
+    }
+    for (; i < len; i++)
+      r[bR + i] = a[bA + i] * (b[bB + i] / c[bC + i]);
+  }
+
+  @Override
+  public double dotProduct(final double[] a, final int bA, final double[] b, final int bB, final int len) {
+    DoubleVector acc = DoubleVector.zero(S);
+    int i = 0;
+    for (final int ub = S.loopBound(len); i < ub; i += S.length())
+      acc = DoubleVector.fromArray(S, a, bA + i).fma(DoubleVector.fromArray(S, b, bB + i), acc);
+    double rv = acc.reduceLanes(VectorOperators.ADD);
+    for (; i < len; i++)
+      rv += a[bA + i] * b[bB + i];
+    return rv;
+  }
+
+  @Override
+  public double squaredDistance(final double[] a, final int bA, final double[] b, final int bB, final int len) {
+    DoubleVector acc = DoubleVector.zero(S);
+    int i = 0;
+    for (final int ub = S.loopBound(len); i < ub; i += S.length()) {
+      final DoubleVector d = DoubleVector.fromArray(S, a, bA + i).sub(DoubleVector.fromArray(S, b, bB + i));
+      acc = d.fma(d, acc);
+    }
+    double rv = acc.reduceLanes(VectorOperators.ADD);
+    for (; i < len; i++) {
+      final double d = a[bA + i] - b[bB + i];
+      rv += d * d;
+    }
+    return rv;
+  }
+
+  @Override
+  public double manhattanDistance(final double[] a, final int bA, final double[] b, final int bB, final int len) {
+    DoubleVector acc = DoubleVector.zero(S);
+    int i = 0;
+    for (final int ub = S.loopBound(len); i < ub; i += S.length())
+      acc = acc.add(DoubleVector.fromArray(S, a, bA + i).sub(DoubleVector.fromArray(S, b, bB + i)).abs());
+    double rv = acc.reduceLanes(VectorOperators.ADD);
+    for (; i < len; i++)
+      rv += Math.abs(a[bA + i] - b[bB + i]);
+    return rv;
+  }
+
+  @Override
+  public double sum(final double[] a, final int bA, final int len) {
+    DoubleVector acc = DoubleVector.zero(S);
+    int i = 0;
+    for (final int ub = S.loopBound(len); i < ub; i += S.length())
+      acc = acc.add(DoubleVector.fromArray(S, a, bA + i));
+    double rv = acc.reduceLanes(VectorOperators.ADD);
+    for (; i < len; i++)
+      rv += a[bA + i];
+    return rv;
+  }
+}
@@ -4,6 +4,8 @@ import org.junit.Test;
 
 import java.util.Arrays;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -182,4 +184,25 @@ public class ArrayUtilsTest {
     ArrayUtils.reverse(in, 0, out, 0, in.length);
     assertTrue(Arrays.equals(out, r));
   }
+
+  @Test
+  public void test_kernels() {
+    // the selected kernels (SIMD when available) must match the scalar ones, including the tails
+    ScalarKernels scalar = new ScalarKernels();
+    double a[] = ArrayUtils.random(103), b[] = ArrayUtils.random(103), c[] = new double[103], r[] = new double[103];
+    ArrayUtils.add(b, 0, 1.0, b, 0, b.length);
+    for (int len : new int[]{0, 1, 7, 64, 98}) {
+      ArrayUtils.mulDiv(a, 3, a, 2, b, 5, c, 1, len);
+      scalar.mulDiv(a, 3, a, 2, b, 5, r, 1, len);
+      assertArrayEquals(r, c, 1E-15);
+      ArrayUtils.sub(a, 5, b, 1, c, 0, len);
+      scalar.sub(a, 5, b, 1, r, 0, len);
+      assertArrayEquals(r, c, 0.0);
+      assertEquals(scalar.dotProduct(a, 1, b, 2, len), ArrayUtils.dotProduct(a, 1, b, 2, len), 1E-12);
+      assertEquals(Math.sqrt(scalar.squaredDistance(a, 3, b, 0, len)), ArrayUtils.euclideanDistance(a, 3, b, 0, len), 1E-12);
+      assertEquals(scalar.manhattanDistance(a, 3, b, 0, len), ArrayUtils.manhattanDistance(a, 3, b, 0, len), 1E-12);
+      assertEquals(scalar.sum(a, 5, len), ArrayUtils.sum(a, 5, len), 1E-12);
+    }
+    assertEquals(17.0, ArrayUtils.sum(inc, 8, 2), 0.0);
+  }
 }
@@ -0,0 +1,44 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test for {@link CholeskyDecomposition}.
+ *
+ * @author Mário Antunes
+ * @version 1.0
+ */
+public class CholeskyDecompositionTest {
+
+  private static Matrix spd(int n) {
+    Matrix B = Matrix.random(n, n, -1.0, 1.0);
+    return B.mul(B.transpose()).add(Matrix.identity(n).mul(n));
+  }
+
+  @Test
+  public void test_cholesky() {
+    Matrix A = spd(90), L = A.cholesky().l();
+    assertArrayEquals(A.data, L.mul(L.transpose()).data, 1E-10);
+    for (int i = 0; i < 90; i++)
+      for (int j = i + 1; j < 90; j++)
+        assertEquals(0.0, L.get(i, j), 0.0);
+  }
+
+  @Test
+  public void test_solve() {
+    Matrix A = spd(70), X = Matrix.random(70, 5, -1.0, 1.0);
+    CholeskyDecomposition chol = new CholeskyDecomposition(A);
+    assertArrayEquals(X.data, chol.solve(A.mul(X)).data, 1E-10);
+    assertArrayEquals(A.inverse().data, chol.inverse().data, 1E-10);
+    assertEquals(A.det(), chol.det(), 1E-8 * A.det());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_not_spd() {
+    Matrix A = new Matrix(2, 2, new double[]{1, 2, 2, 1});
+    A.cholesky();
+  }
+}
@@ -0,0 +1,57 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link EigenDecomposition}.
+ *
+ * @author Mário Antunes
+ * @version 1.0
+ */
+public class EigenDecompositionTest {
+
+  private static Matrix symmetric(int n) {
+    Matrix B = Matrix.random(n, n, -1.0, 1.0);
+    return B.add(B.transpose());
+  }
+
+  @Test
+  public void test_symmetric() {
+    Matrix A = symmetric(80), VD[] = A.eig();
+    Matrix V = VD[0], D = VD[1];
+    assertArrayEquals(A.data, V.mul(D).mul(V.transpose()).data, 1E-10);
+    assertArrayEquals(Matrix.identity(80).data, V.transpose().mul(V).data, 1E-10);
+    for (int i = 1; i < 80; i++)
+      assertTrue(D.get(i - 1, i - 1) >= D.get(i, i));
+  }
+
+  @Test
+  public void test_known() {
+    Matrix A = new Matrix(3, 3, new double[]{2, -1, 0, -1, 2, -1, 0, -1, 2}), VD[] = A.eig();
+    assertEquals(2.0 + Math.sqrt(2.0), VD[1].get(0, 0), 1E-12);
+    assertEquals(2.0, VD[1].get(1, 1), 1E-12);
+    assertEquals(2.0 - Math.sqrt(2.0), VD[1].get(2, 2), 1E-12);
+    Matrix I = Matrix.identity(4), E[] = I.eig();
+    assertArrayEquals(I.data, E[1].data, 0.0);
+  }
+
+  @Test
+  public void test_lanczos() {
+    // covariance-like matrix with a decaying spectrum
+    Matrix X = Matrix.random(300, 150, -1.0, 1.0), A = X.transpose().mul(X);
+    Matrix full[] = A.eig(), top[] = A.eig(5);
+    for (int i = 0; i < 5; i++) {
+      assertEquals(full[1].get(i, i), top[1].get(i, i), 1E-8);
+      // A v = lambda v
+      Matrix v = top[0].view().column(i).toMatrix();
+      assertArrayEquals(v.mul(top[1].get(i, i)).data, A.mul(v).data, 1E-6);
+    }
+    Matrix S[] = EigenDecomposition.lanczos(SparseMatrix.csr(A), 3);
+    for (int i = 0; i < 3; i++)
+      assertEquals(full[1].get(i, i), S[1].get(i, i), 1E-8);
+  }
+}
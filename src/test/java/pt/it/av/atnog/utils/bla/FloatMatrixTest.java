@@ -0,0 +1,68 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link FloatMatrix} and {@link FloatVector}.
+ *
+ * @author Mário Antunes
+ * @version 1.0
+ */
+public class FloatMatrixTest {
+
+  @Test
+  public void test_conversion() {
+    Matrix A = new Matrix(2, 3, new double[]{1, 2, 3, 4, 5, 6});
+    FloatMatrix F = new FloatMatrix(A);
+    assertEquals(5.0f, F.get(1, 1), 0.0f);
+    assertTrue(A.equals(F.toMatrix()));
+    Vector v = new Vector(new double[]{1, 2, 3});
+    assertTrue(v.equals(new FloatVector(v).toVector()));
+  }
+
+  @Test
+  public void test_transpose() {
+    FloatMatrix A = FloatMatrix.random(97, 131, 0.0f, 1.0f);
+    FloatMatrix T = A.transpose();
+    for (int i = 0; i < A.rows(); i++)
+      for (int j = 0; j < A.columns(); j++)
+        assertEquals(A.get(i, j), T.get(j, i), 0.0f);
+  }
+
+  @Test
+  public void test_mul() {
+    Matrix A = Matrix.random(67, 45, 0.0, 1.0), B = Matrix.random(45, 73, 0.0, 1.0);
+    FloatMatrix C = new FloatMatrix(A).mul(new FloatMatrix(B));
+    assertArrayEquals(A.mul(B).data, C.toMatrix().data, 1E-4);
+  }
+
+  @Test
+  public void test_mul_vector() {
+    FloatMatrix A = new FloatMatrix(2, 3, new float[]{1, 2, 3, 4, 5, 6});
+    FloatVector x = new FloatVector(new float[]{1, 1, 2});
+    assertTrue(new FloatVector(new float[]{9, 21}).equals(A.mul(x)));
+  }
+
+  @Test
+  public void test_vector() {
+    FloatVector a = new FloatVector(new float[]{3, 4}), b = new FloatVector(new float[]{0, 0});
+    assertEquals(5.0f, a.norm(2), 1E-6f);
+    assertEquals(5.0f, a.euclideanDistance(b), 1E-6f);
+    assertEquals(7.0f, a.manhattanDistance(b), 1E-6f);
+    assertEquals(25.0f, a.innerProduct(a), 1E-6f);
+    assertEquals(1.0f, a.cosine(a.mul(2.0f)), 1E-6f);
+  }
+
+  @Test
+  public void test_nmf() {
+    FloatMatrix V = FloatMatrix.random(20, 16, 0.0f, 1.0f);
+    FloatMatrix[] wh = V.nmf(4, 200, 0.01f);
+    assertEquals(20, wh[0].rows());
+    assertEquals(16, wh[1].columns());
+    assertTrue(V.euclideanDistance(wh[0].mul(wh[1])) < V.euclideanDistance(new FloatMatrix(20, 16)));
+  }
+}
@@ -0,0 +1,55 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link LuDecomposition}.
+ *
+ * @author Mário Antunes
+ * @version 1.0
+ */
+public class LuDecompositionTest {
+
+  @Test
+  public void test_lu() {
+    Matrix A = Matrix.random(100, 100, -1.0, 1.0);
+    LuDecomposition lu = A.lu();
+    int p[] = lu.pivot();
+    Matrix PA = new Matrix(100, 100);
+    for (int i = 0; i < 100; i++)
+      System.arraycopy(A.data, p[i] * 100, PA.data, i * 100, 100);
+    assertArrayEquals(PA.data, lu.l().mul(lu.u()).data, 1E-10);
+  }
+
+  @Test
+  public void test_solve() {
+    Matrix A = Matrix.random(80, 80, -1.0, 1.0), X = Matrix.random(80, 7, -1.0, 1.0);
+    LuDecomposition lu = new LuDecomposition(A);
+    assertArrayEquals(X.data, lu.solve(A.mul(X)).data, 1E-8);
+    Matrix x = Matrix.random(80, 1, -1.0, 1.0);
+    assertArrayEquals(x.data, lu.solve(A.mul(x).vector()).data, 1E-8);
+    Matrix I = A.mul(A.inverse());
+    assertArrayEquals(Matrix.identity(80).data, I.data, 1E-8);
+  }
+
+  @Test
+  public void test_det() {
+    Matrix A = Matrix.random(50, 50, -1.0, 1.0);
+    assertEquals(new QrDecomposition(A).det(), A.det(), 1E-8 * Math.max(1.0, Math.abs(A.det())));
+    Matrix P = new Matrix(4, 4, new double[]{0, 1, 0, 0, 1, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1});
+    assertEquals(-1.0, P.det(), 1E-12);
+  }
+
+  @Test(expected = ArithmeticException.class)
+  public void test_singular() {
+    Matrix A = new Matrix(4, 4, new double[]{1, 2, 3, 4, 2, 4, 6, 8, 1, 0, 1, 0, 0, 1, 0, 1});
+    LuDecomposition lu = A.lu();
+    assertTrue(lu.isSingular());
+    assertEquals(0.0, lu.det(), 0.0);
+    lu.solve(Matrix.identity(4));
+  }
+}
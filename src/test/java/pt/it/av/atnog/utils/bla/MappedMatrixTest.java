@@ -0,0 +1,123 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit test for {@link MappedMatrix}.
+ *
+ * @author Mário Antunes
+ * @version 1.0
+ */
+public class MappedMatrixTest {
+  private static Path dir;
+
+  @BeforeClass
+  public static void setup() throws IOException {
+    dir = Files.createTempDirectory("mapped");
+  }
+
+  @AfterClass
+  public static void cleanup() throws IOException {
+    Files.list(dir).forEach(p -> p.toFile().delete());
+    Files.delete(dir);
+  }
+
+  /**
+   * Maps a matrix with small segments (7 rows each), to test rows spread over several segments.
+   */
+  private static MappedMatrix segmented(Path path, Matrix M, boolean readOnly) throws IOException {
+    MappedMatrix.create(path, M).close();
+    FileChannel fc = readOnly ? FileChannel.open(path, StandardOpenOption.READ) :
+        FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    return new MappedMatrix(fc, 0, M.rows, M.cols, ByteOrder.nativeOrder(), readOnly,
+        7 * M.cols * Double.BYTES);
+  }
+
+  @Test
+  public void test_get_set() throws IOException {
+    Matrix M = Matrix.random(30, 11, 0.0, 1.0);
+    try (MappedMatrix A = segmented(dir.resolve("a.bin"), M, false)) {
+      assertEquals(M.get(17, 3), A.get(17, 3), 0.0);
+      A.set(29, 10, -1.0);
+      M.set(29, 10, -1.0);
+      A.force();
+      assertTrue(M.equals(A.toMatrix()));
+    }
+    try (MappedMatrix A = MappedMatrix.open(dir.resolve("a.bin"), 30, 11, true)) {
+      assertTrue(M.equals(A.toMatrix()));
+    }
+  }
+
+  @Test(expected = ReadOnlyBufferException.class)
+  public void test_read_only() throws IOException {
+    try (MappedMatrix A = segmented(dir.resolve("b.bin"), Matrix.random(5, 5, 0.0, 1.0), true)) {
+      A.set(0, 0, 1.0);
+    }
+  }
+
+  @Test
+  public void test_mul() throws IOException {
+    Matrix M = Matrix.random(45, 23, 0.0, 1.0), B = Matrix.random(23, 9, 0.0, 1.0),
+        C = Matrix.random(45, 6, 0.0, 1.0);
+    try (MappedMatrix A = segmented(dir.resolve("c.bin"), M, true);
+         MappedMatrix AB = MappedMatrix.create(dir.resolve("d.bin"), 45, 9)) {
+      assertArrayEquals(M.mul(B).data, A.mul(B).data, 1E-9);
+      assertArrayEquals(M.mul(B).data, A.mul(B, AB).toMatrix().data, 1E-9);
+      assertArrayEquals(M.transpose().mul(C).data, A.tmul(C).data, 1E-9);
+    }
+  }
+
+  @Test
+  public void test_transpose() throws IOException {
+    Matrix M = Matrix.random(600, 530, 0.0, 1.0);
+    try (MappedMatrix A = segmented(dir.resolve("e.bin"), M, true);
+         MappedMatrix T = A.transpose(dir.resolve("f.bin"))) {
+      assertTrue(M.transpose().equals(T.toMatrix()));
+    }
+  }
+
+  @Test
+  public void test_nmf() throws IOException {
+    Matrix V = Matrix.random(40, 24, 0.0, 3.0);
+    try (MappedMatrix A = segmented(dir.resolve("g.bin"), V, true)) {
+      Matrix WH[] = A.nmf(4, 200, 0.0);
+      assertTrue(V.euclideanDistance(WH[0].mul(WH[1])) < V.euclideanDistance(new Matrix(40, 24)));
+    }
+  }
+
+  @Test
+  public void test_invalid_size() throws IOException {
+    Path p = dir.resolve("invalid.bin");
+    try {
+      MappedMatrix.create(p, 0, 4).close();
+      fail("Empty matrices must be rejected.");
+    } catch (IllegalArgumentException e) {
+      // the size is checked before the file is created
+      assertFalse(Files.exists(p));
+    }
+    MappedMatrix.create(p, 2, 3).close();
+    try {
+      // a negative number of rows used to pass the file size check
+      MappedMatrix.open(p, -2, 3, true).close();
+      fail("Negative sizes must be rejected.");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Invalid matrix size: -2x3", e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.junit.Test;
+import pt.it.av.atnog.utils.structures.Point3D;
+import pt.it.av.atnog.utils.structures.Point4D;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test for {@link MatrixBatch}.
+ *
+ * @author Mário Antunes
+ * @version 1.0
+ */
+public class MatrixBatchTest {
+
+  private static Matrix[] random(int size, int n) {
+    Matrix rv[] = new Matrix[n];
+    for (int i = 0; i < n; i++)
+      rv[i] = Matrix.random(size, size, -1.0, 1.0).add(Matrix.identity(size).mul(2.0));
+    return rv;
+  }
+
+  @Test
+  public void test_mul() {
+    for (int size = 2; size <= 4; size++) {
+      Matrix A[] = random(size, 50), B[] = random(size, 50);
+      MatrixBatch C = MatrixBatch.of(A).mul(MatrixBatch.of(B));
+      for (int b = 0; b < 50; b++)
+        assertArrayEquals(A[b].mul(B[b]).data, C.get(b).data, 1E-12);
+    }
+  }
+
+  @Test
+  public void test_det_inverse() {
+    for (int size = 2; size <= 4; size++) {
+      Matrix A[] = random(size, 50);
+      MatrixBatch batch = MatrixBatch.of(A), inv = batch.inverse();
+      double d[] = batch.det();
+      for (int b = 0; b < 50; b++) {
+        assertEquals(A[b].lu().det(), d[b], 1E-10);
+        assertArrayEquals(A[b].inverse().data, inv.get(b).data, 1E-10);
+      }
+      // A A^-1 = I
+      MatrixBatch I = batch.mul(inv), E = MatrixBatch.identity(size, 50);
+      assertArrayEquals(E.data, I.data, 1E-10);
+    }
+  }
+
+  @Test
+  public void test_transform() {
+    // translation by (1, 2, 3) and a scale of 2
+    Matrix T = new Matrix(4, 4, new double[]{2, 0, 0, 1, 0, 2, 0, 2, 0, 0, 2, 3, 0, 0, 0, 1});
+    MatrixBatch batch = MatrixBatch.of(T, T);
+    Point3D p[] = batch.transform(new Point3D[]{new Point3D(0, 0, 0), new Point3D(1, 1, 1)});
+    assertEquals(1.0, p[0].x(), 0.0);
+    assertEquals(2.0, p[0].y(), 0.0);
+    assertEquals(3.0, p[0].z(), 0.0);
+    assertEquals(3.0, p[1].x(), 0.0);
+    assertEquals(5.0, p[1].z(), 0.0);
+    Point4D q[] = batch.transform(new Point4D[]{new Point4D(1, 1, 1, 0), new Point4D(1, 1, 1, 1)});
+    assertEquals(2.0, q[0].x(), 0.0);
+    assertEquals(0.0, q[0].w(), 0.0);
+    assertEquals(4.0, q[1].y(), 0.0);
+    assertEquals(1.0, q[1].w(), 0.0);
+    // 3x3 rotation of 90 degrees around z
+    MatrixBatch R = MatrixBatch.of(new Matrix(3, 3, new double[]{0, -1, 0, 1, 0, 0, 0, 0, 1}));
+    double x[] = {1}, y[] = {0}, z[] = {5};
+    R.transform(x, y, z);
+    assertArrayEquals(new double[]{0, 1, 5}, new double[]{x[0], y[0], z[0]}, 1E-15);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_size() {
+    new MatrixBatch(5, 10);
+  }
+}
@@ -0,0 +1,39 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test for {@link MatrixCalibration}.
+ *
+ * @author Mário Antunes
+ * @version 1.0
+ */
+public class MatrixCalibrationTest {
+
+  @Test
+  public void test_store_load_apply() throws Exception {
+    Properties current = MatrixCalibration.current(), props = new Properties();
+    props.setProperty("transpose.blk", "32");
+    props.setProperty("mul.blk", "128");
+    props.setProperty("mul.kernel", "GEMM");
+    props.setProperty("mul.parallel", "1000000");
+    Path path = Files.createTempFile("bla", ".properties");
+    try {
+      MatrixCalibration.store(props, path);
+      MatrixCalibration.apply(MatrixCalibration.load(path));
+      assertEquals(32, MatrixTranspose.blockSize());
+      assertEquals(128, MatrixMultiplication.blockSize());
+      assertEquals(MatrixMultiplication.Kernel.GEMM, MatrixMultiplication.kernel());
+      assertEquals(1000000L, MatrixMultiplication.parallelThreshold());
+    } finally {
+      MatrixCalibration.apply(current);
+      Files.delete(path);
+    }
+  }
+}
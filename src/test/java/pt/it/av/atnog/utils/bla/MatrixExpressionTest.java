@@ -0,0 +1,62 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Unit test for {@link MatrixExpression}.
+ *
+ * @author Mário Antunes
+ * @version 1.0
+ */
+public class MatrixExpressionTest {
+
+  @Test
+  public void test_elementwise() {
+    Matrix A = Matrix.random(70, 50, -1.0, 1.0), B = Matrix.random(70, 50, -1.0, 1.0),
+        C = Matrix.random(70, 50, 1.0, 2.0);
+    Matrix expected = A.add(B).mul(2.0).sub(C);
+    assertArrayEquals(expected.data, A.lazy().add(B).mul(2.0).sub(C).eval().data, 1E-12);
+    // nested subexpressions on both sides
+    MatrixExpression e = A.lazy().sub(1.0).hadamard(B.lazy().add(C.lazy().div(A))).div(C.lazy().add(0.5));
+    Matrix D = new Matrix(70, 50);
+    for (int i = 0; i < D.data.length; i++)
+      D.data[i] = ((A.data[i] - 1.0) * (B.data[i] + C.data[i] / A.data[i])) / (C.data[i] + 0.5);
+    assertArrayEquals(D.data, e.eval().data, 1E-12);
+  }
+
+  @Test
+  public void test_vector() {
+    Vector a = Vector.random(3000), b = Vector.random(3000);
+    assertArrayEquals(a.add(b).div(4.0).data, a.lazy().add(b.lazy()).div(4.0).vector().data, 1E-12);
+  }
+
+  @Test
+  public void test_product_chain() {
+    Matrix W = Matrix.random(200, 5, 0.0, 1.0), H = Matrix.random(5, 150, 0.0, 1.0), Ht = H.transpose();
+    Matrix expected = W.mul(H).mul(Ht).add(0.5);
+    assertArrayEquals(expected.data, W.lazy().mul(H).mul(Ht).add(0.5).eval().data, 1E-10);
+    Matrix X = Matrix.random(5, 5, 0.0, 1.0);
+    assertArrayEquals(W.mul(X).mul(H).sub(W.mul(H)).data,
+        W.lazy().mul(X.lazy().mul(H)).sub(W.lazy().mul(H)).eval().data, 1E-10);
+  }
+
+  @Test
+  public void test_reevaluation() {
+    // the product is computed again when the operands change
+    Matrix A = Matrix.random(30, 20, 0.0, 1.0), B = Matrix.random(20, 10, 0.0, 1.0),
+        C = Matrix.random(30, 10, 0.0, 1.0);
+    MatrixExpression e = A.lazy().mul(B).add(C);
+    assertArrayEquals(A.mul(B).add(C).data, e.eval().data, 1E-12);
+    A.set(0, 0, 5.0);
+    B.set(3, 4, -2.0);
+    C.set(7, 1, 3.0);
+    assertArrayEquals(A.mul(B).add(C).data, e.eval().data, 1E-12);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_dimensions() {
+    Matrix.random(3, 4).lazy().add(Matrix.random(4, 3));
+  }
+}
@@ -0,0 +1,131 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit test for {@link MatrixIO}.
+ *
+ * @author Mário Antunes
+ * @version 1.0
+ */
+public class MatrixIOTest {
+  private static Path dir;
+
+  @BeforeClass
+  public static void setup() throws IOException {
+    dir = Files.createTempDirectory("matrixio");
+  }
+
+  @AfterClass
+  public static void cleanup() throws IOException {
+    Files.list(dir).forEach(p -> p.toFile().delete());
+    Files.delete(dir);
+  }
+
+  @Test
+  public void test_matrix() throws IOException {
+    Matrix M = Matrix.random(300, 70, 0.0, 1.0);
+    Path p = dir.resolve("m.bin");
+    MatrixIO.write(p, M);
+    assertEquals(MatrixIO.HEADER + 300 * 70 * Double.BYTES, Files.size(p));
+    assertTrue(M.equals(MatrixIO.readMatrix(p)));
+    MatrixIO.Header h = MatrixIO.readHeader(p);
+    assertEquals(300, h.rows);
+    assertEquals(70, h.cols);
+    assertEquals(MatrixIO.DType.FLOAT64, h.dtype);
+  }
+
+  @Test
+  public void test_vector() throws IOException {
+    Vector v = new Vector(new double[]{0, 1, 2, 3, 4}, 1, 3);
+    Path p = dir.resolve("v.bin");
+    MatrixIO.write(p, v);
+    assertTrue(new Vector(new double[]{1, 2, 3}).equals(MatrixIO.readVector(p)));
+  }
+
+  @Test
+  public void test_checkpoint() throws IOException {
+    Matrix WH[] = Matrix.random(20, 12, 0.0, 1.0).nmf(3, 10, 0.0);
+    Path p = dir.resolve("nmf.bin");
+    MatrixIO.write(p, WH);
+    Matrix R[] = MatrixIO.readMatrices(p);
+    assertEquals(2, R.length);
+    assertTrue(WH[0].equals(R[0]));
+    assertTrue(WH[1].equals(R[1]));
+  }
+
+  @Test
+  public void test_rows() throws IOException {
+    Matrix M = Matrix.random(50, 9, 0.0, 1.0);
+    Path p = dir.resolve("r.bin");
+    MatrixIO.write(p, M);
+    Matrix R = MatrixIO.readRows(p, 13, 20);
+    for (int i = 0; i < 20; i++)
+      for (int j = 0; j < 9; j++)
+        assertEquals(M.get(13 + i, j), R.get(i, j), 0.0);
+  }
+
+  @Test
+  public void test_float() throws IOException {
+    FloatMatrix F = FloatMatrix.random(10, 7, 0.0f, 1.0f);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    MatrixIO.write(Channels.newChannel(out), F);
+    MatrixIO.write(Channels.newChannel(out), F.toMatrix());
+    ReadableByteChannel in =
+        Channels.newChannel(new ByteArrayInputStream(out.toByteArray()));
+    assertTrue(F.equals(MatrixIO.readFloatMatrix(in)));
+    assertTrue(F.toMatrix().equals(MatrixIO.readMatrix(in)));
+    assertNull(MatrixIO.readMatrix(in));
+  }
+
+  @Test
+  public void test_map() throws IOException {
+    Matrix M = Matrix.random(40, 30, 0.0, 1.0);
+    Path p = dir.resolve("map.bin");
+    MatrixIO.write(p, M);
+    try (MappedMatrix A = MatrixIO.map(p, true)) {
+      assertTrue(M.equals(A.toMatrix()));
+    }
+  }
+
+  @Test
+  public void test_invalid_header() throws IOException {
+    Path p = dir.resolve("invalid.bin");
+    MatrixIO.write(p, new Matrix(2, 3));
+    byte record[] = Files.readAllBytes(p);
+    // negative number of rows
+    ByteBuffer.wrap(record).putInt(8, -1);
+    Files.write(p, record);
+    try {
+      MatrixIO.readHeader(p);
+      fail("Negative dimensions must be rejected.");
+    } catch (IOException e) {
+      assertEquals("Invalid matrix record.", e.getMessage());
+    }
+    // more elements than the ones that fit into an array
+    ByteBuffer.wrap(record).putInt(8, 1 << 16).putInt(12, 1 << 16);
+    Files.write(p, record);
+    try {
+      MatrixIO.readMatrix(p);
+      fail("Records larger than an array must be rejected.");
+    } catch (IOException e) {
+      assertEquals("Invalid matrix record.", e.getMessage());
+    }
+  }
+}
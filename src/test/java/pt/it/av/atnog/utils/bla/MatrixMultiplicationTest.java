@@ -5,6 +5,7 @@ import pt.it.av.atnog.utils.ArrayUtils;
 
 import java.util.Arrays;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -32,6 +33,16 @@ public class MatrixMultiplicationTest {
     assertTrue(Arrays.equals(ba, BA));
   }
 
+  @Test
+  public void test_smul_accumulates() {
+    for (MatrixMultiplication.Kernel kernel : MatrixMultiplication.Kernel.values()) {
+      double ab[] = new double[9];
+      Arrays.fill(ab, 1.0);
+      MatrixMultiplication.smul(A, B, ab, 3, 3, 2, kernel);
+      assertArrayEquals(new double[]{9, 11, 13, 29, 39, 49, 49, 67, 85}, ab, 0.0);
+    }
+  }
+
   @Test
   public void test_ikj_small() {
     double ab[] = new double[9];
@@ -107,4 +118,74 @@ public class MatrixMultiplicationTest {
     MatrixMultiplication.pmult(B, AT, ba, 2, 2, 3);
     assertTrue(Arrays.equals(ba, BA));
   }
+
+  @Test
+  public void test_gemm_small() {
+    double ab[] = new double[9];
+    MatrixMultiplication.gemm(A, B, ab, 3, 3, 2);
+    assertTrue(Arrays.equals(ab, AB));
+
+    double ba[] = new double[4];
+    MatrixMultiplication.gemm(B, A, ba, 2, 2, 3);
+    assertTrue(Arrays.equals(ba, BA));
+  }
+
+  @Test
+  public void test_gemm_transposed() {
+    double ab[] = new double[9];
+    MatrixMultiplication.gemm(AT, 1, 3, BT, 1, 2, ab, 3, 3, 2);
+    assertTrue(Arrays.equals(ab, AB));
+  }
+
+  @Test
+  public void test_gemm_large() {
+    int m = 150, n = 75, p = 300;
+    double a[] = ArrayUtils.random(m * p), b[] = ArrayUtils.random(p * n),
+        ab1[] = new double[m * n], ab2[] = new double[m * n];
+    MatrixMultiplication.ijk(a, b, ab1, m, n, p);
+    MatrixMultiplication.gemm(a, b, ab2, m, n, p);
+    assertArrayEquals(ab1, ab2, 1E-9);
+  }
+
+  @Test
+  public void test_pmul_large() {
+    int m = 301, n = 157, p = 96;
+    double a[] = ArrayUtils.random(m * p), b[] = ArrayUtils.random(p * n),
+        ab1[] = new double[m * n], ab2[] = new double[m * n];
+    MatrixMultiplication.ijk(a, b, ab1, m, n, p);
+    MatrixMultiplication.pmul(a, b, ab2, m, n, p);
+    assertArrayEquals(ab1, ab2, 1E-9);
+  }
+
+  @Test
+  public void test_pmult_large() {
+    int m = 96, n = 301, p = 157;
+    double a[] = ArrayUtils.random(m * p), bt[] = ArrayUtils.random(n * p),
+        ab1[] = new double[m * n], ab2[] = new double[m * n];
+    MatrixMultiplication.ijkt(a, bt, ab1, m, n, p);
+    MatrixMultiplication.pmult(a, bt, ab2, m, n, p);
+    assertArrayEquals(ab1, ab2, 1E-9);
+  }
+
+  @Test
+  public void test_gemm_float() {
+    int m = 150, n = 75, p = 300;
+    double a[] = ArrayUtils.random(m * p), b[] = ArrayUtils.random(p * n), ab[] = new double[m * n];
+    float fab[] = new float[m * n];
+    MatrixMultiplication.ijk(a, b, ab, m, n, p);
+    MatrixMultiplication.gemm(ArrayUtils.toFloat(a), ArrayUtils.toFloat(b), fab, m, n, p);
+    assertArrayEquals(ab, ArrayUtils.toDouble(fab), 1E-3);
+  }
+
+  @Test
+  public void test_pgemm_float_transposed() {
+    // A^T B with A stored as p x m, as the NMF updates read W^T
+    int m = 96, n = 157, p = 301;
+    double at[] = ArrayUtils.random(p * m), b[] = ArrayUtils.random(p * n), ab[] = new double[m * n];
+    float fab[] = new float[m * n];
+    MatrixMultiplication.gemm(at, 1, m, b, n, 1, ab, m, n, p);
+    MatrixMultiplication.pgemm(ArrayUtils.toFloat(at), 0, 1, m, ArrayUtils.toFloat(b), 0, n, 1,
+        fab, 0, n, m, n, p);
+    assertArrayEquals(ab, ArrayUtils.toDouble(fab), 1E-3);
+  }
 }
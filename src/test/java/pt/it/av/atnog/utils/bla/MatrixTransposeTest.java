@@ -5,6 +5,7 @@ import pt.it.av.atnog.utils.PrintUtils;
 
 import java.util.Arrays;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -56,4 +57,92 @@ public class MatrixTransposeTest {
     MatrixTranspose.cotr(M.data, m.data, M.rows, M.cols, BLK);
     assertTrue(Arrays.equals(MT.data, m.data));
   }
+
+  @Test
+  public void test_transpose_cache_oblivious_rect() {
+    Matrix M = Matrix.random(N + 45, N / 2 + 3), MT = new Matrix(M.cols, M.rows);
+    MatrixTranspose.ntr(M.data, MT.data, M.rows, M.cols);
+    Matrix m = new Matrix(M.cols, M.rows);
+    MatrixTranspose.cotr(M.data, m.data, M.rows, M.cols, BLK);
+    assertTrue(Arrays.equals(MT.data, m.data));
+  }
+
+  @Test
+  public void test_transpose_parallel_cache_oblivious_rect() {
+    Matrix M = Matrix.random(4 * N + 7, 3 * N + 1), MT = new Matrix(M.cols, M.rows);
+    MatrixTranspose.ntr(M.data, MT.data, M.rows, M.cols);
+    Matrix m = new Matrix(M.cols, M.rows);
+    MatrixTranspose.pcotr(M.data, m.data, M.rows, M.cols);
+    assertTrue(Arrays.equals(MT.data, m.data));
+  }
+
+  @Test
+  public void test_transpose_inplace_follow_cycles_rect() {
+    Matrix M = Matrix.random(N + 45, N / 2 + 3), MT = new Matrix(M.cols, M.rows);
+    MatrixTranspose.ntr(M.data, MT.data, M.rows, M.cols);
+    MatrixTranspose.infotr(M.data, M.rows, M.cols);
+    assertTrue(Arrays.equals(M.data, MT.data));
+  }
+
+  @Test
+  public void test_transpose_parallel_inplace_decomposition_rect() {
+    Matrix M = Matrix.random(4 * N + 8, 3 * N), MT = new Matrix(M.cols, M.rows);
+    MatrixTranspose.ntr(M.data, MT.data, M.rows, M.cols);
+    MatrixTranspose.pindtr(M.data, M.rows, M.cols);
+    assertTrue(Arrays.equals(M.data, MT.data));
+  }
+
+  @Test
+  public void test_transpose_inplace_decomposition_small() {
+    double a[] = new double[A.length], b[] = new double[B.length];
+    System.arraycopy(A,0, a,0, A.length);
+    System.arraycopy(B,0, b,0, B.length);
+    MatrixTranspose.indtr(a, 3, 2);
+    assertTrue(Arrays.equals(a, AT));
+    MatrixTranspose.indtr(b, 5, 3);
+    assertTrue(Arrays.equals(b, BT));
+  }
+
+  @Test
+  public void test_transpose_inplace_decomposition_rect() {
+    Matrix M = Matrix.random(N + 48, N / 2 + 16), MT = new Matrix(M.cols, M.rows);
+    MatrixTranspose.ntr(M.data, MT.data, M.rows, M.cols);
+    MatrixTranspose.indtr(M.data, M.rows, M.cols);
+    assertTrue(Arrays.equals(M.data, MT.data));
+  }
+
+  @Test
+  public void test_transpose_inplace_decomposition_skinny() {
+    // tall-skinny and short-wide matrices, the columns are gathered one by one and 16 at a time
+    for (int shape[] : new int[][]{{4 * N + 6, 6}, {6, 4 * N + 6}, {N + 3, 40}, {40, 20 * N}}) {
+      Matrix M = Matrix.random(shape[0], shape[1]), MT = new Matrix(M.cols, M.rows);
+      MatrixTranspose.ntr(M.data, MT.data, M.rows, M.cols);
+      MatrixTranspose.indtr(M.data, M.rows, M.cols);
+      assertTrue(Arrays.equals(M.data, MT.data));
+    }
+  }
+
+  @Test
+  public void test_transpose_inplace_memory() {
+    // the scratch buffers alive at the same time fit into max(64K, 16 * sqrt(rows * cols))
+    for (int shape[] : new int[][]{{20000, 10000}, {1 << 20, 64}, {300, 200}, {70000, 3}}) {
+      final long budget = Math.max(1 << 16, (long) Math.ceil(16 * Math.sqrt((double) shape[0] * shape[1])));
+      assertTrue((long) MatrixTranspose.workers(shape[0], shape[1]) * Math.max(shape[0], shape[1]) <= budget);
+    }
+    // thin matrices follow the cycles without any scratch buffer
+    assertEquals(0, MatrixTranspose.workers(100000000, 4));
+    assertEquals(0, MatrixTranspose.workers(70000, 3));
+    Matrix M = Matrix.random(70000, 3), MT = new Matrix(M.cols, M.rows);
+    MatrixTranspose.ntr(M.data, MT.data, M.rows, M.cols);
+    MatrixTranspose.itr(M.data, M.rows, M.cols);
+    assertTrue(Arrays.equals(M.data, MT.data));
+  }
+
+  @Test
+  public void test_transpose_parallel_inplace_rect() {
+    Matrix M = Matrix.random(N + 45, N / 2 + 3), MT = new Matrix(M.cols, M.rows);
+    MatrixTranspose.ntr(M.data, MT.data, M.rows, M.cols);
+    MatrixTranspose.pinfotr(M.data, M.rows, M.cols);
+    assertTrue(Arrays.equals(M.data, MT.data));
+  }
 }
@@ -0,0 +1,63 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link MatrixView}.
+ *
+ * @author Mário Antunes
+ * @version 1.0
+ */
+public class MatrixViewTest {
+
+  @Test
+  public void test_slices() {
+    Matrix A = new Matrix(3, 4, new double[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+    assertArrayEquals(new double[]{5, 6, 7, 8}, A.view().row(1).toMatrix().data, 0.0);
+    assertEquals(7.0, A.row(1).get(0, 2), 0.0);
+    assertArrayEquals(new double[]{3, 7, 11}, A.column(2).toMatrix().data, 0.0);
+    MatrixView S = A.view(1, 1, 2, 2);
+    assertArrayEquals(new double[]{6, 7, 10, 11}, S.toMatrix().data, 0.0);
+    assertArrayEquals(new double[]{6, 10, 7, 11}, S.transpose().toMatrix().data, 0.0);
+    assertFalse(S.isContiguous());
+    assertTrue(A.view(1, 0, 2, 4).isContiguous());
+    // writes through the view
+    S.set(0.0);
+    A.column(0).uMul(2.0);
+    assertArrayEquals(new double[]{2, 2, 3, 4, 10, 0, 0, 8, 18, 0, 0, 12}, A.data, 0.0);
+    assertEquals(4, A.row(2).columns());
+    assertEquals(4, A.row(2).vector().size());
+  }
+
+  @Test
+  public void test_mul() {
+    Matrix A = Matrix.random(60, 50, -1.0, 1.0), B = Matrix.random(40, 70, -1.0, 1.0);
+    MatrixView a = A.view(5, 3, 30, 20), b = B.view(10, 7, 20, 25);
+    Matrix expected = a.toMatrix().mul(b.toMatrix());
+    assertArrayEquals(expected.data, a.mul(b).data, 1E-10);
+    // transposed operands
+    assertArrayEquals(expected.transpose().data, b.transpose().mul(a.transpose()).data, 1E-10);
+    // accumulate into a submatrix
+    Matrix C = new Matrix(40, 40), D = new Matrix(C);
+    C.view(2, 4, 30, 25).uAddMul(a, b);
+    C.view(2, 4, 30, 25).uSub(new MatrixView(expected));
+    assertArrayEquals(D.data, C.data, 1E-10);
+  }
+
+  @Test
+  public void test_expression() {
+    Matrix A = Matrix.random(50, 60, -1.0, 1.0), B = Matrix.random(60, 50, -1.0, 1.0);
+    Matrix expected = A.add(B.transpose()).mul(3.0);
+    assertArrayEquals(expected.data, A.lazy().add(B.view().transpose()).mul(3.0).eval().data, 1E-12);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_bounds() {
+    Matrix.random(3, 3).view(2, 2, 2, 1);
+  }
+}
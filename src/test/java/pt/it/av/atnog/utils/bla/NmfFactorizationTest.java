@@ -21,4 +21,30 @@ public class NmfFactorizationTest {
     double cost = ArrayUtils.euclideanDistance(V.data, 0, wh.data, 0, V.data.length);
     assertTrue(cost <= 1.0);
   }
+
+  @Test
+  public void test_rules() {
+    Matrix V = Matrix.random(60, 4, 0.0, 1.0).mul(Matrix.random(4, 50, 0.0, 1.0));
+    double norm = V.euclideanDistance(new Matrix(60, 50));
+    for (NmfFactorization.Rule rule : NmfFactorization.Rule.values()) {
+      Matrix WH[] = V.nmf(4, 500, 1E-6, rule);
+      assertTrue(rule.name(), V.euclideanDistance(WH[0].mul(WH[1])) < 0.05 * norm);
+    }
+  }
+
+  @Test
+  public void test_warm_start() {
+    Matrix V = Matrix.random(30, 20, 0.0, 1.0);
+    Matrix WH[] = NmfFactorization.nmf(V, 5, 20, 0.0, NmfFactorization.Rule.HALS);
+    double cost = V.euclideanDistance(WH[0].mul(WH[1]));
+    Matrix R[] = NmfFactorization.nmf(V, WH[0], WH[1], 20, 0.0, NmfFactorization.Rule.HALS, 1);
+    assertTrue(V.euclideanDistance(R[0].mul(R[1])) <= cost);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_invalid_warm_start() {
+    Matrix V = Matrix.random(30, 20, 0.0, 1.0);
+    NmfFactorization.nmf(V, Matrix.random(20, 5), Matrix.random(5, 20), 10, 0.0,
+        NmfFactorization.Rule.MU, 1);
+  }
 }
@@ -0,0 +1,42 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link OnlineNmf}.
+ *
+ * @author Mário Antunes
+ * @version 1.0
+ */
+public class OnlineNmfTest {
+
+  @Test
+  public void test_stream() {
+    Matrix W = Matrix.random(40, 4, 0.0, 1.0);
+    OnlineNmf nmf = new OnlineNmf(40, 4, 1.0);
+    for (int i = 0; i < 30; i++)
+      nmf.update(W.mul(Matrix.random(4, 20, 0.0, 1.0)));
+    assertEquals(600, nmf.columns());
+    Matrix V = W.mul(Matrix.random(4, 50, 0.0, 1.0)), H = nmf.project(V);
+    assertTrue(V.euclideanDistance(nmf.w().mul(H)) < 0.1 * V.euclideanDistance(new Matrix(40, 50)));
+  }
+
+  @Test
+  public void test_state() {
+    OnlineNmf nmf = new OnlineNmf(10, 3, 0.9);
+    nmf.update(Matrix.random(10, 8, 0.0, 1.0));
+    Matrix state[] = nmf.state();
+    OnlineNmf copy = new OnlineNmf(state[0], state[1], state[2], 0.9);
+    Matrix V = Matrix.random(10, 8, 0.0, 1.0);
+    assertTrue(nmf.update(V).equals(copy.update(V)));
+    assertTrue(nmf.w().equals(copy.w()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_invalid_decay() {
+    new OnlineNmf(10, 3, 0.0);
+  }
+}
@@ -0,0 +1,65 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test for {@link PairwiseDistances}.
+ *
+ * @author Mário Antunes
+ * @version 1.0
+ */
+public class PairwiseDistancesTest {
+
+  private static Vector row(final Matrix A, final int i) {
+    return new Vector(A.data, i * A.cols, A.cols);
+  }
+
+  @Test
+  public void test_euclidean() {
+    Matrix A = Matrix.random(400, 16, -1.0, 1.0), B = Matrix.random(350, 16, -1.0, 1.0);
+    Matrix D = PairwiseDistances.euclidean(A, B), M = PairwiseDistances.manhattan(A, B),
+        S = PairwiseDistances.squaredEuclidean(A, A);
+    for (int i = 0; i < A.rows; i++) {
+      for (int j = 0; j < B.rows; j++) {
+        assertEquals(row(A, i).euclideanDistance(row(B, j)), D.get(i, j), 1E-9);
+        assertEquals(row(A, i).manhattanDistance(row(B, j)), M.get(i, j), 1E-9);
+      }
+      assertEquals(0.0, S.get(i, i), 0.0);
+    }
+  }
+
+  @Test
+  public void test_cosine() {
+    Matrix A = Matrix.random(40, 12, -1.0, 1.0), B = Matrix.random(30, 12, -1.0, 1.0);
+    // a zero vector has similarity zero with everything
+    for (int j = 0; j < B.cols; j++)
+      B.set(3, j, 0.0);
+    Matrix C = PairwiseDistances.cosine(A, B), R = PairwiseDistances.correlation(A, B);
+    for (int i = 0; i < A.rows; i++)
+      for (int j = 0; j < B.rows; j++) {
+        assertEquals(row(A, i).cosine(row(B, j)), C.get(i, j), 1E-9);
+        if (j != 3)
+          assertEquals(row(A, i).corr(row(B, j)), R.get(i, j), 1E-9);
+      }
+    assertEquals(1.0, PairwiseDistances.cosine(A, A).get(5, 5), 1E-12);
+  }
+
+  @Test
+  public void test_kld() {
+    Matrix A = Matrix.random(20, 10, 0.0, 1.0), B = Matrix.random(25, 10, 0.0, 1.0);
+    A.set(2, 4, 0.0);
+    B.set(7, 1, 0.0);
+    B.set(7, 4, 0.0);
+    Matrix K = PairwiseDistances.kld(A, B);
+    for (int i = 0; i < A.rows; i++)
+      for (int j = 0; j < B.rows; j++)
+        assertEquals(row(A, i).kld(row(B, j)), K.get(i, j), 1E-9);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_dimensions() {
+    PairwiseDistances.euclidean(new Matrix(2, 3), new Matrix(2, 4));
+  }
+}
@@ -0,0 +1,91 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test for {@link QrDecomposition}.
+ *
+ * @author Mário Antunes
+ * @version 1.0
+ */
+public class QrDecompositionTest {
+
+  private static void assertQr(Matrix A, Matrix Q, Matrix R, double delta) {
+    assertArrayEquals(A.data, Q.mul(R).data, delta);
+    Matrix QtQ = Q.transpose().mul(Q);
+    assertArrayEquals(Matrix.identity(QtQ.rows).data, QtQ.data, delta);
+    for (int i = 0; i < R.rows(); i++)
+      for (int j = 0; j < Math.min(i, R.columns()); j++)
+        assertEquals(0.0, R.get(i, j), 0.0);
+  }
+
+  @Test
+  public void test_qr_square() {
+    Matrix A = Matrix.random(70, 70, -1.0, 1.0), QR[] = A.qr();
+    assertQr(A, QR[0], QR[1], 1E-10);
+  }
+
+  @Test
+  public void test_qr_rect() {
+    Matrix A = Matrix.random(150, 45, -1.0, 1.0), B = Matrix.random(30, 77, -1.0, 1.0);
+    Matrix QR[] = A.qr();
+    assertQr(A, QR[0], QR[1], 1E-10);
+    QR = B.qr();
+    assertQr(B, QR[0], QR[1], 1E-10);
+  }
+
+  @Test
+  public void test_qr_shapes() {
+    // Matrix.qr() returns the full factors, QrDecomposition the thin ones
+    Matrix A = Matrix.random(150, 45, -1.0, 1.0), QR[] = A.qr();
+    assertEquals(150, QR[0].rows());
+    assertEquals(150, QR[0].columns());
+    assertEquals(150, QR[1].rows());
+    assertEquals(45, QR[1].columns());
+    assertArrayEquals(QR[1].data, A.triangular().data, 0.0);
+    QrDecomposition qr = new QrDecomposition(A);
+    assertEquals(45, qr.q().columns());
+    assertEquals(45, qr.r().rows());
+  }
+
+  @Test
+  public void test_implicit_q() {
+    Matrix A = Matrix.random(90, 40, -1.0, 1.0), B = Matrix.random(90, 3, -1.0, 1.0);
+    QrDecomposition qr = new QrDecomposition(A);
+    Matrix Q = qr.q();
+    assertArrayEquals(Q.transpose().mul(B).data, qr.qtmul(B).data, 1E-10);
+    Matrix C = Matrix.random(40, 5, -1.0, 1.0);
+    assertArrayEquals(Q.mul(C).data, qr.qmul(C).data, 1E-10);
+  }
+
+  @Test
+  public void test_least_squares() {
+    Matrix A = Matrix.random(200, 6, -1.0, 1.0), X = Matrix.random(6, 2, -1.0, 1.0);
+    Matrix B = A.mul(X);
+    assertArrayEquals(X.data, new QrDecomposition(A).solve(B).data, 1E-10);
+    // the residual of the least squares solution is orthogonal to the columns of A
+    Matrix N = Matrix.random(200, 1, -1.0, 1.0);
+    Vector x = new QrDecomposition(A).solve(N.vector());
+    Matrix r = N.sub(A.mul(new Matrix(6, 1, x.data)));
+    assertArrayEquals(new double[6], A.transpose().mul(r).data, 1E-10);
+  }
+
+  @Test
+  public void test_tsqr() {
+    Matrix A = Matrix.random(1000, 12, -1.0, 1.0), B = Matrix.random(1000, 2, -1.0, 1.0);
+    QrDecomposition tsqr = QrDecomposition.tsqr(A, 4), qr = new QrDecomposition(A);
+    assertQr(A, tsqr.q(), tsqr.r(), 1E-10);
+    assertArrayEquals(qr.solve(B).data, tsqr.solve(B).data, 1E-10);
+  }
+
+  @Test
+  public void test_det() {
+    Matrix A = new Matrix(4, 4, new double[]{2, 0, 0, 1, 0, 3, 0, 0, 0, 0, 4, 0, 1, 0, 0, 2});
+    assertEquals(36.0, A.det(), 1E-10);
+    Matrix P = new Matrix(4, 4, new double[]{0, 1, 0, 0, 1, 0, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1});
+    assertEquals(-1.0, P.det(), 1E-12);
+  }
+}
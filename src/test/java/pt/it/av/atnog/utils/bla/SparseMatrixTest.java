@@ -0,0 +1,91 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for {@link SparseMatrix}.
+ *
+ * @author Mário Antunes
+ * @version 1.0
+ */
+public class SparseMatrixTest {
+  private static double a[] = {1, 0, 2, 0, 0, 3, 4, 0, 0, 0, 0, 5},
+      b[] = {0, 1, 2, 0, 0, 0, 3, 0, 0, 0, 0, 4};
+  private static Matrix A, B;
+
+  @BeforeClass
+  public static void setup() {
+    A = new Matrix(3, 4, a);
+    B = new Matrix(4, 3, b);
+  }
+
+  @Test
+  public void test_csr_csc() {
+    SparseMatrix csr = SparseMatrix.csr(A), csc = SparseMatrix.csc(A);
+    assertEquals(5, csr.nnz());
+    assertEquals(5, csc.nnz());
+    assertTrue(A.equals(csr.toMatrix()));
+    assertTrue(A.equals(csc.toMatrix()));
+    assertTrue(csr.equals(csc));
+    assertEquals(3.0, csr.get(1, 1), 0.0);
+    assertEquals(0.0, csc.get(1, 0), 0.0);
+  }
+
+  @Test
+  public void test_triplets() {
+    int r[] = {2, 0, 1, 0, 1, 0}, c[] = {3, 2, 1, 0, 2, 2};
+    double v[] = {5, 1, 3, 1, 4, 1};
+    SparseMatrix S = SparseMatrix.csr(3, 4, r, c, v);
+    assertTrue(A.equals(S.toMatrix()));
+  }
+
+  @Test
+  public void test_transpose() {
+    SparseMatrix S = SparseMatrix.csr(A);
+    assertTrue(A.transpose().equals(S.transpose().toMatrix()));
+    assertTrue(A.transpose().equals(S.transpose().toCsr().toMatrix()));
+  }
+
+  @Test
+  public void test_mul_vector() {
+    Vector x = new Vector(new double[]{1, 2, 3, 4}), y = A.mul(x);
+    assertTrue(y.equals(SparseMatrix.csr(A).mul(x)));
+    assertTrue(y.equals(SparseMatrix.csc(A).mul(x)));
+  }
+
+  @Test
+  public void test_mul_dense() {
+    Matrix AB = A.mul(B);
+    assertTrue(AB.equals(SparseMatrix.csr(A).mul(B)));
+    assertTrue(AB.equals(SparseMatrix.csc(A).mul(B)));
+    assertTrue(AB.equals(A.mul(SparseMatrix.csr(B))));
+    assertTrue(AB.equals(A.mul(SparseMatrix.csc(B))));
+  }
+
+  @Test
+  public void test_mul_sparse() {
+    Matrix AB = A.mul(B);
+    assertTrue(AB.equals(SparseMatrix.csr(A).mul(SparseMatrix.csc(B)).toMatrix()));
+    assertTrue(SparseMatrix.csr(AB).equals(SparseMatrix.csc(A).mul(SparseMatrix.csr(B))));
+  }
+
+  @Test
+  public void test_nmf() {
+    // positive rank-2 matrix, the multiplicative updates converge from any initialization
+    Matrix W = new Matrix(6, 2, new double[]{1, 0.2, 0.3, 1, 2, 0.5, 0.1, 1.5, 1, 1, 0.5, 2}),
+        H = new Matrix(2, 5, new double[]{1, 0.5, 2, 0.1, 1, 0.2, 1, 0.3, 2, 1}), V = W.mul(H);
+    Matrix WH[] = SparseMatrix.csr(V).nmf(2, 1000, 0.0);
+    assertTrue(V.euclideanDistance(WH[0].mul(WH[1])) < 1E-3 * V.euclideanDistance(new Matrix(6, 5)));
+  }
+
+  @Test
+  public void test_nmf_cost() {
+    Matrix V = Matrix.random(20, 12, 0, 3);
+    Matrix WH[] = NmfFactorization.nmf_mu(SparseMatrix.csr(V), 4, 200, 0.0);
+    assertTrue(V.euclideanDistance(WH[0].mul(WH[1])) < V.euclideanDistance(new Matrix(20, 12)));
+  }
+}
@@ -0,0 +1,82 @@
+package pt.it.av.atnog.utils.bla;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test for {@link SvdDecomposition}.
+ *
+ * @author Mário Antunes
+ * @version 1.0
+ */
+public class SvdDecompositionTest {
+
+  private static void assertSvd(Matrix A, Matrix USV[], double delta) {
+    assertArrayEquals(A.data, USV[0].mul(USV[1]).mul(USV[2].transpose()).data, delta);
+    Matrix VtV = USV[2].transpose().mul(USV[2]);
+    assertArrayEquals(Matrix.identity(VtV.rows).data, VtV.data, delta);
+    for (int i = 1; i < USV[1].rows; i++)
+      assertEquals(true, USV[1].get(i - 1, i - 1) >= USV[1].get(i, i));
+  }
+
+  @Test
+  public void test_jacobi_tall() {
+    Matrix A = Matrix.random(40, 13, -1.0, 1.0);
+    assertSvd(A, A.svd(), 1E-10);
+  }
+
+  @Test
+  public void test_jacobi_wide() {
+    Matrix A = Matrix.random(9, 31, -1.0, 1.0);
+    assertSvd(A, A.svd(), 1E-10);
+  }
+
+  @Test
+  public void test_jacobi_known() {
+    // singular values of [[3, 2, 2], [2, 3, -2]] are 5 and 3
+    Matrix A = new Matrix(2, 3, new double[]{3, 2, 2, 2, 3, -2});
+    Matrix USV[] = A.svd();
+    assertEquals(5.0, USV[1].get(0, 0), 1E-12);
+    assertEquals(3.0, USV[1].get(1, 1), 1E-12);
+    assertSvd(A, USV, 1E-12);
+  }
+
+  @Test
+  public void test_randomized() {
+    // rank 5 matrix, the top-5 triplets reconstruct it
+    Matrix A = Matrix.random(120, 5, -1.0, 1.0).mul(Matrix.random(5, 80, -1.0, 1.0));
+    Matrix full[] = A.svd(), USV[] = A.svd(5);
+    assertEquals(5, USV[1].rows());
+    for (int i = 0; i < 5; i++)
+      assertEquals(full[1].get(i, i), USV[1].get(i, i), 1E-8);
+    assertSvd(A, USV, 1E-8);
+  }
+
+  @Test
+  public void test_randomized_sparse() {
+    Matrix A = Matrix.random(60, 3, 0.0, 1.0).mul(Matrix.random(3, 50, 0.0, 1.0));
+    for (int i = 0; i < A.data.length; i += 3)
+      A.data[i] = 0.0;
+    Matrix full[] = A.svd(), USV[] = SvdDecomposition.randomized(SparseMatrix.csr(A), 2, 10, 4);
+    assertEquals(full[1].get(0, 0), USV[1].get(0, 0), 1E-6);
+    assertEquals(full[1].get(1, 1), USV[1].get(1, 1), 1E-6);
+  }
+
+  @Test
+  public void test_randomized_arguments() {
+    Matrix A = Matrix.random(10, 8, 0.0, 1.0);
+    String messages[] = new String[3];
+    int args[][] = {{9, 2, 1}, {2, -1, 1}, {2, 2, -1}};
+    for (int i = 0; i < args.length; i++) {
+      try {
+        SvdDecomposition.randomized(A, args[i][0], args[i][1], args[i][2]);
+      } catch (IllegalArgumentException e) {
+        messages[i] = e.getMessage();
+      }
+    }
+    assertArrayEquals(new String[]{"Invalid number of singular triplets: 9",
+        "Invalid oversampling: -1", "Invalid number of power iterations: -1"}, messages);
+  }
+}
@@ -0,0 +1,123 @@
+package pt.it.av.atnog.utils.structures;
+
+import org.junit.Test;
+import pt.it.av.atnog.utils.bla.Matrix;
+import pt.it.av.atnog.utils.bla.Vector;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link ArrayKDTree}.
+ *
+ * @author Mário Antunes
+ * @version 1.0
+ */
+public class ArrayKDTreeTest {
+
+  private static double dist(final Matrix P, final int i, final double q[]) {
+    double rv = 0.0;
+    for (int j = 0; j < q.length; j++)
+      rv += (P.get(i, j) - q[j]) * (P.get(i, j) - q[j]);
+    return rv;
+  }
+
+  private static int[] brute(final Matrix P, final double q[], final int k) {
+    return IntStream.range(0, P.rows()).boxed()
+        .sorted(Comparator.comparingDouble(i -> dist(P, i, q)))
+        .limit(k).mapToInt(Integer::intValue).toArray();
+  }
+
+  @Test
+  public void test_knn() {
+    Matrix P = Matrix.random(2000, 3, -10.0, 10.0);
+    ArrayKDTree tree = ArrayKDTree.build(P, 8);
+    assertEquals(2000, tree.size());
+    assertEquals(3, tree.dim());
+    Random rnd = new Random(7);
+    for (int t = 0; t < 50; t++) {
+      double q[] = {rnd.nextDouble() * 24.0 - 12.0, rnd.nextDouble() * 24.0 - 12.0, rnd.nextDouble() * 24.0 - 12.0};
+      assertArrayEquals(brute(P, q, 10), tree.knn(q, 10));
+      assertEquals(brute(P, q, 1)[0], tree.nearest(q));
+    }
+    // a point of the tree is its own nearest neighbour
+    assertEquals(42, tree.nearest(P.row(42).vector()));
+  }
+
+  @Test
+  public void test_parallel_build() {
+    Matrix P = Matrix.random(40000, 2, 0.0, 100.0);
+    ArrayKDTree tree = ArrayKDTree.build(P);
+    Random rnd = new Random(11);
+    for (int t = 0; t < 10; t++) {
+      double q[] = {rnd.nextDouble() * 100.0, rnd.nextDouble() * 100.0};
+      assertArrayEquals(brute(P, q, 5), tree.knn(q, 5));
+    }
+  }
+
+  @Test
+  public void test_radius() {
+    Matrix P = Matrix.random(1500, 2, 0.0, 1.0);
+    ArrayKDTree tree = ArrayKDTree.build(P);
+    double q[] = {0.5, 0.5};
+    int expected[] = IntStream.range(0, P.rows()).filter(i -> dist(P, i, q) <= 0.01).toArray();
+    int rv[] = tree.radius(q, 0.1);
+    Arrays.sort(rv);
+    assertArrayEquals(expected, rv);
+    assertEquals(0, tree.radius(new Vector(new double[]{5.0, 5.0}), 0.1).length);
+  }
+
+  @Test
+  public void test_batch() {
+    Matrix P = Matrix.random(5000, 3, 0.0, 1.0), Q = Matrix.random(1200, 3, 0.0, 1.0);
+    ArrayKDTree tree = ArrayKDTree.build(P);
+    double q[][] = new double[Q.rows()][3], flat[] = new double[Q.rows() * 3];
+    for (int i = 0; i < Q.rows(); i++)
+      for (int j = 0; j < 3; j++)
+        q[i][j] = flat[i * 3 + j] = Q.get(i, j);
+    int nearest[] = tree.nearest(Q), knn[][] = tree.knn(q, 4), radius[][] = tree.radius(Q, 0.05);
+    int idx[] = new int[Q.rows() * 4];
+    double dist[] = new double[idx.length];
+    tree.knnBatch(flat, 4, idx, dist);
+    assertArrayEquals(nearest, tree.nearest(q));
+    for (int i = 0; i < Q.rows(); i++) {
+      assertEquals(tree.nearest(q[i]), nearest[i]);
+      int expected[] = tree.knn(q[i], 4);
+      assertArrayEquals(expected, knn[i]);
+      assertArrayEquals(expected, Arrays.copyOfRange(idx, i * 4, (i + 1) * 4));
+      assertEquals(dist(P, expected[3], q[i]), dist[i * 4 + 3], 1E-12);
+      int r[] = tree.radius(q[i], 0.05);
+      Arrays.sort(r);
+      Arrays.sort(radius[i]);
+      assertArrayEquals(r, radius[i]);
+    }
+    // less points than neighbours
+    tree = ArrayKDTree.build(Matrix.random(3, 3));
+    tree.knnBatch(flat, 4, idx, dist);
+    assertEquals(-1, idx[3]);
+    assertEquals(Double.POSITIVE_INFINITY, dist[3], 0.0);
+  }
+
+  @Test
+  public void test_duplicates() {
+    // all the points with the same coordinates
+    double coords[] = new double[200];
+    Arrays.fill(coords, 1.0);
+    ArrayKDTree tree = ArrayKDTree.build(coords, 2, 4);
+    int idx[] = new int[150];
+    double dist[] = new double[150];
+    assertEquals(100, tree.knn(new double[]{1.0, 2.0}, 150, idx, dist));
+    assertEquals(1.0, dist[99], 0.0);
+    assertEquals(100, tree.radius(new double[]{1.0, 1.0}, 0.0).length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_dimensions() {
+    ArrayKDTree.build(Matrix.random(10, 3)).nearest(new double[]{0.0, 0.0});
+  }
+}
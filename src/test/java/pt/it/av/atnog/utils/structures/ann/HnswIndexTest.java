@@ -0,0 +1,133 @@
+package pt.it.av.atnog.utils.structures.ann;
+
+import org.junit.Test;
+import pt.it.av.atnog.utils.bla.Vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link HnswIndex}.
+ *
+ * @author Mário Antunes
+ * @version 1.0
+ */
+public class HnswIndexTest {
+
+  private static Vector[] random(final int n, final int dim, final long seed) {
+    final Random rnd = new Random(seed);
+    final Vector rv[] = new Vector[n];
+    for (int i = 0; i < n; i++) {
+      final double data[] = new double[dim];
+      for (int j = 0; j < dim; j++)
+        data[j] = rnd.nextGaussian();
+      rv[i] = new Vector(data);
+    }
+    return rv;
+  }
+
+  private static int[] brute(final Metric metric, final Vector data[], final Vector q, final int k) {
+    final Vector p = metric.prepare(q);
+    final Vector prepared[] = Arrays.stream(data).map(metric::prepare).toArray(Vector[]::new);
+    return IntStream.range(0, data.length).boxed()
+        .sorted(Comparator.comparingDouble(i -> metric.distance(p, prepared[i])))
+        .limit(k).mapToInt(Integer::intValue).toArray();
+  }
+
+  private static double recall(final Metric metric) {
+    final Vector data[] = random(2000, 24, 1), queries[] = random(50, 24, 2);
+    final HnswIndex index = new HnswIndex(metric, 12, 100, 64, 3);
+    index.addAll(Arrays.asList(data));
+    assertEquals(2000, index.size());
+    int hits = 0;
+    for (Vector q : queries) {
+      final int expected[] = brute(metric, data, q, 10), rv[] = index.knn(q, 10);
+      assertEquals(10, rv.length);
+      for (int e : expected)
+        for (int r : rv)
+          if (e == r)
+            hits++;
+    }
+    return hits / (10.0 * queries.length);
+  }
+
+  @Test
+  public void test_euclidean() {
+    assertTrue(recall(Metric.EUCLIDEAN) >= 0.9);
+  }
+
+  @Test
+  public void test_cosine() {
+    assertTrue(recall(Metric.COSINE) >= 0.9);
+  }
+
+  @Test
+  public void test_inner_product() {
+    assertTrue(recall(Metric.INNER_PRODUCT) >= 0.8);
+  }
+
+  @Test
+  public void test_small() {
+    HnswIndex index = new HnswIndex(Metric.EUCLIDEAN);
+    assertEquals(-1, index.nearest(new Vector(new double[]{1.0, 2.0})));
+    assertEquals(0, index.add(new Vector(new double[]{0.0, 0.0})));
+    assertEquals(1, index.add(new Vector(new double[]{5.0, 5.0})));
+    assertEquals(2, index.add(new Vector(new double[]{1.0, 1.0})));
+    assertEquals(2, index.nearest(new Vector(new double[]{1.0, 2.0})));
+    assertArrayEquals(new int[]{2, 0, 1}, index.knn(new Vector(new double[]{1.0, 2.0}), 5));
+  }
+
+  @Test
+  public void test_copy() {
+    // the index keeps its own copy of the vectors
+    HnswIndex index = new HnswIndex(Metric.EUCLIDEAN);
+    Vector v = new Vector(new double[]{0.0, 0.0});
+    index.add(v);
+    index.add(new Vector(new double[]{5.0, 5.0}));
+    v.set(10.0);
+    assertEquals(0, index.nearest(new Vector(new double[]{1.0, 1.0})));
+  }
+
+  @Test
+  public void test_concurrent() throws Exception {
+    final Vector data[] = random(1000, 8, 4);
+    final HnswIndex index = new HnswIndex(Metric.EUCLIDEAN, 8, 50, 32, 5);
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> tasks = new ArrayList<>();
+      tasks.add(pool.submit(() -> {
+        for (Vector v : data)
+          index.add(v);
+      }));
+      for (int t = 0; t < 3; t++)
+        tasks.add(pool.submit(() -> {
+          for (Vector q : random(200, 8, 6))
+            assertTrue(index.knn(q, 5).length <= 5);
+        }));
+      for (Future<?> f : tasks)
+        f.get();
+    } finally {
+      pool.shutdown();
+    }
+    assertEquals(1000, index.size());
+    assertEquals(17, index.nearest(data[17]));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_dimensions() {
+    HnswIndex index = new HnswIndex(Metric.COSINE);
+    index.add(new Vector(new double[]{1.0, 2.0}));
+    index.add(new Vector(new double[]{1.0, 2.0, 3.0}));
+  }
+}
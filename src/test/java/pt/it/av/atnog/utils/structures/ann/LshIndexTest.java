@@ -0,0 +1,98 @@
+package pt.it.av.atnog.utils.structures.ann;
+
+import org.junit.Test;
+import pt.it.av.atnog.utils.bla.Vector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link LshIndex}.
+ *
+ * @author Mário Antunes
+ * @version 1.0
+ */
+public class LshIndexTest {
+
+  /**
+   * Returns n random vectors followed by a near-duplicate of every one of them.
+   */
+  private static List<Vector> duplicates(final int n, final int dim, final double noise, final long seed) {
+    final Random rnd = new Random(seed);
+    final List<Vector> rv = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      final double data[] = new double[dim];
+      for (int j = 0; j < dim; j++)
+        data[j] = rnd.nextGaussian();
+      rv.add(new Vector(data));
+    }
+    for (int i = 0; i < n; i++) {
+      final Vector v = new Vector(rv.get(i));
+      for (int j = 0; j < dim; j++)
+        v.set(j, v.get(j) + noise * rnd.nextGaussian());
+      rv.add(v);
+    }
+    return rv;
+  }
+
+  @Test
+  public void test_cosine() {
+    final List<Vector> data = duplicates(500, 64, 0.05, 1);
+    final LshIndex index = LshIndex.cosine(64, 16, 8, 2);
+    index.addAll(data.subList(0, 500));
+    for (int i = 500; i < 1000; i++)
+      assertEquals(i, index.add(data.get(i)));
+    assertEquals(1000, index.size());
+    // near-duplicates by cosine similarity
+    int found = 0;
+    for (int[] p : index.pairs(0.01)) {
+      assertTrue(1.0 - data.get(p[0]).cosine(data.get(p[1])) <= 0.01);
+      if (p[1] == p[0] + 500)
+        found++;
+    }
+    assertTrue(found >= 490);
+    // the nearest of a vector is itself, then its duplicate
+    assertArrayEquals(new int[]{7, 507}, index.knn(data.get(7), 2));
+    assertTrue(index.candidates(data.get(7)).length < 1000);
+  }
+
+  @Test
+  public void test_euclidean() {
+    final List<Vector> data = duplicates(500, 32, 0.01, 3);
+    final LshIndex index = LshIndex.euclidean(32, 12, 4, 1.0, 4);
+    index.addAll(data);
+    int found = 0;
+    for (int i = 0; i < 500; i++) {
+      final int near[] = index.near(data.get(i), 0.2);
+      for (int j : near)
+        assertTrue(data.get(i).euclideanDistance(data.get(j)) <= 0.2);
+      final int duplicate = i + 500;
+      if (Arrays.stream(near).anyMatch(j -> j == duplicate))
+        found++;
+    }
+    assertTrue(found >= 490);
+  }
+
+  @Test
+  public void test_batch() {
+    final List<Vector> data = duplicates(300, 16, 0.05, 5), queries = duplicates(150, 16, 0.05, 6);
+    final LshIndex index = LshIndex.cosine(16, 8, 6, 7);
+    index.addAll(data);
+    final int knn[][] = index.knn(queries, 3), near[][] = index.near(queries, 0.2);
+    for (int i = 0; i < queries.size(); i++) {
+      assertArrayEquals(index.knn(queries.get(i), 3), knn[i]);
+      assertArrayEquals(index.near(queries.get(i), 0.2), near[i]);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void test_dimensions() {
+    LshIndex.euclidean(3, 2, 2, 1.0).add(new Vector(new double[]{1.0, 2.0}));
+  }
+}